@@ -15,10 +15,13 @@ import com.ctre.phoenix6.SignalLogger;
 
 import edu.wpi.first.net.WebServer;
 import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.simulation.BatterySim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import frc.robot.constants.Constants;
 import frc.robot.lib.auto.FollowPath;
+import frc.robot.subsystems.swerve.SwerveDrive;
 
 /**
  * The VM is configured to automatically run this class, and to call the
@@ -30,6 +33,10 @@ import frc.robot.lib.auto.FollowPath;
  * project.
  */
 public class Robot extends LoggedRobot {
+    // A competition battery a few matches in
+    public static final double kSimBatteryVoltage = 12.5;
+    public static final double kSimBatteryResistanceOhms = 0.04;
+
     private Command m_autonomousCommand;
     private RobotContainer m_robotContainer;
 
@@ -168,6 +175,9 @@ public class Robot extends LoggedRobot {
     @Override
     public void autonomousInit() {
         m_robotContainer.setSwerveCoast(false);
+        if (Constants.currentMode == Constants.Mode.SIM) {
+            m_robotContainer.placeSimulatedRobotAtAutoStart();
+        }
 
         m_autonomousCommand = m_robotContainer.getAutonomousCommand();
 
@@ -221,10 +231,19 @@ public class Robot extends LoggedRobot {
     @Override
     public void simulationInit() {
         m_robotContainer.setSwerveCoast(false);
+        m_robotContainer.placeSimulatedRobotAtAutoStart();
     }
 
     /** This function is called periodically whilst in simulation. */
     @Override
     public void simulationPeriodic() {
+        // Sag the simulated battery under the drive load so the power limits see the same thing they would on the robot
+        RoboRioSim.setVInVoltage(
+            BatterySim.calculateLoadedBatteryVoltage(
+                kSimBatteryVoltage,
+                kSimBatteryResistanceOhms,
+                SwerveDrive.getInstance().getTotalDriveSupplyCurrentAmps()
+            )
+        );
     }
 }
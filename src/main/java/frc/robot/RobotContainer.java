@@ -2,7 +2,6 @@ package frc.robot;
 
 import org.littletonrobotics.junction.networktables.LoggedDashboardChooser;
 
-import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
@@ -13,8 +12,13 @@ import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
 import frc.robot.commands.AbsoluteFieldDrive;
 import frc.robot.constants.Constants;
+import frc.robot.constants.swerve.controllerConfigs.SwerveControllerConfigBase;
+import frc.robot.constants.swerve.controllerConfigs.SwerveControllerConfigComp;
+import frc.robot.constants.swerve.controllerConfigs.SwerveControllerConfigProto;
+import frc.robot.constants.swerve.controllerConfigs.SwerveControllerConfigSim;
 import frc.robot.lib.input.XboxController;
 import frc.robot.subsystems.swerve.SwerveDrive;
+import frc.robot.subsystems.vision.VisionSubsystem;
 import frc.robot.lib.auto.FollowPath;
 import frc.robot.lib.auto.Path;
 
@@ -31,6 +35,7 @@ public class RobotContainer {
 
     private final SwerveDrive swerveDrive = SwerveDrive.getInstance();
     private final RobotState robotState = RobotState.getInstance(); // we just initialize it here to save time during first reference in subsystems
+    private final VisionSubsystem visionSubsystem = VisionSubsystem.getInstance();
 
     private final XboxController xboxTester;
     private final XboxController xboxDriver;
@@ -47,9 +52,11 @@ public class RobotContainer {
 
         swerveDrive.setDefaultCommand(new AbsoluteFieldDrive(xboxDriver));
         xboxDriver.getXButton().onTrue(new InstantCommand(() -> robotState.zeroGyro()));
-        FollowPath.setTranslationController(new PIDController(4, 0, 0));
-        FollowPath.setRotationController(new PIDController(5, 0, 0));
-        FollowPath.setCrossTrackController(new PIDController(3.7, 0, 0));
+        SwerveControllerConfigBase controllerConfig = getSwerveControllerConfig();
+        FollowPath.setTranslationController(controllerConfig.getPathTranslationController());
+        FollowPath.setRotationController(controllerConfig.getPathRotationController());
+        FollowPath.setCrossTrackController(controllerConfig.getPathCrossTrackController());
+        FollowPath.setConstraintScaleSuppliers(swerveDrive::getVelocityScale, swerveDrive::getAccelerationScale);
 
         sysidChooser.addOption("DynamicDriveCharacterizationSysIdRoutineForward", swerveDrive.getDynamicDriveCharacterizationSysIdRoutine(Direction.kForward));
         sysidChooser.addOption("DynamicDriveCharacterizationSysIdRoutineReverse", swerveDrive.getDynamicDriveCharacterizationSysIdRoutine(Direction.kReverse));
@@ -62,6 +69,19 @@ public class RobotContainer {
         sysidChooser.addOption("QuasistaticSteerCharacterizationSysIdRoutineReverse", swerveDrive.getQuasistaticSteerCharacterizationSysIdRoutine(Direction.kReverse));
     }
 
+    private static SwerveControllerConfigBase getSwerveControllerConfig() {
+        switch (Constants.currentMode) {
+            case PROTO:
+                return SwerveControllerConfigProto.getInstance();
+
+            case SIM:
+                return SwerveControllerConfigSim.getInstance();
+
+            default:
+                return SwerveControllerConfigComp.getInstance();
+        }
+    }
+
     public Command getAutonomousCommand() {
         // return sysidChooser.get();
 
@@ -83,6 +103,17 @@ public class RobotContainer {
         // return null;
     }
 
+    /** Puts the simulated robot down where the auto path starts, like placing it on the field before a match */
+    public void placeSimulatedRobotAtAutoStart() {
+        if (Constants.shouldFlipPath()) {
+            path.flip();
+        }
+        Pose2d startPose = path.getStartPose(Rotation2d.kZero);
+        if (startPose != null) {
+            swerveDrive.resetSimulatedGroundTruthPose(startPose);
+        }
+    }
+
     public void setSwerveCoast(boolean isCoast) {
         swerveDrive.setWheelCoast(isCoast);
     }
@@ -1,13 +1,8 @@
 package frc.robot;
 
 import edu.wpi.first.math.*;
-import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.*;
-import edu.wpi.first.math.interpolation.*;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveModulePosition;
-import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.wpilibj.Timer;
@@ -20,11 +15,23 @@ import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigComp;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigProto;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.lib.estimation.CollisionDetector;
+import frc.robot.lib.estimation.MotionPredictor;
+import frc.robot.lib.estimation.PoseHistoryBuffer;
+import frc.robot.lib.estimation.SwerveOdometryKinematics;
+import frc.robot.lib.estimation.SwervePoseEstimator;
+import frc.robot.lib.estimation.VisionBatchFilter;
+import frc.robot.lib.estimation.VisionObservationQueue;
+import frc.robot.lib.estimation.WheelSlipDetector;
+import frc.robot.lib.util.ListenerDispatcher;
+import frc.robot.lib.util.ListenerDispatcher.DeliveryPolicy;
 import frc.robot.subsystems.swerve.SwerveDrive;
 
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
+import java.util.Arrays;
 import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
 
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
@@ -38,14 +45,27 @@ public class RobotState {
         return instance;
     }
   
-    public record OdometryObservation(
-        double timestampsSeconds,
-        boolean isGyroConnected,
-        SwerveModulePosition[] modulePositions, 
-        SwerveModuleState[] moduleStates,
-        Rotation2d yawPosition,
-        double yawVelocityRadPerSec
-    ) {}
+    /**
+     * Reusable primitive odometry sample. The drivetrain fills a single instance in place for every
+     * odometry sample so the high frequency path does not allocate.
+     */
+    public static final class OdometryObservation {
+        public double timestampSeconds = 0;
+        public final double[] moduleTimestampsSeconds;
+        public boolean isGyroConnected = false;
+        public final double[] moduleDistancesMeters;
+        public final double[] moduleAnglesRad;
+        public final double[] moduleVelocitiesMetersPerSec;
+        public double yawPositionRad = 0;
+        public double yawVelocityRadPerSec = 0;
+
+        public OdometryObservation(int numModules) {
+            moduleTimestampsSeconds = new double[numModules];
+            moduleDistancesMeters = new double[numModules];
+            moduleAnglesRad = new double[numModules];
+            moduleVelocitiesMetersPerSec = new double[numModules];
+        }
+    }
 
     public static enum VisionObservationScale {
         GLOBAL,
@@ -61,161 +81,590 @@ public class RobotState {
 
 
     private static final double poseBufferSizeSeconds = 2.0;
-    private final TimeInterpolatableBuffer<Pose2d> poseBuffer = TimeInterpolatableBuffer.createBuffer(poseBufferSizeSeconds);
+    private final double[] bufferedPoseSample = new double[3];
 
-    private final SwerveDrivePoseEstimator swerveDrivePoseEstimator;
+    // Owns the pose history, vision measurements rewind it and replay odometry in place
+    private final SwervePoseEstimator poseEstimator;
+
+    // Raw vision observations are queued as they arrive and scored, gated and fused as one batch after the loop's odometry samples
+    private static final int kVisionQueueCapacity = 64;
+    private final VisionObservationQueue visionObservationQueue = new VisionObservationQueue(kVisionQueueCapacity);
+    private final VisionObservationQueue.Sample visionSample = new VisionObservationQueue.Sample();
+    private final VisionBatchFilter visionBatchFilter = new VisionBatchFilter(kVisionQueueCapacity);
+    private int loopVisionObservationCount = 0;
+    private int loopVisionRejectedCount = 0;
+    private int loopVisionStaleCount = 0;
+    private int fusedVisionObservationCount = 0;
 
     private double lastEstimatedPoseUpdateTime = 0;
     private int localVisionObservationUpdateCount = 0;
 
     // Odometry
-    private final SwerveDriveKinematics kinematics;
-    private SwerveModulePosition[] lastWheelPositions = {
-        new SwerveModulePosition(),
-        new SwerveModulePosition(),
-        new SwerveModulePosition(),
-        new SwerveModulePosition()
-    };
+    private final SwerveOdometryKinematics odometryKinematics;
+
+    // Raw module samples from the previous observation, used to align each module to the observation timestamp.
+    // Allow extrapolating at most one sample period past a module's newest frame.
+    private static final double kMaxModuleExtrapolationRatio = 2.0;
+    private final double[] lastRawModuleTimestampsSeconds = new double[4];
+    private final double[] lastRawModuleDistancesMeters = new double[4];
+    private final double[] lastRawModuleAnglesRad = new double[4];
+    private boolean hasLastRawModuleSample = false;
+
+    // Heading changes larger than this between two samples are gyro resets, not motion
+    private static final double kMaxYawStepRad = Math.PI / 4;
+    private double lastGyroYawRad = 0;
+    private boolean hasLastGyroYaw = false;
+    private boolean isHeadingSeeded = false;
+    // Samples stamped before this were queued before the gyro was last reset
+    private double poseResetTimestampSeconds = Double.NEGATIVE_INFINITY;
+
+    private final double[] lastAlignedModuleDistancesMeters = new double[4];
+    private boolean hasLastAlignedModuleDistances = false;
+    private final double[] alignedModuleDistancesMeters = new double[4];
+    private final double[] alignedModuleAnglesRad = new double[4];
+    private final double[] moduleDistanceDeltasMeters = new double[4];
+    private final double[] chassisMotion = new double[3];
+    private final double[] chassisVelocity = new double[3];
+
+    // Slip and collision handling, odometry std devs are scaled up while either is detected
+    private static final double kSlipOdomDevScalePerModule = 2;
+    private static final double kCollisionHoldSeconds = 0.5;
+    private final WheelSlipDetector wheelSlipDetector;
+    private final CollisionDetector collisionDetector;
+    private final double[] moduleWeights = {1, 1, 1, 1};
+    private final double[] scaledOdomStdDevs = new double[3];
+    private double currentOdomDevScale = 1;
+    private double lastOdometryTimestampSeconds = 0;
+    private boolean hasLastOdometryTimestamp = false;
+    private final int[] loopSlipSampleCounts = new int[4];
+    private final double[] loopMaxSlipResidualsMetersPerSec = new double[4];
+    private double loopMaxOdomDevScale = 1;
+
+    // Per-sample values are batched and logged once per loop
+    private static final int kMaxLoggedOdometrySamples = 32;
+    private final double[] loggedOdometryTimestampsSeconds = new double[kMaxLoggedOdometrySamples];
+    private final double[] loggedOdometryHeadingsRad = new double[kMaxLoggedOdometrySamples];
+    // Logged arrays must be exactly sized, one reused array per sample count
+    private final double[][] loggedTimestampsBySampleCount = new double[kMaxLoggedOdometrySamples + 1][];
+    private final double[][] loggedHeadingsBySampleCount = new double[kMaxLoggedOdometrySamples + 1][];
+    private int loggedOdometrySampleCount = 0;
+    private double maxModuleTimestampSkewSeconds = 0;
+    private boolean lastIsGyroConnected = false;
 
     private double lastYawVelocityRadPerSec = 0;
-    private ChassisSpeeds lastRobotRelativeSpeeds = new ChassisSpeeds();
+    private final ChassisSpeeds lastRobotRelativeSpeeds = new ChassisSpeeds();
+
+    // Rebuilt on every estimate update and swapped in whole, readers on any thread see one consistent update
+    private volatile RobotStateSnapshot snapshot = RobotStateSnapshot.create(0, new Pose2d(), 0, 0, 0, 0, 0, 0, true, false);
+    // Building a snapshot allocates, odometry samples only mark it stale and it is rebuilt when someone needs it
+    private boolean isSnapshotStale = false;
+    private final Supplier<RobotStateSnapshot> freshSnapshotSupplier = this::getFreshSnapshot;
+
+    // Accelerations for the predicted pose are fit over this much pose history
+    private static final double kMotionFitWindowSeconds = 0.1;
+    private final MotionPredictor motionPredictor;
+
+    // A prediction is made every loop and checked once the pose history reaches its timestamp
+    private static final double kPredictionCheckLookaheadSeconds = 0.1;
+    private boolean hasPendingPrediction = false;
+    private double pendingPredictionTimestamp = 0;
+    private final double[] pendingPrediction = new double[3];
+    private final double[] pendingConstantVelocityPrediction = new double[3];
 
     private final SwerveDrivetrainConfigBase drivetrainConfig;
     private final RobotStateConfigBase robotStateConfig;
+    private final DoubleSupplier timestampSupplier;
 
-    private final ArrayList<Runnable> onOdometryUpdateRunnables = new ArrayList<Runnable>();
+    // Snapshots are delivered to odometry listeners per sample, once per loop or asynchronously
+    private final ListenerDispatcher<RobotStateSnapshot> odometryUpdateListeners = new ListenerDispatcher<>("RobotState/listeners");
+    private int legacyOdometryRunnableCount = 0;
     private final ArrayList<Consumer<Translation2d>> onLocalVisionEstimateRunnables = new ArrayList<Consumer<Translation2d>>();
     private final ArrayList<Runnable> onGlobalVisionEstimateRunnables = new ArrayList<Runnable>();
 
     private VisionObservationScale requestedObservationScale = VisionObservationScale.GLOBAL;
 
     private RobotState() {
-        switch (Constants.currentMode) {
-            case COMP:
-                drivetrainConfig = SwerveDrivetrainConfigComp.getInstance();
-                robotStateConfig = RobotStateConfigComp.getInstance();
-
-                break;
+        this(getDrivetrainConfig(), getRobotStateConfig());
+    }
 
+    private static SwerveDrivetrainConfigBase getDrivetrainConfig() {
+        switch (Constants.currentMode) {
             case PROTO:
-                drivetrainConfig = SwerveDrivetrainConfigProto.getInstance();
-                robotStateConfig = RobotStateConfigProto.getInstance();
+                return SwerveDrivetrainConfigProto.getInstance();
 
-                break;
-            
             case SIM:
-                drivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
-                robotStateConfig = RobotStateConfigSim.getInstance();
+                return SwerveDrivetrainConfigSim.getInstance();
 
-                break;
+            default:
+                return SwerveDrivetrainConfigComp.getInstance();
+        }
+    }
 
-            case REPLAY:
-                drivetrainConfig = SwerveDrivetrainConfigComp.getInstance();
-                robotStateConfig = RobotStateConfigComp.getInstance();
+    private static RobotStateConfigBase getRobotStateConfig() {
+        switch (Constants.currentMode) {
+            case PROTO:
+                return RobotStateConfigProto.getInstance();
 
-                break;
+            case SIM:
+                return RobotStateConfigSim.getInstance();
 
             default:
-                drivetrainConfig = SwerveDrivetrainConfigComp.getInstance();
-                robotStateConfig = RobotStateConfigComp.getInstance();
-
+                return RobotStateConfigComp.getInstance();
+        }
+    }
 
-                break;
+    /** Separate from the singleton so tests can build their own */
+    RobotState(SwerveDrivetrainConfigBase drivetrainConfig, RobotStateConfigBase robotStateConfig) {
+        this(drivetrainConfig, robotStateConfig, Timer::getTimestamp);
     }
 
-        kinematics = new SwerveDriveKinematics(
+    /** @param timestampSupplier clock the estimate is stamped with, simulated time in headless simulations */
+    public RobotState(SwerveDrivetrainConfigBase drivetrainConfig, RobotStateConfigBase robotStateConfig, DoubleSupplier timestampSupplier) {
+        this.drivetrainConfig = drivetrainConfig;
+        this.robotStateConfig = robotStateConfig;
+        this.timestampSupplier = timestampSupplier;
+
+        odometryKinematics = new SwerveOdometryKinematics(
             drivetrainConfig.getFrontLeftPositionMeters(),
             drivetrainConfig.getFrontRightPositionMeters(),
             drivetrainConfig.getBackLeftPositionMeters(),
             drivetrainConfig.getBackRightPositionMeters()
-        ); 
-
-        swerveDrivePoseEstimator = new SwerveDrivePoseEstimator(
-            kinematics,
-            new Rotation2d(), 
-            lastWheelPositions, 
-            new Pose2d(),
-            VecBuilder.fill(
+        );
+
+        poseEstimator = new SwervePoseEstimator(
+            new double[] {
                 robotStateConfig.getOdomTranslationDevBase(),
                 robotStateConfig.getOdomTranslationDevBase(),
                 0
-            ),
-            VecBuilder.fill(
-                robotStateConfig.getVisionTranslationDevBase(),
-                robotStateConfig.getVisionTranslationDevBase(),
-                9999999
-            )
-        );  
+            },
+            poseBufferSizeSeconds,
+            SwerveDrive.ODOMETRY_FREQUENCY
+        );
+
+        wheelSlipDetector = new WheelSlipDetector(odometryKinematics, robotStateConfig.getWheelSlipResidualThresholdMetersPerSec());
+        collisionDetector = new CollisionDetector(robotStateConfig.getCollisionJerkThresholdMetersPerSecCubed(), kCollisionHoldSeconds);
+
+        motionPredictor = new MotionPredictor(
+            kMotionFitWindowSeconds,
+            drivetrainConfig.getMaxTranslationalAccelerationMetersPerSecSec(),
+            drivetrainConfig.getMaxAngularAccelerationRadiansPerSecSec()
+        );
+
+        visionBatchFilter.configure(
+            robotStateConfig.getVisionTranslationDevBase(),
+            robotStateConfig.getVisionThetaDevBase(),
+            robotStateConfig.getVisionAmbiguityDevScalar(),
+            robotStateConfig.getVisionYawRateDevScalar(),
+            robotStateConfig.getVisionMahalanobisThreshold(),
+            robotStateConfig.getOdomDriftDevPerMeter()
+        );
     }   
 
-    /** Add odometry observation */
+    /** Add odometry observation. The observation may be reused by the caller after this returns. */
     public void addOdometryObservation(OdometryObservation observation) {
-        Logger.recordOutput("RobotState/odometry/timestamp", observation.timestampsSeconds());
-        Logger.recordOutput("RobotState/odometry/isGyroConnected", observation.isGyroConnected());
-        Logger.recordOutput("RobotState/odometry/modulePositions", observation.modulePositions());
-        Logger.recordOutput("RobotState/odometry/moduleStates", observation.moduleStates());
-        Logger.recordOutput("RobotState/odometry/yawPosition", observation.yawPosition());
-        Logger.recordOutput("RobotState/odometry/yawVelocityRadPerSec", observation.yawVelocityRadPerSec());
-
-        // update robotState member variables
-        lastRobotRelativeSpeeds = kinematics.toChassisSpeeds(observation.moduleStates);
-        lastRobotRelativeSpeeds.omegaRadiansPerSecond = observation.isGyroConnected ? observation.yawVelocityRadPerSec() : lastRobotRelativeSpeeds.omegaRadiansPerSecond;
-        lastYawVelocityRadPerSec = observation.isGyroConnected ? observation.yawVelocityRadPerSec() : lastRobotRelativeSpeeds.omegaRadiansPerSecond;
-
-        swerveDrivePoseEstimator.updateWithTime(
-            observation.timestampsSeconds(), 
-            observation.isGyroConnected() ? 
-                observation.yawPosition() : 
-                new Rotation2d(
-                    swerveDrivePoseEstimator.getEstimatedPosition().getRotation().getRadians() + 
-                    kinematics.toTwist2d(lastWheelPositions, observation.modulePositions()).dtheta
-                ), 
-            observation.modulePositions()
-        );
-        lastWheelPositions = observation.modulePositions();
+        alignModulePositions(observation);
+
+        // Motion from before the last reset is already part of the reset pose and its yaw is from
+        // before the gyro was reset, only keep the module positions to take deltas from
+        if (observation.timestampSeconds < poseResetTimestampSeconds) {
+            System.arraycopy(alignedModuleDistancesMeters, 0, lastAlignedModuleDistancesMeters, 0, 4);
+            hasLastAlignedModuleDistances = true;
+            return;
+        }
 
-        lastEstimatedPoseUpdateTime = Timer.getTimestamp();
+        // Robot relative twist since the last sample from the aligned module deltas
+        for (int i = 0; i < 4; i++) {
+            moduleDistanceDeltasMeters[i] = hasLastAlignedModuleDistances ? alignedModuleDistancesMeters[i] - lastAlignedModuleDistancesMeters[i] : 0;
+            lastAlignedModuleDistancesMeters[i] = alignedModuleDistancesMeters[i];
+        }
+        hasLastAlignedModuleDistances = true;
+        odometryKinematics.toChassisMotion(moduleDistanceDeltasMeters, alignedModuleAnglesRad, chassisMotion);
+
+        // Prefer the gyro for heading change, fall back to the wheels if it is lost or was just reset
+        double dthetaRad = chassisMotion[2];
+        boolean isGyroHeading = false;
+        if (observation.isGyroConnected) {
+            if (!isHeadingSeeded) {
+                // Follow the gyro's absolute heading until the pose is reset for the first time
+                poseEstimator.resetPose(poseEstimator.getX(), poseEstimator.getY(), observation.yawPositionRad);
+                isHeadingSeeded = true;
+            }
+            if (hasLastGyroYaw) {
+                double gyroDthetaRad = MathUtil.angleModulus(observation.yawPositionRad - lastGyroYawRad);
+                if (Math.abs(gyroDthetaRad) < kMaxYawStepRad) {
+                    dthetaRad = gyroDthetaRad;
+                    isGyroHeading = true;
+                }
+            }
+            lastGyroYawRad = observation.yawPositionRad;
+            hasLastGyroYaw = true;
+        } else {
+            hasLastGyroYaw = false;
+        }
 
-        // Add pose to buffer at timestamp
-        poseBuffer.addSample(lastEstimatedPoseUpdateTime, swerveDrivePoseEstimator.getEstimatedPosition()); 
+        // Down-weight or drop modules that do not move with the rest of the robot and redo the twist without them
+        double sampleDtSeconds = hasLastOdometryTimestamp ? observation.timestampSeconds - lastOdometryTimestampSeconds : 0;
+        lastOdometryTimestampSeconds = observation.timestampSeconds;
+        hasLastOdometryTimestamp = true;
+        int slippingModuleCount = wheelSlipDetector.update(moduleDistanceDeltasMeters, alignedModuleAnglesRad, dthetaRad, sampleDtSeconds, moduleWeights);
+        if (odometryKinematics.toChassisMotion(moduleDistanceDeltasMeters, alignedModuleAnglesRad, moduleWeights, chassisMotion) && !isGyroHeading) {
+            dthetaRad = chassisMotion[2];
+        }
+        for (int i = 0; i < 4; i++) {
+            if (moduleWeights[i] == 0) {
+                loopSlipSampleCounts[i]++;
+            }
+            loopMaxSlipResidualsMetersPerSec[i] = Math.max(loopMaxSlipResidualsMetersPerSec[i], wheelSlipDetector.getResidualMetersPerSec(i));
+        }
 
-        for (Runnable runnable : onOdometryUpdateRunnables) {
-            runnable.run();
+        if (!odometryKinematics.toChassisMotion(observation.moduleVelocitiesMetersPerSec, alignedModuleAnglesRad, moduleWeights, chassisVelocity)) {
+            odometryKinematics.toChassisMotion(observation.moduleVelocitiesMetersPerSec, alignedModuleAnglesRad, chassisVelocity);
+        }
+        lastRobotRelativeSpeeds.vxMetersPerSecond = chassisVelocity[0];
+        lastRobotRelativeSpeeds.vyMetersPerSecond = chassisVelocity[1];
+        lastRobotRelativeSpeeds.omegaRadiansPerSecond = observation.isGyroConnected ? observation.yawVelocityRadPerSec : chassisVelocity[2];
+        lastYawVelocityRadPerSec = lastRobotRelativeSpeeds.omegaRadiansPerSecond;
+
+        // Distrust odometry while colliding or slipping, vision gets more weight and the gate widens faster
+        double odomDevScale = collisionDetector.isColliding(observation.timestampSeconds) ? robotStateConfig.getCollisionOdomDevScalar() : 1;
+        odomDevScale = Math.max(odomDevScale, 1 + kSlipOdomDevScalePerModule * slippingModuleCount);
+        if (odomDevScale != currentOdomDevScale) {
+            scaledOdomStdDevs[0] = robotStateConfig.getOdomTranslationDevBase() * odomDevScale;
+            scaledOdomStdDevs[1] = robotStateConfig.getOdomTranslationDevBase() * odomDevScale;
+            poseEstimator.setStateStdDevs(scaledOdomStdDevs);
+            currentOdomDevScale = odomDevScale;
         }
+        loopMaxOdomDevScale = Math.max(loopMaxOdomDevScale, odomDevScale);
 
+        poseEstimator.addOdometry(observation.timestampSeconds, chassisMotion[0], chassisMotion[1], dthetaRad);
+        visionBatchFilter.addOdometryDisplacement(Math.hypot(chassisMotion[0], chassisMotion[1]) * odomDevScale);
+
+        lastEstimatedPoseUpdateTime = timestampSupplier.getAsDouble();
+        lastIsGyroConnected = observation.isGyroConnected;
+        isSnapshotStale = true;
+        odometryUpdateListeners.publish(freshSnapshotSupplier);
+
+        if (loggedOdometrySampleCount < kMaxLoggedOdometrySamples) {
+            loggedOdometryTimestampsSeconds[loggedOdometrySampleCount] = observation.timestampSeconds;
+            loggedOdometryHeadingsRad[loggedOdometrySampleCount] = poseEstimator.getTheta();
+            loggedOdometrySampleCount++;
+        }
+    }
+
+    /**
+     * Adds one accelerometer reading for collision detection. The accelerometer updates far slower
+     * than odometry, so the drivetrain calls this once per loop before that loop's odometry samples.
+     *
+     * @param timestampSeconds FPGA time the reading was taken
+     */
+    public void addAccelerometerReading(double timestampSeconds, double accelerationXMetersPerSecSq, double accelerationYMetersPerSecSq) {
+        if (collisionDetector.update(timestampSeconds, accelerationXMetersPerSecSq, accelerationYMetersPerSecSq)) {
+            Logger.recordOutput("RobotState/odometry/collision/lastCollisionTimestamp", timestampSeconds);
+        }
+    }
+
+    /** Logs the odometry samples received since the last call. Called once per loop by the drivetrain. */
+    public void logOdometryObservations() {
+        getFreshSnapshot();
+
+        Logger.recordOutput("RobotState/odometry/sampleCount", loggedOdometrySampleCount);
+        if (loggedTimestampsBySampleCount[loggedOdometrySampleCount] == null) {
+            loggedTimestampsBySampleCount[loggedOdometrySampleCount] = new double[loggedOdometrySampleCount];
+            loggedHeadingsBySampleCount[loggedOdometrySampleCount] = new double[loggedOdometrySampleCount];
+        }
+        double[] loggedTimestamps = loggedTimestampsBySampleCount[loggedOdometrySampleCount];
+        double[] loggedHeadings = loggedHeadingsBySampleCount[loggedOdometrySampleCount];
+        System.arraycopy(loggedOdometryTimestampsSeconds, 0, loggedTimestamps, 0, loggedOdometrySampleCount);
+        System.arraycopy(loggedOdometryHeadingsRad, 0, loggedHeadings, 0, loggedOdometrySampleCount);
+        Logger.recordOutput("RobotState/odometry/timestamps", loggedTimestamps);
+        Logger.recordOutput("RobotState/odometry/headingsRad", loggedHeadings);
+        Logger.recordOutput("RobotState/odometry/isGyroConnected", lastIsGyroConnected);
+        // Module positions as measured are logged by SwerveDrive, these are aligned to the gyro sample time
+        Logger.recordOutput("RobotState/odometry/alignedModuleDistancesMeters", alignedModuleDistancesMeters);
+        Logger.recordOutput("RobotState/odometry/alignedModuleAnglesRad", alignedModuleAnglesRad);
+        Logger.recordOutput("RobotState/odometry/yawVelocityRadPerSec", lastYawVelocityRadPerSec);
+        Logger.recordOutput("RobotState/odometry/moduleTimestampSkewSeconds", maxModuleTimestampSkewSeconds);
+        Logger.recordOutput("RobotState/odometry/slip/excludedSampleCounts", loopSlipSampleCounts);
+        Logger.recordOutput("RobotState/odometry/slip/maxResidualsMetersPerSec", loopMaxSlipResidualsMetersPerSec);
+        Logger.recordOutput("RobotState/odometry/collision/jerkMetersPerSecCubed", collisionDetector.getLastJerkMetersPerSecCubed());
+        Logger.recordOutput("RobotState/odometry/collision/count", collisionDetector.getCollisionCount());
+        Logger.recordOutput("RobotState/odometry/odomDevScale", loopMaxOdomDevScale);
+
+        Logger.recordOutput("RobotState/vision/observationCount", loopVisionObservationCount);
+        Logger.recordOutput("RobotState/vision/rejectedObservationCount", loopVisionRejectedCount);
+        Logger.recordOutput("RobotState/vision/staleObservationCount", loopVisionStaleCount);
+        Logger.recordOutput("RobotState/vision/gateStdDevMeters", visionBatchFilter.getGateStdDev());
+        Logger.recordOutput("RobotState/vision/droppedObservationCount", visionObservationQueue.getDroppedCount());
         Logger.recordOutput("RobotState/vision/localVisionObservationUpdateCount", localVisionObservationUpdateCount);
         Logger.recordOutput("RobotState/vision/requestedObservationScale", requestedObservationScale);
+
+        logPredictionError();
+        // After this loop's vision fusion, so once per loop listeners see the corrected pose
+        odometryUpdateListeners.flush(snapshot);
+
+        loggedOdometrySampleCount = 0;
+        maxModuleTimestampSkewSeconds = 0;
+        Arrays.fill(loopSlipSampleCounts, 0);
+        Arrays.fill(loopMaxSlipResidualsMetersPerSec, 0);
+        loopMaxOdomDevScale = 1;
+        loopVisionObservationCount = 0;
+        loopVisionRejectedCount = 0;
+        loopVisionStaleCount = 0;
     }
 
-    public void addVisionObservation(VisionObservation observation) {
-        // If measurement is old enough to be outside the pose buffer's timespan, skip.
-        try {
-            if (poseBuffer.getInternalBuffer().lastKey() - poseBufferSizeSeconds > observation.timestamp()) {
-                return;
+    /**
+     * Compares the prediction made kPredictionCheckLookaheadSeconds ago against the pose history
+     * once it covers that time, then starts a new one from the newest sample. Vision corrections in
+     * between show up as error for both predictors alike.
+     */
+    private void logPredictionError() {
+        if (!poseEstimator.hasHistory()) {
+            return;
+        }
+
+        if (hasPendingPrediction && poseEstimator.getLatestTimestamp() >= pendingPredictionTimestamp) {
+            poseEstimator.samplePose(pendingPredictionTimestamp, bufferedPoseSample);
+            Logger.recordOutput(
+                "RobotState/prediction/translationErrorMeters",
+                Math.hypot(pendingPrediction[0] - bufferedPoseSample[0], pendingPrediction[1] - bufferedPoseSample[1])
+            );
+            Logger.recordOutput(
+                "RobotState/prediction/headingErrorRad",
+                Math.abs(MathUtil.angleModulus(pendingPrediction[2] - bufferedPoseSample[2]))
+            );
+            Logger.recordOutput(
+                "RobotState/prediction/constantVelocityTranslationErrorMeters",
+                Math.hypot(pendingConstantVelocityPrediction[0] - bufferedPoseSample[0], pendingConstantVelocityPrediction[1] - bufferedPoseSample[1])
+            );
+            hasPendingPrediction = false;
+        }
+
+        if (!hasPendingPrediction) {
+            RobotStateSnapshot current = snapshot;
+            current.predict(kPredictionCheckLookaheadSeconds, kPredictionCheckLookaheadSeconds, pendingPrediction);
+            MotionPredictor.predict(
+                current.pose().getX(),
+                current.pose().getY(),
+                current.pose().getRotation().getRadians(),
+                current.robotVxMetersPerSec(),
+                current.robotVyMetersPerSec(),
+                current.yawVelocityRadPerSec(),
+                0,
+                0,
+                0,
+                kPredictionCheckLookaheadSeconds,
+                kPredictionCheckLookaheadSeconds,
+                pendingConstantVelocityPrediction
+            );
+            pendingPredictionTimestamp = poseEstimator.getLatestTimestamp() + kPredictionCheckLookaheadSeconds;
+            hasPendingPrediction = true;
+        }
+    }
+
+    /**
+     * Interpolates each module's position to the observation timestamp. Every module's CAN frames
+     * arrive at a slightly different time, so each module is moved along its own motion between
+     * its previous and current sample to the shared timestamp before the kinematics update.
+     */
+    private void alignModulePositions(OdometryObservation observation) {
+        double minModuleTimestamp = Double.POSITIVE_INFINITY;
+        double maxModuleTimestamp = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4; i++) {
+            double distanceMeters = observation.moduleDistancesMeters[i];
+            double angleRad = observation.moduleAnglesRad[i];
+
+            if (hasLastRawModuleSample) {
+                double sampleDt = observation.moduleTimestampsSeconds[i] - lastRawModuleTimestampsSeconds[i];
+                if (sampleDt > 1e-6) {
+                    double ratio = MathUtil.clamp(
+                        (observation.timestampSeconds - lastRawModuleTimestampsSeconds[i]) / sampleDt,
+                        0,
+                        kMaxModuleExtrapolationRatio
+                    );
+                    distanceMeters = lastRawModuleDistancesMeters[i] + (distanceMeters - lastRawModuleDistancesMeters[i]) * ratio;
+                    angleRad = lastRawModuleAnglesRad[i] + MathUtil.angleModulus(angleRad - lastRawModuleAnglesRad[i]) * ratio;
+                }
             }
-        } 
-        
-        catch (NoSuchElementException ex) {
+
+            lastRawModuleTimestampsSeconds[i] = observation.moduleTimestampsSeconds[i];
+            lastRawModuleDistancesMeters[i] = observation.moduleDistancesMeters[i];
+            lastRawModuleAnglesRad[i] = observation.moduleAnglesRad[i];
+
+            minModuleTimestamp = Math.min(minModuleTimestamp, observation.moduleTimestampsSeconds[i]);
+            maxModuleTimestamp = Math.max(maxModuleTimestamp, observation.moduleTimestampsSeconds[i]);
+
+            alignedModuleDistancesMeters[i] = distanceMeters;
+            alignedModuleAnglesRad[i] = angleRad;
+        }
+        hasLastRawModuleSample = true;
+
+        maxModuleTimestampSkewSeconds = Math.max(maxModuleTimestampSkewSeconds, maxModuleTimestamp - minModuleTimestamp);
+    }
+
+    /**
+     * Queues a raw vision observation without allocating. It is scored, gated and fused the next
+     * time {@link #processVisionObservations()} runs, after that loop's odometry samples.
+     *
+     * @param cameraIndex which camera saw the observation, logged with the fused pose
+     * @param ambiguity worst single tag pose ambiguity, 0 if unknown
+     * @return false if the queue is full and the observation was dropped
+     */
+    public boolean offerVisionObservation(
+        int cameraIndex,
+        double timestamp,
+        double x,
+        double y,
+        double theta,
+        int tagCount,
+        double avgTagDistMeters,
+        double ambiguity
+    ) {
+        return visionObservationQueue.offer(
+            timestamp,
+            x,
+            y,
+            theta,
+            tagCount,
+            avgTagDistMeters,
+            ambiguity,
+            cameraIndex,
+            requestedObservationScale.ordinal()
+        );
+    }
+
+    /** Fuses every queued vision observation as one batch. Called once per loop by the drivetrain after odometry. */
+    public void processVisionObservations() {
+        while (visionObservationQueue.poll(visionSample)) {
+            visionBatchFilter.add(
+                visionSample.timestampSeconds,
+                visionSample.xMeters,
+                visionSample.yMeters,
+                visionSample.thetaRad,
+                visionSample.tagCount,
+                visionSample.avgTagDistMeters,
+                visionSample.ambiguity,
+                visionSample.cameraIndex,
+                visionSample.scaleOrdinal
+            );
+        }
+
+        int fusedCount = visionBatchFilter.fuse(poseEstimator, lastYawVelocityRadPerSec);
+        loopVisionRejectedCount += visionBatchFilter.getLastRejectedCount();
+        loopVisionStaleCount += visionBatchFilter.getLastStaleCount();
+        if (visionBatchFilter.getAcceptedCount() + visionBatchFilter.getLastRejectedCount() == 0) {
             return;
         }
 
+        Logger.recordOutput("RobotState/vision/maxMahalanobisSquared", visionBatchFilter.getLastMaxMahalanobisSquared());
+        if (fusedCount == 0) {
+            return;
+        }
+
+        VisionObservationScale[] scales = VisionObservationScale.values();
+        for (int i = 0; i < visionBatchFilter.getAcceptedCount(); i++) {
+            updateLocalVisionObservationCount(scales[visionBatchFilter.getAcceptedScaleOrdinal(i)]);
+        }
+        int newest = visionBatchFilter.getAcceptedCount() - 1;
+        Logger.recordOutput("RobotState/vision/stdDevTranslation", visionBatchFilter.getAcceptedStdDevTranslation(newest));
+        Logger.recordOutput("RobotState/vision/cameraIndex", visionBatchFilter.getAcceptedCameraIndex(newest));
+        Logger.recordOutput(
+            "RobotState/vision/visionPose",
+            new Pose2d(visionBatchFilter.getAcceptedX(newest), visionBatchFilter.getAcceptedY(newest), new Rotation2d(visionBatchFilter.getAcceptedTheta(newest)))
+        );
+        Logger.recordOutput("RobotState/vision/replayedOdometrySamples", poseEstimator.getLastReplayedSampleCount());
+
+        loopVisionObservationCount += fusedCount;
+        fusedVisionObservationCount += fusedCount;
+        lastEstimatedPoseUpdateTime = timestampSupplier.getAsDouble();
+        publishSnapshot();
+    }
+
+    /** Fuses a single observation with caller supplied std devs, bypassing scoring and outlier rejection */
+    public void addVisionObservation(VisionObservation observation) {
+        // Distance between the vision pose and where we thought we were when the frame was captured
+        if (getBufferedPose(observation.timestamp(), bufferedPoseSample)) {
+            Logger.recordOutput(
+                "RobotState/vision/translationResidualMeters",
+                Math.hypot(observation.visionPose().getX() - bufferedPoseSample[0], observation.visionPose().getY() - bufferedPoseSample[1])
+            );
+        }
+
         Logger.recordOutput("RobotState/vision/stdDevTranslation", observation.stdDevs().get(0,0));
         Logger.recordOutput("RobotState/vision/visionPose", observation.visionPose());
 
-        swerveDrivePoseEstimator.addVisionMeasurement(observation.visionPose(), observation.timestamp(), observation.stdDevs());
-        if (observation.scale() == VisionObservationScale.LOCAL && requestedObservationScale == VisionObservationScale.LOCAL) {
+        // Measurements older than the pose history are ignored by the estimator
+        boolean isApplied = poseEstimator.addVisionMeasurement(
+            observation.timestamp(),
+            observation.visionPose().getX(),
+            observation.visionPose().getY(),
+            observation.visionPose().getRotation().getRadians(),
+            observation.stdDevs().get(0, 0),
+            observation.stdDevs().get(1, 0),
+            observation.stdDevs().get(2, 0)
+        );
+        if (!isApplied) {
+            return;
+        }
+        Logger.recordOutput("RobotState/vision/replayedOdometrySamples", poseEstimator.getLastReplayedSampleCount());
+        updateLocalVisionObservationCount(observation.scale());
+
+        loopVisionObservationCount++;
+        lastEstimatedPoseUpdateTime = timestampSupplier.getAsDouble();
+        publishSnapshot();
+    }
+
+    private void updateLocalVisionObservationCount(VisionObservationScale scale) {
+        if (scale == VisionObservationScale.LOCAL && requestedObservationScale == VisionObservationScale.LOCAL) {
             localVisionObservationUpdateCount++;
         }
         else if (requestedObservationScale == VisionObservationScale.GLOBAL) {
             localVisionObservationUpdateCount = 0;
         }
+    }
 
-        lastEstimatedPoseUpdateTime = Timer.getTimestamp();
+
+    /**
+     * Copies the newest poses of the estimated pose history, oldest first.
+     *
+     * @param out filled with {x, y, theta} triples
+     * @return number of poses copied, at most count
+     */
+    public int getRecentPoses(int count, double[] out) {
+        PoseHistoryBuffer history = poseEstimator.getPoseHistory();
+        count = Math.min(Math.min(count, history.size()), out.length / 3);
+        int first = history.size() - count;
+        for (int i = 0; i < count; i++) {
+            out[i * 3] = history.getX(first + i);
+            out[i * 3 + 1] = history.getY(first + i);
+            out[i * 3 + 2] = history.getTheta(first + i);
+        }
+        return count;
     }
 
+    /**
+     * Interpolates the estimated pose history at a timestamp without allocating.
+     *
+     * @param out filled with {x, y, theta}
+     * @return false if there is no pose history
+     */
+    public boolean getBufferedPose(double timestamp, double[] out) {
+        return poseEstimator.samplePose(timestamp, out);
+    }
 
+    /** Runs the runnable after every odometry sample, prefer {@link #registerOdometryUpdateListener} */
     public void registerRunnableOnOdometryUpdate(Runnable runnable) {
-        onOdometryUpdateRunnables.add(runnable);
+        registerOdometryUpdateListener("runnable" + legacyOdometryRunnableCount++, DeliveryPolicy.PER_SAMPLE, snapshot -> runnable.run());
+    }
+
+    /**
+     * Registers a listener for pose updates from odometry. Listeners that only need the newest pose
+     * should use ONCE_PER_LOOP, or ASYNC_LATEST if they are expensive, so they are not run once for
+     * every odometry sample.
+     *
+     * @param name listener timing is logged under RobotState/listeners/name
+     */
+    public void registerOdometryUpdateListener(String name, DeliveryPolicy policy, Consumer<RobotStateSnapshot> listener) {
+        odometryUpdateListeners.register(name, policy, listener);
     }
 
     public void registerRunnableOnLocalVisionEstimateRequest(Consumer<Translation2d> runnable) {
@@ -233,6 +682,7 @@ public class RobotState {
 
         requestedObservationScale = VisionObservationScale.GLOBAL;
         localVisionObservationUpdateCount = 0;
+        publishSnapshot();
     }
 
     public void requestLocalVisionEstimateScale(Translation2d pose) {
@@ -241,7 +691,8 @@ public class RobotState {
         }
 
         requestedObservationScale = VisionObservationScale.LOCAL;
-    }  
+        publishSnapshot();
+    }
 
     /**
      * Reset estimated pose and odometry pose to pose <br>
@@ -249,15 +700,61 @@ public class RobotState {
      */
     public void resetPose(Pose2d initialPose) {
         SwerveDrive.getInstance().resetGyro(initialPose.getRotation());
-        swerveDrivePoseEstimator.resetPosition(initialPose.getRotation(), lastWheelPositions, initialPose);
+        resetEstimatedPose(initialPose, timestampSupplier.getAsDouble());
+    }
 
-        poseBuffer.clear();
+    /**
+     * Resets only the estimate, the gyro must already read the pose's heading. Odometry samples
+     * stamped before resetTimestampSeconds are dropped, they may still be queued with the old yaw.
+     */
+    public void resetEstimatedPose(Pose2d pose, double resetTimestampSeconds) {
+        poseEstimator.resetPose(pose.getX(), pose.getY(), pose.getRotation().getRadians());
+
+        // The gyro reads the reset heading from here on, so the first sample after the reset already has a yaw to take its delta from
+        lastGyroYawRad = pose.getRotation().getRadians();
+        hasLastGyroYaw = true;
+        isHeadingSeeded = true;
+        poseResetTimestampSeconds = resetTimestampSeconds;
+        publishSnapshot();
     }
 
     public void zeroGyro() {
         resetPose(new Pose2d(getEstimatedPose().getTranslation(), new Rotation2d()));
     }
 
+    private RobotStateSnapshot getFreshSnapshot() {
+        if (isSnapshotStale) {
+            publishSnapshot();
+        }
+        return snapshot;
+    }
+
+    private void publishSnapshot() {
+        isSnapshotStale = false;
+        motionPredictor.update(poseEstimator.getPoseHistory());
+        snapshot = RobotStateSnapshot.create(
+            lastEstimatedPoseUpdateTime,
+            new Pose2d(poseEstimator.getX(), poseEstimator.getY(), new Rotation2d(poseEstimator.getTheta())),
+            lastRobotRelativeSpeeds.vxMetersPerSecond,
+            lastRobotRelativeSpeeds.vyMetersPerSecond,
+            lastYawVelocityRadPerSec,
+            motionPredictor.getRobotAxMetersPerSecSq(),
+            motionPredictor.getRobotAyMetersPerSecSq(),
+            motionPredictor.getYawAccelerationRadPerSecSq(),
+            isPoseEstimateValid(),
+            lastIsGyroConnected
+        );
+    }
+
+    /**
+     * Latest published state. Safe to call from any thread, hold on to the result to read several
+     * values from one update. Published once per loop after the drivetrain's odometry and vision
+     * updates, and after every odometry sample while a per sample or async listener is registered.
+     */
+    public RobotStateSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     @AutoLogOutput(key = "RobotState/isPoseEstimateValid")
     public boolean isPoseEstimateValid() {
         if (requestedObservationScale == VisionObservationScale.LOCAL) {
@@ -268,34 +765,42 @@ public class RobotState {
 
     @AutoLogOutput(key = "RobotState/estimatedPose")
     public Pose2d getEstimatedPose() {
-        return swerveDrivePoseEstimator.getEstimatedPosition();
+        return snapshot.pose();
+    }
+
+    /** Estimated heading without allocating a pose */
+    public double getEstimatedHeadingRad() {
+        return snapshot.pose().getRotation().getRadians();
     }
 
     public double getYawVelocityRadPerSec() {
-        return lastYawVelocityRadPerSec;
+        return snapshot.yawVelocityRadPerSec();
+    }
+
+    /** Vision observations the estimator has fused since boot, main thread only */
+    public int getFusedVisionObservationCount() {
+        return fusedVisionObservationCount;
+    }
+
+    /** Timestamp of the newest odometry sample in the estimate, NaN before the first one. Main loop only. */
+    public double getLatestOdometryTimestampSeconds() {
+        return hasLastOdometryTimestamp ? lastOdometryTimestampSeconds : Double.NaN;
     }
 
     public ChassisSpeeds getRobotRelativeSpeeds() {
-        return lastRobotRelativeSpeeds;
+        return snapshot.getRobotRelativeSpeeds();
     }
 
     @AutoLogOutput(key = "RobotState/fieldRelativeSpeeds")
     public ChassisSpeeds getFieldRelativeSpeeds() { 
-        return ChassisSpeeds.fromRobotRelativeSpeeds(lastRobotRelativeSpeeds, getEstimatedPose().getRotation());
+        return snapshot.getFieldRelativeSpeeds();
     }
 
     public Pose2d getPredictedPose(double translationLookaheadS, double rotationLookaheadS) {
-        return getEstimatedPose()
-            .transformBy(
-                new Transform2d(
-                    lastRobotRelativeSpeeds.vxMetersPerSecond * translationLookaheadS,
-                    lastRobotRelativeSpeeds.vyMetersPerSecond * translationLookaheadS,
-                    Rotation2d.fromRadians(lastRobotRelativeSpeeds.omegaRadiansPerSecond * rotationLookaheadS)
-                )
-            );
+        return snapshot.getPredictedPose(translationLookaheadS, rotationLookaheadS);
     }
 
     public Pose2d getPredictedPose(double timestamp) {
-        return getPredictedPose(timestamp - lastEstimatedPoseUpdateTime, timestamp - lastEstimatedPoseUpdateTime);
+        return snapshot.getPredictedPose(timestamp);
     }
 }
\ No newline at end of file
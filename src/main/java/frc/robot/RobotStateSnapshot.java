@@ -0,0 +1,110 @@
+package frc.robot;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.lib.estimation.MotionPredictor;
+
+/**
+ * Immutable view of {@link RobotState} at one update. RobotState publishes a new snapshot every
+ * time the estimate changes, so a snapshot can be read from any thread and every value in it
+ * belongs to the same update.
+ *
+ * <p>Speeds are stored as primitives since {@link ChassisSpeeds} is mutable, the accessors that
+ * return one build a new copy.
+ *
+ * @param timestampSeconds FPGA time the estimate was updated
+ * @param pose estimated pose, blue alliance origin
+ * @param fieldVxMetersPerSec field relative x velocity, rotated by the estimated heading
+ * @param fieldVyMetersPerSec field relative y velocity, rotated by the estimated heading
+ * @param robotAxMetersPerSecSq robot relative acceleration fitted from the pose history
+ */
+public record RobotStateSnapshot(
+    double timestampSeconds,
+    Pose2d pose,
+    double robotVxMetersPerSec,
+    double robotVyMetersPerSec,
+    double yawVelocityRadPerSec,
+    double fieldVxMetersPerSec,
+    double fieldVyMetersPerSec,
+    double robotAxMetersPerSecSq,
+    double robotAyMetersPerSecSq,
+    double yawAccelerationRadPerSecSq,
+    boolean isPoseEstimateValid,
+    boolean isGyroConnected
+) {
+    // Snapshots are shared between threads, so each thread predicts into its own scratch array
+    private static final ThreadLocal<double[]> predictionScratch = ThreadLocal.withInitial(() -> new double[3]);
+
+    public static RobotStateSnapshot create(
+        double timestampSeconds,
+        Pose2d pose,
+        double robotVxMetersPerSec,
+        double robotVyMetersPerSec,
+        double yawVelocityRadPerSec,
+        double robotAxMetersPerSecSq,
+        double robotAyMetersPerSecSq,
+        double yawAccelerationRadPerSecSq,
+        boolean isPoseEstimateValid,
+        boolean isGyroConnected
+    ) {
+        double cos = pose.getRotation().getCos();
+        double sin = pose.getRotation().getSin();
+        return new RobotStateSnapshot(
+            timestampSeconds,
+            pose,
+            robotVxMetersPerSec,
+            robotVyMetersPerSec,
+            yawVelocityRadPerSec,
+            robotVxMetersPerSec * cos - robotVyMetersPerSec * sin,
+            robotVxMetersPerSec * sin + robotVyMetersPerSec * cos,
+            robotAxMetersPerSecSq,
+            robotAyMetersPerSecSq,
+            yawAccelerationRadPerSecSq,
+            isPoseEstimateValid,
+            isGyroConnected
+        );
+    }
+
+    public ChassisSpeeds getRobotRelativeSpeeds() {
+        return new ChassisSpeeds(robotVxMetersPerSec, robotVyMetersPerSec, yawVelocityRadPerSec);
+    }
+
+    public ChassisSpeeds getFieldRelativeSpeeds() {
+        return new ChassisSpeeds(fieldVxMetersPerSec, fieldVyMetersPerSec, yawVelocityRadPerSec);
+    }
+
+    /**
+     * Pose after the lookahead times, keeping the current accelerations. Does not allocate.
+     *
+     * @param out filled with {x, y, theta}
+     */
+    public void predict(double translationLookaheadS, double rotationLookaheadS, double[] out) {
+        MotionPredictor.predict(
+            pose.getX(),
+            pose.getY(),
+            pose.getRotation().getRadians(),
+            robotVxMetersPerSec,
+            robotVyMetersPerSec,
+            yawVelocityRadPerSec,
+            robotAxMetersPerSecSq,
+            robotAyMetersPerSecSq,
+            yawAccelerationRadPerSecSq,
+            translationLookaheadS,
+            rotationLookaheadS,
+            out
+        );
+    }
+
+    /** Pose after the lookahead times, keeping the current accelerations */
+    public Pose2d getPredictedPose(double translationLookaheadS, double rotationLookaheadS) {
+        double[] predicted = predictionScratch.get();
+        predict(translationLookaheadS, rotationLookaheadS, predicted);
+        return new Pose2d(predicted[0], predicted[1], new Rotation2d(predicted[2]));
+    }
+
+    /** Pose predicted at an FPGA timestamp from this snapshot */
+    public Pose2d getPredictedPose(double timestamp) {
+        return getPredictedPose(timestamp - timestampSeconds, timestamp - timestampSeconds);
+    }
+}
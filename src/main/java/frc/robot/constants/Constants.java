@@ -10,7 +10,10 @@ import com.pathplanner.lib.util.FlippingUtil;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
 import frc.robot.lib.util.AlignmentUtil.Axis;
@@ -89,6 +92,26 @@ public final class Constants {
     }
 
     public static final class VisionConstants {
+        public static final String[] kLIMELIGHT_NAMES = {
+            "limelight-left",
+            "limelight-right"
+        };
+
+        // Robot to camera lens, in the same order as kLIMELIGHT_NAMES. Negative pitch tilts the camera up.
+        public static final Transform3d[] kROBOT_TO_CAMERAS = {
+            new Transform3d(
+                new Translation3d(0.28, 0.25, 0.21),
+                new Rotation3d(0, Units.degreesToRadians(-15), Units.degreesToRadians(30))
+            ),
+            new Transform3d(
+                new Translation3d(0.28, -0.25, 0.21),
+                new Rotation3d(0, Units.degreesToRadians(-15), Units.degreesToRadians(-30))
+            )
+        };
+
+        public static final double kFIELD_LENGTH_METERS = 17.548;
+        public static final double kFIELD_WIDTH_METERS = 8.052;
+
         public static final int[] kALL_TAG_IDS = new int[22];
         static {
             for (int i = 1; i <= 22; i++) {
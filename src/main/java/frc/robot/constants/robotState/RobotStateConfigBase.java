@@ -9,4 +9,37 @@ public abstract class RobotStateConfigBase {
     public abstract double getMaxRotationalVelocityRadPerSecPerSec();
     public abstract int getMinLocalVisionObservationCount();
 
+    // Tuned once for every robot, override in a robot's config if it needs its own value
+
+    public double getVisionThetaDevBase() {
+        return 0.05;
+    }
+
+    public double getVisionAmbiguityDevScalar() {
+        return 4;
+    }
+
+    public double getVisionYawRateDevScalar() {
+        return 0.5;
+    }
+
+    public double getVisionMahalanobisThreshold() {
+        return 13.8; // chi squared, 2 DOF, 99.9%
+    }
+
+    public double getOdomDriftDevPerMeter() {
+        return 0.02;
+    }
+
+    public double getWheelSlipResidualThresholdMetersPerSec() {
+        return 0.4;
+    }
+
+    public double getCollisionJerkThresholdMetersPerSecCubed() {
+        return 200; // about 0.4 g change within one 20 ms update
+    }
+
+    public double getCollisionOdomDevScalar() {
+        return 10;
+    }
 }
@@ -14,12 +14,12 @@ public class RobotStateConfigSim extends RobotStateConfigBase {
 
     @Override
     public double getVisionTranslationDevBase() {
-        return 0;
+        return 0.02;
     }
 
     @Override
     public double getOdomTranslationDevBase() {
-        return 0;
+        return 0.005;
     }
 
     @Override
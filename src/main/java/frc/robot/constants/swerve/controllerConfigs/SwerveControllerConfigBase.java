@@ -11,4 +11,10 @@ public abstract class SwerveControllerConfigBase {
     public abstract PIDController getRotationalPositionFeedbackController();
 
     public abstract double getRotationalPositionMaxOutputRadSec();
+
+    public abstract PIDController getPathTranslationController();
+
+    public abstract PIDController getPathRotationController();
+
+    public abstract PIDController getPathCrossTrackController();
 }
\ No newline at end of file
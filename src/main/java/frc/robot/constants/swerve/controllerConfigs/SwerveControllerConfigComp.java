@@ -16,6 +16,9 @@ public class SwerveControllerConfigComp extends SwerveControllerConfigBase {
     private final PIDController translationVelocityFeedbackController;
     private final PIDController rotationalPositionFeedbackController;
     private final double rotationalPositionMaxOutputRadSec;
+    private final PIDController pathTranslationController;
+    private final PIDController pathRotationController;
+    private final PIDController pathCrossTrackController;
 
     /**
      * Constructs a SwerveControllerConfigProto with the specified maximum angular velocity.
@@ -30,6 +33,11 @@ public class SwerveControllerConfigComp extends SwerveControllerConfigBase {
 
         // Rotational position max output is half of the max angular velocity
         this.rotationalPositionMaxOutputRadSec = 0.5 * maxAngularVelocityRadiansPerSec;
+
+        // Path following feedback on top of the path's own velocities
+        this.pathTranslationController = new PIDController(4, 0, 0);
+        this.pathRotationController = new PIDController(5, 0, 0);
+        this.pathCrossTrackController = new PIDController(3.7, 0, 0);
     }
 
     @Override
@@ -51,4 +59,19 @@ public class SwerveControllerConfigComp extends SwerveControllerConfigBase {
     public double getRotationalPositionMaxOutputRadSec() {
         return rotationalPositionMaxOutputRadSec;
     }
+
+    @Override
+    public PIDController getPathTranslationController() {
+        return pathTranslationController;
+    }
+
+    @Override
+    public PIDController getPathRotationController() {
+        return pathRotationController;
+    }
+
+    @Override
+    public PIDController getPathCrossTrackController() {
+        return pathCrossTrackController;
+    }
 }
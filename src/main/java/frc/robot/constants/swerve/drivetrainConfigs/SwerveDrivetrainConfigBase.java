@@ -32,7 +32,15 @@ public abstract class SwerveDrivetrainConfigBase {
 
     public abstract PIDConstants getPathplannerDrivePIDConfig();
 
-    public abstract double getRotationCompensationCoefficient();
+    public abstract double getActuationLatencySeconds();
+
+    public abstract double getCenterOfGravityHeightMeters();
+
+    public abstract double getNominalBatteryResistanceOhms();
+
+    public abstract double getMinDriveBatteryVoltage();
+
+    public abstract double getDrivePowerEfficiency();
 
     public abstract PIDController getAutoAlignProfiledTranslationController();
     public abstract PIDController getAutoAlignProfiledRotationController();
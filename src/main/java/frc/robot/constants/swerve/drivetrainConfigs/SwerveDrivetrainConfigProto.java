@@ -102,8 +102,28 @@ public class SwerveDrivetrainConfigProto extends SwerveDrivetrainConfigBase {
     }
 
     @Override
-    public double getRotationCompensationCoefficient() {
-        return 0.0;
+    public double getActuationLatencySeconds() {
+        return 0.01;
+    }
+
+    @Override
+    public double getCenterOfGravityHeightMeters() {
+        return 0.15;
+    }
+
+    @Override
+    public double getNominalBatteryResistanceOhms() {
+        return 0.025;
+    }
+
+    @Override
+    public double getMinDriveBatteryVoltage() {
+        return 8.0;
+    }
+
+    @Override
+    public double getDrivePowerEfficiency() {
+        return 0.7;
     }
 
     @Override
@@ -14,28 +14,31 @@ public class SwerveDrivetrainConfigSim extends SwerveDrivetrainConfigBase {
 
     public static SwerveDrivetrainConfigSim instance = null;
 
-    private static LoggedTunableNumber[] AutoAlignTranslationalPID = {
-        new LoggedTunableNumber(
-            "AutoAlign/translational/kP", 4
-        ),
-        new LoggedTunableNumber(
-            "AutoAlign/translational/kI", 0
-        ),
-        new LoggedTunableNumber(
-            "AutoAlign/translational/kD", 0
-        ),
-    };
-    private static LoggedTunableNumber[] AutoAlignRotationalPID = {
-        new LoggedTunableNumber(
-            "AutoAlign/rotational/kP", 4
-        ),
-        new LoggedTunableNumber(
-            "AutoAlign/rotational/kI", 0
-        ),
-        new LoggedTunableNumber(
-            "AutoAlign/rotational/kD", 0
-        ),
-    };
+    // Created on first use, headless simulations read these constants without NetworkTables
+    private static class AutoAlignTunables {
+        private static final LoggedTunableNumber[] AutoAlignTranslationalPID = {
+            new LoggedTunableNumber(
+                "AutoAlign/translational/kP", 4
+            ),
+            new LoggedTunableNumber(
+                "AutoAlign/translational/kI", 0
+            ),
+            new LoggedTunableNumber(
+                "AutoAlign/translational/kD", 0
+            ),
+        };
+        private static final LoggedTunableNumber[] AutoAlignRotationalPID = {
+            new LoggedTunableNumber(
+                "AutoAlign/rotational/kP", 4
+            ),
+            new LoggedTunableNumber(
+                "AutoAlign/rotational/kI", 0
+            ),
+            new LoggedTunableNumber(
+                "AutoAlign/rotational/kD", 0
+            ),
+        };
+    }
 
     public static SwerveDrivetrainConfigSim getInstance() {
         if (instance == null) {
@@ -125,22 +128,42 @@ public class SwerveDrivetrainConfigSim extends SwerveDrivetrainConfigBase {
     }
 
     @Override
-    public double getRotationCompensationCoefficient() {
-        return 0.1;
+    public double getActuationLatencySeconds() {
+        return 0.0;
+    }
+
+    @Override
+    public double getCenterOfGravityHeightMeters() {
+        return 0.15;
+    }
+
+    @Override
+    public double getNominalBatteryResistanceOhms() {
+        return 0.04;
+    }
+
+    @Override
+    public double getMinDriveBatteryVoltage() {
+        return 8.0;
+    }
+
+    @Override
+    public double getDrivePowerEfficiency() {
+        return 0.7;
     }
 
     @Override
     public PIDController getAutoAlignProfiledTranslationController() {
         PIDController p = new PIDController(4, 0, 0);
 
-        if (AutoAlignTranslationalPID[0].hasChanged(hashCode())) {
-            p.setP(AutoAlignTranslationalPID[0].getAsDouble());
+        if (AutoAlignTunables.AutoAlignTranslationalPID[0].hasChanged(hashCode())) {
+            p.setP(AutoAlignTunables.AutoAlignTranslationalPID[0].getAsDouble());
         }
-        if (AutoAlignTranslationalPID[0].hasChanged(hashCode())) {
-            p.setI(AutoAlignTranslationalPID[1].getAsDouble());
+        if (AutoAlignTunables.AutoAlignTranslationalPID[0].hasChanged(hashCode())) {
+            p.setI(AutoAlignTunables.AutoAlignTranslationalPID[1].getAsDouble());
         }
-        if (AutoAlignTranslationalPID[0].hasChanged(hashCode())) {
-            p.setD(AutoAlignTranslationalPID[2].getAsDouble());
+        if (AutoAlignTunables.AutoAlignTranslationalPID[0].hasChanged(hashCode())) {
+            p.setD(AutoAlignTunables.AutoAlignTranslationalPID[2].getAsDouble());
         }
 
         p.setTolerance(getAutoAlignTranslationTolerance(), getAutoAlignTranslationVeloTolerance());
@@ -152,14 +175,14 @@ public class SwerveDrivetrainConfigSim extends SwerveDrivetrainConfigBase {
     public PIDController getAutoAlignProfiledRotationController() {
         PIDController p = new PIDController(4, 0, 0);
 
-        if (AutoAlignRotationalPID[0].hasChanged(hashCode())) {
-            p.setP(AutoAlignRotationalPID[0].getAsDouble());
+        if (AutoAlignTunables.AutoAlignRotationalPID[0].hasChanged(hashCode())) {
+            p.setP(AutoAlignTunables.AutoAlignRotationalPID[0].getAsDouble());
         }
-        if (AutoAlignRotationalPID[0].hasChanged(hashCode())) {
-            p.setI(AutoAlignRotationalPID[1].getAsDouble());
+        if (AutoAlignTunables.AutoAlignRotationalPID[0].hasChanged(hashCode())) {
+            p.setI(AutoAlignTunables.AutoAlignRotationalPID[1].getAsDouble());
         }
-        if (AutoAlignRotationalPID[0].hasChanged(hashCode())) {
-            p.setD(AutoAlignRotationalPID[2].getAsDouble());
+        if (AutoAlignTunables.AutoAlignRotationalPID[0].hasChanged(hashCode())) {
+            p.setD(AutoAlignTunables.AutoAlignRotationalPID[2].getAsDouble());
         }
         p.setTolerance(getAutoAlignRotationTolerance(), getAutoAlignRotationVeloTolerance());
         p.enableContinuousInput(-Math.PI, Math.PI);
@@ -58,6 +58,10 @@ public abstract class SwerveModuleGeneralConfigBase {
     public abstract double getSteerMotorToOutputShaftRatio();
     public abstract double getSteerRotorToSensorRatio();
 
+    // Rotor and gears reflected to the wheel and to the module, used by the drivetrain simulation
+    public abstract double getDriveInertiaKgMetersSq();
+    public abstract double getSteerInertiaKgMetersSq();
+
     public abstract FeedbackSensorSourceValue getSteerCancoderFeedbackSensorSource();
 
     public abstract SensorDirectionValue getCancoderSensorDirection();
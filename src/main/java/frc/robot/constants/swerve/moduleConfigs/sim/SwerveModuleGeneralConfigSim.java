@@ -207,6 +207,16 @@ public class SwerveModuleGeneralConfigSim extends SwerveModuleGeneralConfigBase
         return 21.428;
     }
 
+    @Override
+    public double getDriveInertiaKgMetersSq() {
+        return 0.0025;
+    }
+
+    @Override
+    public double getSteerInertiaKgMetersSq() {
+        return 0.00015;
+    }
+
     @Override
     public FeedbackSensorSourceValue getSteerCancoderFeedbackSensorSource() {
         return FeedbackSensorSourceValue.FusedCANcoder;
@@ -4,6 +4,12 @@ import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 
 public class ChassisRateLimiter {
+    /** Whether the step makes the robot translate faster, braking and turning return power instead of drawing it */
+    public static boolean isSpeedingUp(ChassisSpeeds desiredFieldRelativeSpeeds, ChassisSpeeds lastFieldRelativeSpeeds) {
+        return Math.hypot(desiredFieldRelativeSpeeds.vxMetersPerSecond, desiredFieldRelativeSpeeds.vyMetersPerSecond) >
+            Math.hypot(lastFieldRelativeSpeeds.vxMetersPerSecond, lastFieldRelativeSpeeds.vyMetersPerSecond);
+    }
+
     public static ChassisSpeeds limit(
         ChassisSpeeds desiredFieldRelativeSpeeds, 
         ChassisSpeeds lastFieldRelativeSpeeds, 
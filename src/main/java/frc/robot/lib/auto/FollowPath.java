@@ -20,6 +20,7 @@ import frc.robot.lib.auto.Path.TranslationTargetConstraint;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 
 public class FollowPath extends Command {
@@ -28,48 +29,52 @@ public class FollowPath extends Command {
     private static Consumer<Pair<String, Translation2d[]>> translationListLoggingConsumer = value -> {};
     private static Consumer<Pair<String, Double>> doubleLoggingConsumer = value -> {};
     private static Consumer<Pair<String, Boolean>> booleanLoggingConsumer = value -> {};
+    // Fractions of the path constraints the drivetrain can currently reach, e.g. on a sagging battery
+    private static DoubleSupplier defaultVelocityScaleSupplier = () -> 1.0;
+    private static DoubleSupplier defaultAccelerationScaleSupplier = () -> 1.0;
 
-    private static PIDController translationController = null;
-    private static PIDController rotationController = null;
-    private static PIDController crossTrackController = null;
+    // Copied into every FollowPath created without its own controllers
+    private static PIDController defaultTranslationController = null;
+    private static PIDController defaultRotationController = null;
+    private static PIDController defaultCrossTrackController = null;
 
     public static PIDController getTranslationController() {
-        if (translationController == null) {
+        if (defaultTranslationController == null) {
             throw new IllegalStateException("Translation controller has not been set");
         }
-        return createPIDControllerCopy(translationController);
+        return createPIDControllerCopy(defaultTranslationController);
     }
     public static PIDController getRotationController() {
-        if (rotationController == null) {
+        if (defaultRotationController == null) {
             throw new IllegalStateException("Rotation controller has not been set");
         }
-        return createPIDControllerCopy(rotationController);
+        return createPIDControllerCopy(defaultRotationController);
     }
     public static void setTranslationController(PIDController translationController) {
         if (translationController == null) {
             throw new IllegalArgumentException("Translation controller must not be null");
         }
-        FollowPath.translationController = createPIDControllerCopy(translationController);
+        FollowPath.defaultTranslationController = createPIDControllerCopy(translationController);
     }
     public static void setRotationController(PIDController rotationController) {
         if (rotationController == null) {
             throw new IllegalArgumentException("Rotation controller must not be null");
         }
-        FollowPath.rotationController = createPIDControllerCopy(rotationController);
+        FollowPath.defaultRotationController = createPIDControllerCopy(rotationController);
     }
 
     public static void setCrossTrackController(PIDController crossTrackController) {
         if (crossTrackController == null) {
             throw new IllegalArgumentException("Cross track controller must not be null");
         }
-        FollowPath.crossTrackController = createPIDControllerCopy(crossTrackController);
+        FollowPath.defaultCrossTrackController = createPIDControllerCopy(crossTrackController);
     }
 
     public static PIDController getCrossTrackController() {
-        if (crossTrackController == null) {
+        if (defaultCrossTrackController == null) {
             throw new IllegalStateException("Cross track controller has not been set");
         }
-        return createPIDControllerCopy(crossTrackController);
+        return createPIDControllerCopy(defaultCrossTrackController);
     }
 
     private static PIDController createPIDControllerCopy(PIDController source) {
@@ -105,6 +110,12 @@ public class FollowPath extends Command {
         if (doubleLoggingConsumer == null) { return; }
         FollowPath.doubleLoggingConsumer = doubleLoggingConsumer;
     }
+
+    public static void setConstraintScaleSuppliers(DoubleSupplier velocityScaleSupplier, DoubleSupplier accelerationScaleSupplier) {
+        if (velocityScaleSupplier == null || accelerationScaleSupplier == null) { return; }
+        FollowPath.defaultVelocityScaleSupplier = velocityScaleSupplier;
+        FollowPath.defaultAccelerationScaleSupplier = accelerationScaleSupplier;
+    }
     
     
     private final Path path;
@@ -113,6 +124,14 @@ public class FollowPath extends Command {
     private final Consumer<ChassisSpeeds> robotRelativeSpeedsConsumer;
     private final Supplier<Boolean> shouldFlipPathSupplier;
     private final Consumer<Pose2d> poseResetConsumer;
+    private final DoubleSupplier timestampSupplier;
+    private final DoubleSupplier velocityScaleSupplier;
+    private final DoubleSupplier accelerationScaleSupplier;
+
+    // Owned by this command so paths followed side by side, e.g. in headless simulations, do not share state
+    private final PIDController translationController;
+    private final PIDController rotationController;
+    private final PIDController crossTrackController;
 
     private int rotationElementIndex = 0;
     private int translationElementIndex = 0;
@@ -143,8 +162,38 @@ public class FollowPath extends Command {
         PIDController rotationController,
         PIDController crossTrackController
     ) {
-        if (translationController == null || rotationController == null) {
-            throw new IllegalArgumentException("Translation and rotation controllers must be provided and must not be null or must be set before calling FollowPath");
+        this(
+            path, driveSubsystem, poseSupplier, robotRelativeSpeedsSupplier, robotRelativeSpeedsConsumer, shouldFlipPathSupplier, poseResetConsumer,
+            translationController, rotationController, crossTrackController, Timer::getTimestamp,
+            // Read through so suppliers set after the command was built still apply
+            () -> defaultVelocityScaleSupplier.getAsDouble(),
+            () -> defaultAccelerationScaleSupplier.getAsDouble()
+        );
+    }
+
+    /**
+     * @param driveSubsystem may be null when nothing is scheduled, e.g. in headless simulations
+     * @param timestampSupplier clock in seconds the controllers are stepped with
+     * @param velocityScaleSupplier fraction of the path constraints' velocities this drivetrain can currently reach
+     * @param accelerationScaleSupplier fraction of the path constraints' accelerations this drivetrain can currently reach
+     */
+    public FollowPath(
+        Path path, 
+        SubsystemBase driveSubsystem, 
+        Supplier<Pose2d> poseSupplier, 
+        Supplier<ChassisSpeeds> robotRelativeSpeedsSupplier,
+        Consumer<ChassisSpeeds> robotRelativeSpeedsConsumer,
+        Supplier<Boolean> shouldFlipPathSupplier,
+        Consumer<Pose2d> poseResetConsumer,
+        PIDController translationController, 
+        PIDController rotationController,
+        PIDController crossTrackController,
+        DoubleSupplier timestampSupplier,
+        DoubleSupplier velocityScaleSupplier,
+        DoubleSupplier accelerationScaleSupplier
+    ) {
+        if (translationController == null || rotationController == null || crossTrackController == null) {
+            throw new IllegalArgumentException("Translation, rotation and cross track controllers must be provided and must not be null or must be set before calling FollowPath");
         }
 
         this.path = path.copy();
@@ -153,12 +202,17 @@ public class FollowPath extends Command {
         this.robotRelativeSpeedsConsumer = robotRelativeSpeedsConsumer;
         this.shouldFlipPathSupplier = shouldFlipPathSupplier;
         this.poseResetConsumer = poseResetConsumer;
-        setTranslationController(translationController);
-        setRotationController(rotationController);
-        setCrossTrackController(crossTrackController);
+        this.timestampSupplier = timestampSupplier;
+        this.velocityScaleSupplier = velocityScaleSupplier;
+        this.accelerationScaleSupplier = accelerationScaleSupplier;
+        this.translationController = createPIDControllerCopy(translationController);
+        this.rotationController = createPIDControllerCopy(rotationController);
+        this.crossTrackController = createPIDControllerCopy(crossTrackController);
         configureControllers();
         
-        addRequirements(driveSubsystem);
+        if (driveSubsystem != null) {
+            addRequirements(driveSubsystem);
+        }
     }
 
     public FollowPath(
@@ -170,7 +224,7 @@ public class FollowPath extends Command {
         Supplier<ChassisSpeeds> robotRelativeSpeedsSupplier,
         Consumer<ChassisSpeeds> robotRelativeSpeedsConsumer
     ) {
-        this(path, driveSubsystem, poseSupplier, robotRelativeSpeedsSupplier, robotRelativeSpeedsConsumer, shouldFlipPathSupplier, poseResetConsumer, translationController, rotationController, crossTrackController);
+        this(path, driveSubsystem, poseSupplier, robotRelativeSpeedsSupplier, robotRelativeSpeedsConsumer, shouldFlipPathSupplier, poseResetConsumer, defaultTranslationController, defaultRotationController, defaultCrossTrackController);
     }
 
     @Override
@@ -218,7 +272,7 @@ public class FollowPath extends Command {
         rotationElementIndex = 0;
         translationElementIndex = 0;
         prevTranslationElementIndex = 0;
-        lastTimestamp = Timer.getTimestamp();
+        lastTimestamp = timestampSupplier.getAsDouble();
         pathInitStartPose = poseSupplier.get();
         lastSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(robotRelativeSpeedsSupplier.get(), pathInitStartPose.getRotation());
         previousRotationElementTargetRad = pathInitStartPose.getRotation().getRadians();
@@ -246,8 +300,9 @@ public class FollowPath extends Command {
             return;
         }
         
-        double dt = Timer.getTimestamp() - lastTimestamp;
-        lastTimestamp = Timer.getTimestamp();
+        double timestamp = timestampSupplier.getAsDouble();
+        double dt = timestamp - lastTimestamp;
+        lastTimestamp = timestamp;
 
 
         Pose2d currentPose = poseSupplier.get();
@@ -401,15 +456,23 @@ public class FollowPath extends Command {
         }
         TranslationTargetConstraint translationConstraint = (TranslationTargetConstraint) pathElementsWithConstraints.get(translationElementIndex).getSecond();
 
+        // Plan with the limits the drivetrain can actually reach right now, otherwise the error builds up while it falls behind
+        double velocityScale = velocityScaleSupplier.getAsDouble();
+        double accelerationScale = accelerationScaleSupplier.getAsDouble();
+        doubleLoggingConsumer.accept(new Pair<>("FollowPath/velocityScale", velocityScale));
+        doubleLoggingConsumer.accept(new Pair<>("FollowPath/accelerationScale", accelerationScale));
+
         ChassisSpeeds targetSpeeds = new ChassisSpeeds(vx, vy, omega);
+        // Only speeding up draws more power, braking and turning keep the path's limits
+        double translationalAccelerationScale = ChassisRateLimiter.isSpeedingUp(targetSpeeds, lastSpeeds) ? accelerationScale : 1;
         targetSpeeds = ChassisRateLimiter.limit(
             targetSpeeds, 
             lastSpeeds, 
             dt, 
-            translationConstraint.maxAccelerationMetersPerSec2(),
+            translationConstraint.maxAccelerationMetersPerSec2() * translationalAccelerationScale,
             Math.toRadians(rotationConstraint.maxAccelerationDegPerSec2()),
-            translationConstraint.maxVelocityMetersPerSec(),
-            Math.toRadians(rotationConstraint.maxVelocityDegPerSec())
+            translationConstraint.maxVelocityMetersPerSec() * velocityScale,
+            Math.toRadians(rotationConstraint.maxVelocityDegPerSec()) * velocityScale
         );
 
         robotRelativeSpeedsConsumer.accept(ChassisSpeeds.fromFieldRelativeSpeeds(targetSpeeds, currentPose.getRotation()));
@@ -25,7 +25,15 @@ import java.util.Optional;
 import edu.wpi.first.wpilibj.Filesystem;
 
 public class JsonUtils {
-    public static final File PROJECT_ROOT = new File(Filesystem.getDeployDirectory(), "autos");
+    // Resolved on first use, finding the deploy directory asks the HAL whether this is a real robot
+    // and headless tools that pass their own directory never start it
+    private static class DeployDirectory {
+        private static final File PROJECT_ROOT = new File(Filesystem.getDeployDirectory(), "autos");
+    }
+
+    public static File getProjectRoot() {
+        return DeployDirectory.PROJECT_ROOT;
+    }
 
     private static final ObjectMapper mapper = new ObjectMapper()
         .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
@@ -220,6 +228,6 @@ public class JsonUtils {
     }
 
     public static Path loadPath(String pathFileName) {
-        return loadPath(PROJECT_ROOT, pathFileName);
+        return loadPath(getProjectRoot(), pathFileName);
     }
 }
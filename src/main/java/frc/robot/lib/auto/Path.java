@@ -198,7 +198,7 @@ public class Path {
     }
 
     public Path(String pathFileName) {
-        this(JsonUtils.PROJECT_ROOT, pathFileName);
+        this(JsonUtils.getProjectRoot(), pathFileName);
     }
 
     /**
@@ -555,6 +555,30 @@ public class Path {
         flipped = false;
     }
 
+    /**
+     * Where {@link FollowPath} resets the pose to, the first translation target facing the first
+     * rotation target, or defaultRotation if there is none. Null for an invalid path.
+     */
+    public Pose2d getStartPose(Rotation2d defaultRotation) {
+        if (!isValid()) {
+            return null;
+        }
+
+        Translation2d startTranslation = null;
+        Rotation2d startRotation = null;
+        for (Pair<PathElement, PathElementConstraint> element : getPathElementsWithConstraintsNoWaypoints()) {
+            if (startTranslation == null && element.getFirst() instanceof TranslationTarget) {
+                startTranslation = ((TranslationTarget) element.getFirst()).translation();
+            } else if (startRotation == null && element.getFirst() instanceof RotationTarget) {
+                startRotation = ((RotationTarget) element.getFirst()).rotation();
+            }
+        }
+        if (startTranslation == null) {
+            return null;
+        }
+        return new Pose2d(startTranslation, startRotation == null ? defaultRotation : startRotation);
+    }
+
     public static Rotation2d getInitialModuleDirection(Path path, Supplier<Pose2d> poseSupplier) {
         Pose2d robotPose = poseSupplier.get();
         
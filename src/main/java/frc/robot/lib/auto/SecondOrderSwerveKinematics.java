@@ -0,0 +1,71 @@
+package frc.robot.lib.auto;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Module feedforwards from chassis velocity and acceleration.
+ *
+ * <p>All quantities are robot relative, a is the rate of change of the robot relative chassis
+ * speeds. A module at r moves with v + omega x r, so in the robot frame its velocity changes with
+ * a + alpha x r. The wheel acceleration is that change along the module heading and the steer
+ * velocity is how fast the module vector turns, (v x a) / |v|^2. While the robot spins and
+ * translates at a constant field velocity, v itself keeps turning in the robot frame, so every
+ * module needs steer velocity even though no chassis speed changes on the field.
+ *
+ * <p>Nothing is allocated after construction.
+ */
+public class SecondOrderSwerveKinematics {
+    // Below this the direction of a module vector is mostly noise and its rate of change unbounded
+    private static final double kMinSteerSpeedMetersPerSec = 0.05;
+
+    private final int numModules;
+    private final double[] moduleXMeters;
+    private final double[] moduleYMeters;
+
+    private final double[] driveAccelerationsMetersPerSecSec;
+    private final double[] steerVelocitiesRadPerSec;
+
+    /** @param modulePositionsMeters module locations relative to the robot center */
+    public SecondOrderSwerveKinematics(Translation2d... modulePositionsMeters) {
+        numModules = modulePositionsMeters.length;
+        moduleXMeters = new double[numModules];
+        moduleYMeters = new double[numModules];
+        for (int i = 0; i < numModules; i++) {
+            moduleXMeters[i] = modulePositionsMeters[i].getX();
+            moduleYMeters[i] = modulePositionsMeters[i].getY();
+        }
+
+        driveAccelerationsMetersPerSecSec = new double[numModules];
+        steerVelocitiesRadPerSec = new double[numModules];
+    }
+
+    /**
+     * @param moduleAnglesRad commanded heading of each module, the drive acceleration is signed
+     *     along it so it matches a reversed module's negative speed
+     */
+    public void calculate(
+        double vxMetersPerSec, double vyMetersPerSec, double omegaRadPerSec,
+        double axMetersPerSecSec, double ayMetersPerSecSec, double alphaRadPerSecSec,
+        double[] moduleAnglesRad
+    ) {
+        for (int i = 0; i < numModules; i++) {
+            double moduleVx = vxMetersPerSec - omegaRadPerSec * moduleYMeters[i];
+            double moduleVy = vyMetersPerSec + omegaRadPerSec * moduleXMeters[i];
+            double moduleAx = axMetersPerSecSec - alphaRadPerSecSec * moduleYMeters[i];
+            double moduleAy = ayMetersPerSecSec + alphaRadPerSecSec * moduleXMeters[i];
+
+            driveAccelerationsMetersPerSecSec[i] = moduleAx * Math.cos(moduleAnglesRad[i]) + moduleAy * Math.sin(moduleAnglesRad[i]);
+
+            double speedSquared = moduleVx * moduleVx + moduleVy * moduleVy;
+            steerVelocitiesRadPerSec[i] = speedSquared > kMinSteerSpeedMetersPerSec * kMinSteerSpeedMetersPerSec ? (moduleVx * moduleAy - moduleVy * moduleAx) / speedSquared : 0;
+        }
+    }
+
+    public double getDriveAccelerationMetersPerSecSec(int module) {
+        return driveAccelerationsMetersPerSecSec[module];
+    }
+
+    public double getSteerVelocityRadPerSec(int module) {
+        return steerVelocitiesRadPerSec[module];
+    }
+}
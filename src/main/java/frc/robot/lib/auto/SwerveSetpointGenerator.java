@@ -0,0 +1,251 @@
+package frc.robot.lib.auto;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Turns desired robot relative chassis speeds into module setpoints the modules can actually
+ * follow within one control period.
+ *
+ * <p>Module velocities are linear in chassis speeds, so moving the chassis setpoint a fraction s of
+ * the way from the previous setpoint to the desired one moves every module vector the same
+ * fraction along a straight line. For every module the largest s is found for which the module
+ * can still turn to the new heading at its max steer velocity and reach the new speed at its max
+ * drive acceleration, using a bisection with a fixed iteration count. The chassis setpoint then
+ * advances by the smallest of those fractions so all modules stay consistent with one rigid body
+ * motion. Modules may reverse instead of turning more than 90 degrees. A module that is stopped
+ * still has to turn to its new heading first, it turns toward the desired heading while the
+ * chassis waits for it.
+ *
+ * <p>Nothing is allocated after construction.
+ */
+public class SwerveSetpointGenerator {
+    private static final int kMaxIterations = 10;
+    private static final double kEpsilon = 1e-6;
+
+    private final int numModules;
+    private final double[] moduleXMeters;
+    private final double[] moduleYMeters;
+
+    private final double maxModuleVelocity;
+    private final double maxDriveAcceleration;
+    private final double maxDriveDeceleration;
+    private final double maxSteerVelocityRadPerSec;
+
+    // Previous setpoint
+    private double vxMetersPerSec = 0;
+    private double vyMetersPerSec = 0;
+    private double omegaRadPerSec = 0;
+    private final double[] moduleSpeedsMetersPerSec;
+    private final double[] moduleAnglesRad;
+
+    // scratch space, previous and desired module velocity vectors
+    private final double[] previousModuleVx;
+    private final double[] previousModuleVy;
+    private final double[] desiredModuleVx;
+    private final double[] desiredModuleVy;
+
+    private double lastStepFraction = 1;
+
+    /**
+     * @param maxSteerVelocityRadPerSec how fast a module can change its heading
+     * @param modulePositionsMeters module locations relative to the robot center
+     */
+    public SwerveSetpointGenerator(
+        double maxModuleVelocity,
+        double maxDriveAcceleration,
+        double maxDriveDeceleration,
+        double maxSteerVelocityRadPerSec,
+        Translation2d... modulePositionsMeters
+    ) {
+        this.maxModuleVelocity = maxModuleVelocity;
+        this.maxDriveAcceleration = maxDriveAcceleration;
+        this.maxDriveDeceleration = maxDriveDeceleration;
+        this.maxSteerVelocityRadPerSec = maxSteerVelocityRadPerSec;
+
+        numModules = modulePositionsMeters.length;
+        moduleXMeters = new double[numModules];
+        moduleYMeters = new double[numModules];
+        for (int i = 0; i < numModules; i++) {
+            moduleXMeters[i] = modulePositionsMeters[i].getX();
+            moduleYMeters[i] = modulePositionsMeters[i].getY();
+        }
+
+        moduleSpeedsMetersPerSec = new double[numModules];
+        moduleAnglesRad = new double[numModules];
+        previousModuleVx = new double[numModules];
+        previousModuleVy = new double[numModules];
+        desiredModuleVx = new double[numModules];
+        desiredModuleVy = new double[numModules];
+    }
+
+    /**
+     * Restarts from the measured state, e.g. after the drivetrain was not commanded for a while.
+     *
+     * @param measuredModuleAnglesRad current steer angle of each module
+     */
+    public void reset(double vxMetersPerSec, double vyMetersPerSec, double omegaRadPerSec, double[] measuredModuleAnglesRad) {
+        this.vxMetersPerSec = vxMetersPerSec;
+        this.vyMetersPerSec = vyMetersPerSec;
+        this.omegaRadPerSec = omegaRadPerSec;
+        for (int i = 0; i < numModules; i++) {
+            double moduleVx = vxMetersPerSec - omegaRadPerSec * moduleYMeters[i];
+            double moduleVy = vyMetersPerSec + omegaRadPerSec * moduleXMeters[i];
+            moduleAnglesRad[i] = measuredModuleAnglesRad[i];
+            // Signed along the module's current heading
+            moduleSpeedsMetersPerSec[i] = moduleVx * Math.cos(moduleAnglesRad[i]) + moduleVy * Math.sin(moduleAnglesRad[i]);
+        }
+    }
+
+    /**
+     * Steps the setpoint toward the desired robot relative chassis speeds.
+     *
+     * @param dtSeconds time until the next call
+     */
+    public void generate(double desiredVx, double desiredVy, double desiredOmega, double dtSeconds) {
+        // Scale the whole chassis motion down if any module would be too fast
+        double maxDesiredModuleSpeed = 0;
+        for (int i = 0; i < numModules; i++) {
+            desiredModuleVx[i] = desiredVx - desiredOmega * moduleYMeters[i];
+            desiredModuleVy[i] = desiredVy + desiredOmega * moduleXMeters[i];
+            maxDesiredModuleSpeed = Math.max(maxDesiredModuleSpeed, Math.hypot(desiredModuleVx[i], desiredModuleVy[i]));
+        }
+        if (maxDesiredModuleSpeed > maxModuleVelocity) {
+            double scale = maxModuleVelocity / maxDesiredModuleSpeed;
+            desiredVx *= scale;
+            desiredVy *= scale;
+            desiredOmega *= scale;
+            for (int i = 0; i < numModules; i++) {
+                desiredModuleVx[i] *= scale;
+                desiredModuleVy[i] *= scale;
+            }
+        }
+
+        double maxSteerDelta = maxSteerVelocityRadPerSec * dtSeconds;
+        for (int i = 0; i < numModules; i++) {
+            previousModuleVx[i] = vxMetersPerSec - omegaRadPerSec * moduleYMeters[i];
+            previousModuleVy[i] = vyMetersPerSec + omegaRadPerSec * moduleXMeters[i];
+        }
+
+        // Feasibility is not monotonic in s when a module vector passes close to zero, so a fraction
+        // that lowered the bound for a later module is rechecked against the earlier ones
+        double stepFraction = 1;
+        for (int pass = 0; pass <= numModules; pass++) {
+            double passStartFraction = stepFraction;
+            for (int i = 0; i < numModules; i++) {
+                stepFraction = findMaxFeasibleFraction(i, stepFraction, maxSteerDelta, dtSeconds);
+            }
+            if (stepFraction == passStartFraction) {
+                break;
+            }
+        }
+        lastStepFraction = stepFraction;
+
+        vxMetersPerSec += (desiredVx - vxMetersPerSec) * stepFraction;
+        vyMetersPerSec += (desiredVy - vyMetersPerSec) * stepFraction;
+        omegaRadPerSec += (desiredOmega - omegaRadPerSec) * stepFraction;
+
+        for (int i = 0; i < numModules; i++) {
+            double moduleVx = vxMetersPerSec - omegaRadPerSec * moduleYMeters[i];
+            double moduleVy = vyMetersPerSec + omegaRadPerSec * moduleXMeters[i];
+            double speed = Math.hypot(moduleVx, moduleVy);
+            if (speed < kEpsilon) {
+                // Turn toward where the module is asked to go next so the steer limit can let it start
+                moduleSpeedsMetersPerSec[i] = 0;
+                if (Math.hypot(desiredModuleVx[i], desiredModuleVy[i]) > kEpsilon) {
+                    double steerError = nearestHeadingError(Math.atan2(desiredModuleVy[i], desiredModuleVx[i]), moduleAnglesRad[i]);
+                    moduleAnglesRad[i] = MathUtil.angleModulus(moduleAnglesRad[i] + MathUtil.clamp(steerError, -maxSteerDelta, maxSteerDelta));
+                }
+                continue;
+            }
+
+            double angle = Math.atan2(moduleVy, moduleVx);
+            if (Math.abs(MathUtil.angleModulus(angle - moduleAnglesRad[i])) > Math.PI / 2) {
+                angle = MathUtil.angleModulus(angle + Math.PI);
+                speed = -speed;
+            }
+            moduleAnglesRad[i] = angle;
+            moduleSpeedsMetersPerSec[i] = speed;
+        }
+    }
+
+    /** Largest s in [0, upperBound] that module i can follow, upperBound if it is feasible itself */
+    private double findMaxFeasibleFraction(int module, double upperBound, double maxSteerDelta, double dtSeconds) {
+        if (isFeasible(module, upperBound, maxSteerDelta, dtSeconds)) {
+            return upperBound;
+        }
+
+        // Feasible at 0 by construction, bisect toward the boundary
+        double low = 0;
+        double high = upperBound;
+        for (int iteration = 0; iteration < kMaxIterations; iteration++) {
+            double mid = (low + high) / 2;
+            if (isFeasible(module, mid, maxSteerDelta, dtSeconds)) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean isFeasible(int module, double fraction, double maxSteerDelta, double dtSeconds) {
+        double vx = previousModuleVx[module] + (desiredModuleVx[module] - previousModuleVx[module]) * fraction;
+        double vy = previousModuleVy[module] + (desiredModuleVy[module] - previousModuleVy[module]) * fraction;
+        double speed = Math.hypot(vx, vy);
+
+        double headingX = Math.cos(moduleAnglesRad[module]);
+        double headingY = Math.sin(moduleAnglesRad[module]);
+
+        // A stopped module still points somewhere, it cannot drive in a direction it has not turned to yet
+        double previousSpeed = moduleSpeedsMetersPerSec[module];
+        if (speed > kEpsilon && Math.abs(nearestHeadingError(Math.atan2(vy, vx), moduleAnglesRad[module])) > maxSteerDelta) {
+            return false;
+        }
+
+        // Signed speed along the current heading, slowing down through zero and reversing is deceleration
+        double signedSpeed = Math.abs(previousSpeed) > kEpsilon ? Math.copySign(speed, vx * headingX + vy * headingY) : speed;
+        double referenceSpeed = Math.abs(previousSpeed) > kEpsilon ? previousSpeed : 0;
+        double speedChange = signedSpeed - referenceSpeed;
+        boolean isSpeedingUp = Math.abs(signedSpeed) > Math.abs(referenceSpeed) && signedSpeed * referenceSpeed >= 0;
+        double limit = (isSpeedingUp ? maxDriveAcceleration : maxDriveDeceleration) * dtSeconds;
+        return Math.abs(speedChange) <= limit + kEpsilon;
+    }
+
+    /** Reversing the drive is free, so only the distance to the nearer of the two headings counts */
+    private static double nearestHeadingError(double targetAngleRad, double moduleAngleRad) {
+        double steerError = MathUtil.angleModulus(targetAngleRad - moduleAngleRad);
+        if (steerError > Math.PI / 2) {
+            steerError -= Math.PI;
+        } else if (steerError < -Math.PI / 2) {
+            steerError += Math.PI;
+        }
+        return steerError;
+    }
+
+    public double getVxMetersPerSec() {
+        return vxMetersPerSec;
+    }
+
+    public double getVyMetersPerSec() {
+        return vyMetersPerSec;
+    }
+
+    public double getOmegaRadPerSec() {
+        return omegaRadPerSec;
+    }
+
+    /** Signed drive speed of a module, negative when it drives backwards along its heading */
+    public double getModuleSpeedMetersPerSec(int module) {
+        return moduleSpeedsMetersPerSec[module];
+    }
+
+    public double getModuleAngleRad(int module) {
+        return moduleAnglesRad[module];
+    }
+
+    /** Fraction of the way to the desired speeds the last call could go */
+    public double getLastStepFraction() {
+        return lastStepFraction;
+    }
+}
@@ -0,0 +1,245 @@
+package frc.robot.lib.auto;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Limits a chassis speed step to what every module can push through its tire and drive motor.
+ *
+ * <p>Each module carries an equal share of the mass and has to supply that share of the chassis
+ * acceleration plus the angular acceleration at its location. The centripetal acceleration of
+ * spinning in place is carried by the frame, not the tires, so it is not part of the demand. The
+ * robot relative velocity turning with the robot is, and it is taken at the end of the step so
+ * slowing down also shrinks it. The tire can transmit at most the friction coefficient times its
+ * normal force, and normal forces shift toward the back and outside of an acceleration by the
+ * center of gravity height. Along the wheel the drive motor additionally has to stay inside its
+ * torque current limit. Part of the measured current does not go into accelerating the robot
+ * (friction, scrub), so that part is estimated from the last applied acceleration and is not
+ * available. The step is scaled to the tightest module.
+ *
+ * <p>A step that asks less of the tires together than not stepping at all is always taken, even if
+ * a module stays over its limit, so the setpoint can back off instead of freezing at the limit.
+ *
+ * <p>Nothing is allocated after construction. All quantities are robot relative.
+ */
+public class TractionLimiter {
+    private static final int kMaxIterations = 10;
+    private static final double kGravity = 9.81;
+
+    private final int numModules;
+    private final double[] moduleXMeters;
+    private final double[] moduleYMeters;
+    private final double sumXSquared;
+    private final double sumYSquared;
+
+    private final double moduleMassKg;
+    private final double massKg;
+    private final double wheelCoefficientOfFriction;
+    private final double centerOfGravityHeightMeters;
+    private final double driveForcePerAmpNewtons;
+    private final double driveCurrentLimitAmps;
+
+    // scratch space for the current step
+    private final double[] headingX;
+    private final double[] headingY;
+    private final double[] lossCurrentsAmps;
+    private double previousVx;
+    private double previousVy;
+    private double previousOmega;
+    private double deltaVx;
+    private double deltaVy;
+    private double deltaOmega;
+    private double unsteppedTireAcceleration;
+
+    private final double[] moduleMaxAccelerationsMetersPerSecSec;
+    private int limitingModule = -1;
+
+    private double lastAx = 0;
+    private double lastAy = 0;
+    private double lastAlpha = 0;
+
+    /**
+     * @param driveForcePerAmpNewtons wheel force per amp of drive torque current
+     * @param driveCurrentLimitAmps largest drive torque current the motors are allowed
+     * @param modulePositionsMeters module locations relative to the robot center
+     */
+    public TractionLimiter(
+        double massKg,
+        double wheelCoefficientOfFriction,
+        double centerOfGravityHeightMeters,
+        double driveForcePerAmpNewtons,
+        double driveCurrentLimitAmps,
+        Translation2d... modulePositionsMeters
+    ) {
+        this.massKg = massKg;
+        this.wheelCoefficientOfFriction = wheelCoefficientOfFriction;
+        this.centerOfGravityHeightMeters = centerOfGravityHeightMeters;
+        this.driveForcePerAmpNewtons = driveForcePerAmpNewtons;
+        this.driveCurrentLimitAmps = driveCurrentLimitAmps;
+
+        numModules = modulePositionsMeters.length;
+        moduleMassKg = massKg / numModules;
+        moduleXMeters = new double[numModules];
+        moduleYMeters = new double[numModules];
+        double sumXSquared = 0;
+        double sumYSquared = 0;
+        for (int i = 0; i < numModules; i++) {
+            moduleXMeters[i] = modulePositionsMeters[i].getX();
+            moduleYMeters[i] = modulePositionsMeters[i].getY();
+            sumXSquared += moduleXMeters[i] * moduleXMeters[i];
+            sumYSquared += moduleYMeters[i] * moduleYMeters[i];
+        }
+        this.sumXSquared = sumXSquared;
+        this.sumYSquared = sumYSquared;
+
+        headingX = new double[numModules];
+        headingY = new double[numModules];
+        lossCurrentsAmps = new double[numModules];
+        moduleMaxAccelerationsMetersPerSecSec = new double[numModules];
+    }
+
+    /**
+     * Finds how much of the step from the previous to the desired chassis speeds can be taken.
+     *
+     * @param moduleAnglesRad measured steer angle of each module
+     * @param driveTorqueCurrentsAmps measured drive torque current of each module, positive along the heading
+     * @return fraction of the step in [0, 1]
+     */
+    public double limit(
+        double previousVx, double previousVy, double previousOmega,
+        double desiredVx, double desiredVy, double desiredOmega,
+        double dtSeconds,
+        double[] moduleAnglesRad,
+        double[] driveTorqueCurrentsAmps
+    ) {
+        if (dtSeconds <= 0) {
+            return 1;
+        }
+
+        this.previousVx = previousVx;
+        this.previousVy = previousVy;
+        this.previousOmega = previousOmega;
+        deltaVx = desiredVx - previousVx;
+        deltaVy = desiredVy - previousVy;
+        deltaOmega = desiredOmega - previousOmega;
+        double ax = deltaVx / dtSeconds;
+        double ay = deltaVy / dtSeconds;
+        double alpha = deltaOmega / dtSeconds;
+
+        for (int i = 0; i < numModules; i++) {
+            headingX[i] = Math.cos(moduleAnglesRad[i]);
+            headingY[i] = Math.sin(moduleAnglesRad[i]);
+
+            // The last step ended at the previous speeds
+            double lastAlongHeading =
+                moduleAccelerationX(i, -previousOmega * previousVy + lastAx, lastAlpha) * headingX[i] +
+                moduleAccelerationY(i, previousOmega * previousVx + lastAy, lastAlpha) * headingY[i];
+            double lossCurrent = driveTorqueCurrentsAmps[i] - moduleMassKg * lastAlongHeading / driveForcePerAmpNewtons;
+            lossCurrentsAmps[i] = Math.max(-driveCurrentLimitAmps, Math.min(driveCurrentLimitAmps, lossCurrent));
+        }
+
+        unsteppedTireAcceleration = totalTireAcceleration(ax, ay, alpha, 0);
+
+        double stepFraction = 1;
+        limitingModule = -1;
+        double desiredAcceleration = Math.hypot(ax, ay);
+        for (int i = 0; i < numModules; i++) {
+            double moduleFraction = findMaxFeasibleFraction(i, ax, ay, alpha);
+            // Acceleration of the chassis this module alone would allow in the desired direction
+            moduleMaxAccelerationsMetersPerSecSec[i] = moduleFraction * desiredAcceleration;
+            if (moduleFraction < stepFraction) {
+                stepFraction = moduleFraction;
+                limitingModule = i;
+            }
+        }
+
+        lastAx = ax * stepFraction;
+        lastAy = ay * stepFraction;
+        lastAlpha = alpha * stepFraction;
+        return stepFraction;
+    }
+
+    /** Forgets the last applied acceleration, e.g. after the drivetrain was not commanded for a while */
+    public void reset() {
+        lastAx = 0;
+        lastAy = 0;
+        lastAlpha = 0;
+    }
+
+    private double findMaxFeasibleFraction(int module, double ax, double ay, double alpha) {
+        if (isFeasible(module, ax, ay, alpha, 1)) {
+            return 1;
+        }
+
+        // Feasible at 0 or not, a step that asks less of the tires together is never worse than
+        // standing still. Slowing toward zero always does, so the setpoint cannot freeze at a limit.
+        double low = 0;
+        double high = 1;
+        for (int iteration = 0; iteration < kMaxIterations; iteration++) {
+            double mid = (low + high) / 2;
+            if (isFeasible(module, ax, ay, alpha, mid) || totalTireAcceleration(ax, ay, alpha, mid) <= unsteppedTireAcceleration) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Sum of the acceleration every module has to put through its tire, proportional to the total tire force */
+    private double totalTireAcceleration(double ax, double ay, double alpha, double fraction) {
+        double chassisAx = chassisAccelerationX(ax, fraction);
+        double chassisAy = chassisAccelerationY(ay, fraction);
+        double total = 0;
+        for (int i = 0; i < numModules; i++) {
+            total += Math.hypot(moduleAccelerationX(i, chassisAx, alpha * fraction), moduleAccelerationY(i, chassisAy, alpha * fraction));
+        }
+        return total;
+    }
+
+    private boolean isFeasible(int module, double ax, double ay, double alpha, double fraction) {
+        double chassisAx = chassisAccelerationX(ax, fraction);
+        double chassisAy = chassisAccelerationY(ay, fraction);
+        double moduleAx = moduleAccelerationX(module, chassisAx, alpha * fraction);
+        double moduleAy = moduleAccelerationY(module, chassisAy, alpha * fraction);
+
+        // Accelerating forward pitches load onto the back modules, accelerating left rolls it onto the right
+        double normalForce = moduleMassKg * kGravity - massKg * centerOfGravityHeightMeters * (
+            chassisAx * moduleXMeters[module] / sumXSquared +
+            chassisAy * moduleYMeters[module] / sumYSquared
+        );
+        double force = moduleMassKg * Math.hypot(moduleAx, moduleAy);
+        if (force > wheelCoefficientOfFriction * Math.max(normalForce, 0)) {
+            return false;
+        }
+
+        double forceAlongHeading = moduleMassKg * (moduleAx * headingX[module] + moduleAy * headingY[module]);
+        return Math.abs(lossCurrentsAmps[module] + forceAlongHeading / driveForcePerAmpNewtons) <= driveCurrentLimitAmps;
+    }
+
+    // The velocity vector turning with the robot needs acceleration no matter what is commanded
+    private double chassisAccelerationX(double ax, double fraction) {
+        return ax * fraction - (previousOmega + deltaOmega * fraction) * (previousVy + deltaVy * fraction);
+    }
+
+    private double chassisAccelerationY(double ay, double fraction) {
+        return ay * fraction + (previousOmega + deltaOmega * fraction) * (previousVx + deltaVx * fraction);
+    }
+
+    private double moduleAccelerationX(int module, double chassisAx, double alpha) {
+        return chassisAx - alpha * moduleYMeters[module];
+    }
+
+    private double moduleAccelerationY(int module, double chassisAy, double alpha) {
+        return chassisAy + alpha * moduleXMeters[module];
+    }
+
+    /** Chassis acceleration in the last desired direction each module would have allowed on its own */
+    public double getModuleMaxAccelerationMetersPerSecSec(int module) {
+        return moduleMaxAccelerationsMetersPerSecSec[module];
+    }
+
+    /** Module that limited the last step, -1 if the full step was taken */
+    public int getLimitingModule() {
+        return limitingModule;
+    }
+}
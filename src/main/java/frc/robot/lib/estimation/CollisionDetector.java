@@ -0,0 +1,64 @@
+package frc.robot.lib.estimation;
+
+/**
+ * Detects collisions from jerk of the robot relative acceleration. Driving produces smooth
+ * acceleration changes, hitting something or being hit produces a spike in jerk. A detection is
+ * held for a while so odometry stays distrusted until the robot has settled.
+ */
+public class CollisionDetector {
+    private final double jerkThresholdMetersPerSecCubed;
+    private final double holdSeconds;
+
+    private boolean hasLastSample = false;
+    private double lastTimestampSeconds = 0;
+    private double lastAccelerationX = 0;
+    private double lastAccelerationY = 0;
+
+    private double lastJerkMetersPerSecCubed = 0;
+    private double lastCollisionTimestampSeconds = Double.NEGATIVE_INFINITY;
+    private long collisionCount = 0;
+
+    public CollisionDetector(double jerkThresholdMetersPerSecCubed, double holdSeconds) {
+        this.jerkThresholdMetersPerSecCubed = jerkThresholdMetersPerSecCubed;
+        this.holdSeconds = holdSeconds;
+    }
+
+    /**
+     * Adds an accelerometer reading, call once per new reading.
+     *
+     * @return true if this reading started a new collision
+     */
+    public boolean update(double timestampSeconds, double accelerationX, double accelerationY) {
+        boolean isNewCollision = false;
+        double dt = timestampSeconds - lastTimestampSeconds;
+        if (hasLastSample && dt > 0) {
+            lastJerkMetersPerSecCubed = Math.hypot(accelerationX - lastAccelerationX, accelerationY - lastAccelerationY) / dt;
+            if (lastJerkMetersPerSecCubed > jerkThresholdMetersPerSecCubed) {
+                isNewCollision = !isColliding(timestampSeconds);
+                if (isNewCollision) {
+                    collisionCount++;
+                }
+                lastCollisionTimestampSeconds = timestampSeconds;
+            }
+        }
+
+        hasLastSample = true;
+        lastTimestampSeconds = timestampSeconds;
+        lastAccelerationX = accelerationX;
+        lastAccelerationY = accelerationY;
+        return isNewCollision;
+    }
+
+    /** True within the hold time of the last jerk spike */
+    public boolean isColliding(double timestampSeconds) {
+        return timestampSeconds - lastCollisionTimestampSeconds < holdSeconds;
+    }
+
+    public double getLastJerkMetersPerSecCubed() {
+        return lastJerkMetersPerSecCubed;
+    }
+
+    public long getCollisionCount() {
+        return collisionCount;
+    }
+}
@@ -0,0 +1,133 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import frc.robot.lib.util.RollingRegression;
+
+/**
+ * Estimates how fast the drivetrain can still go and accelerate on the battery it has.
+ *
+ * <p>The battery is modeled as an open circuit voltage behind a resistance, V = Voc - R I, fitted
+ * over the recent supply voltage and total drive supply current. The fit falls back to the
+ * nominal resistance until the current has varied enough to see the slope.
+ *
+ * <p>Top speed scales with the voltage left under the present load. Acceleration is limited by
+ * power: drawing more than (Voc - Vmin) / R in total would pull the battery below the minimum
+ * voltage. A drive motor turns its share of that power into back emf times current, which moves
+ * the robot, plus the loss in its windings. The loss dominates at low speed, where the current
+ * and not the power runs out first. At speed the bound approaches efficiency * Vmin * I / (m v).
+ */
+public class DrivePowerModel {
+    private static final int kWindowSize = 250;
+    // Current has to vary this much over the window before the fitted resistance is trusted
+    private static final double kMinCurrentSpreadAmps = 40;
+    private static final double kMinResistanceOhms = 0.005;
+    private static final double kMaxResistanceOhms = 0.2;
+    // The top speed follows the sustained draw, the instantaneous one would make it chase its own load
+    private static final double kLoadFilterGain = 0.05;
+
+    private final double nominalVoltage;
+    private final double minVoltage;
+    private final double nominalResistanceOhms;
+    private final double massKg;
+    private final double efficiency;
+    private final DCMotor driveMotor;
+    private final double wheelRadiusMeters;
+    private final int numModules;
+
+    private final RollingRegression voltageVsCurrent = new RollingRegression(kWindowSize);
+    private double minCurrentAmps = Double.POSITIVE_INFINITY;
+    private double maxCurrentAmps = Double.NEGATIVE_INFINITY;
+    private int samplesSinceRangeReset = 0;
+    private double currentSpreadAmps = 0;
+    private double filteredCurrentAmps = 0;
+
+    private double openCircuitVoltage;
+    private double resistanceOhms;
+    private double loadedVoltage;
+
+    /**
+     * @param nominalVoltage voltage the configured velocity and acceleration limits were measured at
+     * @param minVoltage lowest battery voltage the drivetrain may pull the battery down to
+     * @param efficiency fraction of the drive motor torque that ends up accelerating the robot
+     * @param driveMotor drive motor of one module, including the reduction to the wheel
+     */
+    public DrivePowerModel(
+        double nominalVoltage,
+        double minVoltage,
+        double nominalResistanceOhms,
+        double massKg,
+        double efficiency,
+        DCMotor driveMotor,
+        double wheelRadiusMeters,
+        int numModules
+    ) {
+        this.nominalVoltage = nominalVoltage;
+        this.minVoltage = minVoltage;
+        this.nominalResistanceOhms = nominalResistanceOhms;
+        this.massKg = massKg;
+        this.efficiency = efficiency;
+        this.driveMotor = driveMotor;
+        this.wheelRadiusMeters = wheelRadiusMeters;
+        this.numModules = numModules;
+
+        openCircuitVoltage = nominalVoltage;
+        resistanceOhms = nominalResistanceOhms;
+        loadedVoltage = nominalVoltage;
+    }
+
+    public void update(double supplyVoltage, double totalSupplyCurrentAmps) {
+        voltageVsCurrent.add(totalSupplyCurrentAmps, supplyVoltage);
+
+        // Range of the current over roughly the last window, restarted every window so it stays O(1)
+        minCurrentAmps = Math.min(minCurrentAmps, totalSupplyCurrentAmps);
+        maxCurrentAmps = Math.max(maxCurrentAmps, totalSupplyCurrentAmps);
+        if (++samplesSinceRangeReset >= kWindowSize) {
+            currentSpreadAmps = maxCurrentAmps - minCurrentAmps;
+            minCurrentAmps = Double.POSITIVE_INFINITY;
+            maxCurrentAmps = Double.NEGATIVE_INFINITY;
+            samplesSinceRangeReset = 0;
+        }
+
+        double fittedResistance = -voltageVsCurrent.getSlope();
+        boolean isFitUsable = Math.max(currentSpreadAmps, maxCurrentAmps - minCurrentAmps) >= kMinCurrentSpreadAmps &&
+            fittedResistance >= kMinResistanceOhms && fittedResistance <= kMaxResistanceOhms;
+
+        resistanceOhms = isFitUsable ? fittedResistance : nominalResistanceOhms;
+        openCircuitVoltage = isFitUsable ?
+            voltageVsCurrent.getFittedY(0) :
+            // Without a fit, back out the open circuit voltage from this sample
+            supplyVoltage + resistanceOhms * totalSupplyCurrentAmps;
+        filteredCurrentAmps += kLoadFilterGain * (totalSupplyCurrentAmps - filteredCurrentAmps);
+        loadedVoltage = openCircuitVoltage - resistanceOhms * filteredCurrentAmps;
+    }
+
+    /** Fraction of the nominal top speed the motors can reach with the voltage left under the recent load */
+    public double getVelocityScale() {
+        return Math.max(0, Math.min(1, loadedVoltage / nominalVoltage));
+    }
+
+    public double getMaxAccelerationMetersPerSecSec(double speedMetersPerSec) {
+        double maxCurrentAmps = Math.max(0, openCircuitVoltage - minVoltage) / resistanceOhms;
+        double modulePowerWatts = minVoltage * maxCurrentAmps / numModules;
+
+        // A motor draws (back emf + R i) i, solve for the current i that uses up the module's share
+        double backEmfVolts = Math.abs(speedMetersPerSec) / wheelRadiusMeters / driveMotor.KvRadPerSecPerVolt;
+        double motorCurrentAmps = (
+            -backEmfVolts + Math.sqrt(backEmfVolts * backEmfVolts + 4 * driveMotor.rOhms * modulePowerWatts)
+        ) / (2 * driveMotor.rOhms);
+
+        return efficiency * numModules * driveMotor.getTorque(motorCurrentAmps) / wheelRadiusMeters / massKg;
+    }
+
+    public double getOpenCircuitVoltage() {
+        return openCircuitVoltage;
+    }
+
+    public double getResistanceOhms() {
+        return resistanceOhms;
+    }
+
+    public double getLoadedVoltage() {
+        return loadedVoltage;
+    }
+}
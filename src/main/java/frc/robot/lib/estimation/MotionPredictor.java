@@ -0,0 +1,204 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Estimates acceleration from the recent pose history and extrapolates the pose with it.
+ *
+ * <p>x, y and heading over a short window ending at the newest sample are each fit with a
+ * quadratic by least squares. The fitted field relative acceleration is turned into a robot
+ * relative one, which also picks up the centripetal term while turning, so a prediction drives the
+ * robot along its current arc while speeding up or slowing down. Predictions integrate the twist
+ * with {@link SwervePoseEstimator#exp} in a few sub steps and do not allocate.
+ */
+public class MotionPredictor {
+    private static final int kPredictionSteps = 4;
+    private static final int kMinFitSamples = 4;
+
+    private final double windowSeconds;
+    private final double maxTranslationalAcceleration;
+    private final double maxAngularAcceleration;
+
+    private double robotAxMetersPerSecSq = 0;
+    private double robotAyMetersPerSecSq = 0;
+    private double yawAccelerationRadPerSecSq = 0;
+
+    private final double[] fit = new double[3];
+
+    /**
+     * @param windowSeconds how much history the fit uses, long enough to average out sample noise
+     *     but short enough to follow changes in acceleration
+     * @param maxTranslationalAcceleration fitted accelerations are clamped to what the robot can do,
+     *     vision corrections inside the window otherwise look like huge accelerations
+     */
+    public MotionPredictor(double windowSeconds, double maxTranslationalAcceleration, double maxAngularAcceleration) {
+        this.windowSeconds = windowSeconds;
+        this.maxTranslationalAcceleration = maxTranslationalAcceleration;
+        this.maxAngularAcceleration = maxAngularAcceleration;
+    }
+
+    /**
+     * Refits the accelerations at the newest sample of the history.
+     *
+     * @return false if the window holds too few samples, the accelerations are zeroed
+     */
+    public boolean update(PoseHistoryBuffer history) {
+        robotAxMetersPerSecSq = 0;
+        robotAyMetersPerSecSq = 0;
+        yawAccelerationRadPerSecSq = 0;
+
+        int newest = history.size() - 1;
+        if (newest < 0) {
+            return false;
+        }
+
+        double latestTimestamp = history.getTimestamp(newest);
+        int oldest = newest;
+        while (oldest > 0 && history.getTimestamp(oldest - 1) >= latestTimestamp - windowSeconds) {
+            oldest--;
+        }
+        if (newest - oldest + 1 < kMinFitSamples) {
+            return false;
+        }
+
+        // A quadratic fit gives the acceleration at the middle of the window, not at its end, so the
+        // heading and velocities it is turned robot relative with are taken there too
+        double midpoint = (history.getTimestamp(oldest) - latestTimestamp) / 2;
+
+        if (!fitQuadratic(history, oldest, newest, 0)) {
+            return false;
+        }
+        double fieldVx = fit[1] + 2 * fit[2] * midpoint;
+        double fieldAx = 2 * fit[2];
+        fitQuadratic(history, oldest, newest, 1);
+        double fieldVy = fit[1] + 2 * fit[2] * midpoint;
+        double fieldAy = 2 * fit[2];
+        fitQuadratic(history, oldest, newest, 2);
+        double theta = fit[0] + fit[1] * midpoint + fit[2] * midpoint * midpoint;
+        double omega = fit[1] + 2 * fit[2] * midpoint;
+        double alpha = 2 * fit[2];
+
+        // d/dt of R(-theta) * v is R(-theta) * a minus omega cross the robot relative velocity
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        double robotVx = cos * fieldVx + sin * fieldVy;
+        double robotVy = -sin * fieldVx + cos * fieldVy;
+        double robotAx = cos * fieldAx + sin * fieldAy + omega * robotVy;
+        double robotAy = -sin * fieldAx + cos * fieldAy - omega * robotVx;
+
+        double accelerationMagnitude = Math.hypot(robotAx, robotAy);
+        if (accelerationMagnitude > maxTranslationalAcceleration) {
+            double scale = maxTranslationalAcceleration / accelerationMagnitude;
+            robotAx *= scale;
+            robotAy *= scale;
+        }
+
+        robotAxMetersPerSecSq = robotAx;
+        robotAyMetersPerSecSq = robotAy;
+        yawAccelerationRadPerSecSq = MathUtil.clamp(alpha, -maxAngularAcceleration, maxAngularAcceleration);
+        return true;
+    }
+
+    /**
+     * Least squares fit of value = c0 + c1 * t + c2 * t^2, t in seconds relative to the newest
+     * sample, into fit. Heading is unwrapped across the window first. Time is scaled by the window length to
+     * keep the normal equations well conditioned.
+     */
+    private boolean fitQuadratic(PoseHistoryBuffer history, int oldest, int newest, int axis) {
+        double latestTimestamp = history.getTimestamp(newest);
+
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double t0 = 0, t1 = 0, t2 = 0;
+        double unwrapped = 0;
+        double previous = 0;
+        for (int i = oldest; i <= newest; i++) {
+            double u = (history.getTimestamp(i) - latestTimestamp) / windowSeconds;
+            double value;
+            if (axis == 0) {
+                value = history.getX(i);
+            } else if (axis == 1) {
+                value = history.getY(i);
+            } else {
+                double theta = history.getTheta(i);
+                unwrapped = i == oldest ? theta : unwrapped + MathUtil.angleModulus(theta - previous);
+                previous = theta;
+                value = unwrapped;
+            }
+
+            double u2 = u * u;
+            s0 += 1;
+            s1 += u;
+            s2 += u2;
+            s3 += u2 * u;
+            s4 += u2 * u2;
+            t0 += value;
+            t1 += value * u;
+            t2 += value * u2;
+        }
+
+        // Cramer's rule on the symmetric 3x3 normal equations
+        double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2 * (s1 * s3 - s2 * s2);
+        if (Math.abs(det) < 1e-12) {
+            return false;
+        }
+        double c0 = (t0 * (s2 * s4 - s3 * s3) - s1 * (t1 * s4 - s3 * t2) + s2 * (t1 * s3 - s2 * t2)) / det;
+        double c1 = (s0 * (t1 * s4 - t2 * s3) - t0 * (s1 * s4 - s3 * s2) + s2 * (s1 * t2 - t1 * s2)) / det;
+        double c2 = (s0 * (s2 * t2 - s3 * t1) - s1 * (s1 * t2 - s2 * t1) + t0 * (s1 * s3 - s2 * s2)) / det;
+
+        fit[0] = c0;
+        fit[1] = c1 / windowSeconds;
+        fit[2] = c2 / (windowSeconds * windowSeconds);
+        return true;
+    }
+
+    public double getRobotAxMetersPerSecSq() {
+        return robotAxMetersPerSecSq;
+    }
+
+    public double getRobotAyMetersPerSecSq() {
+        return robotAyMetersPerSecSq;
+    }
+
+    public double getYawAccelerationRadPerSecSq() {
+        return yawAccelerationRadPerSecSq;
+    }
+
+    /**
+     * Extrapolates a pose with constant robot relative acceleration and constant yaw acceleration.
+     * Translation and heading can look ahead by different times, translation still follows the
+     * heading over its own lookahead.
+     *
+     * @param out filled with {x, y, theta}
+     */
+    public static void predict(
+        double x, double y, double theta,
+        double vx, double vy, double omega,
+        double ax, double ay, double alpha,
+        double translationLookaheadS,
+        double rotationLookaheadS,
+        double[] out
+    ) {
+        double dt = translationLookaheadS / kPredictionSteps;
+        double px = x;
+        double py = y;
+        double ptheta = theta;
+        for (int i = 0; i < kPredictionSteps; i++) {
+            // Midpoint velocities make each step exact for constant acceleration along a straight line
+            double t = (i + 0.5) * dt;
+            SwervePoseEstimator.exp(
+                px, py, ptheta,
+                (vx + ax * t) * dt,
+                (vy + ay * t) * dt,
+                (omega + alpha * t) * dt,
+                out
+            );
+            px = out[0];
+            py = out[1];
+            ptheta = out[2];
+        }
+
+        out[0] = px;
+        out[1] = py;
+        out[2] = MathUtil.angleModulus(theta + omega * rotationLookaheadS + 0.5 * alpha * rotationLookaheadS * rotationLookaheadS);
+    }
+}
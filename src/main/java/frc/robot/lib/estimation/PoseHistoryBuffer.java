@@ -0,0 +1,198 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Fixed capacity, time indexed pose history stored in parallel primitive arrays.
+ *
+ * <p>Replaces {@link edu.wpi.first.math.interpolation.TimeInterpolatableBuffer} for pose history.
+ * Samples are appended in timestamp order into a circular buffer, old samples are dropped by moving
+ * the head index, and lookups binary search the ring and interpolate between the two neighbouring
+ * samples. Nothing here allocates after construction.
+ */
+public class PoseHistoryBuffer {
+    private final double historySeconds;
+    private final int capacity;
+
+    private final double[] timestamps;
+    private final double[] xMeters;
+    private final double[] yMeters;
+    private final double[] thetaRad;
+
+    private int head = 0; // index of the oldest sample
+    private int size = 0;
+
+    /**
+     * @param historySeconds how far back from the newest sample to keep samples
+     * @param capacity maximum number of samples, should cover historySeconds at the sample rate
+     */
+    public PoseHistoryBuffer(double historySeconds, int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Pose history buffer capacity must be at least 2");
+        }
+        this.historySeconds = historySeconds;
+        this.capacity = capacity;
+
+        timestamps = new double[capacity];
+        xMeters = new double[capacity];
+        yMeters = new double[capacity];
+        thetaRad = new double[capacity];
+    }
+
+    /** Creates a buffer sized for historySeconds of samples at sampleRateHz, with headroom for jitter. */
+    public static PoseHistoryBuffer createBuffer(double historySeconds, double sampleRateHz) {
+        return new PoseHistoryBuffer(historySeconds, (int) Math.ceil(historySeconds * sampleRateHz * 1.5) + 2);
+    }
+
+    /**
+     * Adds a sample. Samples older than the newest stored sample are ignored, a sample with the same
+     * timestamp as the newest one replaces it.
+     */
+    public void addSample(double timestamp, double x, double y, double theta) {
+        if (size > 0) {
+            double latestTimestamp = timestamps[physicalIndex(size - 1)];
+            if (timestamp < latestTimestamp) {
+                return;
+            }
+            if (timestamp == latestTimestamp) {
+                set(physicalIndex(size - 1), timestamp, x, y, theta);
+                return;
+            }
+        }
+
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+        set(physicalIndex(size), timestamp, x, y, theta);
+        size++;
+
+        // Evict samples that fell outside the history window
+        while (size > 1 && timestamps[head] < timestamp - historySeconds) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+    }
+
+    /**
+     * Interpolates the pose at the given timestamp. Timestamps outside the stored range are clamped
+     * to the oldest or newest sample.
+     *
+     * @param out filled with {x, y, theta}
+     * @return false if the buffer is empty
+     */
+    public boolean sample(double timestamp, double[] out) {
+        if (size == 0) {
+            return false;
+        }
+
+        int upper = ceilingIndex(timestamp);
+        if (upper <= 0) {
+            copyOut(physicalIndex(0), out);
+            return true;
+        }
+        if (upper >= size) {
+            copyOut(physicalIndex(size - 1), out);
+            return true;
+        }
+
+        int upperIndex = physicalIndex(upper);
+        int lowerIndex = physicalIndex(upper - 1);
+        double span = timestamps[upperIndex] - timestamps[lowerIndex];
+        double t = span > 0 ? (timestamp - timestamps[lowerIndex]) / span : 0;
+
+        out[0] = xMeters[lowerIndex] + (xMeters[upperIndex] - xMeters[lowerIndex]) * t;
+        out[1] = yMeters[lowerIndex] + (yMeters[upperIndex] - yMeters[lowerIndex]) * t;
+        out[2] = MathUtil.angleModulus(
+            thetaRad[lowerIndex] + MathUtil.angleModulus(thetaRad[upperIndex] - thetaRad[lowerIndex]) * t
+        );
+        return true;
+    }
+
+    /** Returns the logical index (0 = oldest) of the first sample at or after the timestamp, or size if none. */
+    public int ceilingIndex(double timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physicalIndex(mid)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public double getHistorySeconds() {
+        return historySeconds;
+    }
+
+    public double getOldestTimestamp() {
+        return timestamps[physicalIndex(0)];
+    }
+
+    public double getLatestTimestamp() {
+        return timestamps[physicalIndex(size - 1)];
+    }
+
+    /** Logical index accessors, 0 is the oldest sample and size() - 1 the newest */
+    public double getTimestamp(int index) {
+        return timestamps[physicalIndex(index)];
+    }
+
+    public double getX(int index) {
+        return xMeters[physicalIndex(index)];
+    }
+
+    public double getY(int index) {
+        return yMeters[physicalIndex(index)];
+    }
+
+    public double getTheta(int index) {
+        return thetaRad[physicalIndex(index)];
+    }
+
+    /** Overwrites the pose of an existing sample, keeping its timestamp */
+    public void setPose(int index, double x, double y, double theta) {
+        int physical = physicalIndex(index);
+        xMeters[physical] = x;
+        yMeters[physical] = y;
+        thetaRad[physical] = theta;
+    }
+
+    private int physicalIndex(int logicalIndex) {
+        int index = head + logicalIndex;
+        return index >= capacity ? index - capacity : index;
+    }
+
+    private void set(int physical, double timestamp, double x, double y, double theta) {
+        timestamps[physical] = timestamp;
+        xMeters[physical] = x;
+        yMeters[physical] = y;
+        thetaRad[physical] = theta;
+    }
+
+    private void copyOut(int physical, double[] out) {
+        out[0] = xMeters[physical];
+        out[1] = yMeters[physical];
+        out[2] = thetaRad[physical];
+    }
+}
@@ -0,0 +1,121 @@
+package frc.robot.lib.estimation;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Allocation-free swerve forward kinematics on primitive arrays.
+ *
+ * <p>The pseudo-inverse of the inverse kinematics matrix is computed once at construction, the
+ * same way {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics} does, and then applied to
+ * plain doubles so that it can run for every odometry sample without producing garbage.
+ */
+public class SwerveOdometryKinematics {
+    private final int numModules;
+    private final double[] moduleXMeters;
+    private final double[] moduleYMeters;
+
+    // 3 x (2 * numModules), rows are vx, vy, omega
+    private final double[][] forwardKinematics;
+
+    public SwerveOdometryKinematics(Translation2d... moduleLocationsMeters) {
+        numModules = moduleLocationsMeters.length;
+        moduleXMeters = new double[numModules];
+        moduleYMeters = new double[numModules];
+
+        SimpleMatrix inverseKinematics = new SimpleMatrix(numModules * 2, 3);
+        for (int i = 0; i < numModules; i++) {
+            moduleXMeters[i] = moduleLocationsMeters[i].getX();
+            moduleYMeters[i] = moduleLocationsMeters[i].getY();
+
+            inverseKinematics.setRow(i * 2, 0, 1, 0, -moduleYMeters[i]);
+            inverseKinematics.setRow(i * 2 + 1, 0, 0, 1, moduleXMeters[i]);
+        }
+
+        SimpleMatrix pseudoInverse = inverseKinematics.pseudoInverse();
+        forwardKinematics = new double[3][numModules * 2];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < numModules * 2; col++) {
+                forwardKinematics[row][col] = pseudoInverse.get(row, col);
+            }
+        }
+    }
+
+    public int getNumModules() {
+        return numModules;
+    }
+
+    public double getModuleXMeters(int module) {
+        return moduleXMeters[module];
+    }
+
+    public double getModuleYMeters(int module) {
+        return moduleYMeters[module];
+    }
+
+    /**
+     * Least squares chassis motion from module motion. Pass module velocities to get chassis
+     * speeds, or module distance deltas to get a twist.
+     *
+     * @param moduleMagnitudes velocity or distance delta of each module
+     * @param moduleAnglesRad steer angle of each module
+     * @param out filled with {x, y, theta}
+     */
+    public void toChassisMotion(double[] moduleMagnitudes, double[] moduleAnglesRad, double[] out) {
+        double x = 0;
+        double y = 0;
+        double theta = 0;
+        for (int i = 0; i < numModules; i++) {
+            double moduleX = moduleMagnitudes[i] * Math.cos(moduleAnglesRad[i]);
+            double moduleY = moduleMagnitudes[i] * Math.sin(moduleAnglesRad[i]);
+
+            x += forwardKinematics[0][i * 2] * moduleX + forwardKinematics[0][i * 2 + 1] * moduleY;
+            y += forwardKinematics[1][i * 2] * moduleX + forwardKinematics[1][i * 2 + 1] * moduleY;
+            theta += forwardKinematics[2][i * 2] * moduleX + forwardKinematics[2][i * 2 + 1] * moduleY;
+        }
+        out[0] = x;
+        out[1] = y;
+        out[2] = theta;
+    }
+
+    /**
+     * Weighted least squares chassis motion, modules with a weight of 0 are ignored. At least two
+     * modules need a non-zero weight for the rotation to be observable.
+     *
+     * @param weights relative trust in each module
+     * @param out filled with {x, y, theta}
+     * @return false if the weighted modules do not determine the motion, out is left unchanged
+     */
+    public boolean toChassisMotion(double[] moduleMagnitudes, double[] moduleAnglesRad, double[] weights, double[] out) {
+        // Normal equations of the inverse kinematics rows {1, 0, -y} and {0, 1, x}, n01 is always 0
+        double n00 = 0, n02 = 0, n11 = 0, n12 = 0, n22 = 0;
+        double b0 = 0, b1 = 0, b2 = 0;
+        for (int i = 0; i < numModules; i++) {
+            double w = weights[i];
+            if (w <= 0) {
+                continue;
+            }
+            double moduleX = moduleMagnitudes[i] * Math.cos(moduleAnglesRad[i]);
+            double moduleY = moduleMagnitudes[i] * Math.sin(moduleAnglesRad[i]);
+
+            n00 += w;
+            n11 += w;
+            n02 -= w * moduleYMeters[i];
+            n12 += w * moduleXMeters[i];
+            n22 += w * (moduleXMeters[i] * moduleXMeters[i] + moduleYMeters[i] * moduleYMeters[i]);
+            b0 += w * moduleX;
+            b1 += w * moduleY;
+            b2 += w * (moduleXMeters[i] * moduleY - moduleYMeters[i] * moduleX);
+        }
+
+        double det = n00 * (n11 * n22 - n12 * n12) - n02 * n02 * n11;
+        if (Math.abs(det) < 1e-9) {
+            return false;
+        }
+        out[0] = (b0 * (n11 * n22 - n12 * n12) + n02 * (b1 * n12 - n11 * b2)) / det;
+        out[1] = (n00 * (b1 * n22 - n12 * b2) + n02 * (n12 * b0 - n02 * b1)) / det;
+        out[2] = (n00 * (n11 * b2 - b1 * n12) - n02 * n11 * b0) / det;
+        return true;
+    }
+}
@@ -0,0 +1,352 @@
+package frc.robot.lib.estimation;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Latency compensated pose estimator that works on primitive odometry deltas.
+ *
+ * <p>Every odometry sample is stored as a robot relative twist together with the estimated pose it
+ * produced. When a delayed vision measurement arrives the estimator rewinds to the measurement
+ * timestamp, blends the measurement into the pose at that time with a steady state Kalman gain (the
+ * same gain {@link edu.wpi.first.math.estimator.PoseEstimator} uses), and replays the stored twists
+ * forward in place. The cost of a measurement is bounded by the number of samples newer than it and
+ * nothing is allocated after construction.
+ */
+public class SwervePoseEstimator {
+    private final PoseHistoryBuffer poseHistory;
+    private final PoseHistoryBuffer twistHistory;
+
+    private final double[] stateVariances = new double[3];
+
+    private double xMeters = 0;
+    private double yMeters = 0;
+    private double thetaRad = 0;
+
+    private int lastReplayedSampleCount = 0;
+
+    // scratch space, {x, y, theta}
+    private final double[] scratchPose = new double[3];
+    private final double[] scratchTwist = new double[3];
+
+    /**
+     * @param stateStdDevs standard deviations of the odometry state {x, y, theta}
+     * @param historySeconds how far back vision measurements can be applied
+     * @param sampleRateHz odometry sample rate, used to size the history
+     */
+    public SwervePoseEstimator(double[] stateStdDevs, double historySeconds, double sampleRateHz) {
+        poseHistory = PoseHistoryBuffer.createBuffer(historySeconds, sampleRateHz);
+        twistHistory = PoseHistoryBuffer.createBuffer(historySeconds, sampleRateHz);
+        setStateStdDevs(stateStdDevs);
+    }
+
+    public void setStateStdDevs(double[] stateStdDevs) {
+        for (int i = 0; i < 3; i++) {
+            stateVariances[i] = stateStdDevs[i] * stateStdDevs[i];
+        }
+    }
+
+    /** Resets the estimate to a pose and forgets all history */
+    public void resetPose(double x, double y, double theta) {
+        xMeters = x;
+        yMeters = y;
+        thetaRad = MathUtil.angleModulus(theta);
+
+        poseHistory.clear();
+        twistHistory.clear();
+    }
+
+    /**
+     * Applies one odometry sample.
+     *
+     * @param timestamp sample time in seconds
+     * @param dx robot relative forward displacement since the last sample
+     * @param dy robot relative left displacement since the last sample
+     * @param dtheta heading change since the last sample
+     */
+    public void addOdometry(double timestamp, double dx, double dy, double dtheta) {
+        // keep both histories strictly increasing in time so their indices stay in lockstep
+        if (!poseHistory.isEmpty() && timestamp <= poseHistory.getLatestTimestamp()) {
+            timestamp = poseHistory.getLatestTimestamp() + 1e-6;
+        }
+
+        exp(xMeters, yMeters, thetaRad, dx, dy, dtheta, scratchPose);
+        xMeters = scratchPose[0];
+        yMeters = scratchPose[1];
+        thetaRad = scratchPose[2];
+
+        poseHistory.addSample(timestamp, xMeters, yMeters, thetaRad);
+        twistHistory.addSample(timestamp, dx, dy, dtheta);
+    }
+
+    /**
+     * Fuses a vision measurement taken at a past timestamp.
+     *
+     * @return false if the measurement is older than the stored history and was ignored
+     */
+    public boolean addVisionMeasurement(
+        double timestamp,
+        double visionX,
+        double visionY,
+        double visionTheta,
+        double stdDevX,
+        double stdDevY,
+        double stdDevTheta
+    ) {
+        lastReplayedSampleCount = 0;
+        if (!isInHistory(timestamp)) {
+            return false;
+        }
+
+        int upper = fuse(timestamp, visionX, visionY, visionTheta, stdDevX, stdDevY, stdDevTheta);
+        replay(upper + 1, poseHistory.size());
+        lastReplayedSampleCount = poseHistory.size() - upper;
+        return true;
+    }
+
+    /**
+     * Fuses a batch of vision measurements with a single replay pass. Each measurement only replays
+     * odometry up to the sample the next measurement lands in, so the history after the oldest
+     * measurement is rewritten once instead of once per measurement.
+     *
+     * @param count number of measurements to read from the arrays
+     * @param timestamps measurement timestamps, must be sorted oldest first
+     * @return number of measurements that were inside the history and applied
+     */
+    public int addVisionMeasurements(
+        int count,
+        double[] timestamps,
+        double[] visionX,
+        double[] visionY,
+        double[] visionTheta,
+        double[] stdDevX,
+        double[] stdDevY,
+        double[] stdDevTheta
+    ) {
+        lastReplayedSampleCount = 0;
+        int size = poseHistory.size();
+        int firstUpper = -1;
+        int applied = 0;
+
+        for (int k = 0; k < count; k++) {
+            if (!isInHistory(timestamps[k])) {
+                continue;
+            }
+
+            int upper = fuse(timestamps[k], visionX[k], visionY[k], visionTheta[k], stdDevX[k], stdDevY[k], stdDevTheta[k]);
+            if (firstUpper < 0) {
+                firstUpper = upper;
+            }
+            applied++;
+
+            // The next measurement starts from the pose of the sample it lands in, replay through that sample
+            int stop = size;
+            for (int next = k + 1; next < count; next++) {
+                if (isInHistory(timestamps[next])) {
+                    stop = Math.min(poseHistory.ceilingIndex(timestamps[next]) + 1, size);
+                    break;
+                }
+            }
+            replay(upper + 1, stop);
+        }
+
+        if (applied > 0) {
+            lastReplayedSampleCount = size - firstUpper;
+        }
+        return applied;
+    }
+
+    /** True if a measurement at this timestamp would be applied instead of dropped as older than the history */
+    public boolean isInHistory(double timestamp) {
+        return !poseHistory.isEmpty() && timestamp >= poseHistory.getOldestTimestamp();
+    }
+
+    /**
+     * Blends one measurement into the pose history at its timestamp and rewrites the pose of the
+     * sample it lands in. Samples after that one are not replayed.
+     *
+     * @return logical index of the rewritten sample
+     */
+    private int fuse(
+        double timestamp,
+        double visionX,
+        double visionY,
+        double visionTheta,
+        double stdDevX,
+        double stdDevY,
+        double stdDevTheta
+    ) {
+        int size = poseHistory.size();
+        int upper = poseHistory.ceilingIndex(timestamp);
+
+        // How much of the twist into the upper sample happened after the measurement
+        double fractionAfter;
+        if (upper >= size) {
+            upper = size - 1;
+            fractionAfter = 0;
+        } else if (upper == 0 || poseHistory.getTimestamp(upper) == timestamp) {
+            fractionAfter = 0;
+        } else {
+            double lowerTimestamp = poseHistory.getTimestamp(upper - 1);
+            double upperTimestamp = poseHistory.getTimestamp(upper);
+            fractionAfter = (upperTimestamp - timestamp) / (upperTimestamp - lowerTimestamp);
+        }
+
+        // Pose at the measurement timestamp, found by undoing the rest of the twist from the upper
+        // sample. Working back from the upper sample means an earlier correction to it is kept.
+        exp(
+            poseHistory.getX(upper), poseHistory.getY(upper), poseHistory.getTheta(upper),
+            -twistHistory.getX(upper) * fractionAfter,
+            -twistHistory.getY(upper) * fractionAfter,
+            -twistHistory.getTheta(upper) * fractionAfter,
+            scratchPose
+        );
+        double poseX = scratchPose[0];
+        double poseY = scratchPose[1];
+        double poseTheta = scratchPose[2];
+
+        // Scale the twist from the estimate to the measurement by the Kalman gain and apply it
+        log(poseX, poseY, poseTheta, visionX, visionY, visionTheta, scratchTwist);
+        exp(
+            poseX, poseY, poseTheta,
+            scratchTwist[0] * gain(stateVariances[0], stdDevX),
+            scratchTwist[1] * gain(stateVariances[1], stdDevY),
+            scratchTwist[2] * gain(stateVariances[2], stdDevTheta),
+            scratchPose
+        );
+
+        // Finish the interrupted sample from the corrected pose
+        exp(
+            scratchPose[0], scratchPose[1], scratchPose[2],
+            twistHistory.getX(upper) * fractionAfter,
+            twistHistory.getY(upper) * fractionAfter,
+            twistHistory.getTheta(upper) * fractionAfter,
+            scratchPose
+        );
+        poseHistory.setPose(upper, scratchPose[0], scratchPose[1], scratchPose[2]);
+        return upper;
+    }
+
+    /** Re-integrates the stored twists for logical indices [from, to) and refreshes the latest pose */
+    private void replay(int from, int to) {
+        for (int i = from; i < to; i++) {
+            exp(
+                poseHistory.getX(i - 1), poseHistory.getY(i - 1), poseHistory.getTheta(i - 1),
+                twistHistory.getX(i), twistHistory.getY(i), twistHistory.getTheta(i),
+                scratchPose
+            );
+            poseHistory.setPose(i, scratchPose[0], scratchPose[1], scratchPose[2]);
+        }
+
+        int latest = poseHistory.size() - 1;
+        xMeters = poseHistory.getX(latest);
+        yMeters = poseHistory.getY(latest);
+        thetaRad = poseHistory.getTheta(latest);
+    }
+
+    public double getX() {
+        return xMeters;
+    }
+
+    public double getY() {
+        return yMeters;
+    }
+
+    public double getTheta() {
+        return thetaRad;
+    }
+
+    /** Number of samples rewritten by the last vision measurement */
+    public int getLastReplayedSampleCount() {
+        return lastReplayedSampleCount;
+    }
+
+    /**
+     * Interpolates the estimated pose history at a timestamp.
+     *
+     * @param out filled with {x, y, theta}
+     * @return false if there is no history
+     */
+    public boolean samplePose(double timestamp, double[] out) {
+        return poseHistory.sample(timestamp, out);
+    }
+
+    /** Read-only view of the estimated pose history */
+    public PoseHistoryBuffer getPoseHistory() {
+        return poseHistory;
+    }
+
+    public boolean hasHistory() {
+        return !poseHistory.isEmpty();
+    }
+
+    public double getLatestTimestamp() {
+        return poseHistory.getLatestTimestamp();
+    }
+
+    /** Fraction of the translation error a measurement with this std dev corrects */
+    public double getTranslationGain(double measurementStdDev) {
+        return gain(stateVariances[0], measurementStdDev);
+    }
+
+    private static double gain(double stateVariance, double measurementStdDev) {
+        if (stateVariance == 0) {
+            return 0;
+        }
+        double measurementVariance = measurementStdDev * measurementStdDev;
+        return stateVariance / (stateVariance + Math.sqrt(stateVariance * measurementVariance));
+    }
+
+    /** Pose2d.exp on primitives. out may alias nothing that is still needed. */
+    public static void exp(double x, double y, double theta, double dx, double dy, double dtheta, double[] out) {
+        double sinTheta = Math.sin(dtheta);
+        double cosTheta = Math.cos(dtheta);
+
+        double s;
+        double c;
+        if (Math.abs(dtheta) < 1e-9) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = 0.5 * dtheta;
+        } else {
+            s = sinTheta / dtheta;
+            c = (1 - cosTheta) / dtheta;
+        }
+
+        double localX = dx * s - dy * c;
+        double localY = dx * c + dy * s;
+
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        out[0] = x + localX * cos - localY * sin;
+        out[1] = y + localX * sin + localY * cos;
+        out[2] = MathUtil.angleModulus(theta + dtheta);
+    }
+
+    /** Pose2d.log on primitives, the twist that takes the start pose to the end pose. */
+    public static void log(
+        double startX, double startY, double startTheta,
+        double endX, double endY, double endTheta,
+        double[] out
+    ) {
+        double cos = Math.cos(startTheta);
+        double sin = Math.sin(startTheta);
+        double globalDx = endX - startX;
+        double globalDy = endY - startY;
+        double transformX = globalDx * cos + globalDy * sin;
+        double transformY = -globalDx * sin + globalDy * cos;
+
+        double dtheta = MathUtil.angleModulus(endTheta - startTheta);
+        double halfDtheta = dtheta / 2.0;
+        double cosMinusOne = Math.cos(dtheta) - 1;
+
+        double halfThetaByTanOfHalfDtheta;
+        if (Math.abs(cosMinusOne) < 1e-9) {
+            halfThetaByTanOfHalfDtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        } else {
+            halfThetaByTanOfHalfDtheta = -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+        }
+
+        out[0] = transformX * halfThetaByTanOfHalfDtheta + transformY * halfDtheta;
+        out[1] = -transformX * halfDtheta + transformY * halfThetaByTanOfHalfDtheta;
+        out[2] = dtheta;
+    }
+}
@@ -0,0 +1,304 @@
+package frc.robot.lib.estimation;
+
+/**
+ * Scores, gates and fuses all vision observations collected during one loop as a batch.
+ *
+ * <p>Observations older than the estimator's history are dropped first, the estimator would ignore
+ * them. Each remaining observation gets translation and heading std devs from its tag count, average tag
+ * distance, worst tag ambiguity and the current yaw rate. It is then compared against the
+ * estimated pose at its timestamp and dropped if its squared Mahalanobis distance, using the gate
+ * covariance plus the observation's own variance, is above the threshold. The survivors are sorted
+ * by timestamp and handed to {@link SwervePoseEstimator#addVisionMeasurements} so the odometry
+ * history is replayed once for the whole batch.
+ *
+ * <p>The gate covariance is a single translation variance that grows with distance driven and
+ * shrinks with every accepted observation by the share of the error the estimator's gain removes.
+ * If every observation is rejected for a while the estimate is assumed to be lost and the
+ * covariance is reopened so vision can pull it back.
+ */
+public class VisionBatchFilter {
+    // Unknown start pose, and what the gate reopens to after a long rejection streak
+    private static final double kLostVariance = 1e6;
+    private static final int kMaxRejectionStreak = 15;
+    private static final double kMinStdDev = 1e-3;
+
+    private final int capacity;
+
+    private double translationDevBase = 0;
+    private double thetaDevBase = 0;
+    private double ambiguityDevScalar = 0;
+    private double yawRateDevScalar = 0;
+    private double mahalanobisThreshold = Double.POSITIVE_INFINITY;
+    private double driftDevPerMeter = 0;
+
+    private double gateVariance = kLostVariance;
+    private int rejectionStreak = 0;
+
+    // Pending batch, in arrival order
+    private int pendingCount = 0;
+    private final double[] pendingTimestamps;
+    private final double[] pendingX;
+    private final double[] pendingY;
+    private final double[] pendingTheta;
+    private final int[] pendingTagCounts;
+    private final double[] pendingAvgTagDist;
+    private final double[] pendingAmbiguity;
+    private final int[] pendingCameraIndices;
+    private final int[] pendingScaleOrdinals;
+
+    // Accepted observations, sorted oldest first
+    private int acceptedCount = 0;
+    private final int[] order;
+    private final double[] acceptedTimestamps;
+    private final double[] acceptedX;
+    private final double[] acceptedY;
+    private final double[] acceptedTheta;
+    private final double[] acceptedStdDevX;
+    private final double[] acceptedStdDevY;
+    private final double[] acceptedStdDevTheta;
+    private final int[] acceptedCameraIndices;
+    private final int[] acceptedScaleOrdinals;
+    private final double[] pendingStdDevTranslation;
+    private final double[] pendingStdDevTheta;
+
+    private int lastRejectedCount = 0;
+    private int lastStaleCount = 0;
+    private double lastMaxMahalanobisSquared = 0;
+
+    private final double[] estimateSample = new double[3];
+
+    public VisionBatchFilter(int capacity) {
+        this.capacity = capacity;
+
+        pendingTimestamps = new double[capacity];
+        pendingX = new double[capacity];
+        pendingY = new double[capacity];
+        pendingTheta = new double[capacity];
+        pendingTagCounts = new int[capacity];
+        pendingAvgTagDist = new double[capacity];
+        pendingAmbiguity = new double[capacity];
+        pendingCameraIndices = new int[capacity];
+        pendingScaleOrdinals = new int[capacity];
+        pendingStdDevTranslation = new double[capacity];
+        pendingStdDevTheta = new double[capacity];
+
+        order = new int[capacity];
+        acceptedTimestamps = new double[capacity];
+        acceptedX = new double[capacity];
+        acceptedY = new double[capacity];
+        acceptedTheta = new double[capacity];
+        acceptedStdDevX = new double[capacity];
+        acceptedStdDevY = new double[capacity];
+        acceptedStdDevTheta = new double[capacity];
+        acceptedCameraIndices = new int[capacity];
+        acceptedScaleOrdinals = new int[capacity];
+    }
+
+    /**
+     * @param translationDevBase translation std dev of one tag at one meter
+     * @param thetaDevBase heading std dev of one tag at one meter
+     * @param ambiguityDevScalar std devs are multiplied by 1 + this * ambiguity
+     * @param yawRateDevScalar std devs are multiplied by 1 + this * |yaw rate|, per rad/s
+     * @param mahalanobisThreshold squared Mahalanobis distance above which observations are rejected
+     * @param driftDevPerMeter growth of the gate std dev per meter driven
+     */
+    public void configure(
+        double translationDevBase,
+        double thetaDevBase,
+        double ambiguityDevScalar,
+        double yawRateDevScalar,
+        double mahalanobisThreshold,
+        double driftDevPerMeter
+    ) {
+        this.translationDevBase = translationDevBase;
+        this.thetaDevBase = thetaDevBase;
+        this.ambiguityDevScalar = ambiguityDevScalar;
+        this.yawRateDevScalar = yawRateDevScalar;
+        this.mahalanobisThreshold = mahalanobisThreshold;
+        this.driftDevPerMeter = driftDevPerMeter;
+    }
+
+    /** Grows the gate covariance for odometry drift, call with the translation of every odometry sample */
+    public void addOdometryDisplacement(double meters) {
+        double driftDev = driftDevPerMeter * meters;
+        gateVariance = Math.min(gateVariance + driftDev * driftDev, kLostVariance);
+    }
+
+    /**
+     * Adds a raw observation to the pending batch.
+     *
+     * @param cameraIndex carried through to {@link #getAcceptedCameraIndex(int)}
+     * @param scaleOrdinal carried through to {@link #getAcceptedScaleOrdinal(int)}
+     * @return false if the batch is full
+     */
+    public boolean add(
+        double timestamp,
+        double x,
+        double y,
+        double theta,
+        int tagCount,
+        double avgTagDistMeters,
+        double ambiguity,
+        int cameraIndex,
+        int scaleOrdinal
+    ) {
+        if (pendingCount >= capacity) {
+            return false;
+        }
+
+        pendingTimestamps[pendingCount] = timestamp;
+        pendingX[pendingCount] = x;
+        pendingY[pendingCount] = y;
+        pendingTheta[pendingCount] = theta;
+        pendingTagCounts[pendingCount] = tagCount;
+        pendingAvgTagDist[pendingCount] = avgTagDistMeters;
+        pendingAmbiguity[pendingCount] = ambiguity;
+        pendingCameraIndices[pendingCount] = cameraIndex;
+        pendingScaleOrdinals[pendingCount] = scaleOrdinal;
+        pendingCount++;
+        return true;
+    }
+
+    /**
+     * Scores and gates the pending batch, fuses the survivors into the estimator and clears the batch.
+     *
+     * @param yawRateRadPerSec current yaw rate, fast rotation blurs frames and skews timestamps
+     * @return number of observations fused
+     */
+    public int fuse(SwervePoseEstimator estimator, double yawRateRadPerSec) {
+        acceptedCount = 0;
+        lastRejectedCount = 0;
+        lastStaleCount = 0;
+        lastMaxMahalanobisSquared = 0;
+
+        double motionScale = 1 + yawRateDevScalar * Math.abs(yawRateRadPerSec);
+        for (int i = 0; i < pendingCount; i++) {
+            // Accepting these would shrink the gate for a correction that never happens
+            if (!estimator.isInHistory(pendingTimestamps[i])) {
+                lastStaleCount++;
+                continue;
+            }
+
+            int tagCount = Math.max(pendingTagCounts[i], 1);
+            double distanceScale = pendingAvgTagDist[i] * pendingAvgTagDist[i] / tagCount;
+            double scale = distanceScale * (1 + ambiguityDevScalar * pendingAmbiguity[i]) * motionScale;
+            pendingStdDevTranslation[i] = Math.max(translationDevBase * scale, kMinStdDev);
+            pendingStdDevTheta[i] = Math.max(thetaDevBase * scale, kMinStdDev);
+
+            // In history, so there is a pose to gate against
+            estimator.samplePose(pendingTimestamps[i], estimateSample);
+            double dx = pendingX[i] - estimateSample[0];
+            double dy = pendingY[i] - estimateSample[1];
+            double innovationVariance = gateVariance + pendingStdDevTranslation[i] * pendingStdDevTranslation[i];
+            double mahalanobisSquared = (dx * dx + dy * dy) / innovationVariance;
+            lastMaxMahalanobisSquared = Math.max(lastMaxMahalanobisSquared, mahalanobisSquared);
+
+            if (mahalanobisSquared > mahalanobisThreshold) {
+                lastRejectedCount++;
+                continue;
+            }
+            order[acceptedCount++] = i;
+        }
+
+        if (acceptedCount == 0) {
+            rejectionStreak += lastRejectedCount;
+            if (rejectionStreak >= kMaxRejectionStreak) {
+                // Every recent observation disagrees with us, trust vision over the estimate again
+                gateVariance = kLostVariance;
+                rejectionStreak = 0;
+            }
+        } else {
+            rejectionStreak = 0;
+        }
+
+        // Insertion sort by timestamp, batches are a handful of observations and usually almost sorted
+        for (int i = 1; i < acceptedCount; i++) {
+            int index = order[i];
+            int j = i - 1;
+            while (j >= 0 && pendingTimestamps[order[j]] > pendingTimestamps[index]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+
+        for (int k = 0; k < acceptedCount; k++) {
+            int i = order[k];
+            acceptedTimestamps[k] = pendingTimestamps[i];
+            acceptedX[k] = pendingX[i];
+            acceptedY[k] = pendingY[i];
+            acceptedTheta[k] = pendingTheta[i];
+            acceptedStdDevX[k] = pendingStdDevTranslation[i];
+            acceptedStdDevY[k] = pendingStdDevTranslation[i];
+            acceptedStdDevTheta[k] = pendingStdDevTheta[i];
+            acceptedCameraIndices[k] = pendingCameraIndices[i];
+            acceptedScaleOrdinals[k] = pendingScaleOrdinals[i];
+
+            // The estimator only removes its own gain's share of the error, shrink the gate by that much
+            double gain = estimator.getTranslationGain(pendingStdDevTranslation[i]);
+            double measurementVariance = pendingStdDevTranslation[i] * pendingStdDevTranslation[i];
+            gateVariance = (1 - gain) * (1 - gain) * gateVariance + gain * gain * measurementVariance;
+        }
+
+        pendingCount = 0;
+        if (acceptedCount == 0) {
+            return 0;
+        }
+        return estimator.addVisionMeasurements(
+            acceptedCount,
+            acceptedTimestamps,
+            acceptedX,
+            acceptedY,
+            acceptedTheta,
+            acceptedStdDevX,
+            acceptedStdDevY,
+            acceptedStdDevTheta
+        );
+    }
+
+    /** Observations accepted by the last {@link #fuse} call, oldest first */
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public int getAcceptedCameraIndex(int index) {
+        return acceptedCameraIndices[index];
+    }
+
+    public int getAcceptedScaleOrdinal(int index) {
+        return acceptedScaleOrdinals[index];
+    }
+
+    public double getAcceptedX(int index) {
+        return acceptedX[index];
+    }
+
+    public double getAcceptedY(int index) {
+        return acceptedY[index];
+    }
+
+    public double getAcceptedTheta(int index) {
+        return acceptedTheta[index];
+    }
+
+    public double getAcceptedStdDevTranslation(int index) {
+        return acceptedStdDevX[index];
+    }
+
+    public int getLastRejectedCount() {
+        return lastRejectedCount;
+    }
+
+    /** Observations dropped by the last {@link #fuse} call for being older than the estimator's history */
+    public int getLastStaleCount() {
+        return lastStaleCount;
+    }
+
+    public double getLastMaxMahalanobisSquared() {
+        return lastMaxMahalanobisSquared;
+    }
+
+    public double getGateStdDev() {
+        return Math.sqrt(gateVariance);
+    }
+}
@@ -0,0 +1,140 @@
+package frc.robot.lib.estimation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free single producer / single consumer queue of raw vision pose observations.
+ *
+ * <p>Observations are copied into preallocated parallel primitive arrays, so a camera thread can
+ * hand samples to the main loop without taking {@link frc.robot.subsystems.swerve.SwerveDrive#odometryLock}
+ * or allocating. Exactly one thread may call {@link #offer} and exactly one thread may call
+ * {@link #poll}. When the queue is full new observations are dropped and counted.
+ */
+public class VisionObservationQueue {
+    /** Mutable holder that {@link #poll} copies an observation into */
+    public static final class Sample {
+        public double timestampSeconds;
+        public double xMeters;
+        public double yMeters;
+        public double thetaRad;
+        public int tagCount;
+        public double avgTagDistMeters;
+        public double ambiguity;
+        public int cameraIndex;
+        public int scaleOrdinal;
+    }
+
+    private final int capacity;
+
+    private final double[] timestampsSeconds;
+    private final double[] xMeters;
+    private final double[] yMeters;
+    private final double[] thetaRad;
+    private final int[] tagCounts;
+    private final double[] avgTagDistMeters;
+    private final double[] ambiguities;
+    private final int[] cameraIndices;
+    private final int[] scaleOrdinals;
+
+    // Monotonic counters, the slot is the counter modulo capacity. lazySet publishes the slot
+    // contents before the counter without a full fence.
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public VisionObservationQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Vision observation queue capacity must be at least 1");
+        }
+        this.capacity = capacity;
+
+        timestampsSeconds = new double[capacity];
+        xMeters = new double[capacity];
+        yMeters = new double[capacity];
+        thetaRad = new double[capacity];
+        tagCounts = new int[capacity];
+        avgTagDistMeters = new double[capacity];
+        ambiguities = new double[capacity];
+        cameraIndices = new int[capacity];
+        scaleOrdinals = new int[capacity];
+    }
+
+    /**
+     * Adds an observation. Producer thread only.
+     *
+     * @param cameraIndex which camera saw the observation
+     * @param scaleOrdinal ordinal of the {@link frc.robot.RobotState.VisionObservationScale} requested when it was seen
+     * @return false if the queue was full and the observation was dropped
+     */
+    public boolean offer(
+        double timestamp,
+        double x,
+        double y,
+        double theta,
+        int tagCount,
+        double avgTagDist,
+        double ambiguity,
+        int cameraIndex,
+        int scaleOrdinal
+    ) {
+        long write = writeCount.get();
+        if (write - readCount.get() >= capacity) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+
+        int slot = (int) (write % capacity);
+        timestampsSeconds[slot] = timestamp;
+        xMeters[slot] = x;
+        yMeters[slot] = y;
+        thetaRad[slot] = theta;
+        tagCounts[slot] = tagCount;
+        avgTagDistMeters[slot] = avgTagDist;
+        ambiguities[slot] = ambiguity;
+        cameraIndices[slot] = cameraIndex;
+        scaleOrdinals[slot] = scaleOrdinal;
+
+        writeCount.lazySet(write + 1);
+        return true;
+    }
+
+    /**
+     * Copies the oldest observation into out and removes it. Consumer thread only.
+     *
+     * @return false if the queue is empty
+     */
+    public boolean poll(Sample out) {
+        long read = readCount.get();
+        if (read >= writeCount.get()) {
+            return false;
+        }
+
+        int slot = (int) (read % capacity);
+        out.timestampSeconds = timestampsSeconds[slot];
+        out.xMeters = xMeters[slot];
+        out.yMeters = yMeters[slot];
+        out.thetaRad = thetaRad[slot];
+        out.tagCount = tagCounts[slot];
+        out.avgTagDistMeters = avgTagDistMeters[slot];
+        out.ambiguity = ambiguities[slot];
+        out.cameraIndex = cameraIndices[slot];
+        out.scaleOrdinal = scaleOrdinals[slot];
+
+        readCount.lazySet(read + 1);
+        return true;
+    }
+
+    /** Approximate number of queued observations, exact when called from either owning thread */
+    public int size() {
+        return (int) (writeCount.get() - readCount.get());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Total observations dropped because the consumer fell behind */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,96 @@
+package frc.robot.lib.estimation;
+
+/**
+ * Flags modules whose motion does not fit a rigid body with the others.
+ *
+ * <p>Given the heading change, every module implies a chassis translation: its own displacement
+ * minus the part caused by rotation about the robot center. A module that grips agrees with the
+ * translation implied by the others, a slipping or skidding module does not. Modules are weighted
+ * down smoothly as their residual approaches the threshold and excluded above it. If fewer than two
+ * modules would be left the weights are all reset to 1, the sample is then only reported.
+ */
+public class WheelSlipDetector {
+    // Steer angle error alone produces a residual proportional to speed
+    private static final double kResidualSpeedFraction = 0.1;
+    // Samples closer together than this come from timestamp jitter, dividing by their dt would turn
+    // encoder noise into a huge residual
+    private static final double kMinDtSeconds = 0.002;
+
+    private final SwerveOdometryKinematics kinematics;
+    private final int numModules;
+    private final double residualThresholdMetersPerSec;
+
+    private final double[] translationX;
+    private final double[] translationY;
+    private final double[] residualsMetersPerSec;
+
+    public WheelSlipDetector(SwerveOdometryKinematics kinematics, double residualThresholdMetersPerSec) {
+        this.kinematics = kinematics;
+        this.residualThresholdMetersPerSec = residualThresholdMetersPerSec;
+        numModules = kinematics.getNumModules();
+
+        translationX = new double[numModules];
+        translationY = new double[numModules];
+        residualsMetersPerSec = new double[numModules];
+    }
+
+    /**
+     * @param distanceDeltasMeters each module's drive displacement over the sample
+     * @param anglesRad each module's steer angle
+     * @param dthetaRad heading change over the sample, from the gyro when available
+     * @param dtSeconds sample duration, raised to a minimum so jittered timestamps do not inflate the residual
+     * @param weights filled with each module's weight in [0, 1]
+     * @return number of modules above the threshold
+     */
+    public int update(double[] distanceDeltasMeters, double[] anglesRad, double dthetaRad, double dtSeconds, double[] weights) {
+        if (dtSeconds <= 0) {
+            for (int i = 0; i < numModules; i++) {
+                residualsMetersPerSec[i] = 0;
+                weights[i] = 1;
+            }
+            return 0;
+        }
+        dtSeconds = Math.max(dtSeconds, kMinDtSeconds);
+
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < numModules; i++) {
+            // Displacement at the module from rotating dtheta about the center is dtheta x r
+            translationX[i] = distanceDeltasMeters[i] * Math.cos(anglesRad[i]) + dthetaRad * kinematics.getModuleYMeters(i);
+            translationY[i] = distanceDeltasMeters[i] * Math.sin(anglesRad[i]) - dthetaRad * kinematics.getModuleXMeters(i);
+            sumX += translationX[i];
+            sumY += translationY[i];
+        }
+
+        double speed = Math.hypot(sumX, sumY) / numModules / dtSeconds;
+        double threshold = residualThresholdMetersPerSec + kResidualSpeedFraction * speed;
+
+        int slippingCount = 0;
+        for (int i = 0; i < numModules; i++) {
+            double othersX = (sumX - translationX[i]) / (numModules - 1);
+            double othersY = (sumY - translationY[i]) / (numModules - 1);
+            double residual = Math.hypot(translationX[i] - othersX, translationY[i] - othersY) / dtSeconds;
+            residualsMetersPerSec[i] = residual;
+
+            if (residual > threshold) {
+                weights[i] = 0;
+                slippingCount++;
+            } else {
+                double ratio = residual / threshold;
+                weights[i] = 1 / (1 + ratio * ratio);
+            }
+        }
+
+        if (numModules - slippingCount < 2) {
+            for (int i = 0; i < numModules; i++) {
+                weights[i] = 1;
+            }
+        }
+        return slippingCount;
+    }
+
+    /** Residual of each module from the last update */
+    public double getResidualMetersPerSec(int module) {
+        return residualsMetersPerSec[module];
+    }
+}
@@ -0,0 +1,224 @@
+package frc.robot.lib.util;
+
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.TimestampedDoubleArray;
+
+/**
+ * Cached, per camera alternative to the {@link LimelightHelpers} getters.
+ *
+ * <p>Every topic is resolved once when the client is created instead of on every call, and pose
+ * estimates are read with {@link #readQueue()} so each frame is decoded exactly once into reusable
+ * primitive samples instead of a new {@link LimelightHelpers.PoseEstimate} per call.
+ */
+public class LimelightClient {
+    private static final ConcurrentHashMap<String, LimelightClient> clients = new ConcurrentHashMap<>();
+
+    /** Returns the shared MegaTag2 client for a camera, creating it on first use */
+    public static LimelightClient getClient(String limelightName) {
+        return clients.computeIfAbsent(limelightName, name -> new LimelightClient(name, true));
+    }
+
+    public static final int kMaxSamplesPerRead = 16;
+    public static final int kMaxFiducials = 16;
+
+    // botpose array layout, see LimelightHelpers.getBotPoseEstimate
+    private static final int kPoseArrayHeaderLength = 11;
+    private static final int kValuesPerFiducial = 7;
+
+    /** One decoded pose estimate, reused between reads */
+    public static final class PoseSample {
+        public double timestampSeconds;
+        public double xMeters;
+        public double yMeters;
+        public double thetaRad;
+        public double latencyMs;
+        public int tagCount;
+        public double tagSpanMeters;
+        public double avgTagDistMeters;
+        public double avgTagArea;
+        // Worst single tag ambiguity, 0 if per fiducial values were not published
+        public double maxAmbiguity;
+
+        // Per fiducial values, valid up to fiducialCount
+        public int fiducialCount;
+        public final int[] fiducialIds = new int[kMaxFiducials];
+        public final double[] fiducialTxnc = new double[kMaxFiducials];
+        public final double[] fiducialTync = new double[kMaxFiducials];
+        public final double[] fiducialArea = new double[kMaxFiducials];
+        public final double[] fiducialDistToCameraMeters = new double[kMaxFiducials];
+        public final double[] fiducialDistToRobotMeters = new double[kMaxFiducials];
+        public final double[] fiducialAmbiguity = new double[kMaxFiducials];
+
+        /**
+         * Decodes a botpose array the same way {@link LimelightHelpers#getBotPoseEstimate} does,
+         * without allocating.
+         *
+         * @param timestampMicros NT arrival time of the value
+         * @return false if the array is empty or malformed
+         */
+        public boolean decode(double[] poseArray, long timestampMicros) {
+            if (poseArray.length < kPoseArrayHeaderLength) {
+                return false;
+            }
+
+            xMeters = poseArray[0];
+            yMeters = poseArray[1];
+            thetaRad = Units.degreesToRadians(poseArray[5]);
+            latencyMs = poseArray[6];
+            tagCount = (int) poseArray[7];
+            tagSpanMeters = poseArray[8];
+            avgTagDistMeters = poseArray[9];
+            avgTagArea = poseArray[10];
+
+            // Convert server timestamp from microseconds to seconds and adjust for latency
+            timestampSeconds = timestampMicros / 1e6 - latencyMs / 1000.0;
+
+            fiducialCount = 0;
+            maxAmbiguity = 0;
+            if (poseArray.length == kPoseArrayHeaderLength + kValuesPerFiducial * tagCount) {
+                fiducialCount = Math.min(tagCount, kMaxFiducials);
+                for (int i = 0; i < fiducialCount; i++) {
+                    int baseIndex = kPoseArrayHeaderLength + i * kValuesPerFiducial;
+                    fiducialIds[i] = (int) poseArray[baseIndex];
+                    fiducialTxnc[i] = poseArray[baseIndex + 1];
+                    fiducialTync[i] = poseArray[baseIndex + 2];
+                    fiducialArea[i] = poseArray[baseIndex + 3];
+                    fiducialDistToCameraMeters[i] = poseArray[baseIndex + 4];
+                    fiducialDistToRobotMeters[i] = poseArray[baseIndex + 5];
+                    fiducialAmbiguity[i] = poseArray[baseIndex + 6];
+                    maxAmbiguity = Math.max(maxAmbiguity, fiducialAmbiguity[i]);
+                }
+            }
+            return true;
+        }
+    }
+
+    private final String name;
+    private final boolean isMegaTag2;
+
+    private final DoubleArraySubscriber botPoseSubscriber;
+    private final DoubleSubscriber tvSubscriber;
+    private final DoubleSubscriber txSubscriber;
+    private final DoubleSubscriber tySubscriber;
+    private final DoubleSubscriber taSubscriber;
+    private final DoubleSubscriber heartbeatSubscriber;
+    private final DoubleSubscriber pipelineLatencySubscriber;
+    private final DoubleSubscriber captureLatencySubscriber;
+    private final DoubleArrayPublisher orientationPublisher;
+
+    private final double[] orientation = new double[6];
+
+    private final PoseSample[] samples = new PoseSample[kMaxSamplesPerRead];
+
+    /**
+     * @param isMegaTag2 read botpose_orb_wpiblue instead of botpose_wpiblue
+     */
+    public LimelightClient(String limelightName, boolean isMegaTag2) {
+        this.name = limelightName;
+        this.isMegaTag2 = isMegaTag2;
+
+        NetworkTable table = LimelightHelpers.getLimelightNTTable(limelightName);
+        botPoseSubscriber = table.getDoubleArrayTopic(isMegaTag2 ? "botpose_orb_wpiblue" : "botpose_wpiblue")
+            .subscribe(new double[] {}, PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(kMaxSamplesPerRead));
+        tvSubscriber = table.getDoubleTopic("tv").subscribe(0);
+        txSubscriber = table.getDoubleTopic("tx").subscribe(0);
+        tySubscriber = table.getDoubleTopic("ty").subscribe(0);
+        taSubscriber = table.getDoubleTopic("ta").subscribe(0);
+        heartbeatSubscriber = table.getDoubleTopic("hb").subscribe(0);
+        pipelineLatencySubscriber = table.getDoubleTopic("tl").subscribe(0);
+        captureLatencySubscriber = table.getDoubleTopic("cl").subscribe(0);
+        orientationPublisher = table.getDoubleArrayTopic("robot_orientation_set").publish();
+
+        for (int i = 0; i < kMaxSamplesPerRead; i++) {
+            samples[i] = new PoseSample();
+        }
+    }
+
+    /**
+     * Runs onFrames on the NetworkTables listener thread whenever new pose estimates arrive, so
+     * they can be read with {@link #readQueue()} there instead of in the main loop.
+     *
+     * @return the listener handle
+     */
+    public int addPoseListener(Runnable onFrames) {
+        return NetworkTableInstance.getDefault().addListener(
+            botPoseSubscriber,
+            EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+            event -> onFrames.run()
+        );
+    }
+
+    /**
+     * Decodes every pose estimate published since the last call. Frames that were already read are
+     * never returned again. Empty and malformed frames are skipped. The samples are reused, so only
+     * one thread may read a client.
+     *
+     * @return number of valid samples, readable through {@link #getSample(int)} until the next call
+     */
+    public int readQueue() {
+        TimestampedDoubleArray[] values = botPoseSubscriber.readQueue();
+        int count = 0;
+        for (int i = 0; i < values.length && count < kMaxSamplesPerRead; i++) {
+            if (samples[count].decode(values[i].value, values[i].timestamp)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public PoseSample getSample(int index) {
+        return samples[index];
+    }
+
+    public void setRobotOrientation(double yawDegrees, double yawRateDegreesPerSec) {
+        orientation[0] = yawDegrees;
+        orientation[1] = yawRateDegreesPerSec;
+        orientationPublisher.set(orientation);
+    }
+
+    public boolean getTV() {
+        return tvSubscriber.get() == 1.0;
+    }
+
+    public double getTX() {
+        return txSubscriber.get();
+    }
+
+    public double getTY() {
+        return tySubscriber.get();
+    }
+
+    public double getTA() {
+        return taSubscriber.get();
+    }
+
+    public double getHeartbeat() {
+        return heartbeatSubscriber.get();
+    }
+
+    public double getLatencyPipelineMs() {
+        return pipelineLatencySubscriber.get();
+    }
+
+    public double getLatencyCaptureMs() {
+        return captureLatencySubscriber.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isMegaTag2() {
+        return isMegaTag2;
+    }
+}
@@ -38,7 +38,10 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class LimelightHelpers {
 
-    private static final Map<String, DoubleArrayEntry> doubleArrayEntries = new ConcurrentHashMap<>();
+    // Resolved tables and entries, keyed by table name then entry name, so getters skip the NT lookup after the first call
+    private static final Map<String, NetworkTable> tables = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, NetworkTableEntry>> entries = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, DoubleArrayEntry>> doubleArrayEntries = new ConcurrentHashMap<>();
 
     /**
      * Represents a Color/Retroreflective Target Result extracted from JSON Output
@@ -610,6 +613,9 @@ public class LimelightHelpers {
 
     private static ObjectMapper mapper;
 
+    private static final Map<String, LimelightJsonDecoder> jsonDecoders = new ConcurrentHashMap<>();
+    private static final Map<String, LimelightResults> latestResults = new ConcurrentHashMap<>();
+
     /**
      * Print JSON Parse time to the console in milliseconds
      */
@@ -703,6 +709,7 @@ public class LimelightHelpers {
         return inData[position];
     }
 
+    // Allocates a PoseEstimate per call and may return the same frame twice, use LimelightClient.readQueue() in loops
     private static PoseEstimate getBotPoseEstimate(String limelightName, String entryName, boolean isMegaTag2) {
         DoubleArrayEntry poseEntry = LimelightHelpers.getLimelightDoubleArrayEntry(limelightName, entryName);
         
@@ -867,7 +874,12 @@ public class LimelightHelpers {
     }
 
     public static NetworkTable getLimelightNTTable(String tableName) {
-        return NetworkTableInstance.getDefault().getTable(sanitizeName(tableName));
+        NetworkTable table = tables.get(tableName);
+        if (table == null) {
+            table = NetworkTableInstance.getDefault().getTable(sanitizeName(tableName));
+            tables.put(tableName, table);
+        }
+        return table;
     }
 
     public static void Flush() {
@@ -875,15 +887,23 @@ public class LimelightHelpers {
     }
 
     public static NetworkTableEntry getLimelightNTTableEntry(String tableName, String entryName) {
-        return getLimelightNTTable(tableName).getEntry(entryName);
+        Map<String, NetworkTableEntry> tableEntries = entries.computeIfAbsent(tableName, k -> new ConcurrentHashMap<>());
+        NetworkTableEntry entry = tableEntries.get(entryName);
+        if (entry == null) {
+            entry = getLimelightNTTable(tableName).getEntry(entryName);
+            tableEntries.put(entryName, entry);
+        }
+        return entry;
     }
 
     public static DoubleArrayEntry getLimelightDoubleArrayEntry(String tableName, String entryName) {
-        String key = tableName + "/" + entryName;
-        return doubleArrayEntries.computeIfAbsent(key, k -> {
-            NetworkTable table = getLimelightNTTable(tableName);
-            return table.getDoubleArrayTopic(entryName).getEntry(new double[0]);
-        });
+        Map<String, DoubleArrayEntry> tableEntries = doubleArrayEntries.computeIfAbsent(tableName, k -> new ConcurrentHashMap<>());
+        DoubleArrayEntry entry = tableEntries.get(entryName);
+        if (entry == null) {
+            entry = getLimelightNTTable(tableName).getDoubleArrayTopic(entryName).getEntry(new double[0]);
+            tableEntries.put(entryName, entry);
+        }
+        return entry;
     }
     
     public static double getLimelightNTDouble(String tableName, String entryName) {
@@ -1618,10 +1638,75 @@ public class LimelightHelpers {
 
     /**
      * Gets the latest JSON results output and returns a LimelightResults object.
+     *
+     * <p>Decoded with a cached {@link LimelightJsonDecoder} per camera, which only reads the pose and
+     * fiducial fields, so the retro, detector, classifier and barcode targets are always empty. The
+     * same object is returned until the json topic changes, do not modify it. Use
+     * {@link #getLatestFullResults(String)} when every field is needed.
      * @param limelightName Name of the Limelight camera
-     * @return LimelightResults object containing all current target data
+     * @return LimelightResults object containing the current pose and fiducial data
      */
     public static LimelightResults getLatestResults(String limelightName) {
+        LimelightJsonDecoder decoder = jsonDecoders.computeIfAbsent(limelightName, LimelightJsonDecoder::new);
+        LimelightResults results = latestResults.get(limelightName);
+        if (!decoder.update() && results != null) {
+            return results;
+        }
+
+        results = toResults(decoder);
+        latestResults.put(limelightName, results);
+        if (profileJSON) {
+            System.out.printf("lljson: %.2f\r\n", results.latency_jsonParse);
+        }
+        return results;
+    }
+
+    /** Copies the fields the streaming decoder reads into a new LimelightResults */
+    static LimelightResults toResults(LimelightJsonDecoder decoder) {
+        LimelightResults results = new LimelightResults();
+        results.error = decoder.getError();
+        results.latency_jsonParse = decoder.getLastDecodeMs();
+        if (results.error != null) {
+            return results;
+        }
+
+        results.pipelineID = decoder.getPipelineIndex();
+        results.latency_pipeline = decoder.getLatencyPipelineMs();
+        results.latency_capture = decoder.getLatencyCaptureMs();
+        results.timestamp_LIMELIGHT_publish = decoder.getTimestampLimelightPublishMs();
+        results.timestamp_RIOFPGA_capture = decoder.getTimestampRioCaptureMs();
+        results.valid = decoder.isValid();
+        System.arraycopy(decoder.getBotPose(), 0, results.botpose, 0, 6);
+        System.arraycopy(decoder.getBotPoseWpiRed(), 0, results.botpose_wpired, 0, 6);
+        System.arraycopy(decoder.getBotPoseWpiBlue(), 0, results.botpose_wpiblue, 0, 6);
+        System.arraycopy(decoder.getCameraPoseRobotSpace(), 0, results.camerapose_robotspace, 0, 6);
+        results.botpose_tagcount = decoder.getBotPoseTagCount();
+        results.botpose_span = decoder.getBotPoseSpanMeters();
+        results.botpose_avgdist = decoder.getBotPoseAvgDistMeters();
+        results.botpose_avgarea = decoder.getBotPoseAvgArea();
+
+        results.targets_Fiducials = new LimelightTarget_Fiducial[decoder.getFiducialCount()];
+        for (int i = 0; i < results.targets_Fiducials.length; i++) {
+            LimelightJsonDecoder.Fiducial fiducial = decoder.getFiducial(i);
+            LimelightTarget_Fiducial target = new LimelightTarget_Fiducial();
+            target.fiducialID = fiducial.id;
+            target.tx = fiducial.tx;
+            target.ty = fiducial.ty;
+            target.ta = fiducial.ta;
+            System.arraycopy(fiducial.targetPoseRobotSpace, 0, target.targetPose_RobotSpace, 0, 6);
+            System.arraycopy(fiducial.robotPoseFieldSpace, 0, target.robotPose_FieldSpace, 0, 6);
+            results.targets_Fiducials[i] = target;
+        }
+        return results;
+    }
+
+    /**
+     * Gets the latest JSON results output with every field, data binding the whole dump on every call.
+     * Prefer {@link #getLatestResults(String)} in periodic code.
+     * @param limelightName Name of the Limelight camera
+     * @return LimelightResults object containing all current target data
+     */
+    public static LimelightResults getLatestFullResults(String limelightName) {
 
         long start = System.nanoTime();
         LimelightHelpers.LimelightResults results = new LimelightHelpers.LimelightResults();
@@ -0,0 +1,354 @@
+package frc.robot.lib.util;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import edu.wpi.first.networktables.StringSubscriber;
+
+/**
+ * Streaming json decoder behind {@link LimelightHelpers#getLatestResults(String)}.
+ *
+ * <p>Walks the Limelight json dump with a Jackson {@link JsonParser} and only keeps the pose and
+ * fiducial fields we use, writing them into pooled objects owned by the decoder. Everything else is
+ * skipped without being bound. {@link #update()} does nothing if the json topic has not changed
+ * since the last decode, so calling it every loop only costs a timestamp read.
+ */
+public class LimelightJsonDecoder {
+    public static final int kMaxFiducials = 16;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /** Pooled fiducial result, valid until the next decode */
+    public static final class Fiducial {
+        public int id;
+        public double tx;
+        public double ty;
+        public double ta;
+        // target pose in robot space {x, y, z, roll, pitch, yaw}, meters and degrees
+        public final double[] targetPoseRobotSpace = new double[6];
+        // robot pose in field space from this tag alone
+        public final double[] robotPoseFieldSpace = new double[6];
+    }
+
+    private final StringSubscriber jsonSubscriber;
+    private long lastDecodedChange = Long.MIN_VALUE;
+
+    // Decoded results
+    private boolean valid;
+    private double pipelineIndex;
+    private double latencyPipelineMs;
+    private double latencyCaptureMs;
+    private double timestampLimelightPublishMs;
+    private double timestampRioCaptureMs;
+    private final double[] botPose = new double[6];
+    private final double[] botPoseWpiRed = new double[6];
+    private final double[] botPoseWpiBlue = new double[6];
+    private final double[] cameraPoseRobotSpace = new double[6];
+    private int botPoseTagCount;
+    private double botPoseSpanMeters;
+    private double botPoseAvgDistMeters;
+    private double botPoseAvgArea;
+    private final Fiducial[] fiducials = new Fiducial[kMaxFiducials];
+    private int fiducialCount;
+    private String error = null;
+    private double lastDecodeMs = 0;
+
+    public LimelightJsonDecoder(String limelightName) {
+        jsonSubscriber = LimelightHelpers.getLimelightNTTable(limelightName).getStringTopic("json").subscribe("");
+        for (int i = 0; i < kMaxFiducials; i++) {
+            fiducials[i] = new Fiducial();
+        }
+    }
+
+    /** Decoder that is only fed through {@link #decode(String)}, e.g. from recorded dumps */
+    public LimelightJsonDecoder() {
+        jsonSubscriber = null;
+        for (int i = 0; i < kMaxFiducials; i++) {
+            fiducials[i] = new Fiducial();
+        }
+    }
+
+    /**
+     * Decodes the latest json dump if it changed since the last decode.
+     *
+     * @return true if the dump changed, even if it did not decode, {@link #getError()} tells
+     *     whether it did
+     */
+    public boolean update() {
+        if (jsonSubscriber == null) {
+            return false;
+        }
+        long lastChange = jsonSubscriber.getLastChange();
+        if (lastChange == lastDecodedChange) {
+            return false;
+        }
+        lastDecodedChange = lastChange;
+        decode(jsonSubscriber.get());
+        return true;
+    }
+
+    /**
+     * Decodes a json dump into the pooled results.
+     *
+     * @return false if the dump could not be parsed, see {@link #getError()}
+     */
+    public boolean decode(String json) {
+        long start = System.nanoTime();
+        reset();
+
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                error = "lljson error: expected an object";
+                return false;
+            }
+            parseResults(parser);
+        } catch (IOException e) {
+            error = "lljson error: " + e.getMessage();
+            return false;
+        } finally {
+            lastDecodeMs = (System.nanoTime() - start) * 1e-6;
+        }
+        return true;
+    }
+
+    private void parseResults(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                // older firmware nests everything under "Results"
+                case "Results":
+                    if (value == JsonToken.START_OBJECT) {
+                        parseResults(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "v":
+                    valid = parser.getValueAsInt() == 1;
+                    break;
+                case "pID":
+                    pipelineIndex = parser.getValueAsDouble();
+                    break;
+                case "tl":
+                    latencyPipelineMs = parser.getValueAsDouble();
+                    break;
+                case "cl":
+                    latencyCaptureMs = parser.getValueAsDouble();
+                    break;
+                case "ts":
+                    timestampLimelightPublishMs = parser.getValueAsDouble();
+                    break;
+                case "ts_rio":
+                    timestampRioCaptureMs = parser.getValueAsDouble();
+                    break;
+                case "botpose":
+                    readArray(parser, botPose);
+                    break;
+                case "botpose_wpired":
+                    readArray(parser, botPoseWpiRed);
+                    break;
+                case "botpose_wpiblue":
+                    readArray(parser, botPoseWpiBlue);
+                    break;
+                case "t6c_rs":
+                    readArray(parser, cameraPoseRobotSpace);
+                    break;
+                case "botpose_tagcount":
+                    botPoseTagCount = parser.getValueAsInt();
+                    break;
+                case "botpose_span":
+                    botPoseSpanMeters = parser.getValueAsDouble();
+                    break;
+                case "botpose_avgdist":
+                    botPoseAvgDistMeters = parser.getValueAsDouble();
+                    break;
+                case "botpose_avgarea":
+                    botPoseAvgArea = parser.getValueAsDouble();
+                    break;
+                case "Fiducial":
+                    parseFiducials(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+    }
+
+    private void parseFiducials(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (fiducialCount >= kMaxFiducials) {
+                parser.skipChildren();
+                continue;
+            }
+
+            Fiducial fiducial = fiducials[fiducialCount++];
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "fID":
+                        fiducial.id = parser.getValueAsInt();
+                        break;
+                    case "tx":
+                        fiducial.tx = parser.getValueAsDouble();
+                        break;
+                    case "ty":
+                        fiducial.ty = parser.getValueAsDouble();
+                        break;
+                    case "ta":
+                        fiducial.ta = parser.getValueAsDouble();
+                        break;
+                    case "t6t_rs":
+                        readArray(parser, fiducial.targetPoseRobotSpace);
+                        break;
+                    case "t6r_fs":
+                        readArray(parser, fiducial.robotPoseFieldSpace);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+    }
+
+    /** Reads a numeric array into out, ignoring extra elements and zero filling missing ones */
+    private static void readArray(JsonParser parser, double[] out) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        int i = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (i < out.length) {
+                out[i] = parser.getValueAsDouble();
+            }
+            i++;
+        }
+        for (; i < out.length; i++) {
+            out[i] = 0;
+        }
+    }
+
+    private void reset() {
+        valid = false;
+        pipelineIndex = 0;
+        latencyPipelineMs = 0;
+        latencyCaptureMs = 0;
+        timestampLimelightPublishMs = 0;
+        timestampRioCaptureMs = 0;
+        for (int i = 0; i < botPoseWpiBlue.length; i++) {
+            botPose[i] = 0;
+            botPoseWpiRed[i] = 0;
+            botPoseWpiBlue[i] = 0;
+            cameraPoseRobotSpace[i] = 0;
+        }
+        botPoseTagCount = 0;
+        botPoseSpanMeters = 0;
+        botPoseAvgDistMeters = 0;
+        botPoseAvgArea = 0;
+        // a fiducial that is missing fields must not keep the ones of an earlier dump
+        for (int i = 0; i < fiducialCount; i++) {
+            Fiducial fiducial = fiducials[i];
+            fiducial.id = 0;
+            fiducial.tx = 0;
+            fiducial.ty = 0;
+            fiducial.ta = 0;
+            for (int j = 0; j < fiducial.targetPoseRobotSpace.length; j++) {
+                fiducial.targetPoseRobotSpace[j] = 0;
+                fiducial.robotPoseFieldSpace[j] = 0;
+            }
+        }
+        fiducialCount = 0;
+        error = null;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public double getPipelineIndex() {
+        return pipelineIndex;
+    }
+
+    public double getLatencyPipelineMs() {
+        return latencyPipelineMs;
+    }
+
+    public double getLatencyCaptureMs() {
+        return latencyCaptureMs;
+    }
+
+    public double getTimestampLimelightPublishMs() {
+        return timestampLimelightPublishMs;
+    }
+
+    public double getTimestampRioCaptureMs() {
+        return timestampRioCaptureMs;
+    }
+
+    /** {x, y, z, roll, pitch, yaw}, meters and degrees, field center origin. Do not modify. */
+    public double[] getBotPose() {
+        return botPose;
+    }
+
+    /** {x, y, z, roll, pitch, yaw}, meters and degrees. Do not modify. */
+    public double[] getBotPoseWpiRed() {
+        return botPoseWpiRed;
+    }
+
+    /** {x, y, z, roll, pitch, yaw}, meters and degrees. Do not modify. */
+    public double[] getBotPoseWpiBlue() {
+        return botPoseWpiBlue;
+    }
+
+    /** {x, y, z, roll, pitch, yaw}, meters and degrees. Do not modify. */
+    public double[] getCameraPoseRobotSpace() {
+        return cameraPoseRobotSpace;
+    }
+
+    public int getBotPoseTagCount() {
+        return botPoseTagCount;
+    }
+
+    public double getBotPoseSpanMeters() {
+        return botPoseSpanMeters;
+    }
+
+    public double getBotPoseAvgDistMeters() {
+        return botPoseAvgDistMeters;
+    }
+
+    public double getBotPoseAvgArea() {
+        return botPoseAvgArea;
+    }
+
+    public int getFiducialCount() {
+        return fiducialCount;
+    }
+
+    public Fiducial getFiducial(int index) {
+        return fiducials[index];
+    }
+
+    /** Parse error of the last decode, null if it succeeded */
+    public String getError() {
+        return error;
+    }
+
+    /** Wall time of the last decode in milliseconds, comparable to LimelightResults.latency_jsonParse */
+    public double getLastDecodeMs() {
+        return lastDecodeMs;
+    }
+}
@@ -0,0 +1,168 @@
+package frc.robot.lib.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Delivers published values to listeners with a per listener delivery policy and times every
+ * listener.
+ *
+ * <p>{@link #publish} and {@link #flush} must be called from the main loop. Async listeners run
+ * on one shared daemon thread and only ever see the newest value, values published while a
+ * listener is still busy replace each other and are counted as skipped. Since their timing depends
+ * on the scheduler, async listeners must not feed anything that has to be reproducible in replay.
+ */
+public class ListenerDispatcher<T> {
+    public enum DeliveryPolicy {
+        /** Called inside every publish, on the main loop */
+        PER_SAMPLE,
+        /** Called once from flush with the newest value, if anything was published since the last flush */
+        ONCE_PER_LOOP,
+        /** Called on the dispatcher thread with the newest value, never blocks the main loop */
+        ASYNC_LATEST
+    }
+
+    private static ExecutorService asyncExecutor = null;
+
+    private static synchronized ExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            asyncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ListenerDispatcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        return asyncExecutor;
+    }
+
+    private final class Listener {
+        private final String name;
+        private final DeliveryPolicy policy;
+        private final Consumer<T> consumer;
+        private final String runMsLogKey;
+        private final String countLogKey;
+
+        // main loop policies, reset every flush
+        private long loopNanos = 0;
+        private int loopCallCount = 0;
+        private boolean isPending = false;
+
+        // async policy
+        private final AtomicReference<T> latestValue = new AtomicReference<>();
+        private final AtomicLong skippedCount = new AtomicLong();
+        private volatile long lastAsyncRunNanos = 0;
+
+        private final Runnable asyncTask = this::runAsync;
+
+        private Listener(String name, DeliveryPolicy policy, Consumer<T> consumer) {
+            this.name = name;
+            this.policy = policy;
+            this.consumer = consumer;
+            boolean isAsync = policy == DeliveryPolicy.ASYNC_LATEST;
+            runMsLogKey = logPrefix + "/" + name + (isAsync ? "/lastRunMs" : "/loopRunMs");
+            countLogKey = logPrefix + "/" + name + (isAsync ? "/skippedCount" : "/loopCallCount");
+        }
+
+        private void runTimed(T value) {
+            long start = System.nanoTime();
+            try {
+                consumer.accept(value);
+            } catch (RuntimeException e) {
+                // A broken listener must not take down the odometry update that published the value
+                reportFailure(e);
+            }
+            loopNanos += System.nanoTime() - start;
+            loopCallCount++;
+        }
+
+        private void runAsync() {
+            T value = latestValue.getAndSet(null);
+            if (value == null) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                consumer.accept(value);
+            } catch (RuntimeException e) {
+                reportFailure(e);
+            }
+            lastAsyncRunNanos = System.nanoTime() - start;
+        }
+
+        private void reportFailure(RuntimeException e) {
+            DriverStation.reportError("Listener " + name + " threw " + e, e.getStackTrace());
+        }
+    }
+
+    private final String logPrefix;
+    private final ArrayList<Listener> listeners = new ArrayList<>();
+
+    /** @param logPrefix listener timings are logged under logPrefix/listenerName */
+    public ListenerDispatcher(String logPrefix) {
+        this.logPrefix = logPrefix;
+    }
+
+    public void register(String name, DeliveryPolicy policy, Consumer<T> consumer) {
+        listeners.add(new Listener(name, policy, consumer));
+    }
+
+    /**
+     * @param value only called if a per sample or async listener needs the value, so values that are
+     *     expensive to build are not built for nothing
+     */
+    public void publish(Supplier<T> value) {
+        for (int i = 0; i < listeners.size(); i++) {
+            Listener listener = listeners.get(i);
+            switch (listener.policy) {
+                case PER_SAMPLE:
+                    listener.runTimed(value.get());
+                    break;
+
+                case ONCE_PER_LOOP:
+                    listener.isPending = true;
+                    break;
+
+                case ASYNC_LATEST:
+                    // Only schedule when nothing is waiting, a waiting task picks up the new value itself
+                    if (listener.latestValue.getAndSet(value.get()) == null) {
+                        getAsyncExecutor().execute(listener.asyncTask);
+                    } else {
+                        listener.skippedCount.incrementAndGet();
+                    }
+                    break;
+            }
+        }
+    }
+
+    /** Runs the pending once per loop listeners with the newest value and logs every listener's timing */
+    public void flush(T latestValue) {
+        for (int i = 0; i < listeners.size(); i++) {
+            Listener listener = listeners.get(i);
+            if (listener.policy == DeliveryPolicy.ONCE_PER_LOOP && listener.isPending) {
+                listener.isPending = false;
+                listener.runTimed(latestValue);
+            }
+
+            if (listener.policy == DeliveryPolicy.ASYNC_LATEST) {
+                Logger.recordOutput(listener.runMsLogKey, listener.lastAsyncRunNanos / 1e6);
+                Logger.recordOutput(listener.countLogKey, listener.skippedCount.get());
+            } else {
+                Logger.recordOutput(listener.runMsLogKey, listener.loopNanos / 1e6);
+                Logger.recordOutput(listener.countLogKey, listener.loopCallCount);
+                listener.loopNanos = 0;
+                listener.loopCallCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package frc.robot.lib.util;
+
+/**
+ * Percentiles of the last samples from a fixed bin histogram. Adding a sample is O(1), a
+ * percentile is O(bins) and exact to one bin width. Values above the range land in the last bin.
+ * Nothing is allocated after construction.
+ */
+public class RollingHistogram {
+    private final int[] sampleBins;
+    private final int[] binCounts;
+    private final double binWidth;
+    private int count = 0;
+    private int next = 0;
+
+    /** @param maxValue upper edge of the last bin, the lower edge of the first one is 0 */
+    public RollingHistogram(int capacity, double maxValue, int numBins) {
+        sampleBins = new int[capacity];
+        binCounts = new int[numBins];
+        binWidth = maxValue / numBins;
+    }
+
+    public void add(double value) {
+        int bin = (int) (value / binWidth);
+        bin = Math.max(0, Math.min(binCounts.length - 1, bin));
+
+        if (count == sampleBins.length) {
+            binCounts[sampleBins[next]]--;
+        } else {
+            count++;
+        }
+        sampleBins[next] = bin;
+        binCounts[bin]++;
+        next = (next + 1) % sampleBins.length;
+    }
+
+    public void clear() {
+        count = 0;
+        next = 0;
+        for (int i = 0; i < binCounts.length; i++) {
+            binCounts[i] = 0;
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param fraction 0.95 for the 95th percentile
+     * @return upper edge of the bin holding the percentile, 0 while empty
+     */
+    public double getPercentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+
+        int rank = (int) Math.ceil(fraction * count);
+        int seen = 0;
+        for (int i = 0; i < binCounts.length; i++) {
+            seen += binCounts[i];
+            if (seen >= rank) {
+                return (i + 1) * binWidth;
+            }
+        }
+        return binCounts.length * binWidth;
+    }
+}
@@ -0,0 +1,116 @@
+package frc.robot.lib.util;
+
+/**
+ * Least squares fit of y against x over the last samples, updated in O(1) per sample.
+ *
+ * <p>Running sums are kept for the samples in the window and the oldest sample is subtracted when
+ * it falls out. To keep rounding from piling up the sums are recomputed from the buffer once every
+ * capacity samples, which is still O(1) amortized. x is stored relative to the first sample so
+ * timestamps can be passed directly. Nothing is allocated after construction.
+ */
+public class RollingRegression {
+    private final double[] xs;
+    private final double[] ys;
+    private int count = 0;
+    private int next = 0;
+    private int addsSinceRecompute = 0;
+
+    private boolean hasOrigin = false;
+    private double xOrigin = 0;
+
+    private double sumX = 0;
+    private double sumY = 0;
+    private double sumXX = 0;
+    private double sumXY = 0;
+
+    public RollingRegression(int capacity) {
+        xs = new double[capacity];
+        ys = new double[capacity];
+    }
+
+    public void add(double x, double y) {
+        if (!hasOrigin) {
+            xOrigin = x;
+            hasOrigin = true;
+        }
+        x -= xOrigin;
+
+        if (count == xs.length) {
+            double oldX = xs[next];
+            double oldY = ys[next];
+            sumX -= oldX;
+            sumY -= oldY;
+            sumXX -= oldX * oldX;
+            sumXY -= oldX * oldY;
+        } else {
+            count++;
+        }
+
+        xs[next] = x;
+        ys[next] = y;
+        next = (next + 1) % xs.length;
+        sumX += x;
+        sumY += y;
+        sumXX += x * x;
+        sumXY += x * y;
+
+        if (++addsSinceRecompute >= xs.length) {
+            recomputeSums();
+        }
+    }
+
+    private void recomputeSums() {
+        addsSinceRecompute = 0;
+        sumX = 0;
+        sumY = 0;
+        sumXX = 0;
+        sumXY = 0;
+        for (int i = 0; i < count; i++) {
+            sumX += xs[i];
+            sumY += ys[i];
+            sumXX += xs[i] * xs[i];
+            sumXY += xs[i] * ys[i];
+        }
+    }
+
+    public void clear() {
+        count = 0;
+        next = 0;
+        addsSinceRecompute = 0;
+        hasOrigin = false;
+        recomputeSums();
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isFull() {
+        return count == xs.length;
+    }
+
+    public double getMeanY() {
+        return count > 0 ? sumY / count : 0;
+    }
+
+    /** dy/dx of the least squares line, 0 while x has no spread */
+    public double getSlope() {
+        double denominator = count * sumXX - sumX * sumX;
+        return count > 1 && denominator > 1e-12 ? (count * sumXY - sumX * sumY) / denominator : 0;
+    }
+
+    /** Value of the least squares line at x */
+    public double getFittedY(double x) {
+        if (count == 0) {
+            return 0;
+        }
+        return sumY / count + getSlope() * (x - xOrigin - sumX / count);
+    }
+
+    /** k of the least squares line through the origin, y = k x */
+    public double getSlopeThroughOrigin() {
+        double sumXXAbsolute = sumXX + 2 * xOrigin * sumX + count * xOrigin * xOrigin;
+        double sumXYAbsolute = sumXY + xOrigin * sumY;
+        return sumXXAbsolute > 1e-12 ? sumXYAbsolute / sumXXAbsolute : 0;
+    }
+}
@@ -0,0 +1,36 @@
+package frc.robot.lib.util;
+
+import java.util.Queue;
+
+/**
+ * Moves the samples of one odometry queue into the exactly sized array an IO input logs.
+ *
+ * <p>One array is kept per sample count and handed out again the next time a loop reads that many
+ * samples, and polling unboxes without allocating, so draining a queue every loop produces no
+ * garbage. The returned array is overwritten by a later drain of the same count.
+ */
+public class SampleQueueDrainer {
+    private final double[][] arraysBySampleCount;
+
+    /** @param capacity most samples the queue can hold */
+    public SampleQueueDrainer(int capacity) {
+        arraysBySampleCount = new double[capacity + 1][];
+    }
+
+    /**
+     * Takes the queued samples, oldest first, multiplying every sample by scale. Samples the
+     * producer adds while this runs stay queued for the next drain.
+     */
+    public double[] drain(Queue<Double> queue, double scale) {
+        int count = Math.min(queue.size(), arraysBySampleCount.length - 1);
+        if (arraysBySampleCount[count] == null) {
+            arraysBySampleCount[count] = new double[count];
+        }
+
+        double[] samples = arraysBySampleCount[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = queue.poll() * scale;
+        }
+        return samples;
+    }
+}
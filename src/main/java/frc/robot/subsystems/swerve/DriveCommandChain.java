@@ -0,0 +1,328 @@
+package frc.robot.subsystems.swerve;
+
+import com.pathplanner.lib.config.RobotConfig;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.Robot;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
+import frc.robot.lib.auto.ChassisRateLimiter;
+import frc.robot.lib.auto.SecondOrderSwerveKinematics;
+import frc.robot.lib.auto.SwerveSetpointGenerator;
+import frc.robot.lib.auto.TractionLimiter;
+import frc.robot.lib.estimation.DrivePowerModel;
+
+/**
+ * Everything between a desired chassis speed and the module setpoints: the rate limits scaled to
+ * what the battery can deliver, latency compensation, the traction limit, the setpoint generator
+ * and the second order module feedforwards.
+ *
+ * <p>No timers, logging or singletons, {@link SwerveDrive} feeds it measurements and logs what it
+ * computed. Headless simulations build their own so they drive through the same chain as the robot.
+ */
+public class DriveCommandChain {
+    // The configured limits were measured on a charged battery under load
+    private static final double kNominalDriveVoltage = 12.0;
+    // Odometry older than this is stale anyway, do not extrapolate the heading further
+    private static final double kMaxEstimateAgeSeconds = 0.1;
+
+    private final SwerveDrivetrainConfigBase drivetrainConfig;
+    private final SwerveSetpointGenerator setpointGenerator;
+    private final SecondOrderSwerveKinematics secondOrderKinematics;
+    private final TractionLimiter tractionLimiter;
+    private final DrivePowerModel drivePowerModel;
+
+    private double velocityScale = 1;
+    private double accelerationScale = 1;
+
+    private ChassisSpeeds desiredFieldRelativeSpeeds = new ChassisSpeeds();
+    private ChassisSpeeds rateLimitedFieldRelativeSpeeds = new ChassisSpeeds();
+    private ChassisSpeeds obtainableFieldRelativeSpeeds = new ChassisSpeeds();
+    private ChassisSpeeds obtainableRobotRelativeSpeeds = new ChassisSpeeds();
+    private double tractionFraction = 1;
+    private boolean wasReset = false;
+
+    private final double[] moduleSetpointAnglesRad = new double[4];
+    private final double[] moduleSetpointSpeedsMetersPerSec = new double[4];
+    private final double[] moduleDriveAccelerationSetpoints = new double[4];
+    private final double[] moduleSteerVelocitySetpoints = new double[4];
+    private final double[] moduleMaxAccelerationsMetersPerSecSec = new double[4];
+
+    public DriveCommandChain(SwerveModuleGeneralConfigBase moduleGeneralConfig, SwerveDrivetrainConfigBase drivetrainConfig) {
+        this.drivetrainConfig = drivetrainConfig;
+
+        setpointGenerator = new SwerveSetpointGenerator(
+            drivetrainConfig.getMaxModuleVelocity(),
+            moduleGeneralConfig.getDriveMotionMagicVelocityAccelerationMetersPerSecSec(),
+            moduleGeneralConfig.getDriveMotionMagicVelocityDecelerationMetersPerSecSec(),
+            moduleGeneralConfig.getSteerMotionMagicCruiseVelocityRotationsPerSec() * 2 * Math.PI,
+            drivetrainConfig.getFrontLeftPositionMeters(),
+            drivetrainConfig.getFrontRightPositionMeters(),
+            drivetrainConfig.getBackLeftPositionMeters(),
+            drivetrainConfig.getBackRightPositionMeters()
+        );
+
+        secondOrderKinematics = new SecondOrderSwerveKinematics(
+            drivetrainConfig.getFrontLeftPositionMeters(),
+            drivetrainConfig.getFrontRightPositionMeters(),
+            drivetrainConfig.getBackLeftPositionMeters(),
+            drivetrainConfig.getBackRightPositionMeters()
+        );
+
+        RobotConfig robotConfig = drivetrainConfig.getRobotConfig();
+        tractionLimiter = new TractionLimiter(
+            robotConfig.massKG,
+            robotConfig.moduleConfig.wheelCOF,
+            drivetrainConfig.getCenterOfGravityHeightMeters(),
+            // The drive motor model already includes the reduction
+            robotConfig.moduleConfig.driveMotor.KtNMPerAmp / moduleGeneralConfig.getDriveWheelRadiusMeters(),
+            Math.min(moduleGeneralConfig.getDriveStatorCurrentLimit(), moduleGeneralConfig.getDrivePeakForwardTorqueCurrent()),
+            drivetrainConfig.getFrontLeftPositionMeters(),
+            drivetrainConfig.getFrontRightPositionMeters(),
+            drivetrainConfig.getBackLeftPositionMeters(),
+            drivetrainConfig.getBackRightPositionMeters()
+        );
+
+        drivePowerModel = new DrivePowerModel(
+            kNominalDriveVoltage,
+            drivetrainConfig.getMinDriveBatteryVoltage(),
+            drivetrainConfig.getNominalBatteryResistanceOhms(),
+            robotConfig.massKG,
+            drivetrainConfig.getDrivePowerEfficiency(),
+            // The drive motor model already includes the reduction
+            robotConfig.moduleConfig.driveMotor,
+            moduleGeneralConfig.getDriveWheelRadiusMeters(),
+            4
+        );
+    }
+
+    /**
+     * Updates the velocity and acceleration scales from the measured battery. Called once per loop
+     * with the drive supply current signed, a braking module feeds the others.
+     */
+    public void updatePowerLimits(double averageSupplyVoltage, double totalDriveSupplyCurrentAmps) {
+        drivePowerModel.update(averageSupplyVoltage, totalDriveSupplyCurrentAmps);
+
+        velocityScale = drivePowerModel.getVelocityScale();
+        // At the speed a full step can reach, the power a step needs grows with the speed it ends at
+        double maxAccelerationMetersPerSecSec = drivetrainConfig.getMaxTranslationalAccelerationMetersPerSecSec();
+        accelerationScale = Math.min(
+            1,
+            drivePowerModel.getMaxAccelerationMetersPerSecSec(
+                Math.hypot(obtainableFieldRelativeSpeeds.vxMetersPerSecond, obtainableFieldRelativeSpeeds.vyMetersPerSecond) +
+                maxAccelerationMetersPerSecSec * Robot.defaultPeriodSecs
+            ) / maxAccelerationMetersPerSecSec
+        );
+    }
+
+    /**
+     * Time from converting a command until the modules act on it, starting from an estimate that is
+     * already {@code estimateAgeSeconds} old, NaN before the first odometry sample.
+     */
+    public double getActuationLatencySeconds(double estimateAgeSeconds) {
+        return drivetrainConfig.getActuationLatencySeconds() +
+            (Double.isNaN(estimateAgeSeconds) ? 0 : MathUtil.clamp(estimateAgeSeconds, 0, kMaxEstimateAgeSeconds));
+    }
+
+    /**
+     * Restarts the traction limit and the setpoint generator from the measured state, e.g. after
+     * the drivetrain was not commanded for a while. Their next step is one loop long, however long
+     * the drivetrain was idle.
+     */
+    public void reset(ChassisSpeeds measuredRobotRelativeSpeeds, double[] measuredModuleAnglesRad) {
+        wasReset = true;
+        tractionLimiter.reset();
+        setpointGenerator.reset(
+            measuredRobotRelativeSpeeds.vxMetersPerSecond,
+            measuredRobotRelativeSpeeds.vyMetersPerSecond,
+            measuredRobotRelativeSpeeds.omegaRadiansPerSecond,
+            measuredModuleAnglesRad
+        );
+    }
+
+    /**
+     * Computes this loop's module setpoints.
+     *
+     * @param heading estimated heading the desired speeds are relative to
+     * @param headingOffsetRad how far the robot turns before the modules act on the command
+     * @param isCompensated discretize and undo it afterwards, off converts at the plain heading
+     * @param measuredModuleAnglesRad where the modules point now
+     * @param driveTorqueCurrentsAmps measured drive torque currents
+     */
+    public void calculate(
+        ChassisSpeeds desiredRobotRelativeSpeeds,
+        Rotation2d heading,
+        double headingOffsetRad,
+        boolean isCompensated,
+        double dt,
+        double[] measuredModuleAnglesRad,
+        double[] driveTorqueCurrentsAmps
+    ) {
+        Rotation2d actuationHeading = new Rotation2d(heading.getRadians() + headingOffsetRad);
+        desiredFieldRelativeSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(desiredRobotRelativeSpeeds, heading);
+
+        // Limit acceleration to prevent sudden changes in speed, and speeding up to what the battery can still deliver
+        double translationalAccelerationScale = ChassisRateLimiter.isSpeedingUp(desiredFieldRelativeSpeeds, obtainableFieldRelativeSpeeds) ?
+            accelerationScale :
+            1;
+        obtainableFieldRelativeSpeeds = ChassisRateLimiter.limit(
+            desiredFieldRelativeSpeeds,
+            obtainableFieldRelativeSpeeds,
+            dt,
+            drivetrainConfig.getMaxTranslationalAccelerationMetersPerSecSec() * translationalAccelerationScale,
+            drivetrainConfig.getMaxAngularAccelerationRadiansPerSecSec(),
+            drivetrainConfig.getMaxTranslationalVelocityMetersPerSec() * velocityScale,
+            drivetrainConfig.getMaxAngularVelocityRadiansPerSec() * velocityScale
+        );
+        rateLimitedFieldRelativeSpeeds = obtainableFieldRelativeSpeeds;
+
+        // Discretize so the robot still ends up where the field relative speeds would take it while it rotates over the period
+        obtainableRobotRelativeSpeeds = ChassisSpeeds.fromFieldRelativeSpeeds(obtainableFieldRelativeSpeeds, actuationHeading);
+        if (isCompensated) {
+            obtainableRobotRelativeSpeeds = ChassisSpeeds.discretize(obtainableRobotRelativeSpeeds, Robot.defaultPeriodSecs);
+        }
+
+        if (wasReset) {
+            dt = Robot.defaultPeriodSecs;
+            wasReset = false;
+        }
+
+        // Only take as much of the step as the tires and drive current allow
+        double previousVx = setpointGenerator.getVxMetersPerSec();
+        double previousVy = setpointGenerator.getVyMetersPerSec();
+        double previousOmega = setpointGenerator.getOmegaRadPerSec();
+        tractionFraction = tractionLimiter.limit(
+            previousVx, previousVy, previousOmega,
+            obtainableRobotRelativeSpeeds.vxMetersPerSecond,
+            obtainableRobotRelativeSpeeds.vyMetersPerSecond,
+            obtainableRobotRelativeSpeeds.omegaRadiansPerSecond,
+            dt,
+            measuredModuleAnglesRad,
+            driveTorqueCurrentsAmps
+        );
+        for (int i = 0; i < 4; i++) {
+            moduleMaxAccelerationsMetersPerSecSec[i] = tractionLimiter.getModuleMaxAccelerationMetersPerSecSec(i);
+        }
+
+        // Replaces desaturating and optimizing, the modules are only asked for what they can reach by the next loop
+        setpointGenerator.generate(
+            previousVx + (obtainableRobotRelativeSpeeds.vxMetersPerSecond - previousVx) * tractionFraction,
+            previousVy + (obtainableRobotRelativeSpeeds.vyMetersPerSecond - previousVy) * tractionFraction,
+            previousOmega + (obtainableRobotRelativeSpeeds.omegaRadiansPerSecond - previousOmega) * tractionFraction,
+            dt
+        );
+
+        for (int i = 0; i < 4; i++) {
+            moduleSetpointAnglesRad[i] = setpointGenerator.getModuleAngleRad(i);
+        }
+        // The robot relative setpoint also turns with the heading, so spinning while translating shows up in this step
+        secondOrderKinematics.calculate(
+            setpointGenerator.getVxMetersPerSec(),
+            setpointGenerator.getVyMetersPerSec(),
+            setpointGenerator.getOmegaRadPerSec(),
+            (setpointGenerator.getVxMetersPerSec() - previousVx) / dt,
+            (setpointGenerator.getVyMetersPerSec() - previousVy) / dt,
+            (setpointGenerator.getOmegaRadPerSec() - previousOmega) / dt,
+            moduleSetpointAnglesRad
+        );
+
+        for (int i = 0; i < 4; i++) {
+            moduleSetpointSpeedsMetersPerSec[i] = setpointGenerator.getModuleSpeedMetersPerSec(i);
+            moduleDriveAccelerationSetpoints[i] = secondOrderKinematics.getDriveAccelerationMetersPerSecSec(i);
+            moduleSteerVelocitySetpoints[i] = secondOrderKinematics.getSteerVelocityRadPerSec(i);
+        }
+
+        // Rate limit from what the modules were actually given so the two limiters do not wind up against each other,
+        // undoing the discretization and the heading prediction so the next loop does not apply them twice
+        double undiscretizedVx = setpointGenerator.getVxMetersPerSec();
+        double undiscretizedVy = setpointGenerator.getVyMetersPerSec();
+        if (isCompensated) {
+            Pose2d periodMotion = Pose2d.kZero.exp(new Twist2d(
+                setpointGenerator.getVxMetersPerSec() * Robot.defaultPeriodSecs,
+                setpointGenerator.getVyMetersPerSec() * Robot.defaultPeriodSecs,
+                setpointGenerator.getOmegaRadPerSec() * Robot.defaultPeriodSecs
+            ));
+            undiscretizedVx = periodMotion.getX() / Robot.defaultPeriodSecs;
+            undiscretizedVy = periodMotion.getY() / Robot.defaultPeriodSecs;
+        }
+        obtainableFieldRelativeSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(
+            undiscretizedVx,
+            undiscretizedVy,
+            setpointGenerator.getOmegaRadPerSec(),
+            actuationHeading
+        );
+    }
+
+    /** Fraction of the configured maximum velocities the battery can still reach */
+    public double getVelocityScale() {
+        return velocityScale;
+    }
+
+    /** Fraction of the configured maximum accelerations the battery can still deliver at the current speed */
+    public double getAccelerationScale() {
+        return accelerationScale;
+    }
+
+    public DrivePowerModel getDrivePowerModel() {
+        return drivePowerModel;
+    }
+
+    public ChassisSpeeds getDesiredFieldRelativeSpeeds() {
+        return desiredFieldRelativeSpeeds;
+    }
+
+    /** What the rate limits allowed this loop, before the traction limit and the setpoint generator */
+    public ChassisSpeeds getRateLimitedFieldRelativeSpeeds() {
+        return rateLimitedFieldRelativeSpeeds;
+    }
+
+    /** Field relative speeds the modules were last given, the rate limits start from here next loop */
+    public ChassisSpeeds getObtainableFieldRelativeSpeeds() {
+        return obtainableFieldRelativeSpeeds;
+    }
+
+    public ChassisSpeeds getObtainableRobotRelativeSpeeds() {
+        return obtainableRobotRelativeSpeeds;
+    }
+
+    public double getTractionFraction() {
+        return tractionFraction;
+    }
+
+    public int getTractionLimitingModule() {
+        return tractionLimiter.getLimitingModule();
+    }
+
+    public double getSetpointStepFraction() {
+        return setpointGenerator.getLastStepFraction();
+    }
+
+    /** Updated in place by every {@link #calculate} */
+    public double[] getModuleMaxAccelerationsMetersPerSecSec() {
+        return moduleMaxAccelerationsMetersPerSecSec;
+    }
+
+    /** Updated in place by every {@link #calculate} */
+    public double[] getModuleSetpointAnglesRad() {
+        return moduleSetpointAnglesRad;
+    }
+
+    /** Updated in place by every {@link #calculate} */
+    public double[] getModuleSetpointSpeedsMetersPerSec() {
+        return moduleSetpointSpeedsMetersPerSec;
+    }
+
+    /** Updated in place by every {@link #calculate} */
+    public double[] getModuleDriveAccelerationSetpoints() {
+        return moduleDriveAccelerationSetpoints;
+    }
+
+    /** Updated in place by every {@link #calculate} */
+    public double[] getModuleSteerVelocitySetpoints() {
+        return moduleSteerVelocitySetpoints;
+    }
+}
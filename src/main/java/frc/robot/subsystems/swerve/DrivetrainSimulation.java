@@ -0,0 +1,344 @@
+package frc.robot.subsystems.swerve;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+import com.pathplanner.lib.config.RobotConfig;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
+
+/**
+ * Rigid body simulation of the whole drivetrain: four drive and steer motor models, wheel to
+ * carpet friction and the chassis they push around, stepped at a fixed rate.
+ *
+ * <p>Each step the registered controllers set motor voltages, then every wheel applies the force
+ * that keeps it rolling without slip, limited to a friction circle of wheelCOF times its share of
+ * the weight. Past that limit the wheel slides and spins independently of the ground. The chassis
+ * integrates the summed forces and torques with the mass and MOI from the robot config.
+ *
+ * <p>Time comes from an injected clock and is consumed in whole fixed steps, so the result only
+ * depends on the commands and the clock readings, not on how often {@link #update()} is called.
+ * With a virtual clock the simulation runs headless as fast as the CPU allows.
+ */
+public class DrivetrainSimulation {
+    public static final double kStepSeconds = 0.001;
+    // Never try to catch up more than this at once, e.g. after a breakpoint
+    private static final double kMaxCatchUpSeconds = 0.1;
+    private static final double kGravityMetersPerSecSec = 9.81;
+
+    /** One swerve module's motors, driven by voltage */
+    public static class ModuleSimulation {
+        private final Translation2d position;
+
+        private double driveVolts = 0;
+        private double drivePositionRad = 0;
+        private double driveVelocityRadPerSec = 0;
+        private double driveCurrentAmps = 0;
+
+        private double steerVolts = 0;
+        private double steerAngleRad = 0;
+        private double steerVelocityRadPerSec = 0;
+        private double steerCurrentAmps = 0;
+
+        private ModuleSimulation(Translation2d position) {
+            this.position = position;
+        }
+
+        public void setDriveVoltage(double volts) {
+            driveVolts = volts;
+        }
+
+        public void setSteerVoltage(double volts) {
+            steerVolts = volts;
+        }
+
+        public double getDriveVoltage() {
+            return driveVolts;
+        }
+
+        /** Wheel angle, what the drive encoder sees after the reduction */
+        public double getDrivePositionRad() {
+            return drivePositionRad;
+        }
+
+        public double getDriveVelocityRadPerSec() {
+            return driveVelocityRadPerSec;
+        }
+
+        public double getDriveCurrentAmps() {
+            return driveCurrentAmps;
+        }
+
+        /** Continuous module angle, not wrapped */
+        public double getSteerAngleRad() {
+            return steerAngleRad;
+        }
+
+        public double getSteerVelocityRadPerSec() {
+            return steerVelocityRadPerSec;
+        }
+
+        public double getSteerCurrentAmps() {
+            return steerCurrentAmps;
+        }
+    }
+
+    /**
+     * How far the simulated robot is from the configured one, so code can be checked against a
+     * robot that is not quite what the constants say. Every field scales the configured value.
+     */
+    public record Variation(
+        double driveStallTorqueScale,
+        double driveFreeSpeedScale,
+        double wheelRadiusScale,
+        double wheelCOFScale,
+        double massScale
+    ) {
+        public static final Variation kNominal = new Variation(1, 1, 1, 1, 1);
+    }
+
+    private final DoubleSupplier clockSeconds;
+    private final List<DoubleConsumer> controlSteps = new ArrayList<>();
+
+    private final ModuleSimulation[] modules;
+    private final DCMotor driveMotor;
+    private final DCMotor steerMotor = DCMotor.getKrakenX60Foc(1);
+    private final double driveGearing;
+    private final double steerGearing;
+    private final double driveInertiaKgMetersSq;
+    private final double wheelRadiusMeters;
+    private final double driveCurrentLimitAmps;
+    private final double steerCurrentLimitAmps;
+    private final double massKg;
+    private final double moiKgMetersSq;
+    private final double maxFrictionForceNewtons;
+    // Back emf braking of the steer, 1 / time constant of its velocity
+    private final double steerVelocityDecayPerSec;
+
+    private double timeSeconds = Double.NaN;
+
+    // Field relative
+    private double x = 0;
+    private double y = 0;
+    private double yawRad = 0;
+    private double vx = 0;
+    private double vy = 0;
+    private double omegaRadPerSec = 0;
+
+    // Robot relative, what an accelerometer on the chassis reads
+    private double accelerationXMetersPerSecSq = 0;
+    private double accelerationYMetersPerSecSq = 0;
+
+    /** @param clockSeconds time source the simulation catches up to in {@link #update()} */
+    public DrivetrainSimulation(SwerveModuleGeneralConfigBase moduleConfig, SwerveDrivetrainConfigBase drivetrainConfig, DoubleSupplier clockSeconds) {
+        this(moduleConfig, drivetrainConfig, clockSeconds, Variation.kNominal);
+    }
+
+    public DrivetrainSimulation(
+        SwerveModuleGeneralConfigBase moduleConfig,
+        SwerveDrivetrainConfigBase drivetrainConfig,
+        DoubleSupplier clockSeconds,
+        Variation variation
+    ) {
+        this.clockSeconds = clockSeconds;
+
+        modules = new ModuleSimulation[] {
+            new ModuleSimulation(drivetrainConfig.getFrontLeftPositionMeters()),
+            new ModuleSimulation(drivetrainConfig.getFrontRightPositionMeters()),
+            new ModuleSimulation(drivetrainConfig.getBackLeftPositionMeters()),
+            new ModuleSimulation(drivetrainConfig.getBackRightPositionMeters())
+        };
+
+        driveGearing = moduleConfig.getDriveMotorToOutputShaftRatio();
+        steerGearing = moduleConfig.getSteerMotorToOutputShaftRatio();
+        driveInertiaKgMetersSq = moduleConfig.getDriveInertiaKgMetersSq();
+        wheelRadiusMeters = moduleConfig.getDriveWheelRadiusMeters() * variation.wheelRadiusScale();
+        driveCurrentLimitAmps = moduleConfig.getDriveStatorCurrentLimit();
+        steerCurrentLimitAmps = moduleConfig.getSteerStatorCurrentLimit();
+
+        DCMotor nominalDriveMotor = DCMotor.getKrakenX60Foc(1);
+        driveMotor = new DCMotor(
+            nominalDriveMotor.nominalVoltageVolts,
+            nominalDriveMotor.stallTorqueNewtonMeters * variation.driveStallTorqueScale(),
+            nominalDriveMotor.stallCurrentAmps,
+            nominalDriveMotor.freeCurrentAmps,
+            nominalDriveMotor.freeSpeedRadPerSec * variation.driveFreeSpeedScale(),
+            1
+        );
+
+        RobotConfig robotConfig = drivetrainConfig.getRobotConfig();
+        massKg = robotConfig.massKG * variation.massScale();
+        // Extra mass is assumed to sit where the rest of it does
+        moiKgMetersSq = robotConfig.MOI * variation.massScale();
+        maxFrictionForceNewtons = robotConfig.moduleConfig.wheelCOF * variation.wheelCOFScale() * massKg * kGravityMetersPerSecSec / modules.length;
+
+        steerVelocityDecayPerSec = -steerMotor.getTorque(steerMotor.getCurrent(steerGearing, 0)) * steerGearing / moduleConfig.getSteerInertiaKgMetersSq();
+    }
+
+    /**
+     * Registers a controller that sets motor voltages right before every step, the way motor
+     * controllers run their loops far faster than the robot code.
+     */
+    public synchronized void addControlStep(DoubleConsumer controlStep) {
+        controlSteps.add(controlStep);
+    }
+
+    public ModuleSimulation getModule(int index) {
+        return modules[index];
+    }
+
+    public int getNumModules() {
+        return modules.length;
+    }
+
+    /** Steps until the simulation has caught up with the clock */
+    public synchronized void update() {
+        double now = clockSeconds.getAsDouble();
+        if (Double.isNaN(timeSeconds)) {
+            timeSeconds = now;
+        }
+        timeSeconds = Math.max(timeSeconds, now - kMaxCatchUpSeconds);
+        while (timeSeconds + kStepSeconds <= now) {
+            step();
+        }
+    }
+
+    /** Advances exactly one fixed step regardless of the clock */
+    public synchronized void step() {
+        if (Double.isNaN(timeSeconds)) {
+            timeSeconds = 0;
+        }
+        for (DoubleConsumer controlStep : controlSteps) {
+            controlStep.accept(kStepSeconds);
+        }
+
+        double cos = Math.cos(yawRad);
+        double sin = Math.sin(yawRad);
+        double robotVx = vx * cos + vy * sin;
+        double robotVy = -vx * sin + vy * cos;
+
+        double massShareKg = massKg / modules.length;
+        double wheelMassKg = driveInertiaKgMetersSq / (wheelRadiusMeters * wheelRadiusMeters);
+        double reducedMassKg = massShareKg * wheelMassKg / (massShareKg + wheelMassKg);
+
+        double forceX = 0;
+        double forceY = 0;
+        double torque = 0;
+        for (ModuleSimulation module : modules) {
+            // Velocity of the carpet under the wheel, along and across it
+            double contactVx = robotVx - omegaRadPerSec * module.position.getY();
+            double contactVy = robotVy + omegaRadPerSec * module.position.getX();
+            double steerCos = Math.cos(module.steerAngleRad);
+            double steerSin = Math.sin(module.steerAngleRad);
+            double longitudinalVelocity = contactVx * steerCos + contactVy * steerSin;
+            double lateralVelocity = -contactVx * steerSin + contactVy * steerCos;
+
+            module.driveCurrentAmps = MathUtil.clamp(
+                driveMotor.getCurrent(module.driveVelocityRadPerSec * driveGearing, module.driveVolts),
+                -driveCurrentLimitAmps,
+                driveCurrentLimitAmps
+            );
+            double wheelTorque = driveMotor.getTorque(module.driveCurrentAmps) * driveGearing;
+
+            // Force that keeps the wheel rolling, plus closing whatever slip built up in one step
+            double longitudinalForce = wheelTorque / wheelRadiusMeters * massShareKg / (massShareKg + wheelMassKg) +
+                reducedMassKg * (module.driveVelocityRadPerSec * wheelRadiusMeters - longitudinalVelocity) / kStepSeconds;
+            double lateralForce = -massShareKg * lateralVelocity / kStepSeconds;
+            double forceMagnitude = Math.hypot(longitudinalForce, lateralForce);
+            if (forceMagnitude > maxFrictionForceNewtons) {
+                longitudinalForce *= maxFrictionForceNewtons / forceMagnitude;
+                lateralForce *= maxFrictionForceNewtons / forceMagnitude;
+            }
+
+            module.driveVelocityRadPerSec += (wheelTorque - longitudinalForce * wheelRadiusMeters) / driveInertiaKgMetersSq * kStepSeconds;
+            module.drivePositionRad += module.driveVelocityRadPerSec * kStepSeconds;
+
+            double moduleForceX = longitudinalForce * steerCos - lateralForce * steerSin;
+            double moduleForceY = longitudinalForce * steerSin + lateralForce * steerCos;
+            forceX += moduleForceX;
+            forceY += moduleForceY;
+            torque += module.position.getX() * moduleForceY - module.position.getY() * moduleForceX;
+
+            stepSteer(module);
+        }
+
+        accelerationXMetersPerSecSq = forceX / massKg;
+        accelerationYMetersPerSecSq = forceY / massKg;
+        vx += (accelerationXMetersPerSecSq * cos - accelerationYMetersPerSecSq * sin) * kStepSeconds;
+        vy += (accelerationXMetersPerSecSq * sin + accelerationYMetersPerSecSq * cos) * kStepSeconds;
+        omegaRadPerSec += torque / moiKgMetersSq * kStepSeconds;
+
+        x += vx * kStepSeconds;
+        y += vy * kStepSeconds;
+        yawRad += omegaRadPerSec * kStepSeconds;
+
+        timeSeconds += kStepSeconds;
+    }
+
+    private void stepSteer(ModuleSimulation module) {
+        // The steer velocity settles faster than the step, advance it exactly like DCMotorSim does
+        double volts = MathUtil.clamp(
+            module.steerVolts,
+            module.steerVelocityRadPerSec * steerGearing / steerMotor.KvRadPerSecPerVolt + steerCurrentLimitAmps * -steerMotor.rOhms,
+            module.steerVelocityRadPerSec * steerGearing / steerMotor.KvRadPerSecPerVolt + steerCurrentLimitAmps * steerMotor.rOhms
+        );
+        double settledVelocity = volts * steerMotor.KvRadPerSecPerVolt / steerGearing;
+        double nextVelocity = settledVelocity + (module.steerVelocityRadPerSec - settledVelocity) * Math.exp(-steerVelocityDecayPerSec * kStepSeconds);
+        module.steerAngleRad += (module.steerVelocityRadPerSec + nextVelocity) / 2 * kStepSeconds;
+        module.steerVelocityRadPerSec = nextVelocity;
+        module.steerCurrentAmps = steerMotor.getCurrent(module.steerVelocityRadPerSec * steerGearing, volts);
+    }
+
+    public synchronized double getTimeSeconds() {
+        return timeSeconds;
+    }
+
+    public synchronized Pose2d getPose() {
+        return new Pose2d(x, y, new Rotation2d(yawRad));
+    }
+
+    /** Moves the robot without touching the wheel encoders, the robot is picked up and put down */
+    public synchronized void resetPose(Pose2d pose) {
+        x = pose.getX();
+        y = pose.getY();
+        yawRad = pose.getRotation().getRadians();
+        vx = 0;
+        vy = 0;
+        omegaRadPerSec = 0;
+    }
+
+    /** Continuous yaw, not wrapped, like a gyro accumulates it */
+    public synchronized double getYawRad() {
+        return yawRad;
+    }
+
+    public synchronized double getYawVelocityRadPerSec() {
+        return omegaRadPerSec;
+    }
+
+    public synchronized double getAccelerationXMetersPerSecSq() {
+        return accelerationXMetersPerSecSq;
+    }
+
+    public synchronized double getAccelerationYMetersPerSecSq() {
+        return accelerationYMetersPerSecSq;
+    }
+
+    /** Field relative */
+    public synchronized double getVelocityXMetersPerSec() {
+        return vx;
+    }
+
+    /** Field relative */
+    public synchronized double getVelocityYMetersPerSec() {
+        return vy;
+    }
+}
@@ -9,6 +9,8 @@ package frc.robot.subsystems.swerve;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.Timestamp;
+import com.ctre.phoenix6.Utils;
 import edu.wpi.first.wpilibj.RobotController;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,6 +18,7 @@ import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleConsumer;
 import java.util.function.DoubleSupplier;
 
 /**
@@ -25,8 +28,15 @@ import java.util.function.DoubleSupplier;
  * a CANivore, the thread uses the "waitForAll" blocking method to enable more consistent sampling.
  * This also allows Phoenix Pro users to benefit from lower latency between devices using CANivore
  * time synchronization.
+ *
+ * <p>Each sample is stamped per device: timestamp queues created with the value queues of a
+ * device's signals are filled from those signals' own receive timestamps, converted into the FPGA
+ * timebase with an online-estimated offset.
  */
 public class PhoenixOdometryThread extends Thread {
+  /** Samples every queue holds, about 80 ms at the odometry frequency */
+  public static final int kQueueCapacity = 20;
+
   private final Lock signalsLock =
       new ReentrantLock(); // Prevents conflicts when registering signals
   private BaseStatusSignal[] phoenixSignals = new BaseStatusSignal[0];
@@ -34,6 +44,13 @@ public class PhoenixOdometryThread extends Thread {
   private final List<Queue<Double>> phoenixQueues = new ArrayList<>();
   private final List<Queue<Double>> genericQueues = new ArrayList<>();
   private final List<Queue<Double>> timestampQueues = new ArrayList<>();
+  private final List<int[]> timestampSignalIndices = new ArrayList<>();
+  private final List<DoubleSupplier> timestampSuppliers = new ArrayList<>();
+  private final List<DoubleConsumer> simulationSteps = new ArrayList<>();
+  private double lastSampleFPGATime = -1.0;
+  private double[] phoenixSignalTimestamps = new double[0];
+
+  private final PhoenixTimebaseEstimator timebaseEstimator = new PhoenixTimebaseEstimator();
 
   private static boolean isCANFD = true;
   private static PhoenixOdometryThread instance = null;
@@ -59,7 +76,7 @@ public class PhoenixOdometryThread extends Thread {
 
   /** Registers a Phoenix signal to be read from the thread. */
 public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+    Queue<Double> queue = new ArrayBlockingQueue<>(kQueueCapacity);
     signalsLock.lock();
     SwerveDrive.odometryLock.lock();
     try {
@@ -67,6 +84,7 @@ public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
       System.arraycopy(phoenixSignals, 0, newSignals, 0, phoenixSignals.length);
       newSignals[phoenixSignals.length] = signal;
       phoenixSignals = newSignals;
+      phoenixSignalTimestamps = new double[phoenixSignals.length];
       phoenixQueues.add(queue);
     } finally {
       signalsLock.unlock();
@@ -77,7 +95,7 @@ public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
 
   /** Registers a generic signal to be read from the thread. */
   public Queue<Double> registerSignal(DoubleSupplier signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+    Queue<Double> queue = new ArrayBlockingQueue<>(kQueueCapacity);
     signalsLock.lock();
     SwerveDrive.odometryLock.lock();
     try {
@@ -90,14 +108,75 @@ public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
     return queue;
   }
 
+  /**
+   * Registers a simulation model that is advanced by the elapsed time right before each sample is
+   * taken. This lets simulated mechanisms feed generic signals at the odometry frequency.
+   */
+  public void registerSimulationStep(DoubleConsumer step) {
+    signalsLock.lock();
+    SwerveDrive.odometryLock.lock();
+    try {
+      simulationSteps.add(step);
+    } finally {
+      signalsLock.unlock();
+      SwerveDrive.odometryLock.unlock();
+    }
+  }
+
   /** Returns a new queue that returns timestamp values for each sample. */
   public Queue<Double> makeTimestampQueue() {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+    return makeTimestampQueue(new Queue<?>[0]);
+  }
+
+  /**
+   * Returns a new queue of per-device timestamps for each sample. Timestamps are the average
+   * receive time of the Phoenix signals feeding the given value queues, converted to FPGA time.
+   * Queues from generic signals carry no hardware timestamp and are ignored.
+   */
+  public Queue<Double> makeTimestampQueue(Queue<?>... signalQueues) {
+    Queue<Double> queue = new ArrayBlockingQueue<>(kQueueCapacity);
+    signalsLock.lock();
     SwerveDrive.odometryLock.lock();
     try {
+      int[] indices = new int[signalQueues.length];
+      int count = 0;
+      for (Queue<?> signalQueue : signalQueues) {
+        for (int i = 0; i < phoenixQueues.size(); i++) {
+          if (phoenixQueues.get(i) == signalQueue) {
+            indices[count++] = i;
+            break;
+          }
+        }
+      }
+      int[] trimmedIndices = new int[count];
+      System.arraycopy(indices, 0, trimmedIndices, 0, count);
+
       timestampQueues.add(queue);
+      timestampSignalIndices.add(trimmedIndices);
+      timestampSuppliers.add(null);
     } finally {
-        SwerveDrive.odometryLock.unlock();
+      signalsLock.unlock();
+      SwerveDrive.odometryLock.unlock();
+    }
+    return queue;
+  }
+
+  /**
+   * Returns a new queue of timestamps reported by a simulated device for each sample, the way a
+   * Phoenix device reports when it measured a signal. The timestamp is read after every generic
+   * signal of the same sample and must already be in the FPGA timebase.
+   */
+  public Queue<Double> makeTimestampQueue(DoubleSupplier deviceTimestamp) {
+    Queue<Double> queue = new ArrayBlockingQueue<>(kQueueCapacity);
+    signalsLock.lock();
+    SwerveDrive.odometryLock.lock();
+    try {
+      timestampQueues.add(queue);
+      timestampSignalIndices.add(new int[0]);
+      timestampSuppliers.add(deviceTimestamp);
+    } finally {
+      signalsLock.unlock();
+      SwerveDrive.odometryLock.unlock();
     }
     return queue;
   }
@@ -126,10 +205,14 @@ public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
       // Save new data to queues
       SwerveDrive.odometryLock.lock();
       try {
-        // Sample timestamp is current FPGA time minus average CAN latency
-        //     Default timestamps from Phoenix are NOT compatible with
-        //     FPGA timestamps, this solution is imperfect but close
-        double timestamp = RobotController.getFPGATime() / 1e6;
+        // Frame timestamp is current FPGA time minus average CAN latency. This is the fallback
+        // for generic signals and for devices whose hardware timestamps are not yet usable.
+        double phoenixTimeBefore = Utils.getCurrentTimeSeconds();
+        double fpgaTime = RobotController.getFPGATime() / 1e6;
+        double phoenixTimeAfter = Utils.getCurrentTimeSeconds();
+        timebaseEstimator.addClockSample(phoenixTimeBefore, fpgaTime, phoenixTimeAfter);
+
+        double timestamp = fpgaTime;
         double totalLatency = 0.0;
         for (BaseStatusSignal signal : phoenixSignals) {
           totalLatency += signal.getTimestamp().getLatency();
@@ -138,6 +221,22 @@ public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
           timestamp -= totalLatency / phoenixSignals.length;
         }
 
+        // Advance simulated mechanisms to this sample before reading their generic signals
+        double sampleDt =
+            lastSampleFPGATime < 0 ? 1.0 / SwerveDrive.ODOMETRY_FREQUENCY : fpgaTime - lastSampleFPGATime;
+        lastSampleFPGATime = fpgaTime;
+        for (DoubleConsumer step : simulationSteps) {
+          step.accept(sampleDt);
+        }
+
+        // Per-signal receive timestamps in the FPGA timebase
+        for (int i = 0; i < phoenixSignals.length; i++) {
+          Timestamp systemTimestamp = phoenixSignals[i].getAllTimestamps().getSystemTimestamp();
+          phoenixSignalTimestamps[i] =
+              timebaseEstimator.toFpgaSeconds(
+                  systemTimestamp.getTime(), systemTimestamp.isValid(), timestamp);
+        }
+
         // Add new samples to queues
         for (int i = 0; i < phoenixSignals.length; i++) {
           phoenixQueues.get(i).offer(phoenixSignals[i].getValueAsDouble());
@@ -146,11 +245,29 @@ public <T> Queue<Double> registerSignal(StatusSignal<T> signal) {
           genericQueues.get(i).offer(genericSignals.get(i).getAsDouble());
         }
         for (int i = 0; i < timestampQueues.size(); i++) {
-          timestampQueues.get(i).offer(timestamp);
+          DoubleSupplier deviceTimestamp = timestampSuppliers.get(i);
+          timestampQueues
+              .get(i)
+              .offer(
+                  deviceTimestamp != null
+                      ? deviceTimestamp.getAsDouble()
+                      : getDeviceTimestamp(timestampSignalIndices.get(i), timestamp));
         }
       } finally {
         SwerveDrive.odometryLock.unlock();
       }
     }
   }
-}
\ No newline at end of file
+
+  /** Averages the receive timestamps of a device's signals, or returns the frame timestamp. */
+  private double getDeviceTimestamp(int[] signalIndices, double frameTimestamp) {
+    if (signalIndices.length == 0) {
+      return frameTimestamp;
+    }
+    double total = 0.0;
+    for (int index : signalIndices) {
+      total += phoenixSignalTimestamps[index];
+    }
+    return total / signalIndices.length;
+  }
+}
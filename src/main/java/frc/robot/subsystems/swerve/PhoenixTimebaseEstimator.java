@@ -0,0 +1,63 @@
+package frc.robot.subsystems.swerve;
+
+/**
+ * Online estimate of the offset between the Phoenix system timebase and the FPGA timebase.
+ *
+ * <p>Phoenix stamps every received CAN frame in its own system time. Pairing a read of each
+ * clock lets us convert those per-signal timestamps into FPGA seconds, which is what the rest of
+ * the robot code (and AdvantageKit replay) uses.
+ */
+public class PhoenixTimebaseEstimator {
+    // A clock pair read that takes longer than this was preempted and is discarded
+    private static final double kMaxClockReadGapSeconds = 0.0005;
+    // If a new sample disagrees by more than this, one of the clocks stepped and we re-seed
+    private static final double kMaxOffsetJumpSeconds = 0.01;
+    private static final double kSmoothingFactor = 0.02;
+
+    private double offsetSeconds = 0;
+    private boolean hasEstimate = false;
+
+    /**
+     * Adds a paired reading of both clocks. The Phoenix clock is read before and after the FPGA
+     * clock so that the midpoint brackets the FPGA read.
+     */
+    public void addClockSample(double phoenixBeforeSeconds, double fpgaSeconds, double phoenixAfterSeconds) {
+        double readGap = phoenixAfterSeconds - phoenixBeforeSeconds;
+        if (readGap < 0 || readGap > kMaxClockReadGapSeconds) {
+            return;
+        }
+
+        double sampleOffset = fpgaSeconds - 0.5 * (phoenixBeforeSeconds + phoenixAfterSeconds);
+        if (!hasEstimate || Math.abs(sampleOffset - offsetSeconds) > kMaxOffsetJumpSeconds) {
+            offsetSeconds = sampleOffset;
+            hasEstimate = true;
+            return;
+        }
+
+        offsetSeconds += kSmoothingFactor * (sampleOffset - offsetSeconds);
+    }
+
+    public boolean hasEstimate() {
+        return hasEstimate;
+    }
+
+    public double getOffsetSeconds() {
+        return offsetSeconds;
+    }
+
+    /**
+     * Converts a Phoenix system timestamp into FPGA seconds. Returns the fallback if no offset has
+     * been estimated yet or the timestamp is invalid.
+     */
+    public double toFpgaSeconds(double phoenixSeconds, boolean isValid, double fallbackFpgaSeconds) {
+        if (!hasEstimate || !isValid) {
+            return fallbackFpgaSeconds;
+        }
+        return phoenixSeconds + offsetSeconds;
+    }
+
+    public void reset() {
+        offsetSeconds = 0;
+        hasEstimate = false;
+    }
+}
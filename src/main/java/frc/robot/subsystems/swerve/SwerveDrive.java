@@ -4,14 +4,13 @@ import static edu.wpi.first.units.Units.Second;
 import static edu.wpi.first.units.Units.Seconds;
 import static edu.wpi.first.units.Units.Volts;
 
-import java.util.ArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.networktables.LoggedNetworkBoolean;
 
-import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
@@ -23,9 +22,8 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
-import frc.robot.Robot;
 import frc.robot.RobotState;
-import frc.robot.RobotState.OdometryObservation;
+import frc.robot.RobotStateSnapshot;
 import frc.robot.constants.Constants;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
 import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigComp;
@@ -41,10 +39,11 @@ import frc.robot.constants.swerve.moduleConfigs.proto.SwerveModuleGeneralConfigP
 import frc.robot.constants.swerve.moduleConfigs.proto.SwerveModuleSpecificBLConfigProto;
 import frc.robot.constants.swerve.moduleConfigs.proto.SwerveModuleSpecificFRConfigProto;
 import frc.robot.constants.swerve.moduleConfigs.sim.SwerveModuleGeneralConfigSim;
-import frc.robot.lib.auto.ChassisRateLimiter;
 import frc.robot.subsystems.swerve.gyro.GyroIO;
 import frc.robot.subsystems.swerve.gyro.GyroIOInputsAutoLogged;
 import frc.robot.subsystems.swerve.gyro.GyroIOPigeon2;
+import frc.robot.subsystems.swerve.gyro.GyroIOSim;
+import frc.robot.subsystems.swerve.module.ModuleHealthMonitor;
 import frc.robot.subsystems.swerve.module.ModuleIO;
 import frc.robot.subsystems.swerve.module.ModuleIOInputsAutoLogged;
 import frc.robot.subsystems.swerve.module.ModuleIOSim;
@@ -54,7 +53,7 @@ public class SwerveDrive extends SubsystemBase {
     private static SwerveDrive instance = null;
     public static SwerveDrive getInstance() {
         if (instance == null) {
-            instance = new SwerveDrive();
+            instance = create();
         }
 
         return instance;
@@ -64,6 +63,13 @@ public class SwerveDrive extends SubsystemBase {
 
     public static final Lock odometryLock = new ReentrantLock();
 
+    private static final String[] kModuleInputKeys = {
+        "SwerveDrive/module0",
+        "SwerveDrive/module1",
+        "SwerveDrive/module2",
+        "SwerveDrive/module3"
+    };
+
     private ModuleIO[] modules;
     private ModuleIOInputsAutoLogged[] moduleInputs = {
             new ModuleIOInputsAutoLogged(),
@@ -88,34 +94,61 @@ public class SwerveDrive extends SubsystemBase {
         new SwerveModuleState()
     };
 
+    // Poses logged for this loop's odometry samples, one reused array per sample count
+    private static final int kMaxLoggedUpdatedPoses = 32;
+    private final double[][] updatedPoses = new double[kMaxLoggedUpdatedPoses + 1][];
+    private final double[] updatedPoseScratch = new double[kMaxLoggedUpdatedPoses * 3];
+
+    private Command lastLoggedCommand = null;
+    private String lastLoggedCommandName = "";
+
+    // Physics behind the simulated modules, null on the robot
+    private final DrivetrainSimulation drivetrainSimulation;
+
     private ChassisSpeeds desiredRobotRelativeSpeeds = new ChassisSpeeds();
-    private ChassisSpeeds obtainableFieldRelativeSpeeds = new ChassisSpeeds();
 
     double prevLoopTime = Timer.getTimestamp();
-    double prevDriveTime = Timer.getTimestamp();
 
     private final SwerveModuleGeneralConfigBase moduleGeneralConfig;
     private final SwerveDrivetrainConfigBase drivetrainConfig;
     private SwerveDriveKinematics kinematics;
+    private static final double kMinDriftLogSpeedMetersPerSec = 0.5;
+    // Off converts at the estimated heading without discretizing, to measure what the compensation buys
+    private final LoggedNetworkBoolean isLatencyCompensationEnabled = new LoggedNetworkBoolean("/Tuning/SwerveDrive/isLatencyCompensationEnabled", true);
+    private boolean wasLastCommandCompensated = true;
+
+    // Restart the setpoint generator from the measured state if the drivetrain was not commanded for this long
+    public static final double kSetpointGeneratorResetSeconds = 0.1;
+    private final DriveCommandChain commandChain;
+    private final SwerveDriveLoop driveLoop;
+
+    private final ModuleHealthMonitor moduleHealthMonitor = new ModuleHealthMonitor("FL", "FR", "BL", "BR");
 
     private final SysIdRoutine driveCharacterizationSysIdRoutine;
     private final SysIdRoutine steerCharacterizationSysIdRoutine;
 
-    @SuppressWarnings("static-access")
-    private SwerveDrive() {
+    /** Picks the IO for the current mode and starts the odometry thread that samples it */
+    private static SwerveDrive create() {
+        SwerveModuleGeneralConfigBase moduleGeneralConfig;
+        SwerveDrivetrainConfigBase drivetrainConfig;
+        SwerveDrive swerveDrive;
         switch (Constants.currentMode) {
             case COMP:
                 drivetrainConfig = SwerveDrivetrainConfigComp.getInstance();
                 moduleGeneralConfig = SwerveModuleGeneralConfigComp.getInstance();
 
-                modules = new ModuleIO[] {
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFLConfigComp.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFRConfigComp.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigComp.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBRConfigComp.getInstance())
-                };
-                
-                gyroIO = new GyroIOPigeon2();
+                swerveDrive = new SwerveDrive(
+                    moduleGeneralConfig,
+                    drivetrainConfig,
+                    new ModuleIO[] {
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFLConfigComp.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFRConfigComp.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigComp.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBRConfigComp.getInstance())
+                    },
+                    new GyroIOPigeon2(),
+                    null
+                );
                 PhoenixOdometryThread.getInstance().start();
 
                 break;
@@ -124,14 +157,18 @@ public class SwerveDrive extends SubsystemBase {
                 drivetrainConfig = SwerveDrivetrainConfigProto.getInstance();
                 moduleGeneralConfig = SwerveModuleGeneralConfigProto.getInstance();
 
-                modules = new ModuleIO[] {
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigProto.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFRConfigProto.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigProto.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigProto.getInstance())
-                };
-                
-                gyroIO = new GyroIOPigeon2();
+                swerveDrive = new SwerveDrive(
+                    moduleGeneralConfig,
+                    drivetrainConfig,
+                    new ModuleIO[] {
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigProto.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFRConfigProto.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigProto.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigProto.getInstance())
+                    },
+                    new GyroIOPigeon2(),
+                    null
+                );
                 PhoenixOdometryThread.getInstance().start();
                 break;
 
@@ -139,28 +176,38 @@ public class SwerveDrive extends SubsystemBase {
                 drivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
                 moduleGeneralConfig = SwerveModuleGeneralConfigSim.getInstance();
 
-                modules = new ModuleIO[] {
-                    new ModuleIOSim(moduleGeneralConfig, 0),
-                    new ModuleIOSim(moduleGeneralConfig, 1),
-                    new ModuleIOSim(moduleGeneralConfig, 2),
-                    new ModuleIOSim(moduleGeneralConfig, 3)
-                };
-
-                gyroIO = new GyroIO() {};
+                // Runs on the FPGA clock, which the simulator can pause and step faster than real time
+                DrivetrainSimulation drivetrainSimulation = new DrivetrainSimulation(moduleGeneralConfig, drivetrainConfig, Timer::getFPGATimestamp);
+                swerveDrive = new SwerveDrive(
+                    moduleGeneralConfig,
+                    drivetrainConfig,
+                    new ModuleIO[] {
+                        new ModuleIOSim(moduleGeneralConfig, drivetrainSimulation, 0),
+                        new ModuleIOSim(moduleGeneralConfig, drivetrainSimulation, 1),
+                        new ModuleIOSim(moduleGeneralConfig, drivetrainSimulation, 2),
+                        new ModuleIOSim(moduleGeneralConfig, drivetrainSimulation, 3)
+                    },
+                    new GyroIOSim(drivetrainSimulation),
+                    drivetrainSimulation
+                );
+                // Caught up right before every odometry sample, in its own fixed steps
+                PhoenixOdometryThread.getInstance().registerSimulationStep(dt -> drivetrainSimulation.update());
+                PhoenixOdometryThread.getInstance().start();
                 break;
 
             case REPLAY:
-                drivetrainConfig = SwerveDrivetrainConfigComp.getInstance();
-                moduleGeneralConfig = SwerveModuleGeneralConfigComp.getInstance();
-
-                modules = new ModuleIO[] {
-                    new ModuleIO() {},
-                    new ModuleIO() {},
-                    new ModuleIO() {},
-                    new ModuleIO() {}
-                };
-
-                gyroIO = new GyroIOPigeon2();
+                swerveDrive = new SwerveDrive(
+                    SwerveModuleGeneralConfigComp.getInstance(),
+                    SwerveDrivetrainConfigComp.getInstance(),
+                    new ModuleIO[] {
+                        new ModuleIO() {},
+                        new ModuleIO() {},
+                        new ModuleIO() {},
+                        new ModuleIO() {}
+                    },
+                    new GyroIOPigeon2(),
+                    null
+                );
 
                 break;
 
@@ -168,20 +215,43 @@ public class SwerveDrive extends SubsystemBase {
                 drivetrainConfig = SwerveDrivetrainConfigComp.getInstance();
                 moduleGeneralConfig = SwerveModuleGeneralConfigComp.getInstance();
 
-                modules = new ModuleIO[] {
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFLConfigComp.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFRConfigComp.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigComp.getInstance()),
-                    new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBRConfigComp.getInstance())
-                };
-                
-                gyroIO = new GyroIOPigeon2();
+                swerveDrive = new SwerveDrive(
+                    moduleGeneralConfig,
+                    drivetrainConfig,
+                    new ModuleIO[] {
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFLConfigComp.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificFRConfigComp.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBLConfigComp.getInstance()),
+                        new ModuleIOTalonFX(moduleGeneralConfig, SwerveModuleSpecificBRConfigComp.getInstance())
+                    },
+                    new GyroIOPigeon2(),
+                    null
+                );
                 PhoenixOdometryThread.getInstance().start();
 
                 break;
-                
         }
 
+        return swerveDrive;
+    }
+
+    /**
+     * @param drivetrainSimulation physics behind simulated IO, null on the robot. Only used to log
+     *     and place the simulated robot, stepping it is up to whoever samples the IO.
+     */
+    SwerveDrive(
+        SwerveModuleGeneralConfigBase moduleGeneralConfig,
+        SwerveDrivetrainConfigBase drivetrainConfig,
+        ModuleIO[] modules,
+        GyroIO gyroIO,
+        DrivetrainSimulation drivetrainSimulation
+    ) {
+        this.moduleGeneralConfig = moduleGeneralConfig;
+        this.drivetrainConfig = drivetrainConfig;
+        this.modules = modules;
+        this.gyroIO = gyroIO;
+        this.drivetrainSimulation = drivetrainSimulation;
+
         kinematics = new SwerveDriveKinematics(
             drivetrainConfig.getFrontLeftPositionMeters(),
             drivetrainConfig.getFrontRightPositionMeters(),
@@ -189,6 +259,9 @@ public class SwerveDrive extends SubsystemBase {
             drivetrainConfig.getBackRightPositionMeters()
         );
 
+        commandChain = new DriveCommandChain(moduleGeneralConfig, drivetrainConfig);
+        driveLoop = new SwerveDriveLoop(modules, moduleInputs, gyroInputs, RobotState.getInstance(), commandChain, Timer.getTimestamp());
+
         // Create the SysId routine - this is going to be in torque current foc units not voltage
         driveCharacterizationSysIdRoutine = new SysIdRoutine(
             new SysIdRoutine.Config(
@@ -240,69 +313,67 @@ public class SwerveDrive extends SubsystemBase {
 
             for (int i = 0; i < 4; i++) {
                 modules[i].updateInputs(moduleInputs[i]);
-                Logger.processInputs("SwerveDrive/module" + i, moduleInputs[i]);
+                Logger.processInputs(kModuleInputKeys[i], moduleInputs[i]);
             }
         } finally {
             odometryLock.unlock();
         }
 
         for (int i = 0; i < 4; i++) {
-            moduleStates[i] = new SwerveModuleState(
-                moduleInputs[i].driveVelocityMetersPerSec,
-                moduleInputs[i].steerPosition
-            );
+            moduleStates[i].speedMetersPerSecond = moduleInputs[i].driveVelocityMetersPerSec;
+            moduleStates[i].angle = moduleInputs[i].steerPosition;
+            modulePositions[i].distanceMeters = moduleInputs[i].drivePositionMeters;
+            modulePositions[i].angle = moduleInputs[i].steerPosition;
         }
 
-        ArrayList<Pose2d> updatedPoses = new ArrayList<Pose2d>();
+        int sampleCount = driveLoop.update(Timer.getTimestamp());
+        logDrivePowerLimits();
 
-        double[] odometryTimestampsSeconds = moduleInputs[0].odometryTimestampsSeconds;
-        for (int i = 0; i < odometryTimestampsSeconds.length; i++) {
-            for (int j = 0; j < 4; j++) {
-                modulePositions[j] = new SwerveModulePosition(
-                    moduleInputs[j].odometryDrivePositionsMeters[i],
-                    moduleInputs[j].odometrySteerPositions[i]
-                );
-            }
-            
-            RobotState.getInstance().addOdometryObservation(
-                new OdometryObservation(
-                    odometryTimestampsSeconds[i],
-                    gyroInputs.isConnected,
-                    modulePositions,
-                    moduleStates,
-                    gyroInputs.isConnected ? gyroInputs.odometryYawPositions[i] : new Rotation2d(),
-                    gyroInputs.isConnected ? gyroInputs.yawVelocityRadPerSec : 0
-                )
-            );
-
-            updatedPoses.add(RobotState.getInstance().getEstimatedPose());
-        }
+        // Steer setpoints only mean something while driveRobotRelative is commanding the modules
+        moduleHealthMonitor.update(
+            Timer.getTimestamp(),
+            moduleInputs,
+            commandChain.getModuleSetpointAnglesRad(),
+            Timer.getTimestamp() - driveLoop.getPrevDriveTimeSeconds() < kSetpointGeneratorResetSeconds
+        );
 
-        Logger.recordOutput("SwerveDrive/updatedPoses", updatedPoses.toArray(new Pose2d[0]));
+        // Read back from the pose history, so these already include this loop's vision corrections.
+        // Logged as flat x, y, theta triples, which AdvantageScope shows as poses, so no Pose2d is built per sample
+        int updatedPoseCount = RobotState.getInstance().getRecentPoses(Math.min(sampleCount, kMaxLoggedUpdatedPoses), updatedPoseScratch);
+        if (updatedPoses[updatedPoseCount] == null) {
+            updatedPoses[updatedPoseCount] = new double[updatedPoseCount * 3];
+        }
+        double[] loggedPoses = updatedPoses[updatedPoseCount];
+        System.arraycopy(updatedPoseScratch, 0, loggedPoses, 0, loggedPoses.length);
+        Logger.recordOutput("SwerveDrive/updatedPoses", loggedPoses);
 
         Logger.recordOutput("SwerveDrive/measuredModuleStates", moduleStates);
         Logger.recordOutput("SwerveDrive/measuredModulePositions", modulePositions);
 
+        Command currentCommand = getCurrentCommand();
+        if (currentCommand != lastLoggedCommand) {
+            lastLoggedCommand = currentCommand;
+            lastLoggedCommandName = currentCommand == null ? "" : currentCommand.toString();
+        }
+        Logger.recordOutput("SwerveDrive/CurrentCommand", lastLoggedCommandName);
 
-
-        Logger.recordOutput("SwerveDrive/CurrentCommand", this.getCurrentCommand() == null ? "" : this.getCurrentCommand().toString());
+        if (drivetrainSimulation != null) {
+            updateSimulatedGroundTruthPose();
+        }
     }
 
-    private ChassisSpeeds compensateRobotRelativeSpeeds(ChassisSpeeds speeds) {
-        Rotation2d angularVelocity = new Rotation2d(speeds.omegaRadiansPerSecond * drivetrainConfig.getRotationCompensationCoefficient());
-        if (angularVelocity.getRadians() != 0.0) {
-            speeds = ChassisSpeeds.fromFieldRelativeSpeeds(
-                ChassisSpeeds.fromRobotRelativeSpeeds( // why should this be split into two?
-                    speeds.vxMetersPerSecond,
-                    speeds.vyMetersPerSecond,
-                    speeds.omegaRadiansPerSecond,
-                    RobotState.getInstance().getEstimatedPose().getRotation().plus(angularVelocity)
-                ),
-                RobotState.getInstance().getEstimatedPose().getRotation()
-            );
-        }
+    private void logDrivePowerLimits() {
 
-        return speeds;
+        Logger.recordOutput("SwerveDrive/power/totalDriveSupplyCurrentAmps", driveLoop.getTotalDriveSupplyCurrentAmps());
+        Logger.recordOutput("SwerveDrive/power/openCircuitVoltage", commandChain.getDrivePowerModel().getOpenCircuitVoltage());
+        Logger.recordOutput("SwerveDrive/power/resistanceOhms", commandChain.getDrivePowerModel().getResistanceOhms());
+        Logger.recordOutput("SwerveDrive/power/loadedVoltage", commandChain.getDrivePowerModel().getLoadedVoltage());
+        Logger.recordOutput("SwerveDrive/power/velocityScale", commandChain.getVelocityScale());
+        Logger.recordOutput("SwerveDrive/power/accelerationScale", commandChain.getAccelerationScale());
+    }
+
+    private void updateSimulatedGroundTruthPose() {
+        Logger.recordOutput("SwerveDrive/simulatedGroundTruthPose", drivetrainSimulation.getPose());
     }
 
     // return a supplier that is true if the modules are aligned within the tolerance
@@ -325,43 +396,57 @@ public class SwerveDrive extends SubsystemBase {
     }
     
     public void driveRobotRelative(ChassisSpeeds speeds) {
-        double dt = Timer.getTimestamp() - prevDriveTime; 
-        prevDriveTime = Timer.getTimestamp();
-
         desiredRobotRelativeSpeeds = speeds;
 
-        ChassisSpeeds desiredFieldRelativeSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(desiredRobotRelativeSpeeds, RobotState.getInstance().getEstimatedPose().getRotation());
-        Logger.recordOutput("SwerveDrive/desiredFieldRelativeSpeeds", desiredFieldRelativeSpeeds);
-        Logger.recordOutput("SwerveDrive/desiredRobotRelativeSpeeds", desiredRobotRelativeSpeeds);
-        
-        // Limit acceleration to prevent sudden changes in speed
-        obtainableFieldRelativeSpeeds = ChassisRateLimiter.limit(
-            desiredFieldRelativeSpeeds, 
-            obtainableFieldRelativeSpeeds, 
-            dt, 
-            drivetrainConfig.getMaxTranslationalAccelerationMetersPerSecSec(), 
-            drivetrainConfig.getMaxAngularAccelerationRadiansPerSecSec(),
-            drivetrainConfig.getMaxTranslationalVelocityMetersPerSec(),
-            drivetrainConfig.getMaxAngularVelocityRadiansPerSec()
-        );
-        Logger.recordOutput("SwerveDrive/obtainableFieldRelativeSpeeds", obtainableFieldRelativeSpeeds);
+        // One snapshot for the whole cycle so every frame conversion starts from the same heading
+        RobotStateSnapshot snapshot = RobotState.getInstance().getSnapshot();
 
-        ChassisSpeeds obtainableRobotRelativeSpeeds = ChassisSpeeds.fromFieldRelativeSpeeds(obtainableFieldRelativeSpeeds, RobotState.getInstance().getEstimatedPose().getRotation());
-        Logger.recordOutput("SwerveDrive/obtainableRobotRelativeSpeeds", obtainableRobotRelativeSpeeds);
+        // The drift measured now is the response to last loop's command
+        logSpinDrift(snapshot);
+        boolean isCompensated = isLatencyCompensationEnabled.get();
+        wasLastCommandCompensated = isCompensated;
 
-        SwerveModuleState[] moduleSetpoints = kinematics.toSwerveModuleStates(obtainableRobotRelativeSpeeds);
-
-        SwerveDriveKinematics.desaturateWheelSpeeds(
-            moduleSetpoints, 
-            drivetrainConfig.getMaxModuleVelocity()
-        );
-        Logger.recordOutput("SwerveDrive/desaturatedModuleSetpoints", moduleSetpoints);
+        driveLoop.drive(desiredRobotRelativeSpeeds, snapshot, Timer.getTimestamp(), isCompensated);
+        Logger.recordOutput("SwerveDrive/latencyCompensation/isEnabled", isCompensated);
+        Logger.recordOutput("SwerveDrive/latencyCompensation/actuationLatencySeconds", driveLoop.getActuationLatencySeconds());
+        Logger.recordOutput("SwerveDrive/latencyCompensation/headingOffsetRad", driveLoop.getHeadingOffsetRad());
+        Logger.recordOutput("SwerveDrive/desiredFieldRelativeSpeeds", commandChain.getDesiredFieldRelativeSpeeds());
+        Logger.recordOutput("SwerveDrive/desiredRobotRelativeSpeeds", desiredRobotRelativeSpeeds);
+        Logger.recordOutput("SwerveDrive/obtainableFieldRelativeSpeeds", commandChain.getRateLimitedFieldRelativeSpeeds());
+        Logger.recordOutput("SwerveDrive/obtainableRobotRelativeSpeeds", commandChain.getObtainableRobotRelativeSpeeds());
+        Logger.recordOutput("SwerveDrive/tractionStepFraction", commandChain.getTractionFraction());
+        Logger.recordOutput("SwerveDrive/tractionLimitingModule", commandChain.getTractionLimitingModule());
+        Logger.recordOutput("SwerveDrive/moduleMaxAccelerationsMetersPerSecSec", commandChain.getModuleMaxAccelerationsMetersPerSecSec());
+        Logger.recordOutput("SwerveDrive/setpointStepFraction", commandChain.getSetpointStepFraction());
+
+        Logger.recordOutput("SwerveDrive/moduleSetpointSpeedsMetersPerSec", commandChain.getModuleSetpointSpeedsMetersPerSec());
+        Logger.recordOutput("SwerveDrive/moduleSetpointAnglesRad", commandChain.getModuleSetpointAnglesRad());
+        Logger.recordOutput("SwerveDrive/moduleDriveAccelerationSetpoints", commandChain.getModuleDriveAccelerationSetpoints());
+        Logger.recordOutput("SwerveDrive/moduleSteerVelocitySetpoints", commandChain.getModuleSteerVelocitySetpoints());
+    }
 
-        for (int i = 0; i < 4; i++) {
-            moduleSetpoints[i].optimize(moduleStates[i].angle);
-            modules[i].setState(moduleSetpoints[i]);
+    /**
+     * Logs how fast the robot moves sideways to the field relative speeds it was commanded last loop,
+     * under a separate key for commands converted with and without latency compensation so the two
+     * can be compared on the same robot.
+     */
+    private void logSpinDrift(RobotStateSnapshot snapshot) {
+        ChassisSpeeds obtainableFieldRelativeSpeeds = commandChain.getObtainableFieldRelativeSpeeds();
+        double commandedSpeed = Math.hypot(obtainableFieldRelativeSpeeds.vxMetersPerSecond, obtainableFieldRelativeSpeeds.vyMetersPerSecond);
+        if (commandedSpeed < kMinDriftLogSpeedMetersPerSec) {
+            return;
         }
-        Logger.recordOutput("SwerveDrive/optimizedModuleSetpoints", moduleSetpoints);
+
+        double measuredDrift = (
+            obtainableFieldRelativeSpeeds.vxMetersPerSecond * snapshot.fieldVyMetersPerSec() -
+            obtainableFieldRelativeSpeeds.vyMetersPerSecond * snapshot.fieldVxMetersPerSec()
+        ) / commandedSpeed;
+        Logger.recordOutput(
+            wasLastCommandCompensated ?
+                "SwerveDrive/latencyCompensation/compensatedDriftMetersPerSec" :
+                "SwerveDrive/latencyCompensation/uncompensatedDriftMetersPerSec",
+            measuredDrift
+        );
     }
 
     public void driveFieldRelative(ChassisSpeeds speeds) {
@@ -369,10 +454,35 @@ public class SwerveDrive extends SubsystemBase {
         driveRobotRelative(speeds);
     }
 
+    /** Fraction of the configured maximum velocities the battery can still reach */
+    public double getVelocityScale() {
+        return commandChain.getVelocityScale();
+    }
+
+    /** Fraction of the configured maximum accelerations the battery can still deliver at the current speed */
+    public double getAccelerationScale() {
+        return commandChain.getAccelerationScale();
+    }
+
+    public double getTotalDriveSupplyCurrentAmps() {
+        return driveLoop.getTotalDriveSupplyCurrentAmps();
+    }
+
     public void resetGyro(Rotation2d yaw) {
         gyroIO.resetGyro(yaw);
     }
 
+    /** Only meaningful in simulation, the pose the simulated cameras see the field from */
+    public Pose2d getSimulatedGroundTruthPose() {
+        return drivetrainSimulation == null ? Pose2d.kZero : drivetrainSimulation.getPose();
+    }
+
+    public void resetSimulatedGroundTruthPose(Pose2d pose) {
+        if (drivetrainSimulation != null) {
+            drivetrainSimulation.resetPose(pose);
+        }
+    }
+
     public void setWheelCoast(boolean isCoast) {
         for (ModuleIO module : modules) {
             module.setWheelCoast(isCoast);
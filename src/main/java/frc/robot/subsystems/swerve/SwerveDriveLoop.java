@@ -0,0 +1,179 @@
+package frc.robot.subsystems.swerve;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.RobotState;
+import frc.robot.RobotState.OdometryObservation;
+import frc.robot.RobotStateSnapshot;
+import frc.robot.subsystems.swerve.gyro.GyroIO;
+import frc.robot.subsystems.swerve.module.ModuleIO;
+
+/**
+ * The per-loop steps around the drivetrain IO: turning one loop of sensor inputs into power limits
+ * and odometry observations, and one chassis speed command into module setpoints.
+ *
+ * <p>Like {@link DriveCommandChain} it has no timers, logging or singletons. {@link SwerveDrive}
+ * reads the IO and logs around it, headless simulations call the same steps on their own clock and
+ * {@link RobotState}.
+ */
+public class SwerveDriveLoop {
+    private final ModuleIO[] modules;
+    private final ModuleIO.ModuleIOInputs[] moduleInputs;
+    private final GyroIO.GyroIOInputs gyroInputs;
+    private final RobotState robotState;
+    private final DriveCommandChain commandChain;
+
+    private final OdometryObservation odometryObservation = new OdometryObservation(4);
+    private final double[] measuredModuleAnglesRad = new double[4];
+    private final double[] driveTorqueCurrentsAmps = new double[4];
+
+    private double totalDriveSupplyCurrentAmps = 0;
+    private double prevDriveTimeSeconds;
+    private double actuationLatencySeconds = 0;
+    private double headingOffsetRad = 0;
+
+    /**
+     * @param moduleInputs inputs the caller updates from the module IOs before every {@link #update}
+     * @param gyroInputs inputs the caller updates from the gyro IO before every {@link #update}
+     * @param prevDriveTimeSeconds when the drivetrain was last commanded, the first command restarts
+     *     the setpoints from the measured state if that was long enough ago
+     */
+    public SwerveDriveLoop(
+        ModuleIO[] modules,
+        ModuleIO.ModuleIOInputs[] moduleInputs,
+        GyroIO.GyroIOInputs gyroInputs,
+        RobotState robotState,
+        DriveCommandChain commandChain,
+        double prevDriveTimeSeconds
+    ) {
+        this.modules = modules;
+        this.moduleInputs = moduleInputs;
+        this.gyroInputs = gyroInputs;
+        this.robotState = robotState;
+        this.commandChain = commandChain;
+        this.prevDriveTimeSeconds = prevDriveTimeSeconds;
+    }
+
+    /**
+     * Updates the power limits from the measured battery, then adds this loop's odometry samples
+     * and fuses the vision observations queued by now.
+     *
+     * @return how many odometry samples were added
+     */
+    public int update(double nowSeconds) {
+        totalDriveSupplyCurrentAmps = 0;
+        double averageSupplyVoltage = 0;
+        for (int i = 0; i < 4; i++) {
+            // Signed, a braking module feeds the others and the battery sees only the net draw
+            totalDriveSupplyCurrentAmps += moduleInputs[i].driveSupplyCurrent;
+            averageSupplyVoltage += moduleInputs[i].driveSupplyVoltage / 4.0;
+        }
+        commandChain.updatePowerLimits(averageSupplyVoltage, totalDriveSupplyCurrentAmps);
+
+        // Each device stamps its own samples, so only use as many samples as every queue delivered
+        int sampleCount = moduleInputs[0].odometryTimestampsSeconds.length;
+        for (int j = 1; j < 4; j++) {
+            sampleCount = Math.min(sampleCount, moduleInputs[j].odometryTimestampsSeconds.length);
+        }
+        if (gyroInputs.isConnected) {
+            sampleCount = Math.min(sampleCount, gyroInputs.odometryTimestampsSeconds.length);
+        }
+
+        // The accelerometer is only read once per loop, before the samples so a collision covers all of them
+        if (gyroInputs.isConnected) {
+            robotState.addAccelerometerReading(
+                nowSeconds,
+                gyroInputs.accelerationXMetersPerSecSq,
+                gyroInputs.accelerationYMetersPerSecSq
+            );
+        }
+
+        for (int i = 0; i < sampleCount; i++) {
+            double averageModuleTimestampSeconds = 0;
+            for (int j = 0; j < 4; j++) {
+                odometryObservation.moduleTimestampsSeconds[j] = moduleInputs[j].odometryTimestampsSeconds[i];
+                odometryObservation.moduleDistancesMeters[j] = moduleInputs[j].odometryDrivePositionsMeters[i];
+                odometryObservation.moduleAnglesRad[j] = moduleInputs[j].odometrySteerPositionsRad[i];
+                odometryObservation.moduleVelocitiesMetersPerSec[j] = moduleInputs[j].driveVelocityMetersPerSec;
+                averageModuleTimestampSeconds += moduleInputs[j].odometryTimestampsSeconds[i] / 4.0;
+            }
+
+            // Modules are interpolated to the gyro sample time, which the yaw reading belongs to
+            odometryObservation.timestampSeconds = gyroInputs.isConnected ? gyroInputs.odometryTimestampsSeconds[i] : averageModuleTimestampSeconds;
+            odometryObservation.isGyroConnected = gyroInputs.isConnected;
+            odometryObservation.yawPositionRad = gyroInputs.isConnected ? gyroInputs.odometryYawPositionsRad[i] : 0;
+            odometryObservation.yawVelocityRadPerSec = gyroInputs.isConnected ? gyroInputs.yawVelocityRadPerSec : 0;
+
+            robotState.addOdometryObservation(odometryObservation);
+        }
+
+        // Vision is fused after odometry so measurements land inside the pose history
+        robotState.processVisionObservations();
+        robotState.logOdometryObservations();
+
+        return sampleCount;
+    }
+
+    /**
+     * Runs the command chain on one command and sends the module setpoints.
+     *
+     * @param snapshot the estimate the whole cycle converts from, so every frame conversion starts
+     *     from the same heading
+     * @param isCompensated convert at the heading the robot will have once the modules act
+     */
+    public void drive(ChassisSpeeds desiredRobotRelativeSpeeds, RobotStateSnapshot snapshot, double nowSeconds, boolean isCompensated) {
+        double dt = nowSeconds - prevDriveTimeSeconds;
+        prevDriveTimeSeconds = nowSeconds;
+
+        // The estimate is already old and the modules act later still
+        actuationLatencySeconds = commandChain.getActuationLatencySeconds(nowSeconds - robotState.getLatestOdometryTimestampSeconds());
+        headingOffsetRad = isCompensated ? snapshot.yawVelocityRadPerSec() * actuationLatencySeconds : 0;
+
+        for (int i = 0; i < 4; i++) {
+            measuredModuleAnglesRad[i] = moduleInputs[i].steerPosition.getRadians();
+            driveTorqueCurrentsAmps[i] = moduleInputs[i].driveTorqueCurrent;
+        }
+
+        if (dt > SwerveDrive.kSetpointGeneratorResetSeconds) {
+            commandChain.reset(robotState.getRobotRelativeSpeeds(), measuredModuleAnglesRad);
+        }
+
+        commandChain.calculate(
+            desiredRobotRelativeSpeeds,
+            snapshot.pose().getRotation(),
+            headingOffsetRad,
+            isCompensated,
+            dt,
+            measuredModuleAnglesRad,
+            driveTorqueCurrentsAmps
+        );
+
+        // Primitives all the way to the module IOs, nothing in the loop allocates a state
+        for (int i = 0; i < 4; i++) {
+            modules[i].setState(
+                commandChain.getModuleSetpointSpeedsMetersPerSec()[i],
+                commandChain.getModuleSetpointAnglesRad()[i],
+                commandChain.getModuleDriveAccelerationSetpoints()[i],
+                commandChain.getModuleSteerVelocitySetpoints()[i]
+            );
+        }
+    }
+
+    /** Net drive supply current of the last {@link #update} */
+    public double getTotalDriveSupplyCurrentAmps() {
+        return totalDriveSupplyCurrentAmps;
+    }
+
+    public double getPrevDriveTimeSeconds() {
+        return prevDriveTimeSeconds;
+    }
+
+    /** Latency the last {@link #drive} converted for */
+    public double getActuationLatencySeconds() {
+        return actuationLatencySeconds;
+    }
+
+    /** How far the last {@link #drive} expected the robot to turn before the modules act, 0 if uncompensated */
+    public double getHeadingOffsetRad() {
+        return headingOffsetRad;
+    }
+}
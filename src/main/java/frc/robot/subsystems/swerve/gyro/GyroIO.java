@@ -11,8 +11,12 @@ public interface GyroIO {
         public Rotation2d yawPosition = new Rotation2d();
         public double yawVelocityRadPerSec = 0.0;
 
+        // Robot relative, used to detect collisions
+        public double accelerationXMetersPerSecSq = 0.0;
+        public double accelerationYMetersPerSecSq = 0.0;
+
         public double[] odometryTimestampsSeconds = new double[] {};
-        public Rotation2d[] odometryYawPositions = new Rotation2d[] {};
+        public double[] odometryYawPositionsRad = new double[] {};
     }
 
     public default void updateInputs(GyroIOInputs inputs) {}
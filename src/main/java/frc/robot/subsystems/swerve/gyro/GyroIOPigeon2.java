@@ -1,5 +1,6 @@
 package frc.robot.subsystems.swerve.gyro;
 
+import static edu.wpi.first.units.Units.MetersPerSecondPerSecond;
 import static edu.wpi.first.units.Units.Radians;
 import static edu.wpi.first.units.Units.RadiansPerSecond;
 
@@ -12,8 +13,10 @@ import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
+import edu.wpi.first.units.measure.LinearAcceleration;
 import java.util.Queue;
 import frc.robot.lib.util.PhoenixUtil;
+import frc.robot.lib.util.SampleQueueDrainer;
 import frc.robot.subsystems.swerve.PhoenixOdometryThread;
 import frc.robot.subsystems.swerve.SwerveDrive;
 
@@ -22,9 +25,13 @@ public class GyroIOPigeon2 implements GyroIO {
 
     private final StatusSignal<Angle> yawSignal;
     private final StatusSignal<AngularVelocity> yawVelocitySignal;
+    private final StatusSignal<LinearAcceleration> accelerationXSignal;
+    private final StatusSignal<LinearAcceleration> accelerationYSignal;
 
     private final Queue<Double> odometryTimestampQueue;
     private final Queue<Double> yawPositionQueue;
+    private final SampleQueueDrainer timestampDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
+    private final SampleQueueDrainer yawPositionDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
 
     public GyroIOPigeon2() {
         gyro = new Pigeon2(2, "drivetrain");
@@ -38,33 +45,35 @@ public class GyroIOPigeon2 implements GyroIO {
 
         yawSignal = gyro.getYaw().clone();
         yawVelocitySignal = gyro.getAngularVelocityZWorld().clone();
+        accelerationXSignal = gyro.getAccelerationX().clone();
+        accelerationYSignal = gyro.getAccelerationY().clone();
 
         BaseStatusSignal.setUpdateFrequencyForAll(
             SwerveDrive.ODOMETRY_FREQUENCY,
             yawSignal,
             yawVelocitySignal
         );
+        BaseStatusSignal.setUpdateFrequencyForAll(100, accelerationXSignal, accelerationYSignal);
 
-        odometryTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
         yawPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(yawSignal.clone());
+        odometryTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue(yawPositionQueue);
 
         gyro.optimizeBusUtilization();
     }
 
     @Override
     public synchronized void updateInputs(GyroIOInputs inputs) {
-        BaseStatusSignal.refreshAll(yawVelocitySignal);
+        BaseStatusSignal.refreshAll(yawVelocitySignal, accelerationXSignal, accelerationYSignal);
 
         inputs.isConnected = true;
 
         inputs.yawPosition = new Rotation2d(MathUtil.angleModulus(BaseStatusSignal.getLatencyCompensatedValue(yawSignal, yawVelocitySignal).in(Radians)));
         inputs.yawVelocityRadPerSec = yawVelocitySignal.getValue().in(RadiansPerSecond);
+        inputs.accelerationXMetersPerSecSq = accelerationXSignal.getValue().in(MetersPerSecondPerSecond);
+        inputs.accelerationYMetersPerSecSq = accelerationYSignal.getValue().in(MetersPerSecondPerSecond);
 
-        inputs.odometryTimestampsSeconds = odometryTimestampQueue.stream().mapToDouble(Double::doubleValue).toArray();
-        inputs.odometryYawPositions = yawPositionQueue.stream().map((Double value) -> Rotation2d.fromDegrees(value)).toArray(Rotation2d[]::new);
-
-        odometryTimestampQueue.clear();
-        yawPositionQueue.clear();
+        inputs.odometryTimestampsSeconds = timestampDrainer.drain(odometryTimestampQueue, 1);
+        inputs.odometryYawPositionsRad = yawPositionDrainer.drain(yawPositionQueue, Math.PI / 180);
     }
 
     @Override
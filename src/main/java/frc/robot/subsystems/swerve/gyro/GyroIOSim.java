@@ -0,0 +1,207 @@
+package frc.robot.subsystems.swerve.gyro;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.lib.util.SampleQueueDrainer;
+import frc.robot.subsystems.swerve.DrivetrainSimulation;
+import frc.robot.subsystems.swerve.PhoenixOdometryThread;
+import frc.robot.subsystems.swerve.SwerveDrive;
+
+/**
+ * A Pigeon2 on the simulated chassis. Yaw is integrated from the chassis yaw rate plus a bias that
+ * drifts as a random walk, so like the real gyro it knows nothing about where the robot was put
+ * down, only how it turned since the last reset. Every sample carries white noise and reaches the
+ * robot {@code latencySeconds} after it was measured.
+ *
+ * <p>Samples are fed through the odometry thread like the signals of {@link GyroIOPigeon2}, each
+ * stamped with the time it was measured the way the Pigeon's device timestamp would be, so the
+ * odometry sees the delay only as samples arriving late.
+ */
+public class GyroIOSim implements GyroIO {
+    // Roughly what a Pigeon2 shows on the bench
+    private static final double kDefaultNoiseStdDevRad = Math.toRadians(0.01);
+    private static final double kDefaultInitialBiasRadPerSec = Math.toRadians(0.003);
+    public static final double kDefaultBiasRandomWalkRadPerSecPerSqrtSec = Math.toRadians(0.0005);
+    public static final double kDefaultLatencySeconds = 0.005;
+    private static final long kDefaultSeed = 0;
+    // Without an odometry thread the gyro samples itself on simulated time at the odometry frequency
+    private static final int kStepsPerOdometrySample = (int) Math.round(1 / (SwerveDrive.ODOMETRY_FREQUENCY * DrivetrainSimulation.kStepSeconds));
+
+    private final double noiseStdDevRad;
+    private final double biasRandomWalkRadPerSecPerSqrtSec;
+    private final double latencySeconds;
+    // One generator per thread, so the noise each one draws does not depend on how they interleave
+    private final Random odometryRandom;
+    private final Random inputsRandom;
+
+    // Measured yaw, yaw rate and simulated time at every simulation step, oldest first once the buffer is full
+    private final double[] yawHistoryRad;
+    private final double[] yawVelocityHistoryRadPerSec;
+    private final double[] timeHistorySeconds;
+    private int historyIndex = 0;
+    private boolean hasMeasured = false;
+    // When the last yaw the odometry thread took was measured
+    private double odometrySampleTimeSeconds = 0;
+
+    private double measuredYawRad = 0;
+    private double biasRadPerSec;
+    private double accelerationXMetersPerSecSq = 0;
+    private double accelerationYMetersPerSecSq = 0;
+
+    private final Queue<Double> odometryTimestampQueue;
+    private final Queue<Double> yawPositionQueue;
+    private final SampleQueueDrainer timestampDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
+    private final SampleQueueDrainer yawPositionDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
+    private final boolean isSelfSampling;
+    private int stepsSinceOdometrySample = 0;
+
+    public GyroIOSim(DrivetrainSimulation simulation) {
+        this(
+            simulation,
+            kDefaultNoiseStdDevRad,
+            kDefaultInitialBiasRadPerSec,
+            kDefaultBiasRandomWalkRadPerSecPerSqrtSec,
+            kDefaultLatencySeconds,
+            kDefaultSeed,
+            PhoenixOdometryThread.getInstance()
+        );
+    }
+
+    /**
+     * @param noiseStdDevRad standard deviation of the white noise on every yaw sample
+     * @param initialBiasRadPerSec yaw rate bias at startup, integrates into drift
+     * @param biasRandomWalkRadPerSecPerSqrtSec how fast the bias wanders
+     * @param latencySeconds time from measurement until a sample reaches the robot
+     * @param seed seed for the noise, so runs can be repeated exactly
+     * @param odometryThread thread that samples the gyro, or null to sample it from the
+     *     simulation's own steps, for simulations without a robot
+     */
+    public GyroIOSim(
+        DrivetrainSimulation simulation,
+        double noiseStdDevRad,
+        double initialBiasRadPerSec,
+        double biasRandomWalkRadPerSecPerSqrtSec,
+        double latencySeconds,
+        long seed,
+        PhoenixOdometryThread odometryThread
+    ) {
+        this.noiseStdDevRad = noiseStdDevRad;
+        this.biasRadPerSec = initialBiasRadPerSec;
+        this.biasRandomWalkRadPerSecPerSqrtSec = biasRandomWalkRadPerSecPerSqrtSec;
+        this.latencySeconds = latencySeconds;
+        Random seeds = new Random(seed);
+        odometryRandom = new Random(seeds.nextLong());
+        inputsRandom = new Random(seeds.nextLong());
+
+        int historySize = (int) Math.round(latencySeconds / DrivetrainSimulation.kStepSeconds) + 1;
+        yawHistoryRad = new double[historySize];
+        yawVelocityHistoryRadPerSec = new double[historySize];
+        timeHistorySeconds = new double[historySize];
+
+        simulation.addControlStep(dt -> measure(simulation, dt));
+
+        isSelfSampling = odometryThread == null;
+        if (isSelfSampling) {
+            yawPositionQueue = new ArrayBlockingQueue<>(PhoenixOdometryThread.kQueueCapacity);
+            odometryTimestampQueue = new ArrayBlockingQueue<>(PhoenixOdometryThread.kQueueCapacity);
+        } else {
+            yawPositionQueue = odometryThread.registerSignal(this::sampleOdometryYawDegrees);
+            odometryTimestampQueue = odometryThread.makeTimestampQueue(this::getOdometrySampleTimeSeconds);
+        }
+    }
+
+    /**
+     * Takes one measurement before the simulation steps. Called from the odometry thread.
+     *
+     * <p>The accelerations are copied here so {@link #updateInputs} never has to lock the
+     * simulation while holding this gyro, the simulation already holds its own lock when it calls
+     * in here.
+     */
+    private synchronized void measure(DrivetrainSimulation simulation, double dt) {
+        biasRadPerSec += biasRandomWalkRadPerSecPerSqrtSec * Math.sqrt(dt) * odometryRandom.nextGaussian();
+
+        // The yaw rate of the previous step is the one that turned the chassis during it
+        double yawVelocityRadPerSec = simulation.getYawVelocityRadPerSec() + biasRadPerSec;
+        if (hasMeasured) {
+            measuredYawRad += yawVelocityRadPerSec * dt;
+        }
+
+        historyIndex = (historyIndex + 1) % yawHistoryRad.length;
+        yawHistoryRad[historyIndex] = measuredYawRad;
+        yawVelocityHistoryRadPerSec[historyIndex] = yawVelocityRadPerSec;
+        timeHistorySeconds[historyIndex] = simulation.getTimeSeconds();
+        if (!hasMeasured) {
+            // The robot stood still before the simulation started
+            hasMeasured = true;
+            for (int age = 1; age < timeHistorySeconds.length; age++) {
+                timeHistorySeconds[(historyIndex - age + timeHistorySeconds.length) % timeHistorySeconds.length] =
+                    timeHistorySeconds[historyIndex] - age * DrivetrainSimulation.kStepSeconds;
+            }
+        }
+
+        accelerationXMetersPerSecSq = simulation.getAccelerationXMetersPerSecSq();
+        accelerationYMetersPerSecSq = simulation.getAccelerationYMetersPerSecSq();
+
+        if (isSelfSampling && ++stepsSinceOdometrySample >= kStepsPerOdometrySample) {
+            stepsSinceOdometrySample = 0;
+            yawPositionQueue.offer(sampleOdometryYawDegrees());
+            odometryTimestampQueue.offer(odometrySampleTimeSeconds);
+        }
+    }
+
+    /** Oldest sample in the history is the one that is just arriving */
+    private int getDelayedIndex() {
+        return (historyIndex + 1) % yawHistoryRad.length;
+    }
+
+    private synchronized double sampleYawRad(Random random) {
+        return yawHistoryRad[getDelayedIndex()] + noiseStdDevRad * random.nextGaussian();
+    }
+
+    /** Takes the yaw that is just arriving and remembers when it was measured */
+    private synchronized double sampleOdometryYawDegrees() {
+        odometrySampleTimeSeconds = timeHistorySeconds[getDelayedIndex()];
+        return Math.toDegrees(sampleYawRad(odometryRandom));
+    }
+
+    private synchronized double getOdometrySampleTimeSeconds() {
+        return odometrySampleTimeSeconds;
+    }
+
+    @Override
+    public synchronized void updateInputs(GyroIOInputs inputs) {
+        inputs.isConnected = true;
+
+        double yawVelocityRadPerSec = yawVelocityHistoryRadPerSec[getDelayedIndex()];
+        // Extrapolated over the latency like BaseStatusSignal.getLatencyCompensatedValue
+        inputs.yawPosition = new Rotation2d(MathUtil.angleModulus(sampleYawRad(inputsRandom) + yawVelocityRadPerSec * latencySeconds));
+        inputs.yawVelocityRadPerSec = yawVelocityRadPerSec;
+        inputs.accelerationXMetersPerSecSq = accelerationXMetersPerSecSq;
+        inputs.accelerationYMetersPerSecSq = accelerationYMetersPerSecSq;
+
+        inputs.odometryTimestampsSeconds = timestampDrainer.drain(odometryTimestampQueue, 1);
+        inputs.odometryYawPositionsRad = yawPositionDrainer.drain(yawPositionQueue, Math.PI / 180);
+    }
+
+    @Override
+    public void resetGyro(Rotation2d yaw) {
+        // Like Pigeon2.setYaw, samples taken before the reset are not reported afterwards. The
+        // odometry thread fills the queues under the odometry lock, so both are cleared together.
+        SwerveDrive.odometryLock.lock();
+        try {
+            synchronized (this) {
+                measuredYawRad = yaw.getRadians();
+                Arrays.fill(yawHistoryRad, measuredYawRad);
+                odometryTimestampQueue.clear();
+                yawPositionQueue.clear();
+            }
+        } finally {
+            SwerveDrive.odometryLock.unlock();
+        }
+    }
+}
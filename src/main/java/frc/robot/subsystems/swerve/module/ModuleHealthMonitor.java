@@ -0,0 +1,309 @@
+package frc.robot.subsystems.swerve.module;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.lib.util.Elastic;
+import frc.robot.lib.util.Elastic.Notification;
+import frc.robot.lib.util.Elastic.Notification.NotificationLevel;
+import frc.robot.lib.util.RollingHistogram;
+import frc.robot.lib.util.RollingRegression;
+
+/**
+ * Watches the module inputs for signs of a module wearing out during a match.
+ *
+ * <ul>
+ *   <li>Drive temperature and how fast it rises, to warn before the motor reaches its limit</li>
+ *   <li>Wheel acceleration per amp of drive current compared to the other modules, a binding
+ *       gearbox or worn tread needs more current for the same acceleration</li>
+ *   <li>95th percentile steer tracking error while the module is moving</li>
+ *   <li>Median disagreement between the absolute encoder and the steer position</li>
+ * </ul>
+ *
+ * <p>Every statistic is kept over a fixed size primitive window with O(1) updates, so the monitor
+ * allocates nothing while the modules are healthy. A warning is sent to Elastic once when a value
+ * crosses its threshold and rearms after it drops well below it.
+ */
+public class ModuleHealthMonitor {
+    private static final double kTemperatureSamplePeriodSeconds = 0.5;
+    private static final int kTemperatureWindowSize = 120;
+    private static final double kDriveTemperatureLimitFahrenheit = 212;
+    private static final double kDriveTemperatureWarningFahrenheit = 175;
+    private static final double kTemperatureWarningHorizonSeconds = 120;
+
+    private static final int kEfficiencyWindowSize = 500;
+    private static final int kMinEfficiencySamples = 100;
+    // Below this most of the current goes into friction and the acceleration is noise
+    private static final double kMinEfficiencyCurrentAmps = 10;
+    private static final double kEfficiencyWarningRatio = 0.7;
+
+    private static final int kSteerWindowSize = 250;
+    private static final double kSteerHistogramMaxDegrees = 45;
+    private static final int kSteerHistogramBins = 90;
+    // A stopped module holds its heading loosely and that costs nothing
+    private static final double kMinSteerSpeedMetersPerSec = 0.2;
+    private static final double kSteerErrorWarningDegrees = 10;
+    private static final double kEncoderDisagreementWarningDegrees = 3;
+
+    // Warnings rearm once the value drops below this fraction of its threshold
+    private static final double kRearmFraction = 0.8;
+
+    private enum Warning {
+        TEMPERATURE,
+        EFFICIENCY,
+        STEER_ERROR,
+        ENCODER_DISAGREEMENT
+    }
+
+    private final String[] moduleNames;
+    private final int numModules;
+
+    private final RollingRegression[] temperatureWindows;
+    private final RollingRegression[] efficiencyWindows;
+    private final RollingHistogram[] steerErrorWindows;
+    private final RollingHistogram[] encoderDisagreementWindows;
+
+    private double lastTemperatureSampleSeconds = Double.NEGATIVE_INFINITY;
+    private double lastUpdateSeconds = Double.NaN;
+    private final double[] lastDriveVelocitiesMetersPerSec;
+
+    private final double[] temperatureSlopesFahrenheitPerMin;
+    private final double[] efficienciesMetersPerSecSqPerAmp;
+    private final double[] efficiencyRatios;
+    private final double[] steerErrorP95Degrees;
+    private final double[] encoderDisagreementP50Degrees;
+
+    private final boolean[][] activeWarnings;
+    private final boolean[] isHealthy;
+    private final String[] summaries;
+
+    /** @param moduleNames used in the summary and the notifications */
+    public ModuleHealthMonitor(String... moduleNames) {
+        this.moduleNames = moduleNames;
+        numModules = moduleNames.length;
+
+        temperatureWindows = new RollingRegression[numModules];
+        efficiencyWindows = new RollingRegression[numModules];
+        steerErrorWindows = new RollingHistogram[numModules];
+        encoderDisagreementWindows = new RollingHistogram[numModules];
+        for (int i = 0; i < numModules; i++) {
+            temperatureWindows[i] = new RollingRegression(kTemperatureWindowSize);
+            efficiencyWindows[i] = new RollingRegression(kEfficiencyWindowSize);
+            steerErrorWindows[i] = new RollingHistogram(kSteerWindowSize, kSteerHistogramMaxDegrees, kSteerHistogramBins);
+            encoderDisagreementWindows[i] = new RollingHistogram(kSteerWindowSize, kSteerHistogramMaxDegrees, kSteerHistogramBins);
+        }
+
+        lastDriveVelocitiesMetersPerSec = new double[numModules];
+        temperatureSlopesFahrenheitPerMin = new double[numModules];
+        efficienciesMetersPerSecSqPerAmp = new double[numModules];
+        efficiencyRatios = new double[numModules];
+        steerErrorP95Degrees = new double[numModules];
+        encoderDisagreementP50Degrees = new double[numModules];
+
+        activeWarnings = new boolean[numModules][Warning.values().length];
+        isHealthy = new boolean[numModules];
+        summaries = new String[numModules];
+        for (int i = 0; i < numModules; i++) {
+            isHealthy[i] = true;
+            summaries[i] = "OK";
+        }
+    }
+
+    /**
+     * Call once per loop after the inputs were updated.
+     *
+     * @param steerSetpointsRad last commanded steer angle of each module
+     * @param isSteerSetpointValid false while the modules are not driven through their setpoints, e.g. during characterization
+     */
+    public void update(double timestampSeconds, ModuleIO.ModuleIOInputs[] inputs, double[] steerSetpointsRad, boolean isSteerSetpointValid) {
+        double dt = timestampSeconds - lastUpdateSeconds;
+        boolean isTemperatureSample = timestampSeconds - lastTemperatureSampleSeconds >= kTemperatureSamplePeriodSeconds;
+        if (isTemperatureSample) {
+            lastTemperatureSampleSeconds = timestampSeconds;
+        }
+
+        for (int i = 0; i < numModules; i++) {
+            ModuleIO.ModuleIOInputs moduleInputs = inputs[i];
+
+            if (isTemperatureSample) {
+                temperatureWindows[i].add(timestampSeconds, moduleInputs.driveTemperatureFahrenheit);
+            }
+
+            if (dt > 0 && Math.abs(moduleInputs.driveTorqueCurrent) > kMinEfficiencyCurrentAmps) {
+                double wheelAcceleration = (moduleInputs.driveVelocityMetersPerSec - lastDriveVelocitiesMetersPerSec[i]) / dt;
+                efficiencyWindows[i].add(moduleInputs.driveTorqueCurrent, wheelAcceleration);
+            }
+            lastDriveVelocitiesMetersPerSec[i] = moduleInputs.driveVelocityMetersPerSec;
+
+            if (isSteerSetpointValid && Math.abs(moduleInputs.driveVelocityMetersPerSec) > kMinSteerSpeedMetersPerSec) {
+                steerErrorWindows[i].add(Math.toDegrees(Math.abs(
+                    MathUtil.angleModulus(steerSetpointsRad[i] - moduleInputs.steerPosition.getRadians())
+                )));
+            }
+
+            encoderDisagreementWindows[i].add(Math.toDegrees(Math.abs(
+                MathUtil.angleModulus(moduleInputs.steerEncoderAbsolutePosition.getRadians() - moduleInputs.steerPosition.getRadians())
+            )));
+        }
+        lastUpdateSeconds = timestampSeconds;
+
+        updateSummary(inputs);
+    }
+
+    private void updateSummary(ModuleIO.ModuleIOInputs[] inputs) {
+        for (int i = 0; i < numModules; i++) {
+            temperatureSlopesFahrenheitPerMin[i] = temperatureWindows[i].getSlope() * 60;
+            efficienciesMetersPerSecSqPerAmp[i] = efficiencyWindows[i].getCount() >= kMinEfficiencySamples ? efficiencyWindows[i].getSlopeThroughOrigin() : Double.NaN;
+            steerErrorP95Degrees[i] = steerErrorWindows[i].getPercentile(0.95);
+            encoderDisagreementP50Degrees[i] = encoderDisagreementWindows[i].getPercentile(0.5);
+        }
+
+        boolean hasWarningChanged = false;
+        for (int i = 0; i < numModules; i++) {
+            // Against the other modules, so the robot's mass and gearing cancel out
+            double othersEfficiencySum = 0;
+            int othersCount = 0;
+            for (int j = 0; j < numModules; j++) {
+                if (j != i && !Double.isNaN(efficienciesMetersPerSecSqPerAmp[j])) {
+                    othersEfficiencySum += efficienciesMetersPerSecSqPerAmp[j];
+                    othersCount++;
+                }
+            }
+            efficiencyRatios[i] = !Double.isNaN(efficienciesMetersPerSecSqPerAmp[i]) && othersCount > 0 && othersEfficiencySum > 0 ?
+                efficienciesMetersPerSecSqPerAmp[i] / (othersEfficiencySum / othersCount) :
+                1;
+
+            double temperature = inputs[i].driveTemperatureFahrenheit;
+            double secondsToLimit = temperatureSlopesFahrenheitPerMin[i] > 0 ?
+                (kDriveTemperatureLimitFahrenheit - temperature) / temperatureSlopesFahrenheitPerMin[i] * 60 :
+                Double.POSITIVE_INFINITY;
+
+            hasWarningChanged |= updateWarning(
+                i,
+                Warning.TEMPERATURE,
+                temperature > kDriveTemperatureWarningFahrenheit || secondsToLimit < kTemperatureWarningHorizonSeconds,
+                temperature < kDriveTemperatureWarningFahrenheit * kRearmFraction,
+                "Drive motor at %.0f F, rising %.1f F/min",
+                temperature,
+                temperatureSlopesFahrenheitPerMin[i]
+            );
+            hasWarningChanged |= updateWarning(
+                i,
+                Warning.EFFICIENCY,
+                efficiencyRatios[i] < kEfficiencyWarningRatio,
+                efficiencyRatios[i] > 1 - (1 - kEfficiencyWarningRatio) * kRearmFraction,
+                "Drive accelerates %.0f%% as well per amp as the other modules, check for binding or worn tread",
+                efficiencyRatios[i] * 100
+            );
+            hasWarningChanged |= updateWarning(
+                i,
+                Warning.STEER_ERROR,
+                steerErrorP95Degrees[i] > kSteerErrorWarningDegrees,
+                steerErrorP95Degrees[i] < kSteerErrorWarningDegrees * kRearmFraction,
+                "Steer tracking error p95 %.1f deg",
+                steerErrorP95Degrees[i]
+            );
+            hasWarningChanged |= updateWarning(
+                i,
+                Warning.ENCODER_DISAGREEMENT,
+                encoderDisagreementP50Degrees[i] > kEncoderDisagreementWarningDegrees,
+                encoderDisagreementP50Degrees[i] < kEncoderDisagreementWarningDegrees * kRearmFraction,
+                "Absolute encoder disagrees with steer position by %.1f deg, check the encoder and its magnet",
+                encoderDisagreementP50Degrees[i]
+            );
+        }
+
+        if (hasWarningChanged) {
+            rebuildSummaries();
+        }
+
+        Logger.recordOutput("SwerveDrive/health/temperatureSlopesFahrenheitPerMin", temperatureSlopesFahrenheitPerMin);
+        Logger.recordOutput("SwerveDrive/health/efficiencyRatios", efficiencyRatios);
+        Logger.recordOutput("SwerveDrive/health/steerErrorP95Degrees", steerErrorP95Degrees);
+        Logger.recordOutput("SwerveDrive/health/encoderDisagreementP50Degrees", encoderDisagreementP50Degrees);
+        Logger.recordOutput("SwerveDrive/health/isHealthy", isHealthy);
+        Logger.recordOutput("SwerveDrive/health/summary", summaries);
+    }
+
+    /** @return true if the warning started or cleared */
+    private boolean updateWarning(int module, Warning warning, boolean isTriggered, boolean isRearmed, String format, double value) {
+        if (startWarning(module, warning, isTriggered)) {
+            sendWarning(module, String.format(format, value));
+            return true;
+        }
+        return clearWarning(module, warning, isRearmed);
+    }
+
+    /** @return true if the warning started or cleared */
+    private boolean updateWarning(int module, Warning warning, boolean isTriggered, boolean isRearmed, String format, double value0, double value1) {
+        if (startWarning(module, warning, isTriggered)) {
+            sendWarning(module, String.format(format, value0, value1));
+            return true;
+        }
+        return clearWarning(module, warning, isRearmed);
+    }
+
+    private boolean startWarning(int module, Warning warning, boolean isTriggered) {
+        if (activeWarnings[module][warning.ordinal()] || !isTriggered) {
+            return false;
+        }
+        activeWarnings[module][warning.ordinal()] = true;
+        return true;
+    }
+
+    private boolean clearWarning(int module, Warning warning, boolean isRearmed) {
+        if (!activeWarnings[module][warning.ordinal()] || !isRearmed) {
+            return false;
+        }
+        activeWarnings[module][warning.ordinal()] = false;
+        return true;
+    }
+
+    // Only formatted when a warning starts, so a healthy loop builds no strings
+    private void sendWarning(int module, String description) {
+        Elastic.sendNotification(new Notification(
+            NotificationLevel.WARNING,
+            "Swerve module " + moduleNames[module],
+            description
+        ));
+    }
+
+    private void rebuildSummaries() {
+        for (int i = 0; i < numModules; i++) {
+            StringBuilder summary = new StringBuilder();
+            for (Warning warning : Warning.values()) {
+                if (activeWarnings[i][warning.ordinal()]) {
+                    summary.append(summary.length() == 0 ? "" : ",").append(warning.name());
+                }
+            }
+            isHealthy[i] = summary.length() == 0;
+            summaries[i] = isHealthy[i] ? "OK" : summary.toString();
+        }
+    }
+
+    public double getTemperatureSlopeFahrenheitPerMin(int module) {
+        return temperatureSlopesFahrenheitPerMin[module];
+    }
+
+    /** Acceleration per amp against the mean of the other modules, 1 until enough samples were seen */
+    public double getEfficiencyRatio(int module) {
+        return efficiencyRatios[module];
+    }
+
+    public double getSteerErrorP95Degrees(int module) {
+        return steerErrorP95Degrees[module];
+    }
+
+    public double getEncoderDisagreementP50Degrees(int module) {
+        return encoderDisagreementP50Degrees[module];
+    }
+
+    public boolean isHealthy(int module) {
+        return isHealthy[module];
+    }
+
+    /** "OK", or the active warnings separated by commas */
+    public String getSummary(int module) {
+        return summaries[module];
+    }
+}
@@ -20,17 +20,23 @@ public interface ModuleIO {
         public double driveTorqueCurrent = 0;
         public double driveTemperatureFahrenheit = 0;
 
+        public double driveSupplyVoltage = 12;
+        public double driveSupplyCurrent = 0;
+
         public double steerTorqueCurrent = 0;
         public double steerTemperatureFahrenheit = 0;
 
         public double[] odometryTimestampsSeconds = new double[] {};
         public double[] odometryDrivePositionsMeters = new double[] {};
-        public Rotation2d[] odometrySteerPositions = new Rotation2d[] {};
+        public double[] odometrySteerPositionsRad = new double[] {};
     }
 
     public default void updateInputs(ModuleIOInputs inputs) {}
 
     public default void setState(SwerveModuleState state) {}
+    public default void setState(double speedMetersPerSec, double angleRad, double driveAccelerationMetersPerSecSec, double steerVelocityRadPerSec) {
+        setState(new SwerveModuleState(speedMetersPerSec, new Rotation2d(angleRad)));
+    }
     public default void setSteerTorqueCurrentFOC(double torqueCurrentFOC, double driveVelocityMetersPerSec) {}
     public default void setDriveTorqueCurrentFOC(double torqueCurrentFOC, Rotation2d steerAngle) {}
     public default void setWheelCoast(boolean isCoast) {}
@@ -1,120 +1,207 @@
 package frc.robot.subsystems.swerve.module;
 
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.DoubleSupplier;
+
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.system.plant.DCMotor;
-import edu.wpi.first.math.system.plant.LinearSystemId;
-import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
 import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
-
+import frc.robot.lib.util.SampleQueueDrainer;
+import frc.robot.subsystems.swerve.DrivetrainSimulation;
+import frc.robot.subsystems.swerve.PhoenixOdometryThread;
+import frc.robot.subsystems.swerve.SwerveDrive;
+
+/**
+ * The motor controllers of one simulated module. The physics live in {@link DrivetrainSimulation},
+ * which calls back into this class to run the closed loops before every step.
+ */
 public class ModuleIOSim implements ModuleIO {
-    private final DCMotor driveMotorModel = DCMotor.getKrakenX60Foc(1);
-    private final DCMotor turnMotorModel = DCMotor.getKrakenX60Foc(1);
-
-    private final DCMotorSim driveSim =
-        new DCMotorSim( 
-            LinearSystemId.createDCMotorSystem(driveMotorModel, (2.8087 * 0.0194 * 0.0485614385) / 6.12, 6.12), // J = (kA_linear * Kt * r) / G
-            driveMotorModel
-        );
-    private final DCMotorSim steerSim =
-        new DCMotorSim(
-            LinearSystemId.createDCMotorSystem(turnMotorModel,  0.00015, 21.428), // magic number because steer is not important
-            turnMotorModel
-        );
+    // Without an odometry thread the module samples itself on simulated time at the odometry frequency
+    private static final int kStepsPerOdometrySample = (int) Math.round(1 / (SwerveDrive.ODOMETRY_FREQUENCY * DrivetrainSimulation.kStepSeconds));
 
+    private final DrivetrainSimulation simulation;
+    private final DrivetrainSimulation.ModuleSimulation module;
+    private final double wheelRadiusMeters;
+    private final DoubleSupplier supplyVoltageSupplier;
 
     private PIDController driveFeedback = new PIDController(0, 0.0, 0.0);
     private PIDController steerFeedback = new PIDController(25, 0.0, 0.0);
 
     private SimpleMotorFeedforward driveFeedforward = new SimpleMotorFeedforward(0.0, 2.44, 0.1);
+    // Back emf of the steer motor per rad/s of the module
+    private final double steerVoltsPerRadPerSec;
+
+    private double driveAppliedVolts = 0;
+    private double steerAppliedVolts = 0;
+    private double supplyVoltage = 12;
 
     private boolean isSteerClosedLoop = true;
     private boolean isDriveClosedLoop = true;
 
-    private SwerveModuleState lastDesiredState = new SwerveModuleState();
+    private double driveVelocitySetpointMetersPerSec = 0;
+    private double driveAccelerationSetpointMetersPerSecSec = 0;
+    private double steerVelocitySetpointRadPerSec = 0;
+
+    private final Queue<Double> timestampQueue;
+    private final Queue<Double> drivePositionQueue;
+    private final Queue<Double> steerPositionQueue;
+    private final SampleQueueDrainer timestampDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
+    private final SampleQueueDrainer drivePositionDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
+    private final SampleQueueDrainer steerPositionDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
+    private final boolean isSelfSampling;
+    private int stepsSinceOdometrySample = 0;
+
+    public ModuleIOSim(SwerveModuleGeneralConfigBase config, DrivetrainSimulation simulation, int moduleID) {
+        this(config, simulation, moduleID, RoboRioSim::getVInVoltage, PhoenixOdometryThread.getInstance());
+    }
 
-    private double lastTimeInputs = Timer.getTimestamp();
-    
-    private final int moduleID;
-    public ModuleIOSim(SwerveModuleGeneralConfigBase config, int moduleID) {
-        this.moduleID = moduleID;
+    /**
+     * @param supplyVoltageSupplier battery voltage at the motor controller
+     * @param odometryThread thread that samples the module, or null to sample it from the
+     *     simulation's own steps, stamped with simulated time, for simulations without a robot
+     */
+    public ModuleIOSim(
+        SwerveModuleGeneralConfigBase config,
+        DrivetrainSimulation simulation,
+        int moduleID,
+        DoubleSupplier supplyVoltageSupplier,
+        PhoenixOdometryThread odometryThread
+    ) {
+        this.simulation = simulation;
+        this.supplyVoltageSupplier = supplyVoltageSupplier;
+        module = simulation.getModule(moduleID);
+        wheelRadiusMeters = config.getDriveWheelRadiusMeters();
+        steerVoltsPerRadPerSec = config.getSteerMotorToOutputShaftRatio() / DCMotor.getKrakenX60Foc(1).KvRadPerSecPerVolt;
         steerFeedback.enableContinuousInput(-Math.PI, Math.PI);
-    }
 
-    @Override
-    public void updateInputs(ModuleIOInputs inputs) {
-        double dt = Timer.getTimestamp() - lastTimeInputs;
-        lastTimeInputs = Timer.getTimestamp();
+        simulation.addControlStep(this::controlStep);
+
+        isSelfSampling = odometryThread == null;
+        if (isSelfSampling) {
+            drivePositionQueue = new ArrayBlockingQueue<>(PhoenixOdometryThread.kQueueCapacity);
+            steerPositionQueue = new ArrayBlockingQueue<>(PhoenixOdometryThread.kQueueCapacity);
+            timestampQueue = new ArrayBlockingQueue<>(PhoenixOdometryThread.kQueueCapacity);
+        } else {
+            // The odometry thread advances the simulation and samples it through generic signals, the
+            // same way the real modules are sampled
+            drivePositionQueue = odometryThread.registerSignal(() -> module.getDrivePositionRad() * wheelRadiusMeters);
+            steerPositionQueue = odometryThread.registerSignal(() -> module.getSteerAngleRad());
+            timestampQueue = odometryThread.makeTimestampQueue();
+        }
+    }
 
+    /**
+     * Runs the closed loops for one simulation step. Called from the odometry thread with the
+     * simulation locked, so the lock order is always simulation, then this module.
+     */
+    private synchronized void controlStep(double dt) {
+        // The simulated battery sags under load, the motor can never apply more than it gets
+        supplyVoltage = supplyVoltageSupplier.getAsDouble();
         if (isDriveClosedLoop) {
-            driveSim.setInputVoltage(
-                MathUtil.clamp(
-                    driveFeedforward.calculate(lastDesiredState.speedMetersPerSecond) +
-                    driveFeedback.calculate(driveSim.getAngularVelocityRadPerSec() * 0.0485614385), // wheel radius in meters
-                    -12,
-                    12
-                )
+            driveAppliedVolts = MathUtil.clamp(
+                driveFeedforward.calculate(driveVelocitySetpointMetersPerSec) +
+                driveFeedforward.getKa() * driveAccelerationSetpointMetersPerSecSec +
+                driveFeedback.calculate(module.getDriveVelocityRadPerSec() * wheelRadiusMeters),
+                -supplyVoltage,
+                supplyVoltage
             );
         }
 
         if (isSteerClosedLoop) {
-            steerSim.setInputVoltage(
-                MathUtil.clamp(
-                    steerFeedback.calculate(steerSim.getAngularPositionRad()),
-                    -12,
-                    12
-                )
+            steerAppliedVolts = MathUtil.clamp(
+                steerFeedback.calculate(MathUtil.angleModulus(module.getSteerAngleRad())) +
+                steerVoltsPerRadPerSec * steerVelocitySetpointRadPerSec,
+                -12,
+                12
             );
         }
 
-        steerSim.update(dt);
-        driveSim.update(dt);
-        
-        inputs.drivePositionMeters = driveSim.getAngularPositionRad() * 0.0485614385; // wheel radius in meters
-        inputs.driveVelocityMetersPerSec = driveSim.getAngularVelocityRadPerSec() * 0.0485614385;
+        module.setDriveVoltage(driveAppliedVolts);
+        module.setSteerVoltage(steerAppliedVolts);
+
+        if (isSelfSampling && ++stepsSinceOdometrySample >= kStepsPerOdometrySample) {
+            stepsSinceOdometrySample = 0;
+            timestampQueue.offer(simulation.getTimeSeconds());
+            drivePositionQueue.offer(module.getDrivePositionRad() * wheelRadiusMeters);
+            steerPositionQueue.offer(module.getSteerAngleRad());
+        }
+    }
+
+    @Override
+    public void updateInputs(ModuleIOInputs inputs) {
+        // The odometry thread steps the simulation, read one consistent state in between steps
+        synchronized (simulation) {
+            synchronized (this) {
+                readModuleState(inputs);
+            }
+        }
+
+        inputs.odometryTimestampsSeconds = timestampDrainer.drain(timestampQueue, 1);
+        inputs.odometryDrivePositionsMeters = drivePositionDrainer.drain(drivePositionQueue, 1);
+        inputs.odometrySteerPositionsRad = steerPositionDrainer.drain(steerPositionQueue, 1);
+    }
+
+    private void readModuleState(ModuleIOInputs inputs) {
+        inputs.drivePositionMeters = module.getDrivePositionRad() * wheelRadiusMeters;
+        inputs.driveVelocityMetersPerSec = module.getDriveVelocityRadPerSec() * wheelRadiusMeters;
 
-        inputs.steerPosition = new Rotation2d(steerSim.getAngularPosition());
-        inputs.steerVelocityRadPerSec = steerSim.getAngularVelocityRadPerSec();
+        inputs.steerPosition = new Rotation2d(module.getSteerAngleRad());
+        inputs.steerVelocityRadPerSec = module.getSteerVelocityRadPerSec();
 
         inputs.steerEncoderAbsolutePosition = inputs.steerPosition;
         inputs.steerEncoderPosition = inputs.steerPosition;
 
-        inputs.driveTorqueCurrent = driveSim.getCurrentDrawAmps();
-        inputs.steerTorqueCurrent = steerSim.getCurrentDrawAmps();
+        inputs.driveTorqueCurrent = module.getDriveCurrentAmps();
+        inputs.driveSupplyVoltage = supplyVoltage;
+        // Power in equals power out, so supply current is the motor current scaled by the duty cycle, negative while braking
+        inputs.driveSupplyCurrent = supplyVoltage > 0 ? module.getDriveCurrentAmps() * driveAppliedVolts / supplyVoltage : 0;
+        inputs.steerTorqueCurrent = module.getSteerCurrentAmps();
+    }
 
-        inputs.odometryTimestampsSeconds = new double[] {Timer.getTimestamp()};
-        inputs.odometryDrivePositionsMeters = new double[] {inputs.drivePositionMeters};
-        inputs.odometrySteerPositions = new Rotation2d[] {inputs.steerPosition};
+    @Override
+    public synchronized void setState(SwerveModuleState state) {
+        setState(state.speedMetersPerSecond, state.angle.getRadians(), 0, 0);
     }
 
     @Override
-    public void setState(SwerveModuleState state) {
-        driveFeedback.setSetpoint(state.speedMetersPerSecond);
-        steerFeedback.setSetpoint(state.angle.getRadians());
+    public synchronized void setState(double speedMetersPerSec, double angleRad, double driveAccelerationMetersPerSecSec, double steerVelocityRadPerSec) {
+        driveFeedback.setSetpoint(speedMetersPerSec);
+        steerFeedback.setSetpoint(angleRad);
 
         isDriveClosedLoop = true;
         isSteerClosedLoop = true;
 
-        lastDesiredState = state;
+        driveVelocitySetpointMetersPerSec = speedMetersPerSec;
+        driveAccelerationSetpointMetersPerSecSec = driveAccelerationMetersPerSecSec;
+        steerVelocitySetpointRadPerSec = steerVelocityRadPerSec;
     }
 
     @Override
-    public void setSteerTorqueCurrentFOC(double torqueCurrentFOC, double driveVelocityMetersPerSec) {
+    public synchronized void setSteerTorqueCurrentFOC(double torqueCurrentFOC, double driveVelocityMetersPerSec) {
         // In sim, treat torqueCurrentFOC as voltage for simplicity
-        steerSim.setInputVoltage(torqueCurrentFOC);
+        steerAppliedVolts = torqueCurrentFOC;
 
-        isDriveClosedLoop = false;
-        isSteerClosedLoop = true;
+        // Hold the drive at the given velocity like the real module does
+        driveVelocitySetpointMetersPerSec = driveVelocityMetersPerSec;
+        driveFeedback.setSetpoint(driveVelocityMetersPerSec);
+        driveAccelerationSetpointMetersPerSecSec = 0;
+
+        isDriveClosedLoop = true;
+        isSteerClosedLoop = false;
     }
 
     @Override
-    public void setDriveTorqueCurrentFOC(double torqueCurrentFOC, Rotation2d steerAngle) {
+    public synchronized void setDriveTorqueCurrentFOC(double torqueCurrentFOC, Rotation2d steerAngle) {
         // In sim, treat torqueCurrentFOC as voltage for simplicity
-        driveSim.setInputVoltage(torqueCurrentFOC);
+        driveAppliedVolts = torqueCurrentFOC;
+        steerFeedback.setSetpoint(steerAngle.getRadians());
+        steerVelocitySetpointRadPerSec = 0;
 
         isDriveClosedLoop = false;
         isSteerClosedLoop = true;
@@ -6,6 +6,7 @@ import static edu.wpi.first.units.Units.RadiansPerSecond;
 import static edu.wpi.first.units.Units.Radians;
 import static edu.wpi.first.units.Units.Rotation;
 import static edu.wpi.first.units.Units.RotationsPerSecond;
+import static edu.wpi.first.units.Units.Volts;
 
 import java.util.Queue;
 
@@ -28,12 +29,14 @@ import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
 import edu.wpi.first.units.measure.Temperature;
+import edu.wpi.first.units.measure.Voltage;
 import edu.wpi.first.wpilibj.Timer;
 import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
 import frc.robot.constants.swerve.moduleConfigs.SwerveModuleSpecificConfigBase;
 import frc.robot.lib.util.RebelUtil;
 import frc.robot.subsystems.swerve.PhoenixOdometryThread;
 import frc.robot.lib.util.PhoenixUtil;
+import frc.robot.lib.util.SampleQueueDrainer;
 import frc.robot.subsystems.swerve.SwerveDrive;
 
 public class ModuleIOTalonFX implements ModuleIO {
@@ -44,6 +47,9 @@ public class ModuleIOTalonFX implements ModuleIO {
     private final Queue<Double> timestampQueue;
     private final Queue<Double> drivePositionQueue;
     private final Queue<Double>  steerPositionQueue;
+    private final SampleQueueDrainer timestampDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
+    private final SampleQueueDrainer drivePositionDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
+    private final SampleQueueDrainer steerPositionDrainer = new SampleQueueDrainer(PhoenixOdometryThread.kQueueCapacity);
 
     private final StatusSignal<Angle> drivePositionStatusSignal;
     private final StatusSignal<AngularVelocity> driveVelocityStatusSignal;
@@ -56,18 +62,22 @@ public class ModuleIOTalonFX implements ModuleIO {
 
     private final StatusSignal<Current> driveTorqueCurrent;
     private final StatusSignal<Temperature> driveTemperature;
+    private final StatusSignal<Voltage> driveSupplyVoltage;
+    private final StatusSignal<Current> driveSupplyCurrent;
 
     private final StatusSignal<Current> steerTorqueCurrent;
     private final StatusSignal<Temperature> steerTemperature;
 
     private final VelocityTorqueCurrentFOC driveMotorRequest = new VelocityTorqueCurrentFOC(0).withSlot(0);
     private final MotionMagicExpoTorqueCurrentFOC steerMotorRequest = new MotionMagicExpoTorqueCurrentFOC(0).withSlot(0);
+    // Same profile and gains as steerMotorRequest, kept apart so its feedforward never leaks into point to point moves
+    private final MotionMagicExpoTorqueCurrentFOC steerTrackingRequest = new MotionMagicExpoTorqueCurrentFOC(0).withSlot(0);
     private final TorqueCurrentFOC torqueCurrentFOCRequest = new TorqueCurrentFOC(0);
 
     private final SwerveModuleGeneralConfigBase generalConfig;
 
     private Rotation2d lastSteerAngleRad = new Rotation2d();
-    private SwerveModuleState lastRequestedState = new SwerveModuleState();
+    private double lastRequestedSpeedMetersPerSec = 0;
     private double lastRequestedStateTime = Timer.getFPGATimestamp();
 
     public ModuleIOTalonFX(SwerveModuleGeneralConfigBase generalConfig, SwerveModuleSpecificConfigBase specificConfig) {
@@ -183,6 +193,8 @@ public class ModuleIOTalonFX implements ModuleIO {
         // status signals
         driveTorqueCurrent = driveMotor.getTorqueCurrent().clone();
         driveTemperature = driveMotor.getDeviceTemp().clone();
+        driveSupplyVoltage = driveMotor.getSupplyVoltage().clone();
+        driveSupplyCurrent = driveMotor.getSupplyCurrent().clone();
 
         steerTorqueCurrent = steerMotor.getTorqueCurrent().clone();
         steerTemperature = steerMotor.getDeviceTemp().clone();
@@ -196,14 +208,17 @@ public class ModuleIOTalonFX implements ModuleIO {
         steerPositionStatusSignal = steerMotor.getPosition().clone();
         steerVelocityStatusSignal = steerMotor.getVelocity().clone();
 
-        timestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
         drivePositionQueue = PhoenixOdometryThread.getInstance().registerSignal(drivePositionStatusSignal.clone());
         steerPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(steerPositionStatusSignal.clone());
+        // stamp this module's samples with its own CAN receive times
+        timestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue(drivePositionQueue, steerPositionQueue);
 
         BaseStatusSignal.setUpdateFrequencyForAll(
             100,
             driveTorqueCurrent,
             driveTemperature,
+            driveSupplyVoltage,
+            driveSupplyCurrent,
 
             steerTorqueCurrent,
             steerTemperature,
@@ -231,6 +246,8 @@ public class ModuleIOTalonFX implements ModuleIO {
         BaseStatusSignal.refreshAll(
             driveTorqueCurrent,
             driveTemperature,
+            driveSupplyVoltage,
+            driveSupplyCurrent,
 
             steerTorqueCurrent,
             steerTemperature,
@@ -256,17 +273,15 @@ public class ModuleIOTalonFX implements ModuleIO {
 
         inputs.driveTorqueCurrent = driveTorqueCurrent.getValue().in(Amps);
         inputs.driveTemperatureFahrenheit = driveTemperature.getValue().in(Fahrenheit);
+        inputs.driveSupplyVoltage = driveSupplyVoltage.getValue().in(Volts);
+        inputs.driveSupplyCurrent = driveSupplyCurrent.getValue().in(Amps);
 
         inputs.steerTorqueCurrent = steerTorqueCurrent.getValue().in(Amps);
         inputs.steerTemperatureFahrenheit = steerTemperature.getValue().in(Fahrenheit);
 
-        inputs.odometryTimestampsSeconds = timestampQueue.stream().mapToDouble(Double::doubleValue).toArray();
-        inputs.odometryDrivePositionsMeters = drivePositionQueue.stream().mapToDouble(Double::doubleValue).toArray();
-        inputs.odometrySteerPositions = steerPositionQueue.stream().map((Double value) -> Rotation2d.fromRotations(value)).toArray(Rotation2d[]::new);
-
-        timestampQueue.clear();
-        drivePositionQueue.clear();
-        steerPositionQueue.clear();
+        inputs.odometryTimestampsSeconds = timestampDrainer.drain(timestampQueue, 1);
+        inputs.odometryDrivePositionsMeters = drivePositionDrainer.drain(drivePositionQueue, 1);
+        inputs.odometrySteerPositionsRad = steerPositionDrainer.drain(steerPositionQueue, 2 * Math.PI);
 
         lastSteerAngleRad = new Rotation2d(inputs.steerPosition.getRadians());
     }
@@ -279,7 +294,7 @@ public class ModuleIOTalonFX implements ModuleIO {
                     -generalConfig.getDriveMaxVelocityMetersPerSec(),
                     generalConfig.getDriveMaxVelocityMetersPerSec()
                 ) * state.angle.minus(lastSteerAngleRad).getCos()
-            ).withAcceleration((state.speedMetersPerSecond - lastRequestedState.speedMetersPerSecond) / (Timer.getFPGATimestamp() - lastRequestedStateTime))
+            ).withAcceleration((state.speedMetersPerSecond - lastRequestedSpeedMetersPerSec) / (Timer.getFPGATimestamp() - lastRequestedStateTime))
         );
         
         steerMotor.setControl(
@@ -288,7 +303,30 @@ public class ModuleIOTalonFX implements ModuleIO {
             )
         );
 
-        lastRequestedState = state;
+        lastRequestedSpeedMetersPerSec = state.speedMetersPerSecond;
+        lastRequestedStateTime = Timer.getFPGATimestamp();
+    }
+
+    @Override
+    public void setState(double speedMetersPerSec, double angleRad, double driveAccelerationMetersPerSecSec, double steerVelocityRadPerSec) {
+        double cosineScalar = Math.cos(angleRad - lastSteerAngleRad.getRadians());
+        driveMotor.setControl(driveMotorRequest.withVelocity(
+                RebelUtil.constrain(
+                    speedMetersPerSec,
+                    -generalConfig.getDriveMaxVelocityMetersPerSec(),
+                    generalConfig.getDriveMaxVelocityMetersPerSec()
+                ) * cosineScalar
+            ).withAcceleration(driveAccelerationMetersPerSecSec * cosineScalar)
+        );
+
+        // The profile plans to stop at the target, the kV feedforward keeps the steer moving with a target that moves
+        steerMotor.setControl(
+            steerTrackingRequest
+                .withPosition(angleRad / (2 * Math.PI))
+                .withFeedForward(generalConfig.getSteerKV() * steerVelocityRadPerSec / (2 * Math.PI))
+        );
+
+        lastRequestedSpeedMetersPerSec = speedMetersPerSec;
         lastRequestedStateTime = Timer.getFPGATimestamp();
     }
 
@@ -0,0 +1,26 @@
+package frc.robot.subsystems.vision;
+
+import org.littletonrobotics.junction.AutoLog;
+
+public interface VisionIO {
+    @AutoLog
+    class VisionIOInputs {
+        public boolean isConnected = false;
+
+        // Robot pose observations received since the last update, blue alliance origin
+        public double[] observationTimestampsSeconds = new double[] {};
+        public double[] observationXMeters = new double[] {};
+        public double[] observationYMeters = new double[] {};
+        public double[] observationThetaRad = new double[] {};
+        public int[] observationTagCounts = new int[] {};
+        public double[] observationAvgTagDistMeters = new double[] {};
+        public double[] observationAmbiguities = new double[] {};
+
+        public long droppedObservationCount = 0;
+    }
+
+    public default void updateInputs(VisionIOInputs inputs) {}
+
+    /** Sends the robot heading to the camera, MegaTag2 solves translation given this heading */
+    public default void setRobotOrientation(double yawDegrees, double yawRateDegreesPerSec) {}
+}
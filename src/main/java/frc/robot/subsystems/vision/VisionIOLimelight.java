@@ -0,0 +1,73 @@
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.lib.util.LimelightClient;
+import frc.robot.lib.util.LimelightHelpers;
+
+/**
+ * Limelight MegaTag2 pose source.
+ *
+ * <p>Instead of polling {@link LimelightHelpers} from the main loop, every new
+ * {@code botpose_orb_wpiblue} frame wakes the NetworkTables listener thread, which reads the
+ * frames published since its last read with {@link LimelightClient#readQueue()}, decodes them into
+ * primitives and hands them to the main loop through a lock-free queue. Each frame is fused
+ * exactly once, and the main loop only drains the queue, however many cameras there are.
+ */
+public class VisionIOLimelight implements VisionIO {
+    private static final int kQueueCapacity = 32;
+    private static final double kDisconnectedTimeoutSeconds = 0.5;
+
+    private final LimelightClient client;
+    private final VisionObservationBuffer observations = new VisionObservationBuffer(kQueueCapacity);
+
+    private double lastHeartbeat = -1;
+    private double lastHeartbeatChangeSeconds = Double.NEGATIVE_INFINITY;
+
+    public VisionIOLimelight(String name) {
+        client = LimelightClient.getClient(name);
+        client.addPoseListener(this::onPoseFrames);
+    }
+
+    /** Runs on the NetworkTables listener thread, the only reader of the client */
+    private void onPoseFrames() {
+        // NT stamps each value on arrival, decode backs the pipeline and capture latency out of that
+        int sampleCount = client.readQueue();
+        for (int i = 0; i < sampleCount; i++) {
+            LimelightClient.PoseSample pose = client.getSample(i);
+            if (pose.tagCount <= 0) {
+                continue;
+            }
+
+            observations.offer(
+                pose.timestampSeconds,
+                pose.xMeters,
+                pose.yMeters,
+                pose.thetaRad,
+                pose.tagCount,
+                pose.avgTagDistMeters,
+                pose.maxAmbiguity
+            );
+        }
+    }
+
+    @Override
+    public void updateInputs(VisionIOInputs inputs) {
+        double heartbeat = client.getHeartbeat();
+        if (heartbeat != lastHeartbeat) {
+            lastHeartbeat = heartbeat;
+            lastHeartbeatChangeSeconds = Timer.getTimestamp();
+        }
+        inputs.isConnected = Timer.getTimestamp() - lastHeartbeatChangeSeconds < kDisconnectedTimeoutSeconds;
+
+        observations.drainInto(inputs);
+    }
+
+    @Override
+    public void setRobotOrientation(double yawDegrees, double yawRateDegreesPerSec) {
+        client.setRobotOrientation(yawDegrees, yawRateDegreesPerSec);
+    }
+
+    public String getName() {
+        return client.getName();
+    }
+}
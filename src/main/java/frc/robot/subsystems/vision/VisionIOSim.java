@@ -0,0 +1,250 @@
+package frc.robot.subsystems.vision;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.lib.estimation.PoseHistoryBuffer;
+
+/**
+ * Simulated MegaTag2 camera.
+ *
+ * <p>Frames are captured at the camera frame rate against the ground truth pose at the capture
+ * time, so they see the field from where the robot really was rather than from the estimate. A
+ * frame only produces an observation if at least one tag is in front of the camera, inside its
+ * field of view and range, and facing it. The observation is noised by the same distance and tag
+ * count model the estimator scores with, and delivered once its simulated latency has passed.
+ *
+ * <p>All randomness comes from a seeded generator so a simulation run is repeatable.
+ */
+public class VisionIOSim implements VisionIO {
+    private static final int kQueueCapacity = 32;
+    private static final double kTruthHistorySeconds = 1.5;
+    private static final double kMaxSingleTagAmbiguity = 0.3;
+
+    public record CameraProperties(
+        double framesPerSecond,
+        double latencyMeanSeconds,
+        double latencyStdDevSeconds,
+        double translationNoisePerMeterSquared,
+        double headingNoiseRad,
+        double dropoutProbability,
+        double horizontalFovRad,
+        double verticalFovRad,
+        double maxRangeMeters
+    ) {
+        public static CameraProperties limelight4() {
+            return new CameraProperties(
+                30,
+                0.035,
+                0.005,
+                0.02,
+                Units.degreesToRadians(0.5),
+                0.05,
+                Units.degreesToRadians(82),
+                Units.degreesToRadians(56.2),
+                6
+            );
+        }
+    }
+
+    // Tag positions and the direction each tag faces, blue alliance origin
+    private static double[] tagX;
+    private static double[] tagY;
+    private static double[] tagZ;
+    private static double[] tagNormalX;
+    private static double[] tagNormalY;
+    private static double[] tagNormalZ;
+
+    private final Supplier<Pose2d> groundTruthPoseSupplier;
+    private final DoubleSupplier clockSeconds;
+    private final CameraProperties properties;
+    private final Random random;
+
+    private final double cameraX;
+    private final double cameraY;
+    private final double cameraZ;
+    // Columns are the camera axes in robot space
+    private final double[][] cameraRotation = new double[3][3];
+
+    private final PoseHistoryBuffer truthHistory;
+    private final VisionObservationBuffer observations = new VisionObservationBuffer(kQueueCapacity);
+    private final double[] truthSample = new double[3];
+
+    private double nextCaptureSeconds = Double.NaN;
+    private double nextLatencySeconds;
+
+    public VisionIOSim(
+        Transform3d robotToCamera,
+        Supplier<Pose2d> groundTruthPoseSupplier,
+        CameraProperties properties,
+        long seed
+    ) {
+        this(robotToCamera, groundTruthPoseSupplier, Timer::getTimestamp, properties, seed);
+    }
+
+    /** @param clockSeconds time source frames are captured and delivered against */
+    public VisionIOSim(
+        Transform3d robotToCamera,
+        Supplier<Pose2d> groundTruthPoseSupplier,
+        DoubleSupplier clockSeconds,
+        CameraProperties properties,
+        long seed
+    ) {
+        loadFieldLayout();
+
+        this.groundTruthPoseSupplier = groundTruthPoseSupplier;
+        this.clockSeconds = clockSeconds;
+        this.properties = properties;
+        random = new Random(seed);
+
+        cameraX = robotToCamera.getX();
+        cameraY = robotToCamera.getY();
+        cameraZ = robotToCamera.getZ();
+        Translation3d[] axes = {
+            new Translation3d(1, 0, 0).rotateBy(robotToCamera.getRotation()),
+            new Translation3d(0, 1, 0).rotateBy(robotToCamera.getRotation()),
+            new Translation3d(0, 0, 1).rotateBy(robotToCamera.getRotation())
+        };
+        for (int i = 0; i < 3; i++) {
+            cameraRotation[0][i] = axes[i].getX();
+            cameraRotation[1][i] = axes[i].getY();
+            cameraRotation[2][i] = axes[i].getZ();
+        }
+
+        truthHistory = PoseHistoryBuffer.createBuffer(kTruthHistorySeconds, 50);
+        nextLatencySeconds = drawLatency();
+    }
+
+    private static synchronized void loadFieldLayout() {
+        if (tagX != null) {
+            return;
+        }
+
+        List<AprilTag> tags = AprilTagFieldLayout.loadField(AprilTagFields.k2025ReefscapeWelded).getTags();
+        tagX = new double[tags.size()];
+        tagY = new double[tags.size()];
+        tagZ = new double[tags.size()];
+        tagNormalX = new double[tags.size()];
+        tagNormalY = new double[tags.size()];
+        tagNormalZ = new double[tags.size()];
+        for (int i = 0; i < tags.size(); i++) {
+            AprilTag tag = tags.get(i);
+            Translation3d normal = new Translation3d(1, 0, 0).rotateBy(tag.pose.getRotation());
+            tagX[i] = tag.pose.getX();
+            tagY[i] = tag.pose.getY();
+            tagZ[i] = tag.pose.getZ();
+            tagNormalX[i] = normal.getX();
+            tagNormalY[i] = normal.getY();
+            tagNormalZ[i] = normal.getZ();
+        }
+    }
+
+    @Override
+    public void updateInputs(VisionIOInputs inputs) {
+        double now = clockSeconds.getAsDouble();
+        Pose2d truth = groundTruthPoseSupplier.get();
+        truthHistory.addSample(now, truth.getX(), truth.getY(), truth.getRotation().getRadians());
+
+        // Don't try to catch up on frames from before the truth history, e.g. after a breakpoint
+        if (Double.isNaN(nextCaptureSeconds) || now - nextCaptureSeconds > kTruthHistorySeconds) {
+            nextCaptureSeconds = now;
+        }
+
+        double framePeriodSeconds = 1.0 / properties.framesPerSecond();
+        while (nextCaptureSeconds + nextLatencySeconds <= now) {
+            captureFrame(nextCaptureSeconds);
+            nextCaptureSeconds += framePeriodSeconds;
+            nextLatencySeconds = drawLatency();
+        }
+
+        inputs.isConnected = true;
+        observations.drainInto(inputs);
+    }
+
+    private double drawLatency() {
+        return Math.max(properties.latencyMeanSeconds() + properties.latencyStdDevSeconds() * random.nextGaussian(), 0);
+    }
+
+    private void captureFrame(double captureSeconds) {
+        if (random.nextDouble() < properties.dropoutProbability() || !truthHistory.sample(captureSeconds, truthSample)) {
+            return;
+        }
+
+        double robotX = truthSample[0];
+        double robotY = truthSample[1];
+        double robotTheta = truthSample[2];
+        double cos = Math.cos(robotTheta);
+        double sin = Math.sin(robotTheta);
+
+        double lensX = robotX + cos * cameraX - sin * cameraY;
+        double lensY = robotY + sin * cameraX + cos * cameraY;
+        double lensZ = cameraZ;
+
+        double halfHorizontalFov = properties.horizontalFovRad() / 2;
+        double halfVerticalFov = properties.verticalFovRad() / 2;
+
+        int tagCount = 0;
+        double totalDistance = 0;
+        for (int i = 0; i < tagX.length; i++) {
+            double dx = tagX[i] - lensX;
+            double dy = tagY[i] - lensY;
+            double dz = tagZ[i] - lensZ;
+
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (distance > properties.maxRangeMeters()) {
+                continue;
+            }
+            // The tag has to face the camera to be decoded
+            if (tagNormalX[i] * dx + tagNormalY[i] * dy + tagNormalZ[i] * dz >= 0) {
+                continue;
+            }
+
+            // Field to robot space, then robot to camera space
+            double robotDx = cos * dx + sin * dy;
+            double robotDy = -sin * dx + cos * dy;
+            double forward = cameraRotation[0][0] * robotDx + cameraRotation[1][0] * robotDy + cameraRotation[2][0] * dz;
+            double left = cameraRotation[0][1] * robotDx + cameraRotation[1][1] * robotDy + cameraRotation[2][1] * dz;
+            double up = cameraRotation[0][2] * robotDx + cameraRotation[1][2] * robotDy + cameraRotation[2][2] * dz;
+
+            if (
+                forward <= 0 ||
+                Math.abs(Math.atan2(left, forward)) > halfHorizontalFov ||
+                Math.abs(Math.atan2(up, forward)) > halfVerticalFov
+            ) {
+                continue;
+            }
+
+            tagCount++;
+            totalDistance += distance;
+        }
+
+        if (tagCount == 0) {
+            return;
+        }
+
+        double avgTagDistMeters = totalDistance / tagCount;
+        double translationStdDev = properties.translationNoisePerMeterSquared() * avgTagDistMeters * avgTagDistMeters / tagCount;
+        double ambiguity = tagCount == 1 ? random.nextDouble() * kMaxSingleTagAmbiguity : 0;
+
+        observations.offer(
+            captureSeconds,
+            robotX + translationStdDev * random.nextGaussian(),
+            robotY + translationStdDev * random.nextGaussian(),
+            // MegaTag2 takes its heading from the gyro
+            robotTheta + properties.headingNoiseRad() * random.nextGaussian(),
+            tagCount,
+            avgTagDistMeters,
+            ambiguity
+        );
+    }
+}
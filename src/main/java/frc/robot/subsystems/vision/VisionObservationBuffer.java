@@ -0,0 +1,77 @@
+package frc.robot.subsystems.vision;
+
+import frc.robot.lib.estimation.VisionObservationQueue;
+import frc.robot.subsystems.vision.VisionIO.VisionIOInputs;
+
+/**
+ * Hands observations from a camera's producer thread to {@link VisionIO#updateInputs}. Shared by
+ * every VisionIO implementation so real and simulated cameras feed RobotState the same way.
+ */
+class VisionObservationBuffer {
+    private final int capacity;
+    private final VisionObservationQueue queue;
+    private final VisionObservationQueue.Sample sample = new VisionObservationQueue.Sample();
+
+    // main loop scratch space, sized for a full queue
+    private final double[] timestampsSeconds;
+    private final double[] xMeters;
+    private final double[] yMeters;
+    private final double[] thetaRad;
+    private final int[] tagCounts;
+    private final double[] avgTagDistMeters;
+    private final double[] ambiguities;
+
+    VisionObservationBuffer(int capacity) {
+        this.capacity = capacity;
+        queue = new VisionObservationQueue(capacity);
+
+        timestampsSeconds = new double[capacity];
+        xMeters = new double[capacity];
+        yMeters = new double[capacity];
+        thetaRad = new double[capacity];
+        tagCounts = new int[capacity];
+        avgTagDistMeters = new double[capacity];
+        ambiguities = new double[capacity];
+    }
+
+    /** Producer thread only */
+    boolean offer(double timestamp, double x, double y, double theta, int tagCount, double avgTagDist, double ambiguity) {
+        // One buffer per camera, RobotState tags the camera and scale when VisionSubsystem passes them on
+        return queue.offer(timestamp, x, y, theta, tagCount, avgTagDist, ambiguity, 0, 0);
+    }
+
+    /** Moves every queued observation into the inputs. Main loop only. */
+    void drainInto(VisionIOInputs inputs) {
+        int count = 0;
+        while (count < capacity && queue.poll(sample)) {
+            timestampsSeconds[count] = sample.timestampSeconds;
+            xMeters[count] = sample.xMeters;
+            yMeters[count] = sample.yMeters;
+            thetaRad[count] = sample.thetaRad;
+            tagCounts[count] = sample.tagCount;
+            avgTagDistMeters[count] = sample.avgTagDistMeters;
+            ambiguities[count] = sample.ambiguity;
+            count++;
+        }
+
+        // Logged inputs need exactly sized arrays, reuse them when the count did not change
+        if (inputs.observationTimestampsSeconds.length != count) {
+            inputs.observationTimestampsSeconds = new double[count];
+            inputs.observationXMeters = new double[count];
+            inputs.observationYMeters = new double[count];
+            inputs.observationThetaRad = new double[count];
+            inputs.observationTagCounts = new int[count];
+            inputs.observationAvgTagDistMeters = new double[count];
+            inputs.observationAmbiguities = new double[count];
+        }
+        System.arraycopy(timestampsSeconds, 0, inputs.observationTimestampsSeconds, 0, count);
+        System.arraycopy(xMeters, 0, inputs.observationXMeters, 0, count);
+        System.arraycopy(yMeters, 0, inputs.observationYMeters, 0, count);
+        System.arraycopy(thetaRad, 0, inputs.observationThetaRad, 0, count);
+        System.arraycopy(tagCounts, 0, inputs.observationTagCounts, 0, count);
+        System.arraycopy(avgTagDistMeters, 0, inputs.observationAvgTagDistMeters, 0, count);
+        System.arraycopy(ambiguities, 0, inputs.observationAmbiguities, 0, count);
+
+        inputs.droppedObservationCount = queue.getDroppedCount();
+    }
+}
@@ -0,0 +1,130 @@
+package frc.robot.subsystems.vision;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.RobotState;
+import frc.robot.constants.Constants;
+import frc.robot.constants.Constants.VisionConstants;
+import frc.robot.subsystems.swerve.SwerveDrive;
+
+public class VisionSubsystem extends SubsystemBase {
+    private static VisionSubsystem instance = null;
+    public static VisionSubsystem getInstance() {
+        if (instance == null) {
+            instance = new VisionSubsystem();
+        }
+
+        return instance;
+    }
+
+    // MegaTag2 solutions fall apart while spinning quickly
+    private static final double kMaxYawRateRadPerSec = Units.degreesToRadians(720);
+
+    private final VisionIO[] cameras;
+    private final VisionIOInputsAutoLogged[] cameraInputs;
+    private final String[] cameraInputKeys;
+
+    private int rejectedObservationCount = 0;
+
+    private VisionSubsystem() {
+        String[] names = VisionConstants.kLIMELIGHT_NAMES;
+        cameras = new VisionIO[names.length];
+
+        switch (Constants.currentMode) {
+            case COMP:
+                for (int i = 0; i < names.length; i++) {
+                    cameras[i] = new VisionIOLimelight(names[i]);
+                }
+
+                break;
+
+            case PROTO:
+                for (int i = 0; i < names.length; i++) {
+                    cameras[i] = new VisionIOLimelight(names[i]);
+                }
+
+                break;
+
+            case SIM:
+                for (int i = 0; i < names.length; i++) {
+                    cameras[i] = new VisionIOSim(
+                        VisionConstants.kROBOT_TO_CAMERAS[i],
+                        SwerveDrive.getInstance()::getSimulatedGroundTruthPose,
+                        VisionIOSim.CameraProperties.limelight4(),
+                        i
+                    );
+                }
+
+                break;
+
+            case REPLAY:
+                for (int i = 0; i < names.length; i++) {
+                    cameras[i] = new VisionIO() {};
+                }
+
+                break;
+
+            default:
+                for (int i = 0; i < names.length; i++) {
+                    cameras[i] = new VisionIOLimelight(names[i]);
+                }
+
+                break;
+        }
+
+        cameraInputs = new VisionIOInputsAutoLogged[names.length];
+        cameraInputKeys = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            cameraInputs[i] = new VisionIOInputsAutoLogged();
+            cameraInputKeys[i] = "Vision/" + names[i];
+        }
+    }
+
+    @Override
+    public void periodic() {
+        RobotState robotState = RobotState.getInstance();
+        double yawDegrees = Units.radiansToDegrees(robotState.getEstimatedHeadingRad());
+        double yawRateRadPerSec = robotState.getYawVelocityRadPerSec();
+
+        for (int i = 0; i < cameras.length; i++) {
+            cameras[i].updateInputs(cameraInputs[i]);
+            Logger.processInputs(cameraInputKeys[i], cameraInputs[i]);
+            cameras[i].setRobotOrientation(yawDegrees, Units.radiansToDegrees(yawRateRadPerSec));
+
+            VisionIOInputsAutoLogged inputs = cameraInputs[i];
+            for (int j = 0; j < inputs.observationTimestampsSeconds.length; j++) {
+                double x = inputs.observationXMeters[j];
+                double y = inputs.observationYMeters[j];
+                int tagCount = inputs.observationTagCounts[j];
+
+                if (
+                    tagCount <= 0 ||
+                    x < 0 || x > VisionConstants.kFIELD_LENGTH_METERS ||
+                    y < 0 || y > VisionConstants.kFIELD_WIDTH_METERS ||
+                    Math.abs(yawRateRadPerSec) > kMaxYawRateRadPerSec
+                ) {
+                    rejectedObservationCount++;
+                    continue;
+                }
+
+                // Std devs and outlier rejection are done per loop batch in RobotState
+                robotState.offerVisionObservation(
+                    i,
+                    inputs.observationTimestampsSeconds[j],
+                    x,
+                    y,
+                    inputs.observationThetaRad[j],
+                    tagCount,
+                    inputs.observationAvgTagDistMeters[j],
+                    inputs.observationAmbiguities[j]
+                );
+            }
+        }
+
+        // Only counted once the estimator fuses them, RobotState can still gate or drop what we offer
+        Logger.recordOutput("Vision/acceptedObservationCount", robotState.getFusedVisionObservationCount());
+        Logger.recordOutput("Vision/rejectedObservationCount", rejectedObservationCount);
+    }
+}
@@ -0,0 +1,168 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.constants.robotState.RobotStateConfigSim;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.lib.util.AllocationCounter;
+import frc.robot.subsystems.swerve.SwerveDrive;
+
+public class RobotStateTest {
+    private static final double kSamplePeriodSeconds = 1 / SwerveDrive.ODOMETRY_FREQUENCY;
+    private static final int kSamplesPerLoop = 5;
+
+    private final SwerveDrivetrainConfigBase drivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
+    private final Translation2d[] modulePositions = {
+        drivetrainConfig.getFrontLeftPositionMeters(),
+        drivetrainConfig.getFrontRightPositionMeters(),
+        drivetrainConfig.getBackLeftPositionMeters(),
+        drivetrainConfig.getBackRightPositionMeters()
+    };
+
+    private RobotState robotState;
+    private RobotState.OdometryObservation observation;
+    private double timeSeconds;
+    private double yawRad;
+
+    @BeforeEach
+    public void setup() {
+        HAL.initialize(500, 0);
+        robotState = new RobotState(drivetrainConfig, RobotStateConfigSim.getInstance());
+        observation = new RobotState.OdometryObservation(4);
+        timeSeconds = 0;
+        yawRad = 0;
+    }
+
+    /**
+     * Fills the observation like SwerveDrive does for one odometry sample of a robot driving a
+     * constant robot relative speed, with every module frame arriving at the sample time.
+     */
+    private void addSample(double vxMetersPerSec, double vyMetersPerSec, double omegaRadPerSec) {
+        timeSeconds += kSamplePeriodSeconds;
+        yawRad += omegaRadPerSec * kSamplePeriodSeconds;
+
+        observation.timestampSeconds = timeSeconds + 0.25 * kSamplePeriodSeconds;
+        observation.isGyroConnected = true;
+        observation.yawPositionRad = yawRad;
+        observation.yawVelocityRadPerSec = omegaRadPerSec;
+        for (int i = 0; i < 4; i++) {
+            double moduleVx = vxMetersPerSec - omegaRadPerSec * modulePositions[i].getY();
+            double moduleVy = vyMetersPerSec + omegaRadPerSec * modulePositions[i].getX();
+            observation.moduleTimestampsSeconds[i] = timeSeconds;
+            observation.moduleVelocitiesMetersPerSec[i] = Math.hypot(moduleVx, moduleVy);
+            observation.moduleAnglesRad[i] = Math.atan2(moduleVy, moduleVx);
+            observation.moduleDistancesMeters[i] += observation.moduleVelocitiesMetersPerSec[i] * kSamplePeriodSeconds;
+        }
+        robotState.addOdometryObservation(observation);
+    }
+
+    @Test
+    public void odometrySamplesDoNotAllocate() {
+        // Warm up past the pose history so the ring buffers are full and every sample evicts
+        for (int loop = 0; loop < 1000; loop++) {
+            for (int sample = 0; sample < kSamplesPerLoop; sample++) {
+                addSample(2, 0.5, 1);
+            }
+            robotState.logOdometryObservations();
+        }
+
+        // A deoptimization can allocate once on this thread, a real allocation shows up in every round
+        long allocatedBytes = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long startBytes = AllocationCounter.getCurrentThreadAllocatedBytes();
+            for (int sample = 0; sample < 1000; sample++) {
+                addSample(2, 0.5, 1);
+            }
+            allocatedBytes = Math.min(allocatedBytes, AllocationCounter.getCurrentThreadAllocatedBytes() - startBytes);
+        }
+
+        assertEquals(0, allocatedBytes, "bytes allocated by 1000 odometry samples");
+    }
+
+    @Test
+    public void predictingFromTheSnapshotDoesNotAllocate() {
+        for (int loop = 0; loop < 100; loop++) {
+            for (int sample = 0; sample < kSamplesPerLoop; sample++) {
+                addSample(2, 0.5, 1);
+            }
+            robotState.logOdometryObservations();
+        }
+
+        // getPredictedPose only wraps this in a Pose2d
+        RobotStateSnapshot snapshot = robotState.getSnapshot();
+        double[] predicted = new double[3];
+        long allocatedBytes = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long startBytes = AllocationCounter.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 1000; i++) {
+                snapshot.predict(0.1, 0.1, predicted);
+            }
+            allocatedBytes = Math.min(allocatedBytes, AllocationCounter.getCurrentThreadAllocatedBytes() - startBytes);
+        }
+
+        assertEquals(0, allocatedBytes, "bytes allocated by 1000 predictions");
+    }
+
+    @Test
+    public void drivetrainLoopAllocationIsBounded() {
+        // Everything RobotState does for SwerveDrive.periodic. What is left is the snapshot published
+        // once per loop and the logged vision pose, both immutable by design.
+        double[] recentPoses = new double[kSamplesPerLoop * 3];
+        long allocatedBytes = Long.MAX_VALUE;
+        for (int loop = 0; loop < 1500; loop++) {
+            Pose2d estimatedPose = robotState.getEstimatedPose();
+            long startBytes = AllocationCounter.getCurrentThreadAllocatedBytes();
+            robotState.addAccelerometerReading(timeSeconds, 1, 0);
+            for (int sample = 0; sample < kSamplesPerLoop; sample++) {
+                addSample(2, 0.5, 1);
+            }
+            robotState.offerVisionObservation(0, timeSeconds - 0.01, estimatedPose.getX(), estimatedPose.getY(), yawRad, 2, 2, 0.1);
+            robotState.processVisionObservations();
+            robotState.logOdometryObservations();
+            robotState.getRecentPoses(kSamplesPerLoop, recentPoses);
+
+            // Past warmup, keep the best of the last loops so one deoptimization does not count
+            if (loop >= 1000) {
+                allocatedBytes = Math.min(allocatedBytes, AllocationCounter.getCurrentThreadAllocatedBytes() - startBytes);
+            }
+        }
+
+        // About 300 bytes, low enough that copying the logged arrays or boxing the module angles fails
+        assertTrue(allocatedBytes <= 384, allocatedBytes + " bytes allocated by one drivetrain loop");
+    }
+
+    @Test
+    public void dropsGyroSamplesQueuedBeforeAReset() {
+        for (int sample = 0; sample < 100; sample++) {
+            addSample(0, 0, 1);
+        }
+
+        // Reset while spinning, one sample with the old yaw is still queued behind the reset
+        double staleYawRad = yawRad + kSamplePeriodSeconds;
+        double resetTimeSeconds = timeSeconds + 0.5 * kSamplePeriodSeconds;
+        robotState.resetEstimatedPose(new Pose2d(1, 2, Rotation2d.kZero), resetTimeSeconds);
+        yawRad = 0;
+        observation.yawPositionRad = staleYawRad;
+        observation.timestampSeconds = timeSeconds + 0.25 * kSamplePeriodSeconds;
+        robotState.addOdometryObservation(observation);
+        timeSeconds = resetTimeSeconds;
+
+        for (int sample = 0; sample < 50; sample++) {
+            addSample(0, 0, 1);
+        }
+        robotState.logOdometryObservations();
+
+        // Heading changed by exactly what the gyro turned after the reset
+        assertEquals(0, MathUtil.angleModulus(robotState.getEstimatedHeadingRad() - yawRad), 1e-6);
+    }
+}
@@ -0,0 +1,148 @@
+package frc.robot.lib.auto;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
+import frc.robot.constants.swerve.moduleConfigs.sim.SwerveModuleGeneralConfigSim;
+
+/**
+ * Drives a simulated robot straight across the field while it spins, with and without the steer
+ * velocity feedforward.
+ *
+ * <p>The steer loops use the same motor model, gearing, inertia and proportional gain as
+ * ModuleIOSim. The drive is assumed to track perfectly so only steer lag moves the robot off line.
+ */
+public class SecondOrderSwerveKinematicsTest {
+    private static final double kLoopPeriodSeconds = 0.02;
+    private static final int kSubsteps = 20;
+    private static final double kDurationSeconds = 3;
+
+    private static final double kFieldVxMetersPerSec = 3;
+    private static final double kOmegaRadPerSec = 4;
+
+    private static final DCMotor kSteerMotor = DCMotor.getKrakenX60Foc(1);
+    private static final double kSteerGearing = SwerveModuleGeneralConfigSim.getInstance().getSteerMotorToOutputShaftRatio();
+    private static final double kSteerInertiaKgMetersSq = SwerveModuleGeneralConfigSim.getInstance().getSteerInertiaKgMetersSq();
+    private static final double kSteerKP = 25;
+    private static final double kSteerVoltsPerRadPerSec = kSteerGearing / kSteerMotor.KvRadPerSecPerVolt;
+    // Back emf braking, 1 / time constant of the steer velocity
+    private static final double kSteerVelocityDecayPerSec =
+        -kSteerMotor.getTorque(kSteerMotor.getCurrent(kSteerGearing, 0)) * kSteerGearing / kSteerInertiaKgMetersSq;
+
+    private static final Translation2d[] kModulePositions = {
+        new Translation2d(0.26, 0.26),
+        new Translation2d(0.26, -0.26),
+        new Translation2d(-0.26, 0.26),
+        new Translation2d(-0.26, -0.26)
+    };
+
+    @Test
+    public void steerFeedforwardKeepsASpinningRobotOnLine() {
+        double[] withoutFeedforward = run(false);
+        double[] withFeedforward = run(true);
+
+        assertTrue(
+            withFeedforward[0] < withoutFeedforward[0],
+            "lateral error rms " + withFeedforward[0] + " m with steer feedforward, " + withoutFeedforward[0] + " m without"
+        );
+        assertTrue(
+            withFeedforward[1] < withoutFeedforward[1],
+            "max lateral error " + withFeedforward[1] + " m with steer feedforward, " + withoutFeedforward[1] + " m without"
+        );
+    }
+
+    /** @return rms and max lateral error */
+    private static double[] run(boolean useSteerFeedforward) {
+        int numModules = kModulePositions.length;
+        SecondOrderSwerveKinematics kinematics = new SecondOrderSwerveKinematics(kModulePositions);
+
+        double[] steerAnglesRad = new double[numModules];
+        double[] steerVelocitiesRadPerSec = new double[numModules];
+        double[] setpointAnglesRad = new double[numModules];
+        double[] setpointSpeeds = new double[numModules];
+        double[] steerFeedforwardsRadPerSec = new double[numModules];
+
+        double heading = 0;
+        double fieldY = 0;
+        double previousVx = kFieldVxMetersPerSec;
+        double previousVy = 0;
+
+        // Start with the modules already pointing the right way
+        for (int i = 0; i < numModules; i++) {
+            steerAnglesRad[i] = Math.atan2(kOmegaRadPerSec * kModulePositions[i].getX(), kFieldVxMetersPerSec - kOmegaRadPerSec * kModulePositions[i].getY());
+        }
+
+        double sumSquaredError = 0;
+        double maxError = 0;
+        int loops = (int) Math.round(kDurationSeconds / kLoopPeriodSeconds);
+        for (int loop = 0; loop < loops; loop++) {
+            // Constant field velocity seen from the spinning robot
+            double vx = kFieldVxMetersPerSec * Math.cos(heading);
+            double vy = -kFieldVxMetersPerSec * Math.sin(heading);
+
+            for (int i = 0; i < numModules; i++) {
+                double moduleVx = vx - kOmegaRadPerSec * kModulePositions[i].getY();
+                double moduleVy = vy + kOmegaRadPerSec * kModulePositions[i].getX();
+                double angle = Math.atan2(moduleVy, moduleVx);
+                double speed = Math.hypot(moduleVx, moduleVy);
+                if (Math.abs(MathUtil.angleModulus(angle - steerAnglesRad[i])) > Math.PI / 2) {
+                    angle = MathUtil.angleModulus(angle + Math.PI);
+                    speed = -speed;
+                }
+                setpointAnglesRad[i] = angle;
+                setpointSpeeds[i] = speed;
+            }
+
+            // Same differencing as SwerveDrive.driveRobotRelative
+            kinematics.calculate(
+                vx, vy, kOmegaRadPerSec,
+                (vx - previousVx) / kLoopPeriodSeconds,
+                (vy - previousVy) / kLoopPeriodSeconds,
+                0,
+                setpointAnglesRad
+            );
+            previousVx = vx;
+            previousVy = vy;
+            for (int i = 0; i < numModules; i++) {
+                steerFeedforwardsRadPerSec[i] = useSteerFeedforward ? kinematics.getSteerVelocityRadPerSec(i) : 0;
+            }
+
+            double dt = kLoopPeriodSeconds / kSubsteps;
+            for (int substep = 0; substep < kSubsteps; substep++) {
+                // Robot velocity from the module vectors the wheels actually have
+                double sumVx = 0;
+                double sumVy = 0;
+                for (int i = 0; i < numModules; i++) {
+                    sumVx += setpointSpeeds[i] * Math.cos(steerAnglesRad[i]);
+                    sumVy += setpointSpeeds[i] * Math.sin(steerAnglesRad[i]);
+
+                    double voltage = MathUtil.clamp(
+                        kSteerKP * MathUtil.angleModulus(setpointAnglesRad[i] - steerAnglesRad[i]) +
+                        kSteerVoltsPerRadPerSec * steerFeedforwardsRadPerSec[i],
+                        -12,
+                        12
+                    );
+                    // The steer velocity settles too fast for explicit integration, step it exactly like DCMotorSim does
+                    double settledVelocity = voltage / kSteerVoltsPerRadPerSec;
+                    double nextVelocity = settledVelocity + (steerVelocitiesRadPerSec[i] - settledVelocity) * Math.exp(-kSteerVelocityDecayPerSec * dt);
+                    steerAnglesRad[i] = MathUtil.angleModulus(steerAnglesRad[i] + (steerVelocitiesRadPerSec[i] + nextVelocity) / 2 * dt);
+                    steerVelocitiesRadPerSec[i] = nextVelocity;
+                }
+                double robotVx = sumVx / numModules;
+                double robotVy = sumVy / numModules;
+
+                fieldY += (robotVx * Math.sin(heading) + robotVy * Math.cos(heading)) * dt;
+                heading += kOmegaRadPerSec * dt;
+            }
+
+            sumSquaredError += fieldY * fieldY;
+            maxError = Math.max(maxError, Math.abs(fieldY));
+        }
+
+        return new double[] {Math.sqrt(sumSquaredError / loops), maxError};
+    }
+}
@@ -0,0 +1,89 @@
+package frc.robot.lib.auto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class SwerveSetpointGeneratorTest {
+    private static final double kDtSeconds = 0.02;
+    private static final double kMaxModuleVelocity = 4.5;
+    private static final double kMaxDriveAcceleration = 12;
+    private static final double kMaxSteerVelocityRadPerSec = 4 * 2 * Math.PI;
+    private static final double kMaxSteerDelta = kMaxSteerVelocityRadPerSec * kDtSeconds;
+
+    private final SwerveSetpointGenerator generator = new SwerveSetpointGenerator(
+        kMaxModuleVelocity,
+        kMaxDriveAcceleration,
+        kMaxDriveAcceleration,
+        kMaxSteerVelocityRadPerSec,
+        new Translation2d(0.29, 0.29),
+        new Translation2d(0.29, -0.29),
+        new Translation2d(-0.29, 0.29),
+        new Translation2d(-0.29, -0.29)
+    );
+
+    private final double[] lastSpeeds = new double[4];
+    private final double[] lastAngles = new double[4];
+
+    /** Steps the generator and checks every module against the steer and drive limits */
+    private void step(double desiredVx, double desiredVy, double desiredOmega) {
+        generator.generate(desiredVx, desiredVy, desiredOmega, kDtSeconds);
+        for (int module = 0; module < 4; module++) {
+            double speed = generator.getModuleSpeedMetersPerSec(module);
+            double angle = generator.getModuleAngleRad(module);
+            assertTrue(
+                Math.abs(MathUtil.angleModulus(angle - lastAngles[module])) <= kMaxSteerDelta + 1e-6,
+                "module " + module + " turned from " + lastAngles[module] + " to " + angle
+            );
+            assertTrue(
+                Math.abs(speed - lastSpeeds[module]) <= kMaxDriveAcceleration * kDtSeconds + 1e-6,
+                "module " + module + " went from " + lastSpeeds[module] + " to " + speed
+            );
+            lastSpeeds[module] = speed;
+            lastAngles[module] = angle;
+        }
+    }
+
+    @Test
+    public void randomDriverInputsStayWithinModuleLimits() {
+        Random random = new Random(0);
+        double desiredVx = 0;
+        double desiredVy = 0;
+        double desiredOmega = 0;
+        for (int i = 0; i < 20000; i++) {
+            // Hold a stick position for a while, then jump somewhere else, sometimes back to rest
+            if (i % 25 == 0) {
+                boolean isStopping = random.nextInt(4) == 0;
+                desiredVx = isStopping ? 0 : (random.nextDouble() * 2 - 1) * kMaxModuleVelocity;
+                desiredVy = isStopping ? 0 : (random.nextDouble() * 2 - 1) * kMaxModuleVelocity;
+                desiredOmega = isStopping ? 0 : (random.nextDouble() * 2 - 1) * 8;
+            }
+            step(desiredVx, desiredVy, desiredOmega);
+        }
+    }
+
+    @Test
+    public void stoppedModulesTurnBeforeDriving() {
+        // Modules point forward, the robot is asked to strafe left from rest
+        int loopsToTurn = (int) Math.ceil(Math.PI / 2 / kMaxSteerDelta);
+        for (int loop = 0; loop < loopsToTurn - 1; loop++) {
+            step(0, 2, 0);
+            assertEquals(0, generator.getVyMetersPerSec(), 1e-9);
+        }
+
+        // Once the modules got there the robot accelerates instead of waiting forever
+        for (int loop = 0; loop < 20; loop++) {
+            step(0, 2, 0);
+        }
+        assertEquals(2, generator.getVyMetersPerSec(), 1e-9);
+        for (int module = 0; module < 4; module++) {
+            assertEquals(0, Math.cos(generator.getModuleAngleRad(module)), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package frc.robot.lib.auto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class TractionLimiterTest {
+    private static final double kDtSeconds = 0.02;
+
+    private final Translation2d[] modulePositions = {
+        new Translation2d(0.26, 0.26),
+        new Translation2d(0.26, -0.26),
+        new Translation2d(-0.26, 0.26),
+        new Translation2d(-0.26, -0.26)
+    };
+    private final TractionLimiter limiter = new TractionLimiter(60, 1.2, 0.25, 2.6, 80, modulePositions);
+
+    private final double[] moduleAnglesRad = new double[4];
+    private final double[] driveTorqueCurrentsAmps = new double[4];
+
+    // Setpoint the limiter lets through, robot relative
+    private double vx;
+    private double vy;
+    private double omega;
+
+    /** Takes the fraction of the step the limiter allows, with the modules pointing along the setpoint */
+    private double step(double desiredVx, double desiredVy, double desiredOmega) {
+        for (int i = 0; i < 4; i++) {
+            moduleAnglesRad[i] = Math.atan2(vy + omega * modulePositions[i].getX(), vx - omega * modulePositions[i].getY());
+        }
+        double fraction = limiter.limit(vx, vy, omega, desiredVx, desiredVy, desiredOmega, kDtSeconds, moduleAnglesRad, driveTorqueCurrentsAmps);
+        vx += (desiredVx - vx) * fraction;
+        vy += (desiredVy - vy) * fraction;
+        omega += (desiredOmega - omega) * fraction;
+        return fraction;
+    }
+
+    @Test
+    public void limitsAStepFromRest() {
+        assertTrue(step(4, 0, 0) < 1);
+        assertTrue(vx > 0);
+    }
+
+    @Test
+    public void spinThenReleaseStops() {
+        // Spinning in place asks nothing of the tires once at speed
+        for (int loop = 0; loop < 50; loop++) {
+            step(0, 0, 8);
+        }
+        assertEquals(8, omega, 1e-9);
+
+        for (int loop = 0; loop < 50; loop++) {
+            step(0, 0, 0);
+        }
+        assertEquals(0, omega, 1e-9);
+    }
+
+    @Test
+    public void spinWhileTranslatingReleaseStops() {
+        // Turning the velocity with the robot needs more than the tires have, the setpoint is already past the limit
+        vx = 3;
+        omega = 6;
+        double lastSpeed = Math.hypot(vx, vy);
+        for (int loop = 0; loop < 400; loop++) {
+            step(0, 0, 0);
+            assertTrue(Math.hypot(vx, vy) <= lastSpeed);
+            lastSpeed = Math.hypot(vx, vy);
+        }
+        assertEquals(0, vx, 1e-9);
+        assertEquals(0, omega, 1e-9);
+    }
+}
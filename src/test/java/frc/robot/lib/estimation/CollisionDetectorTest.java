@@ -0,0 +1,54 @@
+package frc.robot.lib.estimation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class CollisionDetectorTest {
+    private static final double kLoopSeconds = 0.02;
+    private static final double kHoldSeconds = 0.25;
+
+    private final CollisionDetector detector = new CollisionDetector(200, kHoldSeconds);
+
+    @Test
+    public void drivingDoesNotLookLikeACollision() {
+        // Ramping up to full acceleration over half a second is 20 m/s^3 of jerk
+        for (int loop = 0; loop <= 50; loop++) {
+            double acceleration = Math.min(loop * kLoopSeconds * 20, 10);
+            assertFalse(detector.update(loop * kLoopSeconds, acceleration, 0));
+        }
+
+        assertEquals(0, detector.getCollisionCount());
+        assertFalse(detector.isColliding(50 * kLoopSeconds));
+    }
+
+    @Test
+    public void impactIsDetectedOnceAndHeld() {
+        detector.update(0, 2, 0);
+        detector.update(kLoopSeconds, 2, 0);
+
+        // Hitting a wall stops 2 m/s^2 of acceleration and kicks 8 m/s^2 back within one loop
+        assertTrue(detector.update(2 * kLoopSeconds, -6, 1));
+        assertEquals(1, detector.getCollisionCount());
+
+        // Bouncing around right after the impact is part of the same collision
+        assertFalse(detector.update(3 * kLoopSeconds, 3, -1));
+        assertEquals(1, detector.getCollisionCount());
+        assertTrue(detector.isColliding(3 * kLoopSeconds + kHoldSeconds - 0.01));
+
+        detector.update(4 * kLoopSeconds, 0, 0);
+        assertFalse(detector.isColliding(3 * kLoopSeconds + kHoldSeconds + 0.01));
+    }
+
+    @Test
+    public void repeatedReadingsKeepTheirOwnTimestamps() {
+        // A reading that happens to repeat is still a reading, the next jerk uses the time since it
+        detector.update(0, 1, 0);
+        detector.update(kLoopSeconds, 1, 0);
+        detector.update(2 * kLoopSeconds, 4, 0);
+
+        assertEquals(3 / kLoopSeconds, detector.getLastJerkMetersPerSecCubed(), 1e-9);
+    }
+}
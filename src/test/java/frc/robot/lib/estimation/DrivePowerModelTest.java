@@ -0,0 +1,203 @@
+package frc.robot.lib.estimation;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+
+/**
+ * Sprints a simulated robot back and forth on a tired battery, with the drivetrain limits fixed and
+ * scaled by {@link DrivePowerModel}.
+ *
+ * <p>The commands are generated the way FollowPath does it, a proportional controller on the
+ * remaining distance limited by ChassisRateLimiter style velocity and acceleration limits. The
+ * drive motors run a velocity loop on the battery voltage that is left after the drive and the
+ * rest of the robot pulled it down, and are held to the stator and supply current limits.
+ *
+ * <p>Both runs are judged by how long the robot takes to reach each goal, not by how well it
+ * follows its own command, which scaled limits make easier to follow by asking for less.
+ */
+public class DrivePowerModelTest {
+    private static final double kLoopPeriodSeconds = 0.02;
+    private static final int kSubsteps = 10;
+    private static final int kSprints = 8;
+    private static final double kSprintDistanceMeters = 7;
+    private static final double kSprintSeconds = 3;
+    private static final double kGoalToleranceMeters = 0.02;
+    // Keeping the battery up costs some time, this much slower to each goal than with fixed limits at most
+    private static final double kMaxTimeToGoalRatio = 1.1;
+
+    private static final double kMaxVelocityMetersPerSec = 4.5;
+    private static final double kMaxAccelerationMetersPerSecSec = 14;
+    private static final double kTranslationKP = 4;
+
+    private static final double kMassKg = 56;
+    private static final int kNumModules = 4;
+    private static final DCMotor kDriveMotor = DCMotor.getKrakenX60Foc(1);
+    private static final double kDriveGearing = 6.12;
+    private static final double kWheelRadiusMeters = 0.0486;
+    private static final double kStatorCurrentLimitAmps = 80;
+    private static final double kSupplyCurrentLimitAmps = 60;
+    // The comp robot's 100 A per m/s torque current gain, as volts across the winding
+    private static final double kDriveVelocityKP = 2.5;
+
+    private static final double kBatteryVoltage = 12.0;
+    // A tired battery plus the wiring
+    private static final double kBatteryResistanceOhms = 0.02;
+    // Everything else on the robot
+    private static final double kOtherLoadAmps = 25;
+
+    private static final double kMinDriveBatteryVoltage = 8;
+    private static final double kNominalBatteryResistanceOhms = 0.025;
+    private static final double kDrivePowerEfficiency = 0.7;
+
+    private static final double kMetersPerMotorRadian = kWheelRadiusMeters / kDriveGearing;
+
+    private record Result(double minBatteryVoltage, double meanSecondsToGoal, boolean hasReachedEveryGoal) {}
+
+    @Test
+    public void scaledLimitsHoldTheBatteryFloorOnTheWayToEveryGoal() {
+        Result fixedLimits = run(false);
+        Result scaledLimits = run(true);
+
+        // Otherwise the floor would hold without any help
+        assertTrue(
+            fixedLimits.minBatteryVoltage() < kMinDriveBatteryVoltage,
+            "lowest battery voltage " + fixedLimits.minBatteryVoltage() + " V with fixed limits"
+        );
+        assertTrue(
+            scaledLimits.minBatteryVoltage() >= kMinDriveBatteryVoltage,
+            "lowest battery voltage " + scaledLimits.minBatteryVoltage() + " V with scaled limits"
+        );
+
+        assertTrue(fixedLimits.hasReachedEveryGoal());
+        assertTrue(scaledLimits.hasReachedEveryGoal());
+        assertTrue(
+            scaledLimits.meanSecondsToGoal() <= fixedLimits.meanSecondsToGoal() * kMaxTimeToGoalRatio,
+            "mean time to goal " + scaledLimits.meanSecondsToGoal() + " s with scaled limits, " +
+                fixedLimits.meanSecondsToGoal() + " s with fixed limits"
+        );
+    }
+
+    private static Result run(boolean scaleLimits) {
+        DrivePowerModel powerModel = new DrivePowerModel(
+            12,
+            kMinDriveBatteryVoltage,
+            kNominalBatteryResistanceOhms,
+            kMassKg,
+            kDrivePowerEfficiency,
+            kDriveMotor.withReduction(kDriveGearing),
+            kWheelRadiusMeters,
+            kNumModules
+        );
+
+        double position = 0;
+        double velocity = 0;
+        double commandedVelocity = 0;
+        double batteryVoltage = kBatteryVoltage - kBatteryResistanceOhms * kOtherLoadAmps;
+        double driveSupplyCurrentAmps = 0;
+
+        double minBatteryVoltage = batteryVoltage;
+        double sumSecondsToGoal = 0;
+        boolean hasReachedEveryGoal = true;
+
+        for (int sprint = 0; sprint < kSprints; sprint++) {
+            double goal = sprint % 2 == 0 ? kSprintDistanceMeters : 0;
+            double secondsToGoal = Double.NaN;
+
+            for (int loop = 0; loop < Math.round(kSprintSeconds / kLoopPeriodSeconds); loop++) {
+                powerModel.update(batteryVoltage, driveSupplyCurrentAmps);
+                double velocityScale = scaleLimits ? powerModel.getVelocityScale() : 1;
+                // At the speed a full step can reach, like DriveCommandChain
+                double accelerationScale = scaleLimits ?
+                    Math.min(
+                        1,
+                        powerModel.getMaxAccelerationMetersPerSecSec(
+                            Math.abs(commandedVelocity) + kMaxAccelerationMetersPerSecSec * kLoopPeriodSeconds
+                        ) / kMaxAccelerationMetersPerSecSec
+                    ) :
+                    1;
+
+                // Same shape as FollowPath, P on the remaining distance through the rate limiter
+                double desiredVelocity = MathUtil.clamp(
+                    kTranslationKP * (goal - position),
+                    -kMaxVelocityMetersPerSec * velocityScale,
+                    kMaxVelocityMetersPerSec * velocityScale
+                );
+                // Only speeding up is held to the power bound, like SwerveDrive and FollowPath
+                double maxStep = kMaxAccelerationMetersPerSecSec * kLoopPeriodSeconds *
+                    (Math.abs(desiredVelocity) > Math.abs(commandedVelocity) ? accelerationScale : 1);
+                double nextCommandedVelocity = commandedVelocity + MathUtil.clamp(desiredVelocity - commandedVelocity, -maxStep, maxStep);
+                double commandedAcceleration = (nextCommandedVelocity - commandedVelocity) / kLoopPeriodSeconds;
+                commandedVelocity = nextCommandedVelocity;
+
+                double dt = kLoopPeriodSeconds / kSubsteps;
+                for (int substep = 0; substep < kSubsteps; substep++) {
+                    double motorSpeedRadPerSec = velocity / kMetersPerMotorRadian;
+                    double feedforwardVolts = commandedVelocity / kMetersPerMotorRadian / kDriveMotor.KvRadPerSecPerVolt +
+                        commandedAcceleration * kMassKg / kNumModules * kMetersPerMotorRadian * kDriveMotor.rOhms / kDriveMotor.KtNMPerAmp;
+                    double desiredVolts = feedforwardVolts + kDriveVelocityKP * (commandedVelocity - velocity);
+
+                    // The battery voltage and the drive draw depend on each other, find where they agree.
+                    // Braking pushes current back and the voltage above the open circuit voltage.
+                    double low = 0;
+                    double high = 2 * kBatteryVoltage;
+                    for (int i = 0; i < 40; i++) {
+                        double guess = (low + high) / 2;
+                        double drop = kBatteryResistanceOhms * (kOtherLoadAmps + getDriveSupplyCurrentAmps(desiredVolts, motorSpeedRadPerSec, guess));
+                        if (guess > kBatteryVoltage - drop) {
+                            high = guess;
+                        } else {
+                            low = guess;
+                        }
+                    }
+                    batteryVoltage = (low + high) / 2;
+                    driveSupplyCurrentAmps = getDriveSupplyCurrentAmps(desiredVolts, motorSpeedRadPerSec, batteryVoltage);
+
+                    double statorCurrentAmps = kDriveMotor.getCurrent(motorSpeedRadPerSec, appliedVolts(desiredVolts, motorSpeedRadPerSec, batteryVoltage));
+                    double forceNewtons = kNumModules * kDriveMotor.getTorque(statorCurrentAmps) / kMetersPerMotorRadian;
+                    velocity += forceNewtons / kMassKg * dt;
+                    position += velocity * dt;
+
+                    minBatteryVoltage = Math.min(minBatteryVoltage, batteryVoltage);
+                }
+
+                if (Double.isNaN(secondsToGoal) && Math.abs(goal - position) < kGoalToleranceMeters) {
+                    secondsToGoal = (loop + 1) * kLoopPeriodSeconds;
+                }
+            }
+
+            hasReachedEveryGoal &= !Double.isNaN(secondsToGoal);
+            sumSecondsToGoal += secondsToGoal;
+        }
+
+        return new Result(minBatteryVoltage, sumSecondsToGoal / kSprints, hasReachedEveryGoal);
+    }
+
+    /** Voltage the motor controller applies after the battery and current limits */
+    private static double appliedVolts(double desiredVolts, double motorSpeedRadPerSec, double batteryVoltage) {
+        double backEmfVolts = motorSpeedRadPerSec / kDriveMotor.KvRadPerSecPerVolt;
+        double volts = MathUtil.clamp(desiredVolts, -batteryVoltage, batteryVoltage);
+
+        // The controller backs the voltage off to stay within the current limits
+        double statorCurrentAmps = kDriveMotor.getCurrent(motorSpeedRadPerSec, volts);
+        if (Math.abs(statorCurrentAmps) > kStatorCurrentLimitAmps) {
+            volts = Math.copySign(kStatorCurrentLimitAmps, statorCurrentAmps) * kDriveMotor.rOhms + backEmfVolts;
+            statorCurrentAmps = kDriveMotor.getCurrent(motorSpeedRadPerSec, volts);
+        }
+        if (statorCurrentAmps * volts > kSupplyCurrentLimitAmps * batteryVoltage) {
+            // Voltage that draws exactly the supply limit, I(V) V = P
+            double power = kSupplyCurrentLimitAmps * batteryVoltage;
+            volts = (backEmfVolts + Math.copySign(Math.sqrt(backEmfVolts * backEmfVolts + 4 * kDriveMotor.rOhms * power), volts)) / 2;
+        }
+        return volts;
+    }
+
+    private static double getDriveSupplyCurrentAmps(double desiredVolts, double motorSpeedRadPerSec, double batteryVoltage) {
+        double volts = appliedVolts(desiredVolts, motorSpeedRadPerSec, batteryVoltage);
+        // Signed like the real supply current, negative while the motors brake and return power
+        return kNumModules * kDriveMotor.getCurrent(motorSpeedRadPerSec, volts) * volts / batteryVoltage;
+    }
+}
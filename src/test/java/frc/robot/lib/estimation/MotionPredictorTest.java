@@ -0,0 +1,139 @@
+package frc.robot.lib.estimation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.lib.util.AllocationCounter;
+
+public class MotionPredictorTest {
+    private static final double kWindowSeconds = 0.1;
+    private static final double kSampleRateHz = 250;
+    private static final double kLookaheadSeconds = 0.1;
+    // Steps of the reference integration, fine enough that its own error is far below the tolerances
+    private static final int kTruthStepsPerSample = 100;
+
+    // Robot relative, constant over the whole run
+    private static final double kVx0 = 1.0;
+    private static final double kVy0 = 0.5;
+    private static final double kOmega0 = 0.5;
+    private static final double kAx = 2.0;
+    private static final double kAy = -1.0;
+    private static final double kAlpha = 1.0;
+
+    private final MotionPredictor predictor = new MotionPredictor(kWindowSeconds, 10, 20);
+    private final PoseHistoryBuffer history = PoseHistoryBuffer.createBuffer(1, kSampleRateHz);
+
+    /** Integrates the constant acceleration motion from the origin at time 0 to time t into out */
+    private static void truePose(double t, double[] out) {
+        int steps = (int) Math.round(t * kSampleRateHz) * kTruthStepsPerSample;
+        double dt = t / steps;
+        double x = 0;
+        double y = 0;
+        double theta = 0;
+        for (int i = 0; i < steps; i++) {
+            double midpoint = (i + 0.5) * dt;
+            SwervePoseEstimator.exp(
+                x, y, theta,
+                (kVx0 + kAx * midpoint) * dt,
+                (kVy0 + kAy * midpoint) * dt,
+                (kOmega0 + kAlpha * midpoint) * dt,
+                out
+            );
+            x = out[0];
+            y = out[1];
+            theta = out[2];
+        }
+        out[0] = x;
+        out[1] = y;
+        out[2] = theta;
+    }
+
+    /** Fills the history up to time t with samples of the true motion */
+    private double[] fillHistory(double t) {
+        double[] pose = new double[3];
+        for (int i = 0; i <= Math.round(t * kSampleRateHz); i++) {
+            truePose(i / kSampleRateHz, pose);
+            history.addSample(i / kSampleRateHz, pose[0], pose[1], pose[2]);
+        }
+        return pose;
+    }
+
+    @Test
+    public void fitsTheAccelerationsOfAConstantAccelerationHistory() {
+        fillHistory(0.5);
+        assertTrue(predictor.update(history));
+
+        // Turning the fit robot relative at the end of the window instead of its middle is off by 0.3 m/s^2 here
+        assertEquals(kAx, predictor.getRobotAxMetersPerSecSq(), 0.005);
+        assertEquals(kAy, predictor.getRobotAyMetersPerSecSq(), 0.005);
+        assertEquals(kAlpha, predictor.getYawAccelerationRadPerSecSq(), 1e-6);
+    }
+
+    @Test
+    public void predictsTheAnalyticPose() {
+        double nowSeconds = 0.5;
+        double[] pose = fillHistory(nowSeconds);
+        assertTrue(predictor.update(history));
+
+        double[] predicted = new double[3];
+        MotionPredictor.predict(
+            pose[0], pose[1], pose[2],
+            kVx0 + kAx * nowSeconds,
+            kVy0 + kAy * nowSeconds,
+            kOmega0 + kAlpha * nowSeconds,
+            predictor.getRobotAxMetersPerSecSq(),
+            predictor.getRobotAyMetersPerSecSq(),
+            predictor.getYawAccelerationRadPerSecSq(),
+            kLookaheadSeconds,
+            kLookaheadSeconds,
+            predicted
+        );
+        double[] expected = new double[3];
+        truePose(nowSeconds + kLookaheadSeconds, expected);
+
+        // Keeping the velocity alone would be off by about a centimeter and 5 mrad
+        assertEquals(expected[0], predicted[0], 1e-4);
+        assertEquals(expected[1], predicted[1], 1e-4);
+        assertEquals(0, MathUtil.angleModulus(expected[2] - predicted[2]), 1e-9);
+    }
+
+    @Test
+    public void needsAFullWindowToFit() {
+        history.addSample(0, 0, 0, 0);
+        history.addSample(1 / kSampleRateHz, 0.01, 0, 0);
+        assertFalse(predictor.update(history));
+        assertEquals(0, predictor.getRobotAxMetersPerSecSq());
+    }
+
+    @Test
+    public void fittingAndPredictingDoNotAllocate() {
+        fillHistory(0.5);
+        double[] predicted = new double[3];
+
+        // A deoptimization can allocate once on this thread, a real allocation shows up in every round
+        long allocatedBytes = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long startBytes = AllocationCounter.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 1000; i++) {
+                predictor.update(history);
+                MotionPredictor.predict(
+                    1, 2, 0.5,
+                    1, 0.5, 0.5,
+                    predictor.getRobotAxMetersPerSecSq(),
+                    predictor.getRobotAyMetersPerSecSq(),
+                    predictor.getYawAccelerationRadPerSecSq(),
+                    kLookaheadSeconds,
+                    kLookaheadSeconds,
+                    predicted
+                );
+            }
+            allocatedBytes = Math.min(allocatedBytes, AllocationCounter.getCurrentThreadAllocatedBytes() - startBytes);
+        }
+
+        assertEquals(0, allocatedBytes, "bytes allocated by 1000 fits and predictions");
+    }
+}
@@ -0,0 +1,96 @@
+package frc.robot.lib.estimation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+
+/** Checks the ring buffer against the TreeMap backed WPILib buffer it replaced, on the same samples */
+public class PoseHistoryBufferTest {
+    private static final double kHistorySeconds = 2.0;
+    private static final double kSampleRateHz = 250;
+    // The WPILib buffer interpolates along the twist, the ring buffer linearly. Between two samples
+    // 4 ms apart the two differ by well under this.
+    private static final double kInterpolationTolerance = 1e-4;
+
+    @Test
+    public void interpolatesLikeTheTreeMapBuffer() {
+        PoseHistoryBuffer ring = PoseHistoryBuffer.createBuffer(kHistorySeconds, kSampleRateHz);
+        TimeInterpolatableBuffer<Pose2d> treeMap = TimeInterpolatableBuffer.createBuffer(kHistorySeconds);
+        Random random = new Random(0);
+        double[] out = new double[3];
+
+        // Weaves around at up to 4 m/s and 6 rad/s for long enough to wrap the heading and the ring
+        double timeSeconds = 0;
+        double x = 0;
+        double y = 0;
+        double theta = 0;
+        for (int i = 0; i < 5000; i++) {
+            double dt = (1 + 0.3 * (random.nextDouble() - 0.5)) / kSampleRateHz;
+            double speed = 4 * Math.sin(timeSeconds);
+            double omega = 6 * Math.cos(0.7 * timeSeconds);
+            timeSeconds += dt;
+            theta = MathUtil.angleModulus(theta + omega * dt);
+            x += speed * Math.cos(theta) * dt;
+            y += speed * Math.sin(theta) * dt;
+
+            ring.addSample(timeSeconds, x, y, theta);
+            treeMap.addSample(timeSeconds, new Pose2d(x, y, new Rotation2d(theta)));
+
+            if (i % 10 == 0) {
+                // Inside the window and a little outside both ends, where both clamp
+                double queryTime = timeSeconds - (kHistorySeconds + 0.2) * random.nextDouble() + 0.05;
+                Pose2d expected = treeMap.getSample(queryTime).get();
+                assertTrue(ring.sample(queryTime, out));
+                assertEquals(expected.getX(), out[0], kInterpolationTolerance, "x at " + queryTime);
+                assertEquals(expected.getY(), out[1], kInterpolationTolerance, "y at " + queryTime);
+                assertEquals(0, MathUtil.angleModulus(expected.getRotation().getRadians() - out[2]), kInterpolationTolerance, "theta at " + queryTime);
+            }
+        }
+
+        // Both kept the same window, eviction only differs for a sample exactly on the boundary
+        assertTrue(ring.getLatestTimestamp() - ring.getOldestTimestamp() <= kHistorySeconds);
+        Pose2d expectedOldest = treeMap.getSample(0).get();
+        ring.sample(0, out);
+        assertEquals(expectedOldest.getX(), out[0]);
+        assertEquals(expectedOldest.getY(), out[1]);
+    }
+
+    @Test
+    public void hitsSamplesExactly() {
+        PoseHistoryBuffer ring = PoseHistoryBuffer.createBuffer(kHistorySeconds, kSampleRateHz);
+        double[] out = new double[3];
+        ring.addSample(1.0, 1, 2, 3);
+        ring.addSample(1.004, 2, 3, -3);
+
+        ring.sample(1.0, out);
+        assertEquals(1, out[0]);
+        assertEquals(3, out[2]);
+        ring.sample(1.004, out);
+        assertEquals(2, out[0]);
+        assertEquals(-3, out[2]);
+    }
+
+    @Test
+    public void ignoresOutOfOrderSamples() {
+        PoseHistoryBuffer ring = PoseHistoryBuffer.createBuffer(kHistorySeconds, kSampleRateHz);
+        double[] out = new double[3];
+        assertFalse(ring.sample(0, out));
+
+        ring.addSample(1.0, 1, 0, 0);
+        ring.addSample(0.5, 5, 0, 0);
+        assertEquals(1, ring.size());
+        ring.addSample(1.0, 2, 0, 0);
+        assertEquals(1, ring.size());
+        ring.sample(1.0, out);
+        assertEquals(2, out[0]);
+    }
+}
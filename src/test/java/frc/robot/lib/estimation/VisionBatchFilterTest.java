@@ -0,0 +1,64 @@
+package frc.robot.lib.estimation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class VisionBatchFilterTest {
+    private static final double kSampleRateHz = 250;
+    private static final double kHistorySeconds = 1.5;
+
+    /** Three seconds standing still at (1, 1), the oldest 1.5 seconds have fallen out of the history */
+    private static SwervePoseEstimator standingStill() {
+        SwervePoseEstimator estimator = new SwervePoseEstimator(new double[] {0.005, 0.005, 0}, kHistorySeconds, kSampleRateHz);
+        estimator.resetPose(1, 1, 0);
+        for (int i = 1; i <= 3 * kSampleRateHz; i++) {
+            estimator.addOdometry(i / kSampleRateHz, 0, 0, 0);
+        }
+        return estimator;
+    }
+
+    private static VisionBatchFilter createFilter() {
+        VisionBatchFilter filter = new VisionBatchFilter(8);
+        filter.configure(0.02, 0.05, 4, 0.5, 13.8, 0.02);
+        return filter;
+    }
+
+    private static void add(VisionBatchFilter filter, double timestamp) {
+        filter.add(timestamp, 1.01, 1, 0, 2, 1.5, 0, 0, 0);
+    }
+
+    @Test
+    public void staleObservationsAreNotCountedOrTrusted() {
+        VisionBatchFilter filter = createFilter();
+        double gateStdDev = filter.getGateStdDev();
+
+        add(filter, 0.5);
+        add(filter, 1.0);
+
+        assertEquals(0, filter.fuse(standingStill(), 0));
+        assertEquals(0, filter.getAcceptedCount());
+        assertEquals(0, filter.getLastRejectedCount());
+        assertEquals(2, filter.getLastStaleCount());
+        assertEquals(gateStdDev, filter.getGateStdDev());
+    }
+
+    @Test
+    public void onlyFusedObservationsShrinkTheGate() {
+        VisionBatchFilter fresh = createFilter();
+        add(fresh, 2.5);
+        assertEquals(1, fresh.fuse(standingStill(), 0));
+
+        VisionBatchFilter mixed = createFilter();
+        add(mixed, 1.0);
+        add(mixed, 2.5);
+        assertEquals(1, mixed.fuse(standingStill(), 0));
+        assertEquals(1, mixed.getAcceptedCount());
+        assertEquals(1, mixed.getLastStaleCount());
+
+        // The stale observation must not shrink the gate a second time
+        assertEquals(fresh.getGateStdDev(), mixed.getGateStdDev(), 1e-12);
+        assertTrue(mixed.getGateStdDev() < createFilter().getGateStdDev());
+    }
+}
@@ -0,0 +1,68 @@
+package frc.robot.lib.estimation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class WheelSlipDetectorTest {
+    private static final double kDtSeconds = 0.004;
+
+    private final Translation2d[] modulePositions = {
+        new Translation2d(0.3, 0.3),
+        new Translation2d(0.3, -0.3),
+        new Translation2d(-0.3, 0.3),
+        new Translation2d(-0.3, -0.3)
+    };
+    private final WheelSlipDetector detector = new WheelSlipDetector(new SwerveOdometryKinematics(modulePositions), 0.4);
+
+    private final double[] distanceDeltasMeters = new double[4];
+    private final double[] anglesRad = new double[4];
+    private final double[] weights = new double[4];
+
+    /** Fills the module deltas of a rigid robot moving at the given robot relative speeds */
+    private void move(double vxMetersPerSec, double vyMetersPerSec, double omegaRadPerSec, double dtSeconds) {
+        for (int i = 0; i < 4; i++) {
+            double moduleVx = vxMetersPerSec - omegaRadPerSec * modulePositions[i].getY();
+            double moduleVy = vyMetersPerSec + omegaRadPerSec * modulePositions[i].getX();
+            distanceDeltasMeters[i] = Math.hypot(moduleVx, moduleVy) * dtSeconds;
+            anglesRad[i] = Math.atan2(moduleVy, moduleVx);
+        }
+    }
+
+    @Test
+    public void grippingModulesAreKept() {
+        move(3, 1, 2, kDtSeconds);
+
+        assertEquals(0, detector.update(distanceDeltasMeters, anglesRad, 2 * kDtSeconds, kDtSeconds, weights));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, detector.getResidualMetersPerSec(i), 1e-9);
+            assertEquals(1, weights[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void slippingModuleIsExcluded() {
+        // Front right spins 1.5 m/s faster than the chassis moves
+        move(3, 0, 0, kDtSeconds);
+        distanceDeltasMeters[1] += 1.5 * kDtSeconds;
+
+        assertEquals(1, detector.update(distanceDeltasMeters, anglesRad, 0, kDtSeconds, weights));
+        assertEquals(0, weights[1]);
+        for (int i : new int[] {0, 2, 3}) {
+            assertTrue(weights[i] > 0.5, "module " + i + " weight " + weights[i]);
+        }
+    }
+
+    @Test
+    public void jitteredSampleDoesNotLookLikeSlip() {
+        // Two samples stamped a microsecond apart, each module still reads a little encoder noise
+        move(0, 0, 0, 0);
+        distanceDeltasMeters[0] = 2e-4;
+        distanceDeltasMeters[3] = -2e-4;
+
+        assertEquals(0, detector.update(distanceDeltasMeters, anglesRad, 0, 1e-6, weights));
+    }
+}
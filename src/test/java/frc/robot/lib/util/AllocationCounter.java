@@ -0,0 +1,20 @@
+package frc.robot.lib.util;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the calling thread, for measuring garbage produced by a block of code.
+ *
+ * <p>Relies on the HotSpot specific {@code com.sun.management.ThreadMXBean}, so it only lives in the
+ * tests and never ships to the robot.
+ */
+public final class AllocationCounter {
+    private static final com.sun.management.ThreadMXBean threadMXBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private AllocationCounter() {}
+
+    public static long getCurrentThreadAllocatedBytes() {
+        return threadMXBean.getCurrentThreadAllocatedBytes();
+    }
+}
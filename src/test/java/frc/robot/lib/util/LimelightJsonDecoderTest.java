@@ -0,0 +1,145 @@
+package frc.robot.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.wpi.first.networktables.StringPublisher;
+
+/** Checks the streaming decoder against Jackson's tree model on json dumps from a Limelight */
+public class LimelightJsonDecoderTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final LimelightJsonDecoder decoder = new LimelightJsonDecoder();
+
+    private static String readDump(String name) throws IOException {
+        try (InputStream stream = LimelightJsonDecoderTest.class.getResourceAsStream("/limelight/" + name)) {
+            assertNotNull(stream, name);
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void assertArrayMatches(JsonNode expected, double[] actual, String field) {
+        for (int i = 0; i < actual.length; i++) {
+            assertEquals(expected == null ? 0 : expected.path(i).asDouble(), actual[i], field + "[" + i + "]");
+        }
+    }
+
+    /** Decodes the dump and compares every field the decoder keeps against the parsed tree */
+    private void assertDecodesLikeTree(String name) throws IOException {
+        String dump = readDump(name);
+        JsonNode root = mapper.readTree(dump);
+        if (root.has("Results")) {
+            root = root.get("Results");
+        }
+
+        assertTrue(decoder.decode(dump), decoder.getError());
+        assertNull(decoder.getError());
+
+        assertEquals(root.path("v").asInt() == 1, decoder.isValid());
+        assertEquals(root.path("pID").asDouble(), decoder.getPipelineIndex());
+        assertEquals(root.path("tl").asDouble(), decoder.getLatencyPipelineMs());
+        assertEquals(root.path("cl").asDouble(), decoder.getLatencyCaptureMs());
+        assertEquals(root.path("ts").asDouble(), decoder.getTimestampLimelightPublishMs());
+        assertEquals(root.path("ts_rio").asDouble(), decoder.getTimestampRioCaptureMs());
+        assertArrayMatches(root.get("botpose"), decoder.getBotPose(), "botpose");
+        assertArrayMatches(root.get("botpose_wpired"), decoder.getBotPoseWpiRed(), "botpose_wpired");
+        assertArrayMatches(root.get("botpose_wpiblue"), decoder.getBotPoseWpiBlue(), "botpose_wpiblue");
+        assertArrayMatches(root.get("t6c_rs"), decoder.getCameraPoseRobotSpace(), "t6c_rs");
+        assertEquals(root.path("botpose_tagcount").asInt(), decoder.getBotPoseTagCount());
+        assertEquals(root.path("botpose_span").asDouble(), decoder.getBotPoseSpanMeters());
+        assertEquals(root.path("botpose_avgdist").asDouble(), decoder.getBotPoseAvgDistMeters());
+        assertEquals(root.path("botpose_avgarea").asDouble(), decoder.getBotPoseAvgArea());
+
+        JsonNode fiducials = root.path("Fiducial");
+        assertEquals(fiducials.size(), decoder.getFiducialCount());
+        for (int i = 0; i < fiducials.size(); i++) {
+            JsonNode expected = fiducials.get(i);
+            LimelightJsonDecoder.Fiducial fiducial = decoder.getFiducial(i);
+            assertEquals(expected.path("fID").asInt(), fiducial.id);
+            assertEquals(expected.path("tx").asDouble(), fiducial.tx);
+            assertEquals(expected.path("ty").asDouble(), fiducial.ty);
+            assertEquals(expected.path("ta").asDouble(), fiducial.ta);
+            assertArrayMatches(expected.get("t6t_rs"), fiducial.targetPoseRobotSpace, "t6t_rs");
+            assertArrayMatches(expected.get("t6r_fs"), fiducial.robotPoseFieldSpace, "t6r_fs");
+        }
+    }
+
+    @Test
+    public void decodesMegaTagDump() throws IOException {
+        assertDecodesLikeTree("megatag_three_tags.json");
+        assertEquals(3, decoder.getFiducialCount());
+    }
+
+    @Test
+    public void decodesDumpWithoutTargets() throws IOException {
+        assertDecodesLikeTree("no_targets.json");
+        assertFalse(decoder.isValid());
+    }
+
+    @Test
+    public void decodesOlderFirmwareResultsWrapper() throws IOException {
+        assertDecodesLikeTree("results_wrapped.json");
+        assertEquals(1, decoder.getFiducialCount());
+    }
+
+    @Test
+    public void clearsPreviousResultsBetweenDumps() throws IOException {
+        assertDecodesLikeTree("megatag_three_tags.json");
+        assertDecodesLikeTree("results_wrapped.json");
+        assertDecodesLikeTree("no_targets.json");
+    }
+
+    @Test
+    public void reportsMalformedDumps() throws IOException {
+        assertFalse(decoder.decode(""));
+        assertNotNull(decoder.getError());
+
+        assertFalse(decoder.decode(readDump("megatag_three_tags.json").substring(0, 200)));
+        assertNotNull(decoder.getError());
+    }
+
+    @Test
+    public void clearsFiducialFieldsMissingFromTheNextDump() throws IOException {
+        assertDecodesLikeTree("megatag_three_tags.json");
+
+        assertTrue(decoder.decode("{\"Fiducial\":[{\"fID\":7}]}"), decoder.getError());
+        LimelightJsonDecoder.Fiducial fiducial = decoder.getFiducial(0);
+        assertEquals(7, fiducial.id);
+        assertEquals(0, fiducial.tx);
+        assertEquals(0, fiducial.ty);
+        assertEquals(0, fiducial.ta);
+        assertArrayMatches(null, fiducial.targetPoseRobotSpace, "t6t_rs");
+        assertArrayMatches(null, fiducial.robotPoseFieldSpace, "t6r_fs");
+    }
+
+    @Test
+    public void latestResultsReportAMalformedDumpInsteadOfTheLastGoodOne() throws IOException {
+        String limelightName = "limelight-decodertest";
+        try (StringPublisher publisher = LimelightHelpers.getLimelightNTTable(limelightName)
+                .getStringTopic("json").publish()) {
+            publisher.set(readDump("megatag_three_tags.json"));
+            LimelightHelpers.LimelightResults good = LimelightHelpers.getLatestResults(limelightName);
+            assertNull(good.error);
+            assertEquals(3, good.targets_Fiducials.length);
+            assertSame(good, LimelightHelpers.getLatestResults(limelightName));
+
+            publisher.set(readDump("megatag_three_tags.json").substring(0, 200));
+            LimelightHelpers.LimelightResults malformed = LimelightHelpers.getLatestResults(limelightName);
+            assertNotNull(malformed.error);
+            assertEquals(0, malformed.targets_Fiducials.length);
+            assertFalse(malformed.valid);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package frc.robot.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.lib.util.ListenerDispatcher.DeliveryPolicy;
+
+public class ListenerDispatcherTest {
+    @BeforeEach
+    public void setup() {
+        // Failures are reported through DriverStation
+        HAL.initialize(500, 0);
+    }
+
+    private static void fail(Integer value) {
+        throw new IllegalStateException("listener failed on " + value);
+    }
+
+    @Test
+    public void throwingPerSampleListenerDoesNotStopPublish() {
+        ListenerDispatcher<Integer> dispatcher = new ListenerDispatcher<>("Test");
+        List<Integer> received = new ArrayList<>();
+        dispatcher.register("broken", DeliveryPolicy.PER_SAMPLE, ListenerDispatcherTest::fail);
+        dispatcher.register("working", DeliveryPolicy.PER_SAMPLE, received::add);
+
+        dispatcher.publish(() -> 1);
+        dispatcher.publish(() -> 2);
+        dispatcher.flush(2);
+
+        assertEquals(List.of(1, 2), received);
+    }
+
+    @Test
+    public void throwingOncePerLoopListenerDoesNotStopFlush() {
+        ListenerDispatcher<Integer> dispatcher = new ListenerDispatcher<>("Test");
+        List<Integer> received = new ArrayList<>();
+        dispatcher.register("broken", DeliveryPolicy.ONCE_PER_LOOP, ListenerDispatcherTest::fail);
+        dispatcher.register("working", DeliveryPolicy.ONCE_PER_LOOP, received::add);
+
+        dispatcher.publish(() -> 1);
+        dispatcher.publish(() -> 2);
+        dispatcher.flush(2);
+        dispatcher.publish(() -> 3);
+        dispatcher.flush(3);
+
+        assertEquals(List.of(2, 3), received);
+    }
+}
@@ -0,0 +1,91 @@
+package frc.robot.subsystems.swerve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
+import frc.robot.constants.swerve.moduleConfigs.sim.SwerveModuleGeneralConfigSim;
+
+public class DrivetrainSimulationTest {
+    private static final double kDurationSeconds = 12;
+    private static final double kLoopPeriodSeconds = 0.02;
+
+    // Same gains as ModuleIOSim
+    private static final double kDriveVoltsPerMetersPerSec = 2.44;
+    private static final double kSteerKP = 25;
+
+    private final SwerveModuleGeneralConfigBase moduleConfig = SwerveModuleGeneralConfigSim.getInstance();
+    private final SwerveDrivetrainConfigBase drivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
+
+    /** Sprints, strafes and spins on a virtual clock, read either in regular loops or in uneven chunks */
+    private Pose2d run(boolean irregularLoops) {
+        double[] clock = {0};
+        DrivetrainSimulation simulation = new DrivetrainSimulation(moduleConfig, drivetrainConfig, () -> clock[0]);
+        Translation2d[] modulePositions = {
+            drivetrainConfig.getFrontLeftPositionMeters(),
+            drivetrainConfig.getFrontRightPositionMeters(),
+            drivetrainConfig.getBackLeftPositionMeters(),
+            drivetrainConfig.getBackRightPositionMeters()
+        };
+
+        // Commands only depend on simulated time, like the motor controllers' own loops
+        simulation.addControlStep(dt -> {
+            double t = simulation.getTimeSeconds() % 6;
+            double vx = t < 2 ? 4 : t < 4 ? -4 : 0;
+            double vy = t < 4 ? 2 * Math.sin(Math.PI * t) : 0;
+            double omega = t < 4 ? 0 : 8;
+
+            for (int i = 0; i < simulation.getNumModules(); i++) {
+                DrivetrainSimulation.ModuleSimulation module = simulation.getModule(i);
+                double moduleVx = vx - omega * modulePositions[i].getY();
+                double moduleVy = vy + omega * modulePositions[i].getX();
+                double speed = Math.hypot(moduleVx, moduleVy);
+                double steerError = MathUtil.angleModulus(Math.atan2(moduleVy, moduleVx) - module.getSteerAngleRad());
+                if (Math.abs(steerError) > Math.PI / 2) {
+                    steerError = MathUtil.angleModulus(steerError + Math.PI);
+                    speed = -speed;
+                }
+
+                module.setDriveVoltage(MathUtil.clamp(kDriveVoltsPerMetersPerSec * speed, -12, 12));
+                module.setSteerVoltage(MathUtil.clamp(kSteerKP * steerError, -12, 12));
+            }
+        });
+
+        // The first reading sets where the fixed steps start
+        simulation.update();
+
+        int loops = (int) Math.round(kDurationSeconds / kLoopPeriodSeconds);
+        for (int loop = 0; loop < loops; loop++) {
+            if (irregularLoops) {
+                // Two uneven reads per loop, like a robot loop that overran and then caught up
+                clock[0] = (loop + 0.37 + 0.2 * Math.sin(loop)) * kLoopPeriodSeconds;
+                simulation.update();
+            }
+            clock[0] = (loop + 1) * kLoopPeriodSeconds;
+            simulation.update();
+        }
+        return simulation.getPose();
+    }
+
+    @Test
+    public void clockReadPatternDoesNotChangeTheResult() {
+        Pose2d regularPose = run(false);
+        Pose2d irregularPose = run(true);
+
+        // The script actually moved the robot, otherwise agreeing would prove nothing
+        assertNotEquals(0, regularPose.getTranslation().getNorm());
+        assertEquals(Double.doubleToLongBits(regularPose.getX()), Double.doubleToLongBits(irregularPose.getX()));
+        assertEquals(Double.doubleToLongBits(regularPose.getY()), Double.doubleToLongBits(irregularPose.getY()));
+        assertEquals(
+            Double.doubleToLongBits(regularPose.getRotation().getRadians()),
+            Double.doubleToLongBits(irregularPose.getRotation().getRadians())
+        );
+    }
+}
@@ -0,0 +1,96 @@
+package frc.robot.subsystems.swerve;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Drives {@link PhoenixTimebaseEstimator} the way {@link PhoenixOdometryThread} does, with a fake
+ * Phoenix clock running at an offset from the FPGA clock and fake status signals stamped in the
+ * Phoenix timebase when their CAN frames arrive.
+ */
+public class PhoenixTimebaseEstimatorTest {
+    private static final double kPhoenixMinusFpgaSeconds = -1234.567;
+    private static final double kTolerance = 20e-6;
+
+    /** What a status signal reports, its system timestamp is when the frame was received */
+    private record FakeStatusSignal(double systemTimestampSeconds, boolean isValid) {
+        static FakeStatusSignal receivedAt(double fpgaSeconds) {
+            return new FakeStatusSignal(fpgaSeconds + kPhoenixMinusFpgaSeconds, true);
+        }
+    }
+
+    /** One clock pair read like the odometry thread does it, with a few microseconds between reads */
+    private static void readClocks(PhoenixTimebaseEstimator estimator, double fpgaSeconds, Random random) {
+        double beforeSeconds = fpgaSeconds - 5e-6 - 20e-6 * random.nextDouble();
+        double afterSeconds = fpgaSeconds + 5e-6 + 20e-6 * random.nextDouble();
+        estimator.addClockSample(beforeSeconds + kPhoenixMinusFpgaSeconds, fpgaSeconds, afterSeconds + kPhoenixMinusFpgaSeconds);
+    }
+
+    private static double convert(PhoenixTimebaseEstimator estimator, FakeStatusSignal signal, double fallbackFpgaSeconds) {
+        return estimator.toFpgaSeconds(signal.systemTimestampSeconds(), signal.isValid(), fallbackFpgaSeconds);
+    }
+
+    @Test
+    public void convertsReceiveTimestampsIntoFpgaTime() {
+        PhoenixTimebaseEstimator estimator = new PhoenixTimebaseEstimator();
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            double fpgaSeconds = 10 + i * 0.004;
+            readClocks(estimator, fpgaSeconds, random);
+
+            // Each device's frame arrived at a different time in the last period
+            for (int device = 0; device < 5; device++) {
+                double receivedSeconds = fpgaSeconds - 0.004 * random.nextDouble();
+                assertEquals(receivedSeconds, convert(estimator, FakeStatusSignal.receivedAt(receivedSeconds), fpgaSeconds), kTolerance);
+            }
+        }
+    }
+
+    @Test
+    public void fallsBackUntilTheOffsetIsKnown() {
+        PhoenixTimebaseEstimator estimator = new PhoenixTimebaseEstimator();
+        assertFalse(estimator.hasEstimate());
+        assertEquals(3.0, convert(estimator, FakeStatusSignal.receivedAt(2.99), 3.0));
+
+        readClocks(estimator, 3.0, new Random(0));
+        assertTrue(estimator.hasEstimate());
+        assertEquals(2.99, convert(estimator, FakeStatusSignal.receivedAt(2.99), 3.0), kTolerance);
+    }
+
+    @Test
+    public void fallsBackForInvalidTimestamps() {
+        PhoenixTimebaseEstimator estimator = new PhoenixTimebaseEstimator();
+        readClocks(estimator, 3.0, new Random(0));
+        assertEquals(3.0, convert(estimator, new FakeStatusSignal(0, false), 3.0));
+    }
+
+    @Test
+    public void ignoresPreemptedClockReads() {
+        PhoenixTimebaseEstimator estimator = new PhoenixTimebaseEstimator();
+        readClocks(estimator, 3.0, new Random(0));
+        double offsetSeconds = estimator.getOffsetSeconds();
+
+        // The thread was preempted for 2 ms between the two Phoenix reads
+        estimator.addClockSample(4.0 + kPhoenixMinusFpgaSeconds, 4.0015, 4.002 + kPhoenixMinusFpgaSeconds);
+        assertEquals(offsetSeconds, estimator.getOffsetSeconds());
+    }
+
+    @Test
+    public void reseedsWhenAClockSteps() {
+        PhoenixTimebaseEstimator estimator = new PhoenixTimebaseEstimator();
+        Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            readClocks(estimator, 3 + i * 0.004, random);
+        }
+
+        // FPGA time jumps a whole second ahead, the next sample takes over instead of being smoothed in
+        double fpgaSeconds = 4.4;
+        estimator.addClockSample(3.4 - 1e-5 + kPhoenixMinusFpgaSeconds, fpgaSeconds, 3.4 + 1e-5 + kPhoenixMinusFpgaSeconds);
+        assertEquals(fpgaSeconds - 0.001, convert(estimator, new FakeStatusSignal(3.399 + kPhoenixMinusFpgaSeconds, true), 0), kTolerance);
+    }
+}
@@ -0,0 +1,90 @@
+package frc.robot.subsystems.swerve;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
+import frc.robot.constants.swerve.moduleConfigs.sim.SwerveModuleGeneralConfigSim;
+import frc.robot.lib.util.AllocationCounter;
+import frc.robot.subsystems.swerve.gyro.GyroIOSim;
+import frc.robot.subsystems.swerve.module.ModuleIO;
+import frc.robot.subsystems.swerve.module.ModuleIOSim;
+
+public class SwerveDriveTest {
+    private static final double kLoopSeconds = 0.02;
+    private static final int kWarmupLoops = 200;
+    private static final int kMeasuredLoops = 50;
+    // Once per loop the IOs hand over a Rotation2d per module and gyro and the simulated pose is
+    // logged. Each odometry sample used to add a Pose2d, a Rotation2d per queue and stream arrays.
+    private static final long kMaxBytesPerPeriodic = 512;
+
+    private final SwerveModuleGeneralConfigBase moduleConfig = SwerveModuleGeneralConfigSim.getInstance();
+    private final SwerveDrivetrainConfigBase drivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
+
+    private double nowSeconds = 0;
+    private DrivetrainSimulation simulation;
+    private SwerveDrive swerveDrive;
+
+    @BeforeEach
+    public void setup() {
+        HAL.initialize(500, 0);
+        simulation = new DrivetrainSimulation(moduleConfig, drivetrainConfig, () -> nowSeconds);
+
+        // No odometry thread, the sensors sample themselves on simulated time
+        ModuleIO[] modules = new ModuleIO[4];
+        for (int i = 0; i < 4; i++) {
+            modules[i] = new ModuleIOSim(moduleConfig, simulation, i, () -> 12.5, null);
+        }
+        GyroIOSim gyro = new GyroIOSim(
+            simulation,
+            0,
+            0,
+            0,
+            GyroIOSim.kDefaultLatencySeconds,
+            0,
+            null
+        );
+
+        swerveDrive = new SwerveDrive(moduleConfig, drivetrainConfig, modules, gyro, simulation);
+    }
+
+    /** Drives one loop of a slow spinning strafe, with every odometry sample of the loop queued */
+    private void loop() {
+        nowSeconds += kLoopSeconds;
+        simulation.update();
+        swerveDrive.periodic();
+        swerveDrive.driveRobotRelative(new ChassisSpeeds(1.5, 0.5, 1));
+    }
+
+    @Test
+    public void periodicDoesNotAllocatePerOdometrySample() {
+        for (int i = 0; i < kWarmupLoops; i++) {
+            loop();
+        }
+
+        // A deoptimization can allocate once on this thread, a real allocation shows up in every loop
+        long allocatedBytes = Long.MAX_VALUE;
+        for (int i = 0; i < kMeasuredLoops; i++) {
+            nowSeconds += kLoopSeconds;
+            simulation.update();
+
+            long startBytes = AllocationCounter.getCurrentThreadAllocatedBytes();
+            swerveDrive.periodic();
+            allocatedBytes = Math.min(allocatedBytes, AllocationCounter.getCurrentThreadAllocatedBytes() - startBytes);
+
+            swerveDrive.driveRobotRelative(new ChassisSpeeds(1.5, 0.5, 1));
+        }
+
+        // Five odometry samples per loop at 250 Hz
+        assertTrue(
+            allocatedBytes <= kMaxBytesPerPeriodic,
+            "bytes allocated by one periodic with five odometry samples: " + allocatedBytes
+        );
+    }
+}
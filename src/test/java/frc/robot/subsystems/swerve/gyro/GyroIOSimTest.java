@@ -0,0 +1,200 @@
+package frc.robot.subsystems.swerve.gyro;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
+import frc.robot.constants.swerve.moduleConfigs.sim.SwerveModuleGeneralConfigSim;
+import frc.robot.subsystems.swerve.DrivetrainSimulation;
+import frc.robot.subsystems.swerve.SwerveDrive;
+
+public class GyroIOSimTest {
+    private static final double kLoopSeconds = 0.02;
+    private static final double kLatencySeconds = 0.005;
+    private static final long kSeed = 7;
+
+    // Same gains as ModuleIOSim
+    private static final double kDriveVoltsPerMetersPerSec = 2.44;
+    private static final double kSteerKP = 25;
+    private static final double kSpinRadPerSec = 4;
+
+    private final SwerveModuleGeneralConfigBase moduleConfig = SwerveModuleGeneralConfigSim.getInstance();
+    private final SwerveDrivetrainConfigBase drivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
+
+    private double nowSeconds = 0;
+    private DrivetrainSimulation simulation;
+    // True yaw at the start of every simulation step, before the first one the robot stood still at zero
+    private final Map<Double, Double> yawRadByTimeSeconds = new HashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        HAL.initialize(500, 0);
+        simulation = new DrivetrainSimulation(moduleConfig, drivetrainConfig, () -> nowSeconds);
+        simulation.addControlStep(dt -> yawRadByTimeSeconds.put(simulation.getTimeSeconds(), simulation.getYawRad()));
+    }
+
+    private GyroIOSim gyro(double noiseStdDevRad, double initialBiasRadPerSec, double biasRandomWalkRadPerSecPerSqrtSec, long seed) {
+        GyroIOSim gyro = new GyroIOSim(
+            simulation,
+            noiseStdDevRad,
+            initialBiasRadPerSec,
+            biasRandomWalkRadPerSecPerSqrtSec,
+            kLatencySeconds,
+            seed,
+            null
+        );
+        // The first reading sets where the fixed steps start
+        simulation.update();
+        return gyro;
+    }
+
+    /** Spins the robot in place, each module steered along its circle */
+    private void spin() {
+        Translation2d[] modulePositions = {
+            drivetrainConfig.getFrontLeftPositionMeters(),
+            drivetrainConfig.getFrontRightPositionMeters(),
+            drivetrainConfig.getBackLeftPositionMeters(),
+            drivetrainConfig.getBackRightPositionMeters()
+        };
+        simulation.addControlStep(dt -> {
+            for (int i = 0; i < simulation.getNumModules(); i++) {
+                DrivetrainSimulation.ModuleSimulation module = simulation.getModule(i);
+                double steerError = MathUtil.angleModulus(modulePositions[i].getAngle().getRadians() + Math.PI / 2 - module.getSteerAngleRad());
+                module.setDriveVoltage(kDriveVoltsPerMetersPerSec * kSpinRadPerSec * modulePositions[i].getNorm());
+                module.setSteerVoltage(MathUtil.clamp(kSteerKP * steerError, -12, 12));
+            }
+        });
+    }
+
+    private void loop(GyroIOSim gyro, GyroIO.GyroIOInputs inputs) {
+        nowSeconds += kLoopSeconds;
+        simulation.update();
+        gyro.updateInputs(inputs);
+    }
+
+    @Test
+    public void stampsSamplesWithTheirMeasurementTime() {
+        spin();
+        GyroIOSim gyro = gyro(0, 0, 0, kSeed);
+        GyroIO.GyroIOInputs inputs = new GyroIO.GyroIOInputs();
+
+        int samples = 0;
+        for (int i = 0; i < 100; i++) {
+            loop(gyro, inputs);
+            assertEquals(inputs.odometryTimestampsSeconds.length, inputs.odometryYawPositionsRad.length);
+            for (int j = 0; j < inputs.odometryTimestampsSeconds.length; j++) {
+                double timestampSeconds = inputs.odometryTimestampsSeconds[j];
+                assertTrue(timestampSeconds <= simulation.getTimeSeconds() - kLatencySeconds + 1e-9);
+                // Stamped when it reached the robot instead, the yaw would be about 20 mrad behind
+                assertEquals(yawRadByTimeSeconds.getOrDefault(timestampSeconds, 0.0), inputs.odometryYawPositionsRad[j], 1e-9);
+                samples++;
+            }
+        }
+
+        // Every sample of the two seconds at the odometry frequency
+        assertEquals(2 * SwerveDrive.ODOMETRY_FREQUENCY, samples, 1);
+        assertTrue(simulation.getYawRad() > 5);
+    }
+
+    @Test
+    public void initialBiasIntegratesIntoDrift() {
+        double biasRadPerSec = Math.toRadians(0.1);
+        GyroIOSim gyro = gyro(0, biasRadPerSec, 0, kSeed);
+        GyroIO.GyroIOInputs inputs = new GyroIO.GyroIOInputs();
+
+        for (int i = 0; i < 250; i++) {
+            loop(gyro, inputs);
+            for (int j = 0; j < inputs.odometryTimestampsSeconds.length; j++) {
+                assertEquals(biasRadPerSec * Math.max(0, inputs.odometryTimestampsSeconds[j]), inputs.odometryYawPositionsRad[j], 1e-9);
+            }
+        }
+        assertEquals(biasRadPerSec, inputs.yawVelocityRadPerSec, 1e-12);
+    }
+
+    @Test
+    public void biasWandersAsARandomWalk() {
+        double randomWalkRadPerSecPerSqrtSec = Math.toRadians(0.01);
+        double durationSeconds = 4;
+        int seeds = 200;
+        GyroIO.GyroIOInputs inputs = new GyroIO.GyroIOInputs();
+
+        double sumSquaredBias = 0;
+        for (int seed = 0; seed < seeds; seed++) {
+            setup();
+            nowSeconds = 0;
+            GyroIOSim gyro = gyro(0, 0, randomWalkRadPerSecPerSqrtSec, seed);
+            for (int i = 0; i < Math.round(durationSeconds / kLoopSeconds); i++) {
+                loop(gyro, inputs);
+            }
+            // Standing still, the measured yaw rate is the bias alone
+            sumSquaredBias += inputs.yawVelocityRadPerSec * inputs.yawVelocityRadPerSec;
+        }
+
+        // The spread grows with the square root of time, a 200 seed estimate is good to about 5%
+        assertEquals(
+            randomWalkRadPerSecPerSqrtSec * Math.sqrt(durationSeconds),
+            Math.sqrt(sumSquaredBias / seeds),
+            0.2 * randomWalkRadPerSecPerSqrtSec * Math.sqrt(durationSeconds)
+        );
+    }
+
+    @Test
+    public void samplesCarryTheConfiguredNoise() {
+        double noiseStdDevRad = Math.toRadians(0.5);
+        GyroIOSim gyro = gyro(noiseStdDevRad, 0, 0, kSeed);
+        GyroIO.GyroIOInputs inputs = new GyroIO.GyroIOInputs();
+
+        double sumSquaredYaw = 0;
+        int samples = 0;
+        for (int i = 0; i < 250; i++) {
+            loop(gyro, inputs);
+            for (double yawRad : inputs.odometryYawPositionsRad) {
+                sumSquaredYaw += yawRad * yawRad;
+                samples++;
+            }
+        }
+
+        // About 1250 samples estimate the deviation to about 2%
+        assertEquals(noiseStdDevRad, Math.sqrt(sumSquaredYaw / samples), 0.1 * noiseStdDevRad);
+    }
+
+    @Test
+    public void sameSeedGivesTheSameSamples() {
+        GyroIOSim first = gyro(Math.toRadians(0.5), 0, GyroIOSim.kDefaultBiasRandomWalkRadPerSecPerSqrtSec, kSeed);
+        GyroIOSim second = gyro(Math.toRadians(0.5), 0, GyroIOSim.kDefaultBiasRandomWalkRadPerSecPerSqrtSec, kSeed);
+        GyroIOSim otherSeed = gyro(Math.toRadians(0.5), 0, GyroIOSim.kDefaultBiasRandomWalkRadPerSecPerSqrtSec, kSeed + 1);
+        GyroIO.GyroIOInputs firstInputs = new GyroIO.GyroIOInputs();
+        GyroIO.GyroIOInputs secondInputs = new GyroIO.GyroIOInputs();
+        GyroIO.GyroIOInputs otherSeedInputs = new GyroIO.GyroIOInputs();
+
+        boolean isOtherSeedDifferent = false;
+        for (int i = 0; i < 50; i++) {
+            nowSeconds += kLoopSeconds;
+            simulation.update();
+            first.updateInputs(firstInputs);
+            second.updateInputs(secondInputs);
+            otherSeed.updateInputs(otherSeedInputs);
+
+            assertArrayEquals(firstInputs.odometryTimestampsSeconds, secondInputs.odometryTimestampsSeconds);
+            assertArrayEquals(firstInputs.odometryYawPositionsRad, secondInputs.odometryYawPositionsRad);
+            assertEquals(firstInputs.yawPosition.getRadians(), secondInputs.yawPosition.getRadians());
+            isOtherSeedDifferent |= !Arrays.equals(firstInputs.odometryYawPositionsRad, otherSeedInputs.odometryYawPositionsRad);
+        }
+        assertTrue(isOtherSeedDifferent);
+        assertFalse(firstInputs.odometryYawPositionsRad.length == 0);
+    }
+}
@@ -0,0 +1,156 @@
+package frc.robot.subsystems.swerve.module;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+public class ModuleHealthMonitorTest {
+    private static final double kLoopSeconds = 0.02;
+    // Steer windows hold this many loops
+    private static final int kSteerWindowLoops = 250;
+    // Percentiles are the upper edge of a half degree bin
+    private static final double kBinWidthDegrees = 0.5;
+
+    private final ModuleHealthMonitor monitor = new ModuleHealthMonitor("FL", "FR", "BL", "BR");
+    private final ModuleIO.ModuleIOInputs[] inputs = new ModuleIO.ModuleIOInputs[4];
+    private final double[] steerSetpointsRad = new double[4];
+    private double nowSeconds = 0;
+
+    @BeforeEach
+    public void setup() {
+        HAL.initialize(500, 0);
+        for (int i = 0; i < 4; i++) {
+            inputs[i] = new ModuleIO.ModuleIOInputs();
+            inputs[i].driveTemperatureFahrenheit = 100;
+        }
+    }
+
+    private void update() {
+        nowSeconds += kLoopSeconds;
+        monitor.update(nowSeconds, inputs, steerSetpointsRad, true);
+    }
+
+    /** Points the module at errorDegrees off its zero setpoint, with the absolute encoder agreeing */
+    private void setSteerError(int module, double errorDegrees) {
+        inputs[module].steerPosition = Rotation2d.fromDegrees(errorDegrees);
+        inputs[module].steerEncoderAbsolutePosition = inputs[module].steerPosition;
+    }
+
+    @Test
+    public void fitsTheTemperatureSlope() {
+        // A full minute of half second samples fills the window
+        for (int i = 0; i < 3000; i++) {
+            inputs[0].driveTemperatureFahrenheit = 100 + 2 * nowSeconds / 60;
+            update();
+        }
+
+        assertEquals(2, monitor.getTemperatureSlopeFahrenheitPerMin(0), 1e-6);
+        assertEquals(0, monitor.getTemperatureSlopeFahrenheitPerMin(1), 1e-9);
+        assertTrue(monitor.isHealthy(0));
+    }
+
+    @Test
+    public void warnsWhenTheDriveMotorWillReachItsLimitSoon() {
+        // Still below the warning temperature, but two minutes from the limit once past 152 F
+        for (int i = 0; i < 3000; i++) {
+            inputs[0].driveTemperatureFahrenheit = 140 + 30 * nowSeconds / 60;
+            update();
+        }
+
+        assertTrue(inputs[0].driveTemperatureFahrenheit < 175);
+        assertEquals("TEMPERATURE", monitor.getSummary(0));
+        assertTrue(monitor.isHealthy(1));
+    }
+
+    @Test
+    public void comparesAccelerationPerAmpAgainstTheOtherModules() {
+        double[] metersPerSecSqPerAmp = {0.05, 0.1, 0.1, 0.1};
+        for (int i = 0; i < 250; i++) {
+            // Half second pushes back and forth, always above the friction current
+            double currentAmps = (i / 25) % 2 == 0 ? 30 : -30;
+            for (int j = 0; j < 4; j++) {
+                inputs[j].driveTorqueCurrent = currentAmps;
+                inputs[j].driveVelocityMetersPerSec += metersPerSecSqPerAmp[j] * currentAmps * kLoopSeconds;
+            }
+            update();
+        }
+
+        assertEquals(0.5, monitor.getEfficiencyRatio(0), 1e-9);
+        assertEquals(1.2, monitor.getEfficiencyRatio(1), 1e-9);
+        assertEquals("EFFICIENCY", monitor.getSummary(0));
+        assertTrue(monitor.isHealthy(1));
+    }
+
+    @Test
+    public void needsEnoughSamplesToCompareEfficiency() {
+        for (int i = 0; i < 50; i++) {
+            inputs[0].driveTorqueCurrent = 30;
+            inputs[0].driveVelocityMetersPerSec += 0.01 * 30 * kLoopSeconds;
+            update();
+        }
+
+        assertEquals(1, monitor.getEfficiencyRatio(0));
+        assertTrue(monitor.isHealthy(0));
+    }
+
+    @Test
+    public void takesTheSteerErrorPercentileWhileMoving() {
+        inputs[0].driveVelocityMetersPerSec = 1;
+        // Spread evenly over 0 to 20 degrees, the 95th percentile is 19
+        for (int i = 0; i < kSteerWindowLoops; i++) {
+            setSteerError(0, (i + 0.25) * 20.0 / kSteerWindowLoops);
+            // Stopped modules are free to point anywhere
+            setSteerError(1, 30);
+            update();
+        }
+
+        assertEquals(19, monitor.getSteerErrorP95Degrees(0), kBinWidthDegrees);
+        assertEquals(0, monitor.getSteerErrorP95Degrees(1));
+        assertEquals("STEER_ERROR", monitor.getSummary(0));
+        assertTrue(monitor.isHealthy(1));
+
+        // Clears once the whole window tracks well again
+        for (int i = 0; i < kSteerWindowLoops; i++) {
+            setSteerError(0, 0.25);
+            update();
+        }
+        assertEquals(kBinWidthDegrees, monitor.getSteerErrorP95Degrees(0));
+        assertTrue(monitor.isHealthy(0));
+    }
+
+    @Test
+    public void encoderDisagreementWarningRearmsBelowItsThreshold() {
+        inputs[2].steerEncoderAbsolutePosition = Rotation2d.fromDegrees(5.2);
+        update();
+        assertEquals(5.2, monitor.getEncoderDisagreementP50Degrees(2), kBinWidthDegrees);
+        assertEquals("ENCODER_DISAGREEMENT", monitor.getSummary(2));
+
+        // Below the 3 degree threshold but not far enough below to clear
+        inputs[2].steerEncoderAbsolutePosition = Rotation2d.fromDegrees(2.8);
+        for (int i = 0; i < kSteerWindowLoops; i++) {
+            update();
+        }
+        assertEquals("ENCODER_DISAGREEMENT", monitor.getSummary(2));
+
+        inputs[2].steerEncoderAbsolutePosition = Rotation2d.fromDegrees(1.2);
+        for (int i = 0; i < kSteerWindowLoops; i++) {
+            update();
+        }
+        assertEquals("OK", monitor.getSummary(2));
+    }
+
+    @Test
+    public void listsEveryActiveWarning() {
+        inputs[3].driveTemperatureFahrenheit = 180;
+        inputs[3].steerEncoderAbsolutePosition = Rotation2d.fromDegrees(10);
+        update();
+
+        assertEquals("TEMPERATURE,ENCODER_DISAGREEMENT", monitor.getSummary(3));
+        assertTrue(monitor.isHealthy(0));
+    }
+}
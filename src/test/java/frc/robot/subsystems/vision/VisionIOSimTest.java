@@ -0,0 +1,143 @@
+package frc.robot.subsystems.vision;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.util.Units;
+import frc.robot.subsystems.vision.VisionIO.VisionIOInputs;
+
+public class VisionIOSimTest {
+    private static final double kLoopSeconds = 0.02;
+    private static final double kLatencySeconds = 0.05;
+    private static final long kSeed = 7;
+
+    // Forward facing camera at the height of the reef tags
+    private static final Transform3d kRobotToCamera = new Transform3d(0.3, 0, 0.3, Rotation3d.kZero);
+
+    // Reef tag 18 is at x 3.66 m, y 4.03 m and faces the blue driver station
+    private static final Pose2d kFacingReefTag = new Pose2d(2.5, 4.03, Rotation2d.kZero);
+    private static final Pose2d kFacingAwayFromReefTag = new Pose2d(2.5, 4.03, Rotation2d.kPi);
+    // Reef center, looking out through the back of tag 18
+    private static final Pose2d kBehindReefTag = new Pose2d(4.49, 4.03, Rotation2d.kPi);
+
+    private double nowSeconds = 0;
+
+    private static VisionIOSim.CameraProperties properties(double dropoutProbability, double maxRangeMeters) {
+        return new VisionIOSim.CameraProperties(
+            30,
+            kLatencySeconds,
+            0,
+            0.02,
+            Units.degreesToRadians(0.5),
+            dropoutProbability,
+            Units.degreesToRadians(82),
+            Units.degreesToRadians(56.2),
+            maxRangeMeters
+        );
+    }
+
+    private VisionIOSim camera(Pose2d truth, VisionIOSim.CameraProperties properties, long seed) {
+        return new VisionIOSim(kRobotToCamera, () -> truth, () -> nowSeconds, properties, seed);
+    }
+
+    /** Runs one second of loops and returns the largest tag count seen */
+    private int maxTagCount(VisionIOSim camera) {
+        VisionIOInputs inputs = new VisionIOInputs();
+        int maxTagCount = 0;
+        for (int i = 0; i < 50; i++) {
+            camera.updateInputs(inputs);
+            for (int tagCount : inputs.observationTagCounts) {
+                maxTagCount = Math.max(maxTagCount, tagCount);
+            }
+            nowSeconds += kLoopSeconds;
+        }
+        return maxTagCount;
+    }
+
+    @Test
+    public void seesATagItFaces() {
+        assertTrue(maxTagCount(camera(kFacingReefTag, properties(0, 6), kSeed)) >= 1);
+    }
+
+    @Test
+    public void seesNoTagsOutsideItsFieldOfView() {
+        assertEquals(0, maxTagCount(camera(kFacingAwayFromReefTag, properties(0, 6), kSeed)));
+    }
+
+    @Test
+    public void seesNoTagsFromBehind() {
+        assertEquals(0, maxTagCount(camera(kBehindReefTag, properties(0, 6), kSeed)));
+    }
+
+    @Test
+    public void seesNoTagsOutOfRange() {
+        // Tag 18 is the closest, 0.86 m from the lens
+        assertEquals(0, maxTagCount(camera(kFacingReefTag, properties(0, 0.5), kSeed)));
+    }
+
+    @Test
+    public void dropsEveryFrameAtFullDropout() {
+        assertEquals(0, maxTagCount(camera(kFacingReefTag, properties(1, 6), kSeed)));
+    }
+
+    @Test
+    public void deliversFramesOnceTheirLatencyHasPassed() {
+        VisionIOSim camera = camera(kFacingReefTag, properties(0, 6), kSeed);
+        VisionIOInputs inputs = new VisionIOInputs();
+
+        int delivered = 0;
+        double lastTimestampSeconds = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 50; i++) {
+            camera.updateInputs(inputs);
+            if (nowSeconds < kLatencySeconds) {
+                assertEquals(0, inputs.observationTimestampsSeconds.length);
+            }
+            for (double timestampSeconds : inputs.observationTimestampsSeconds) {
+                assertTrue(timestampSeconds <= nowSeconds - kLatencySeconds + 1e-9);
+                assertTrue(timestampSeconds > lastTimestampSeconds);
+                lastTimestampSeconds = timestampSeconds;
+                delivered++;
+            }
+            nowSeconds += kLoopSeconds;
+        }
+
+        // Every 30 fps frame captured long enough before the end of the run arrives exactly once
+        assertEquals((int) Math.ceil((nowSeconds - kLoopSeconds - kLatencySeconds) * 30), delivered);
+    }
+
+    @Test
+    public void sameSeedGivesTheSameObservations() {
+        VisionIOSim first = camera(kFacingReefTag, VisionIOSim.CameraProperties.limelight4(), kSeed);
+        VisionIOSim second = camera(kFacingReefTag, VisionIOSim.CameraProperties.limelight4(), kSeed);
+        VisionIOSim otherSeed = camera(kFacingReefTag, VisionIOSim.CameraProperties.limelight4(), kSeed + 1);
+        VisionIOInputs firstInputs = new VisionIOInputs();
+        VisionIOInputs secondInputs = new VisionIOInputs();
+        VisionIOInputs otherSeedInputs = new VisionIOInputs();
+
+        boolean isOtherSeedDifferent = false;
+        for (int i = 0; i < 50; i++) {
+            first.updateInputs(firstInputs);
+            second.updateInputs(secondInputs);
+            otherSeed.updateInputs(otherSeedInputs);
+
+            assertArrayEquals(firstInputs.observationTimestampsSeconds, secondInputs.observationTimestampsSeconds);
+            assertArrayEquals(firstInputs.observationXMeters, secondInputs.observationXMeters);
+            assertArrayEquals(firstInputs.observationYMeters, secondInputs.observationYMeters);
+            assertArrayEquals(firstInputs.observationThetaRad, secondInputs.observationThetaRad);
+            assertArrayEquals(firstInputs.observationTagCounts, secondInputs.observationTagCounts);
+            isOtherSeedDifferent |= !Arrays.equals(firstInputs.observationXMeters, otherSeedInputs.observationXMeters);
+
+            nowSeconds += kLoopSeconds;
+        }
+        assertTrue(isOtherSeedDifferent);
+    }
+}
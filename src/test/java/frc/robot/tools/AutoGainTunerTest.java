@@ -0,0 +1,62 @@
+package frc.robot.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class AutoGainTunerTest {
+    private static final int kIterations = 200;
+
+    @Test
+    public void minimizeFindsTheMinimumOfABowl() {
+        double[] minimum = {0.5, -1, 2, -0.3};
+        double[] x = AutoGainTuner.minimize(
+            point -> {
+                double cost = 0;
+                for (int i = 0; i < point.length; i++) {
+                    cost += (i + 1) * (point[i] - minimum[i]) * (point[i] - minimum[i]);
+                }
+                return cost;
+            },
+            new double[4],
+            kIterations
+        );
+
+        for (int i = 0; i < minimum.length; i++) {
+            assertEquals(minimum[i], x[i], 1e-3);
+        }
+    }
+
+    @Test
+    public void onlyPointsOutsideTheBoundsArePenalized() {
+        AutoGainTuner.Candidate inside = new AutoGainTuner.Candidate(new AutoTrial.Gains(4, 5, 3.7), 0.25);
+        assertEquals(0, AutoGainTuner.Candidate.getOutOfBoundsPenalty(inside.toLog()));
+
+        double[] pastMax = inside.toLog();
+        pastMax[0] = Math.log(1000);
+        double[] furtherPastMax = inside.toLog();
+        furtherPastMax[0] = Math.log(2000);
+        assertTrue(AutoGainTuner.Candidate.getOutOfBoundsPenalty(pastMax) > 0);
+        assertTrue(AutoGainTuner.Candidate.getOutOfBoundsPenalty(furtherPastMax) > AutoGainTuner.Candidate.getOutOfBoundsPenalty(pastMax));
+        // Both run at the bound, only the penalty tells them apart
+        assertEquals(AutoGainTuner.Candidate.fromLog(pastMax), AutoGainTuner.Candidate.fromLog(furtherPastMax));
+
+        double[] belowMin = inside.toLog();
+        belowMin[3] = Math.log(0.001);
+        assertTrue(AutoGainTuner.Candidate.getOutOfBoundsPenalty(belowMin) > 0);
+    }
+
+    @Test
+    public void searchStaysInsideTheBoundsWhenTheCostKeepsFalling() {
+        // Cheaper the higher the translation gain goes, without the penalty the search would run off past the bound
+        double[] x = AutoGainTuner.minimize(
+            point -> -point[0] + AutoGainTuner.Candidate.getOutOfBoundsPenalty(point),
+            new AutoGainTuner.Candidate(new AutoTrial.Gains(4, 5, 3.7), 0.25).toLog(),
+            kIterations
+        );
+
+        assertEquals(0, AutoGainTuner.Candidate.getOutOfBoundsPenalty(x), 1e-2);
+        assertTrue(AutoGainTuner.Candidate.fromLog(x).gains().translationKP() > 40);
+    }
+}
@@ -0,0 +1,52 @@
+package frc.robot.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.constants.swerve.controllerConfigs.SwerveControllerConfigSim;
+import frc.robot.lib.auto.Path;
+
+public class AutoTrialTest {
+    private static final String kPathName = "shoptest";
+    private static final int kTrials = 20;
+    private static final long kSeed = 2025;
+    // Perturbed trials may end outside the path's own tolerance, the robustness report is where that rate is judged
+    private static final double kMaxPerturbedEndErrorMeters = 0.1;
+    // Vision keeps the estimate close even with the perturbations, this is well past a tag's worth of error
+    private static final double kMaxEstimateErrorMeters = 0.25;
+
+    private final Path path = AutoRobustnessReport.loadPath(kPathName);
+    private final AutoTrial.Gains gains = AutoTrial.Gains.fromConfig(SwerveControllerConfigSim.getInstance());
+
+    @Test
+    public void nominalTrialFinishesWithinTolerance() {
+        assertTrue(path.isValid());
+
+        AutoTrial.Result result = AutoTrial.run(path, gains, AutoTrial.Perturbation.kNone);
+        assertTrue(result.isFinished());
+        assertTrue(result.isSuccess(path));
+        assertTrue(result.maxEstimateErrorMeters() < kMaxEstimateErrorMeters);
+    }
+
+    @Test
+    public void perturbedTrialsFinishNearTheEnd() {
+        AutoTrial.Result[] results = AutoRobustnessReport.runTrials(path, gains, kTrials, kSeed);
+
+        for (AutoTrial.Result result : results) {
+            assertTrue(result.isFinished());
+            assertTrue(result.finalTranslationErrorMeters() < kMaxPerturbedEndErrorMeters);
+            assertTrue(result.maxEstimateErrorMeters() < kMaxEstimateErrorMeters);
+        }
+    }
+
+    @Test
+    public void sameSeedGivesTheSameTrial() {
+        AutoTrial.Perturbation perturbation = AutoTrial.Perturbation.random(kSeed);
+        AutoTrial.Result first = AutoTrial.run(path, gains, perturbation);
+        AutoTrial.Result second = AutoTrial.run(path, gains, perturbation);
+
+        assertEquals(first, second);
+    }
+}
@@ -0,0 +1,314 @@
+package frc.robot.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import frc.robot.constants.swerve.controllerConfigs.SwerveControllerConfigSim;
+import frc.robot.lib.auto.Path;
+
+/**
+ * Searches the {@link frc.robot.lib.auto.FollowPath} translation, rotation and cross-track gains
+ * and the default intermediate handoff radius with Nelder-Mead, scoring every candidate on the
+ * same perturbed trials as {@link AutoRobustnessReport}. The score is the mean completion time over
+ * all paths, plus a penalty for every trial that ends outside the path's end tolerances and for
+ * overshoot past the end of a path.
+ *
+ * <p>Every candidate sees the same trial seeds, so two candidates differ only by their gains and
+ * the search is not chasing noise. Gains are searched in log space, they only make sense positive
+ * and a step from 1 to 2 matters as much as one from 4 to 8. Points past the bounds are run at the
+ * nearest bound and penalized by how far past they are.
+ *
+ * <p>Arguments are the number of search iterations and trials per path, followed by the paths to
+ * tune on, all paths in the deploy directory by default. Prints the best gains and the robustness
+ * report for the starting and the tuned gains side by side. The search starts from the gains in
+ * {@link SwerveControllerConfigSim}, the tuned ones go into the SwerveControllerConfig of each robot.
+ *
+ * <p>Run with {@code ./gradlew autoGainTuner --args="60 100"}.
+ */
+public final class AutoGainTuner {
+    private static final int kDefaultIterations = 60;
+    private static final int kDefaultTrials = 100;
+    private static final long kSeed = 2026;
+
+    // Each failed trial costs this much on top of its completion time
+    private static final double kFailurePenaltySeconds = 5;
+    // p95 overshoot allowed before it is penalized, and what each meter past that costs
+    private static final double kMaxOvershootMeters = 0.05;
+    private static final double kOvershootPenaltySecondsPerMeter = 50;
+
+    private static final double kMinGain = 0.1;
+    private static final double kMaxGain = 50;
+    private static final double kMinHandoffRadiusMeters = 0.05;
+    private static final double kMaxHandoffRadiusMeters = 1.0;
+    // Points outside the bounds are scored at the nearest bound plus this much for every log unit past it,
+    // so the search is pushed back inside instead of wandering along a flat clamped edge
+    private static final double kOutOfBoundsPenaltySecondsPerLogUnit = 100;
+    // Size of the starting simplex in log space, about a factor of 1.5 on every parameter
+    private static final double kInitialStep = Math.log(1.5);
+
+    private AutoGainTuner() {}
+
+    /** One point in the search, the gains plus the handoff radius used by targets that set none */
+    record Candidate(AutoTrial.Gains gains, double handoffRadiusMeters) {
+        /** The candidate at the nearest point inside the bounds, {@link #getOutOfBoundsPenalty} scores how far off that was */
+        static Candidate fromLog(double[] x) {
+            return new Candidate(
+                new AutoTrial.Gains(
+                    clampedExp(x[0], kMinGain, kMaxGain),
+                    clampedExp(x[1], kMinGain, kMaxGain),
+                    clampedExp(x[2], kMinGain, kMaxGain)
+                ),
+                clampedExp(x[3], kMinHandoffRadiusMeters, kMaxHandoffRadiusMeters)
+            );
+        }
+
+        double[] toLog() {
+            return new double[] {
+                Math.log(gains.translationKP()),
+                Math.log(gains.rotationKP()),
+                Math.log(gains.crossTrackKP()),
+                Math.log(handoffRadiusMeters)
+            };
+        }
+
+        /** Zero inside the bounds, growing with the log space distance to them outside */
+        static double getOutOfBoundsPenalty(double[] x) {
+            double distance =
+                getOutOfBoundsDistance(x[0], kMinGain, kMaxGain) +
+                getOutOfBoundsDistance(x[1], kMinGain, kMaxGain) +
+                getOutOfBoundsDistance(x[2], kMinGain, kMaxGain) +
+                getOutOfBoundsDistance(x[3], kMinHandoffRadiusMeters, kMaxHandoffRadiusMeters);
+            return kOutOfBoundsPenaltySecondsPerLogUnit * distance;
+        }
+
+        private static double clampedExp(double x, double min, double max) {
+            return Math.min(Math.max(Math.exp(x), min), max);
+        }
+
+        private static double getOutOfBoundsDistance(double x, double min, double max) {
+            return Math.max(0, Math.log(min) - x) + Math.max(0, x - Math.log(max));
+        }
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : kDefaultIterations;
+        int trials = args.length > 1 ? Integer.parseInt(args[1]) : kDefaultTrials;
+        List<String> pathNames = new ArrayList<>(Arrays.asList(args).subList(Math.min(2, args.length), args.length));
+        if (pathNames.isEmpty()) {
+            pathNames = AutoRobustnessReport.getAllPathNames();
+        }
+
+        Map<String, Path> paths = new LinkedHashMap<>();
+        for (String pathName : pathNames) {
+            try {
+                Path path = AutoRobustnessReport.loadPath(pathName);
+                if (path.isValid()) {
+                    paths.put(pathName, path);
+                } else {
+                    System.out.printf("%s: invalid path, skipped%n", pathName);
+                }
+            } catch (RuntimeException e) {
+                System.out.printf("%s: could not be loaded, skipped (%s)%n", pathName, e.getMessage());
+            }
+        }
+        if (paths.isEmpty()) {
+            System.out.println("no paths to tune on");
+            return;
+        }
+
+        // The defaults are shared by all paths, loading them all first means nothing resets them later
+        Path.DefaultGlobalConstraints globalConstraints = paths.values().iterator().next().getDefaultGlobalConstraints();
+        Candidate initial = new Candidate(
+            AutoTrial.Gains.fromConfig(SwerveControllerConfigSim.getInstance()),
+            globalConstraints.getIntermediateHandoffRadiusMeters()
+        );
+
+        long startNanos = System.nanoTime();
+        int[] evaluations = {0};
+        double[] bestCost = {Double.POSITIVE_INFINITY};
+        double[] bestX = minimize(
+            x -> {
+                Candidate candidate = Candidate.fromLog(x);
+                double cost = getCost(paths, globalConstraints, candidate, trials) + Candidate.getOutOfBoundsPenalty(x);
+                evaluations[0]++;
+                if (cost < bestCost[0]) {
+                    bestCost[0] = cost;
+                    System.out.printf("evaluation %d: cost %.3f with %s%n", evaluations[0], cost, format(candidate));
+                }
+                return cost;
+            },
+            initial.toLog(),
+            iterations
+        );
+        Candidate best = Candidate.fromLog(bestX);
+        double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        System.out.printf("%n%d evaluations of %d paths x %d trials in %.0f s%n", evaluations[0], paths.size(), trials, wallSeconds);
+        System.out.printf("initial: cost %.3f with %s%n", getCost(paths, globalConstraints, initial, trials), format(initial));
+        System.out.printf("best:    cost %.3f with %s%n", getCost(paths, globalConstraints, best, trials), format(best));
+        System.out.printf("%npathTranslationController = new PIDController(%.2f, 0, 0);%n", best.gains().translationKP());
+        System.out.printf("pathRotationController = new PIDController(%.2f, 0, 0);%n", best.gains().rotationKP());
+        System.out.printf("pathCrossTrackController = new PIDController(%.2f, 0, 0);%n", best.gains().crossTrackKP());
+        System.out.printf("\"default_intermediate_handoff_radius_meters\": %.2f%n", best.handoffRadiusMeters());
+
+        // Reported on trials the search never saw, so a tuning that only fits its own seeds shows up here
+        for (Map.Entry<String, Path> entry : paths.entrySet()) {
+            for (Candidate candidate : List.of(initial, best)) {
+                applyHandoffRadius(entry.getValue(), globalConstraints, candidate.handoffRadiusMeters());
+                AutoTrial.Result nominal = AutoTrial.run(entry.getValue(), candidate.gains(), AutoTrial.Perturbation.kNone);
+                long reportStartNanos = System.nanoTime();
+                AutoTrial.Result[] results = AutoRobustnessReport.runTrials(entry.getValue(), candidate.gains(), trials, kSeed + 1);
+                AutoRobustnessReport.printReport(
+                    entry.getKey() + (candidate == initial ? " (initial)" : " (tuned)"),
+                    entry.getValue(),
+                    nominal,
+                    results,
+                    (System.nanoTime() - reportStartNanos) / 1e9
+                );
+            }
+        }
+        applyHandoffRadius(paths.values().iterator().next(), globalConstraints, initial.handoffRadiusMeters());
+    }
+
+    /**
+     * Mean over paths of the mean completion time, plus the failure and overshoot penalties. Timed
+     * out trials already count the whole timeout as their completion time.
+     */
+    private static double getCost(Map<String, Path> paths, Path.DefaultGlobalConstraints globalConstraints, Candidate candidate, int trials) {
+        double cost = 0;
+        for (Path path : paths.values()) {
+            applyHandoffRadius(path, globalConstraints, candidate.handoffRadiusMeters());
+            AutoTrial.Result[] results = AutoRobustnessReport.runTrials(path, candidate.gains(), trials, kSeed);
+
+            double[] overshootsMeters = new double[results.length];
+            double pathCost = 0;
+            for (int i = 0; i < results.length; i++) {
+                pathCost += results[i].completionSeconds();
+                if (!results[i].isSuccess(path)) {
+                    pathCost += kFailurePenaltySeconds;
+                }
+                overshootsMeters[i] = results[i].overshootMeters();
+            }
+            Arrays.sort(overshootsMeters);
+            double excessOvershootMeters = Math.max(0, AutoRobustnessReport.percentile(overshootsMeters, 0.95) - kMaxOvershootMeters);
+            cost += pathCost / results.length + kOvershootPenaltySecondsPerMeter * excessOvershootMeters;
+        }
+        return cost / paths.size();
+    }
+
+    /** The default constraints are static, so this applies to every path until it is set again */
+    private static void applyHandoffRadius(Path path, Path.DefaultGlobalConstraints globalConstraints, double handoffRadiusMeters) {
+        path.setDefaultGlobalConstraints(new Path.DefaultGlobalConstraints(
+            globalConstraints.getMaxVelocityMetersPerSec(),
+            globalConstraints.getMaxAccelerationMetersPerSec2(),
+            globalConstraints.getMaxVelocityDegPerSec(),
+            globalConstraints.getMaxAccelerationDegPerSec2(),
+            globalConstraints.getEndTranslationToleranceMeters(),
+            globalConstraints.getEndRotationToleranceDeg(),
+            handoffRadiusMeters
+        ));
+    }
+
+    /**
+     * Nelder-Mead with the standard coefficients, started from a simplex of {@link #kInitialStep}
+     * around {@code start}. Evaluations happen one at a time, each one already uses every core.
+     */
+    static double[] minimize(ToDoubleFunction<double[]> cost, double[] start, int iterations) {
+        int n = start.length;
+        double[][] simplex = new double[n + 1][];
+        double[] costs = new double[n + 1];
+        simplex[0] = start.clone();
+        for (int i = 0; i < n; i++) {
+            simplex[i + 1] = start.clone();
+            simplex[i + 1][i] += kInitialStep;
+        }
+        for (int i = 0; i <= n; i++) {
+            costs[i] = cost.applyAsDouble(simplex[i]);
+        }
+
+        Integer[] order = new Integer[n + 1];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i <= n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> costs[i]));
+            int best = order[0];
+            int worst = order[n];
+            int secondWorst = order[n - 1];
+
+            double[] centroid = new double[n];
+            for (int i = 0; i <= n; i++) {
+                if (i != worst) {
+                    for (int j = 0; j < n; j++) {
+                        centroid[j] += simplex[i][j] / n;
+                    }
+                }
+            }
+
+            double[] reflected = lerp(centroid, simplex[worst], -1);
+            double reflectedCost = cost.applyAsDouble(reflected);
+            if (reflectedCost < costs[best]) {
+                double[] expanded = lerp(centroid, simplex[worst], -2);
+                double expandedCost = cost.applyAsDouble(expanded);
+                if (expandedCost < reflectedCost) {
+                    simplex[worst] = expanded;
+                    costs[worst] = expandedCost;
+                } else {
+                    simplex[worst] = reflected;
+                    costs[worst] = reflectedCost;
+                }
+            } else if (reflectedCost < costs[secondWorst]) {
+                simplex[worst] = reflected;
+                costs[worst] = reflectedCost;
+            } else {
+                // Contract towards the better of the worst point and its reflection
+                boolean isOutside = reflectedCost < costs[worst];
+                double[] contracted = lerp(centroid, isOutside ? reflected : simplex[worst], 0.5);
+                double contractedCost = cost.applyAsDouble(contracted);
+                if (contractedCost < Math.min(reflectedCost, costs[worst])) {
+                    simplex[worst] = contracted;
+                    costs[worst] = contractedCost;
+                } else {
+                    for (int i = 0; i <= n; i++) {
+                        if (i != best) {
+                            simplex[i] = lerp(simplex[best], simplex[i], 0.5);
+                            costs[i] = cost.applyAsDouble(simplex[i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        int best = 0;
+        for (int i = 1; i <= n; i++) {
+            if (costs[i] < costs[best]) {
+                best = i;
+            }
+        }
+        return simplex[best];
+    }
+
+    /** {@code from + t * (to - from)} */
+    private static double[] lerp(double[] from, double[] to, double t) {
+        double[] result = new double[from.length];
+        for (int i = 0; i < from.length; i++) {
+            result[i] = from[i] + t * (to[i] - from[i]);
+        }
+        return result;
+    }
+
+    private static String format(Candidate candidate) {
+        return String.format(
+            "translation kP %.2f, rotation kP %.2f, cross-track kP %.2f, handoff radius %.2f m",
+            candidate.gains().translationKP(),
+            candidate.gains().rotationKP(),
+            candidate.gains().crossTrackKP(),
+            candidate.handoffRadiusMeters()
+        );
+    }
+}
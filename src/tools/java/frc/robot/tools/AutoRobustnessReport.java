@@ -0,0 +1,158 @@
+package frc.robot.tools;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import frc.robot.constants.swerve.controllerConfigs.SwerveControllerConfigSim;
+import frc.robot.lib.auto.Path;
+
+/**
+ * Follows every auto path thousands of times in headless simulations, each with the robot put
+ * down a little off its start pose, different sensor noise and vision latency and drive motors,
+ * wheels and mass that are a little off the constants. Reports how often the robot finished
+ * within the path's end tolerances and how the completion times spread, so a path or tuning change
+ * that makes an auto fragile shows up before it reaches the robot.
+ *
+ * <p>Arguments are the number of trials per path followed by the paths to test, all paths in the
+ * deploy directory by default. Trials are seeded, the same arguments give the same report.
+ *
+ * <p>Run with {@code ./gradlew autoRobustnessReport --args="1000 shoptest"}.
+ */
+public final class AutoRobustnessReport {
+    private static final File kAutosDirectory = new File("src/main/deploy/autos");
+    private static final int kDefaultTrials = 1000;
+    private static final long kSeed = 2025;
+    // Paths that succeed less often than this are flagged
+    private static final double kMinSuccessRate = 0.95;
+
+    private AutoRobustnessReport() {}
+
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : kDefaultTrials;
+        List<String> pathNames = new ArrayList<>(Arrays.asList(args).subList(Math.min(1, args.length), args.length));
+        if (pathNames.isEmpty()) {
+            pathNames = getAllPathNames();
+        }
+
+        AutoTrial.Gains gains = AutoTrial.Gains.fromConfig(SwerveControllerConfigSim.getInstance());
+        for (String pathName : pathNames) {
+            Path path;
+            try {
+                path = loadPath(pathName);
+            } catch (RuntimeException e) {
+                System.out.printf("%s: could not be loaded, skipped (%s)%n", pathName, e.getMessage());
+                continue;
+            }
+            if (!path.isValid()) {
+                System.out.printf("%s: invalid path, skipped%n", pathName);
+                continue;
+            }
+
+            AutoTrial.Result nominal = AutoTrial.run(path, gains, AutoTrial.Perturbation.kNone);
+            long startNanos = System.nanoTime();
+            AutoTrial.Result[] results = runTrials(path, gains, trials, kSeed);
+            double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+            printReport(pathName, path, nominal, results, wallSeconds);
+        }
+    }
+
+    static Path loadPath(String pathName) {
+        return new Path(kAutosDirectory, pathName);
+    }
+
+    static List<String> getAllPathNames() {
+        List<String> pathNames = new ArrayList<>();
+        File[] files = new File(kAutosDirectory, "paths").listFiles((directory, name) -> name.endsWith(".json"));
+        if (files != null) {
+            for (File file : files) {
+                pathNames.add(file.getName().substring(0, file.getName().length() - ".json".length()));
+            }
+        }
+        pathNames.sort(null);
+        return pathNames;
+    }
+
+    /** Runs the trials on all cores, trial i always gets the same perturbation for the same seed */
+    static AutoTrial.Result[] runTrials(Path path, AutoTrial.Gains gains, int trials, long seed) {
+        long[] trialSeeds = new Random(seed).longs(trials).toArray();
+        return IntStream.range(0, trials)
+            .parallel()
+            .mapToObj(i -> AutoTrial.run(path, gains, AutoTrial.Perturbation.random(trialSeeds[i])))
+            .toArray(AutoTrial.Result[]::new);
+    }
+
+    static void printReport(String pathName, Path path, AutoTrial.Result nominal, AutoTrial.Result[] results, double wallSeconds) {
+        int successes = 0;
+        int timeouts = 0;
+        double[] completionSeconds = new double[results.length];
+        double[] translationErrorsMeters = new double[results.length];
+        double[] rotationErrorsDeg = new double[results.length];
+        double[] overshootsMeters = new double[results.length];
+        double[] estimateErrorsMeters = new double[results.length];
+        AutoTrial.Result worstResult = null;
+        int worstIndex = -1;
+        for (int i = 0; i < results.length; i++) {
+            AutoTrial.Result result = results[i];
+            if (result.isSuccess(path)) {
+                successes++;
+            } else if (!result.isFinished()) {
+                timeouts++;
+            }
+            completionSeconds[i] = result.completionSeconds();
+            translationErrorsMeters[i] = result.finalTranslationErrorMeters();
+            rotationErrorsDeg[i] = Math.toDegrees(result.finalRotationErrorRad());
+            overshootsMeters[i] = result.overshootMeters();
+            estimateErrorsMeters[i] = result.maxEstimateErrorMeters();
+            if (worstResult == null || result.finalTranslationErrorMeters() > worstResult.finalTranslationErrorMeters()) {
+                worstResult = result;
+                worstIndex = i;
+            }
+        }
+        double successRate = (double) successes / results.length;
+
+        System.out.printf(
+            "%s: %d trials in %.1f s, success %.1f%% (timed out %d, outside tolerance %d)%s%n",
+            pathName,
+            results.length,
+            wallSeconds,
+            100 * successRate,
+            timeouts,
+            results.length - successes - timeouts,
+            successRate < kMinSuccessRate ? "  FRAGILE" : ""
+        );
+        System.out.printf(
+            "  nominal          %.2f s, error %.3f m, %.2f deg%n",
+            nominal.completionSeconds(),
+            nominal.finalTranslationErrorMeters(),
+            Math.toDegrees(nominal.finalRotationErrorRad())
+        );
+        printPercentiles("completion time", completionSeconds, "s", "%.2f");
+        printPercentiles("final error", translationErrorsMeters, "m", "%.3f");
+        printPercentiles("final rotation", rotationErrorsDeg, "deg", "%.2f");
+        printPercentiles("overshoot", overshootsMeters, "m", "%.3f");
+        printPercentiles("estimate error", estimateErrorsMeters, "m", "%.3f");
+        System.out.printf("  worst trial %d: %s%n", worstIndex, worstResult);
+    }
+
+    private static void printPercentiles(String name, double[] values, String unit, String format) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        System.out.printf(
+            "  %-16s p5 " + format + "  p50 " + format + "  p95 " + format + "  max " + format + " %s%n",
+            name,
+            percentile(sorted, 0.05),
+            percentile(sorted, 0.5),
+            percentile(sorted, 0.95),
+            sorted[sorted.length - 1],
+            unit
+        );
+    }
+
+    static double percentile(double[] sorted, double fraction) {
+        return sorted[(int) Math.round(fraction * (sorted.length - 1))];
+    }
+}
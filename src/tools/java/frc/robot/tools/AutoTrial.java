@@ -0,0 +1,374 @@
+package frc.robot.tools;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.simulation.BatterySim;
+import frc.robot.Robot;
+import frc.robot.RobotState;
+import frc.robot.constants.robotState.RobotStateConfigBase;
+import frc.robot.constants.robotState.RobotStateConfigSim;
+import frc.robot.constants.swerve.controllerConfigs.SwerveControllerConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
+import frc.robot.constants.swerve.moduleConfigs.sim.SwerveModuleGeneralConfigSim;
+import frc.robot.lib.auto.FollowPath;
+import frc.robot.lib.auto.Path;
+import frc.robot.lib.auto.Path.PathElement;
+import frc.robot.lib.auto.Path.PathElementConstraint;
+import frc.robot.lib.auto.Path.RotationTarget;
+import frc.robot.lib.auto.Path.TranslationTarget;
+import frc.robot.subsystems.swerve.DriveCommandChain;
+import frc.robot.subsystems.swerve.DrivetrainSimulation;
+import frc.robot.subsystems.swerve.SwerveDriveLoop;
+import frc.robot.subsystems.swerve.gyro.GyroIO;
+import frc.robot.subsystems.swerve.gyro.GyroIOSim;
+import frc.robot.subsystems.swerve.module.ModuleIO;
+import frc.robot.subsystems.swerve.module.ModuleIOSim;
+
+/**
+ * One autonomous path followed headless. {@link FollowPath} runs on a virtual clock and drives a
+ * {@link DrivetrainSimulation} through the robot's own code: the {@link DriveCommandChain} that
+ * SwerveDrive uses, with its power limits, traction limit and setpoint generator, the ModuleIOSim
+ * and GyroIOSim motor controller loops and sensors, and a {@link RobotState} that fuses the
+ * odometry, accelerometer and delayed vision measurements with its slip and collision handling.
+ *
+ * <p>The per-loop steps are SwerveDrive's own {@link SwerveDriveLoop}, what Robot does around
+ * them is repeated here in the same order, without the singletons. Nothing touches the HAL, NetworkTables or the command scheduler, so trials are
+ * independent of each other and can run on any thread.
+ */
+final class AutoTrial {
+    private static final double kLoopPeriodSeconds = Robot.defaultPeriodSecs;
+    // A whole autonomous period
+    private static final double kTimeoutSeconds = 15;
+    // Keeps driving zero after the command ends, so the overshoot includes coasting to a stop
+    private static final double kSettleSeconds = 0.5;
+    // Disabled for a while before the auto starts, so the first command restarts the setpoints from the measured state
+    private static final double kIdleBeforeAutoSeconds = 1;
+    private static final double kVisionPeriodSeconds = 0.05;
+    // A typical multi tag sighting, RobotState scales the vision std devs by these
+    private static final int kVisionTagCount = 2;
+    private static final double kVisionAvgTagDistMeters = 3;
+    // Overshoot only counts once the robot is this close to the end, or half the last segment if that is shorter
+    private static final double kOvershootWindowMeters = 0.5;
+
+    // Ranges the random perturbations are drawn from
+    private static final double kMaxStartOffsetMeters = 0.05;
+    private static final double kMaxStartOffsetRad = Math.toRadians(3);
+    private static final double kMaxGyroNoiseStdDevRad = Math.toRadians(0.02);
+    private static final double kMaxGyroBiasRadPerSec = Math.toRadians(0.01);
+    private static final double kMinVisionNoiseStdDevMeters = 0.01;
+    private static final double kMaxVisionNoiseStdDevMeters = 0.05;
+    private static final double kMinVisionLatencySeconds = 0.02;
+    private static final double kMaxVisionLatencySeconds = 0.12;
+    private static final double kMaxDriveStallTorqueError = 0.1;
+    private static final double kMaxDriveFreeSpeedError = 0.05;
+    private static final double kMaxWheelRadiusError = 0.02;
+    private static final double kMaxWheelCOFError = 0.15;
+    private static final double kMaxMassError = 0.05;
+
+    private static final SwerveModuleGeneralConfigBase kModuleConfig = SwerveModuleGeneralConfigSim.getInstance();
+    private static final SwerveDrivetrainConfigBase kDrivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
+    private static final RobotStateConfigBase kRobotStateConfig = RobotStateConfigSim.getInstance();
+
+    record Gains(double translationKP, double rotationKP, double crossTrackKP) {
+        /** The path following gains a robot with this controller config runs */
+        static Gains fromConfig(SwerveControllerConfigBase config) {
+            return new Gains(
+                config.getPathTranslationController().getP(),
+                config.getPathRotationController().getP(),
+                config.getPathCrossTrackController().getP()
+            );
+        }
+    }
+
+    /**
+     * How one trial differs from the ideal robot. Offsets are field relative, the vision noise is
+     * the standard deviation of each measured coordinate.
+     */
+    record Perturbation(
+        double startOffsetXMeters,
+        double startOffsetYMeters,
+        double startOffsetRad,
+        double gyroNoiseStdDevRad,
+        double gyroBiasRadPerSec,
+        double visionNoiseStdDevMeters,
+        double visionLatencySeconds,
+        DrivetrainSimulation.Variation variation,
+        long seed
+    ) {
+        static final Perturbation kNone = new Perturbation(0, 0, 0, 0, 0, 0, 0, DrivetrainSimulation.Variation.kNominal, 0);
+
+        static Perturbation random(long seed) {
+            Random random = new Random(seed);
+            double offsetDistance = kMaxStartOffsetMeters * Math.sqrt(random.nextDouble());
+            double offsetDirection = 2 * Math.PI * random.nextDouble();
+            return new Perturbation(
+                offsetDistance * Math.cos(offsetDirection),
+                offsetDistance * Math.sin(offsetDirection),
+                uniform(random, -kMaxStartOffsetRad, kMaxStartOffsetRad),
+                uniform(random, 0, kMaxGyroNoiseStdDevRad),
+                uniform(random, -kMaxGyroBiasRadPerSec, kMaxGyroBiasRadPerSec),
+                uniform(random, kMinVisionNoiseStdDevMeters, kMaxVisionNoiseStdDevMeters),
+                uniform(random, kMinVisionLatencySeconds, kMaxVisionLatencySeconds),
+                new DrivetrainSimulation.Variation(
+                    1 + uniform(random, -kMaxDriveStallTorqueError, kMaxDriveStallTorqueError),
+                    1 + uniform(random, -kMaxDriveFreeSpeedError, kMaxDriveFreeSpeedError),
+                    1 + uniform(random, -kMaxWheelRadiusError, kMaxWheelRadiusError),
+                    1 + uniform(random, -kMaxWheelCOFError, kMaxWheelCOFError),
+                    1 + uniform(random, -kMaxMassError, kMaxMassError)
+                ),
+                random.nextLong()
+            );
+        }
+
+        private static double uniform(Random random, double min, double max) {
+            return min + (max - min) * random.nextDouble();
+        }
+    }
+
+    /**
+     * Errors are measured on the simulated robot, not the estimate, after it came to rest.
+     *
+     * @param overshootMeters furthest the robot got past the end of the path along its last segment
+     * @param maxEstimateErrorMeters largest distance between the estimate and the simulated robot
+     */
+    record Result(
+        boolean isFinished,
+        double completionSeconds,
+        double finalTranslationErrorMeters,
+        double finalRotationErrorRad,
+        double overshootMeters,
+        double maxEstimateErrorMeters
+    ) {
+        /** Finished in time and actually ended up within the path's end tolerances */
+        boolean isSuccess(Path path) {
+            return isFinished &&
+                finalTranslationErrorMeters <= path.getEndTranslationToleranceMeters() &&
+                finalRotationErrorRad <= Math.toRadians(path.getEndRotationToleranceDeg());
+        }
+    }
+
+    private final Random random;
+    private final Perturbation perturbation;
+    private final DrivetrainSimulation simulation;
+    private final ModuleIOSim[] modules = new ModuleIOSim[4];
+    private final GyroIOSim gyro;
+    private final RobotState robotState;
+    private final DriveCommandChain commandChain;
+    private final SwerveDriveLoop driveLoop;
+
+    private double timeSeconds = 0;
+    private double batteryVoltage = Robot.kSimBatteryVoltage;
+
+    private final ModuleIO.ModuleIOInputs[] moduleInputs = {
+        new ModuleIO.ModuleIOInputs(),
+        new ModuleIO.ModuleIOInputs(),
+        new ModuleIO.ModuleIOInputs(),
+        new ModuleIO.ModuleIOInputs()
+    };
+    private final GyroIO.GyroIOInputs gyroInputs = new GyroIO.GyroIOInputs();
+
+    // Vision measurements {capture timestamp, x, y, theta, arrival timestamp}
+    private final ArrayDeque<double[]> pendingVisionMeasurements = new ArrayDeque<>();
+    private double lastVisionCaptureSeconds = Double.NEGATIVE_INFINITY;
+
+    private AutoTrial(Perturbation perturbation) {
+        this.perturbation = perturbation;
+        random = new Random(perturbation.seed());
+        simulation = new DrivetrainSimulation(kModuleConfig, kDrivetrainConfig, () -> timeSeconds, perturbation.variation());
+
+        // No odometry thread, the sensors sample themselves on simulated time
+        for (int i = 0; i < 4; i++) {
+            modules[i] = new ModuleIOSim(kModuleConfig, simulation, i, () -> batteryVoltage, null);
+        }
+        gyro = new GyroIOSim(
+            simulation,
+            perturbation.gyroNoiseStdDevRad(),
+            perturbation.gyroBiasRadPerSec(),
+            GyroIOSim.kDefaultBiasRandomWalkRadPerSecPerSqrtSec,
+            GyroIOSim.kDefaultLatencySeconds,
+            random.nextLong(),
+            null
+        );
+        simulation.addControlStep(this::captureVision);
+
+        robotState = new RobotState(kDrivetrainConfig, kRobotStateConfig, () -> timeSeconds);
+        commandChain = new DriveCommandChain(kModuleConfig, kDrivetrainConfig);
+        driveLoop = new SwerveDriveLoop(modules, moduleInputs, gyroInputs, robotState, commandChain, -kIdleBeforeAutoSeconds);
+    }
+
+    /** Follows the path once, the path itself is not modified */
+    static Result run(Path path, Gains gains, Perturbation perturbation) {
+        return new AutoTrial(perturbation).run(path, gains);
+    }
+
+    private Result run(Path path, Gains gains) {
+        List<Pair<PathElement, PathElementConstraint>> elements = path.getPathElementsWithConstraintsNoWaypoints();
+        List<Translation2d> translations = new ArrayList<>();
+        List<Rotation2d> rotations = new ArrayList<>();
+        for (Pair<PathElement, PathElementConstraint> element : elements) {
+            if (element.getFirst() instanceof TranslationTarget translationTarget) {
+                translations.add(translationTarget.translation());
+            } else if (element.getFirst() instanceof RotationTarget rotationTarget) {
+                rotations.add(rotationTarget.rotation());
+            }
+        }
+
+        // Where FollowPath will reset the pose to, and where the robot was actually put down
+        Pose2d startPose = new Pose2d(translations.get(0), rotations.isEmpty() ? Rotation2d.kZero : rotations.get(0));
+        simulation.resetPose(new Pose2d(
+            startPose.getX() + perturbation.startOffsetXMeters(),
+            startPose.getY() + perturbation.startOffsetYMeters(),
+            startPose.getRotation().plus(new Rotation2d(perturbation.startOffsetRad()))
+        ));
+        simulation.update();
+
+        Translation2d endTranslation = translations.get(translations.size() - 1);
+        Rotation2d endRotation = rotations.isEmpty() ? startPose.getRotation() : rotations.get(rotations.size() - 1);
+        Translation2d lastSegment = translations.size() > 1 ? endTranslation.minus(translations.get(translations.size() - 2)) : Translation2d.kZero;
+        Translation2d endDirection = lastSegment.getNorm() > 1e-6 ? lastSegment.div(lastSegment.getNorm()) : Translation2d.kZero;
+        double overshootWindowMeters = Math.min(kOvershootWindowMeters, lastSegment.getNorm() / 2);
+
+        FollowPath followPath = new FollowPath(
+            path,
+            null,
+            robotState::getEstimatedPose,
+            robotState::getRobotRelativeSpeeds,
+            this::driveRobotRelative,
+            () -> false,
+            this::resetPose,
+            new PIDController(gains.translationKP(), 0, 0),
+            new PIDController(gains.rotationKP(), 0, 0),
+            new PIDController(gains.crossTrackKP(), 0, 0),
+            () -> timeSeconds,
+            commandChain::getVelocityScale,
+            commandChain::getAccelerationScale
+        );
+
+        double overshootMeters = 0;
+        boolean isNearEnd = false;
+        double maxEstimateErrorMeters = 0;
+        boolean isFinished = false;
+        followPath.initialize();
+        while (timeSeconds < kTimeoutSeconds) {
+            followPath.execute();
+            if (followPath.isFinished()) {
+                isFinished = true;
+                break;
+            }
+            advance();
+            // Paths may pass the end point on the way there, that is not overshooting it
+            isNearEnd |= simulation.getPose().getTranslation().getDistance(endTranslation) < overshootWindowMeters;
+            if (isNearEnd) {
+                overshootMeters = Math.max(overshootMeters, getOvershootMeters(endTranslation, endDirection));
+            }
+            maxEstimateErrorMeters = Math.max(
+                maxEstimateErrorMeters,
+                robotState.getEstimatedPose().getTranslation().getDistance(simulation.getPose().getTranslation())
+            );
+        }
+        double completionSeconds = timeSeconds;
+
+        // The last command still runs for its loop, stopping starts in the next one like the default command would
+        for (int i = 0; i < Math.round(kSettleSeconds / kLoopPeriodSeconds); i++) {
+            advance();
+            isNearEnd |= simulation.getPose().getTranslation().getDistance(endTranslation) < overshootWindowMeters;
+            if (isNearEnd) {
+                overshootMeters = Math.max(overshootMeters, getOvershootMeters(endTranslation, endDirection));
+            }
+            driveRobotRelative(new ChassisSpeeds());
+        }
+
+        Pose2d finalPose = simulation.getPose();
+        return new Result(
+            isFinished,
+            completionSeconds,
+            finalPose.getTranslation().getDistance(endTranslation),
+            Math.abs(finalPose.getRotation().minus(endRotation).getRadians()),
+            overshootMeters,
+            maxEstimateErrorMeters
+        );
+    }
+
+    /**
+     * The rest of one robot loop after the command ran, like Robot.simulationPeriodic, then the
+     * simulation catches up and the next loop starts with SwerveDrive.periodic.
+     */
+    private void advance() {
+        batteryVoltage = BatterySim.calculateLoadedBatteryVoltage(
+            Robot.kSimBatteryVoltage,
+            Robot.kSimBatteryResistanceOhms,
+            driveLoop.getTotalDriveSupplyCurrentAmps()
+        );
+
+        timeSeconds += kLoopPeriodSeconds;
+        simulation.update();
+        periodic();
+    }
+
+    /** Same steps as SwerveDrive.periodic, with the vision measurements that arrived by now queued like the cameras would */
+    private void periodic() {
+        gyro.updateInputs(gyroInputs);
+        for (int i = 0; i < 4; i++) {
+            modules[i].updateInputs(moduleInputs[i]);
+        }
+
+        while (!pendingVisionMeasurements.isEmpty() && pendingVisionMeasurements.peek()[4] <= timeSeconds) {
+            double[] measurement = pendingVisionMeasurements.poll();
+            robotState.offerVisionObservation(
+                0,
+                measurement[0],
+                measurement[1],
+                measurement[2],
+                measurement[3],
+                kVisionTagCount,
+                kVisionAvgTagDistMeters,
+                0
+            );
+        }
+
+        driveLoop.update(timeSeconds);
+    }
+
+    /** Runs before every simulation step, a camera that sees the robot where it really is */
+    private void captureVision(double dt) {
+        if (simulation.getTimeSeconds() - lastVisionCaptureSeconds < kVisionPeriodSeconds) {
+            return;
+        }
+        lastVisionCaptureSeconds = simulation.getTimeSeconds();
+        Pose2d pose = simulation.getPose();
+        pendingVisionMeasurements.add(new double[] {
+            lastVisionCaptureSeconds,
+            pose.getX() + perturbation.visionNoiseStdDevMeters() * random.nextGaussian(),
+            pose.getY() + perturbation.visionNoiseStdDevMeters() * random.nextGaussian(),
+            pose.getRotation().getRadians() + kRobotStateConfig.getVisionThetaDevBase() * random.nextGaussian(),
+            lastVisionCaptureSeconds + perturbation.visionLatencySeconds()
+        });
+    }
+
+    /** Same steps as SwerveDrive.driveRobotRelative with latency compensation on */
+    private void driveRobotRelative(ChassisSpeeds speeds) {
+        driveLoop.drive(speeds, robotState.getSnapshot(), timeSeconds, true);
+    }
+
+    /** Like RobotState.resetPose, which also resets the gyro to the new heading but leaves the robot where it is */
+    private void resetPose(Pose2d pose) {
+        gyro.resetGyro(pose.getRotation());
+        robotState.resetEstimatedPose(pose, timeSeconds);
+    }
+
+    private double getOvershootMeters(Translation2d endTranslation, Translation2d endDirection) {
+        Translation2d pastEnd = simulation.getPose().getTranslation().minus(endTranslation);
+        return Math.max(0, pastEnd.getX() * endDirection.getX() + pastEnd.getY() * endDirection.getY());
+    }
+}
@@ -0,0 +1,91 @@
+package frc.robot.tools;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigBase;
+import frc.robot.constants.swerve.drivetrainConfigs.SwerveDrivetrainConfigSim;
+import frc.robot.constants.swerve.moduleConfigs.SwerveModuleGeneralConfigBase;
+import frc.robot.constants.swerve.moduleConfigs.sim.SwerveModuleGeneralConfigSim;
+import frc.robot.subsystems.swerve.DrivetrainSimulation;
+
+/**
+ * Runs {@link DrivetrainSimulation} headless on a virtual clock through a scripted sprint, strafe
+ * and spin, and reports how much faster than real time it runs.
+ *
+ * <p>That the result does not depend on how the clock is read is checked by DrivetrainSimulationTest.
+ *
+ * <p>Run with {@code ./gradlew drivetrainSimulationBenchmark}.
+ */
+public final class DrivetrainSimulationBenchmark {
+    private static final double kDurationSeconds = 60;
+    private static final double kLoopPeriodSeconds = 0.02;
+
+    // Same gains as ModuleIOSim
+    private static final double kDriveVoltsPerMetersPerSec = 2.44;
+    private static final double kSteerKP = 25;
+
+    private DrivetrainSimulationBenchmark() {}
+
+    public static void main(String[] args) {
+        SwerveModuleGeneralConfigBase moduleConfig = SwerveModuleGeneralConfigSim.getInstance();
+        SwerveDrivetrainConfigBase drivetrainConfig = SwerveDrivetrainConfigSim.getInstance();
+
+        long startNanos = System.nanoTime();
+        Pose2d finalPose = run(moduleConfig, drivetrainConfig);
+        double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        System.out.printf(
+            "simulated %.0f s in %.3f s of wall time, %.0fx real time%n",
+            kDurationSeconds,
+            wallSeconds,
+            kDurationSeconds / wallSeconds
+        );
+        System.out.printf("final pose: %s%n", finalPose);
+    }
+
+    private static Pose2d run(SwerveModuleGeneralConfigBase moduleConfig, SwerveDrivetrainConfigBase drivetrainConfig) {
+        double[] clock = {0};
+        DrivetrainSimulation simulation = new DrivetrainSimulation(moduleConfig, drivetrainConfig, () -> clock[0]);
+        Translation2d[] modulePositions = {
+            drivetrainConfig.getFrontLeftPositionMeters(),
+            drivetrainConfig.getFrontRightPositionMeters(),
+            drivetrainConfig.getBackLeftPositionMeters(),
+            drivetrainConfig.getBackRightPositionMeters()
+        };
+
+        // Commands only depend on simulated time, like the motor controllers' own loops
+        simulation.addControlStep(dt -> {
+            double t = simulation.getTimeSeconds() % 6;
+            double vx = t < 2 ? 4 : t < 4 ? -4 : 0;
+            double vy = t < 4 ? 2 * Math.sin(Math.PI * t) : 0;
+            double omega = t < 4 ? 0 : 8;
+
+            for (int i = 0; i < simulation.getNumModules(); i++) {
+                DrivetrainSimulation.ModuleSimulation module = simulation.getModule(i);
+                double moduleVx = vx - omega * modulePositions[i].getY();
+                double moduleVy = vy + omega * modulePositions[i].getX();
+                double angle = Math.atan2(moduleVy, moduleVx);
+                double speed = Math.hypot(moduleVx, moduleVy);
+                double steerError = MathUtil.angleModulus(angle - module.getSteerAngleRad());
+                if (Math.abs(steerError) > Math.PI / 2) {
+                    steerError = MathUtil.angleModulus(steerError + Math.PI);
+                    speed = -speed;
+                }
+
+                module.setDriveVoltage(MathUtil.clamp(kDriveVoltsPerMetersPerSec * speed, -12, 12));
+                module.setSteerVoltage(MathUtil.clamp(kSteerKP * steerError, -12, 12));
+            }
+        });
+
+        // The first reading sets where the fixed steps start
+        simulation.update();
+
+        int loops = (int) Math.round(kDurationSeconds / kLoopPeriodSeconds);
+        for (int loop = 0; loop < loops; loop++) {
+            clock[0] = (loop + 1) * kLoopPeriodSeconds;
+            simulation.update();
+        }
+        return simulation.getPose();
+    }
+}
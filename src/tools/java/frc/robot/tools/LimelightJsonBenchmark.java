@@ -0,0 +1,110 @@
+package frc.robot.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import frc.robot.lib.util.LimelightHelpers.LimelightResults;
+import frc.robot.lib.util.LimelightJsonDecoder;
+
+/**
+ * Times {@link LimelightJsonDecoder} against the data binding path that
+ * {@link frc.robot.lib.util.LimelightHelpers#getLatestFullResults(String)} uses.
+ *
+ * <p>That the two agree is checked by LimelightJsonDecoderTest.
+ *
+ * <p>Run with {@code ./gradlew limelightJsonBenchmark --args="dump1.json dump2.json"} on json dumps
+ * recorded from a Limelight's "json" topic. Without arguments a representative three tag dump is used.
+ */
+public final class LimelightJsonBenchmark {
+    private static final int kWarmupIterations = 2000;
+    private static final int kMeasuredIterations = 20000;
+
+    private static final String kSampleDump =
+        "{\"pID\":0.0,\"tl\":18.3,\"cl\":11.2,\"ts\":532918.1,\"ts_rio\":81237.6,\"v\":1," +
+        "\"botpose\":[-3.21,1.05,0.0,0.0,0.0,172.4]," +
+        "\"botpose_wpiblue\":[5.06,5.07,0.0,0.0,0.0,172.4]," +
+        "\"botpose_wpired\":[12.49,2.98,0.0,0.0,0.0,-7.6]," +
+        "\"botpose_tagcount\":3,\"botpose_span\":1.42,\"botpose_avgdist\":2.31,\"botpose_avgarea\":0.41," +
+        "\"t6c_rs\":[0.28,0.0,0.21,0.0,15.0,0.0]," +
+        "\"Retro\":[],\"Classifier\":[],\"Detector\":[],\"Barcode\":[]," +
+        "\"Fiducial\":[" +
+        fiducial(17, -12.1, 3.2, 0.52) + "," +
+        fiducial(18, 4.7, 2.9, 0.44) + "," +
+        fiducial(22, 21.3, 1.8, 0.27) +
+        "]}";
+
+    private static String fiducial(int id, double tx, double ty, double ta) {
+        return "{\"fID\":" + id + ",\"fam\":\"36H11C\",\"ta\":" + ta + ",\"tx\":" + tx + ",\"ty\":" + ty +
+            ",\"txp\":412.3,\"typ\":251.8,\"tx_nocross\":" + tx + ",\"ty_nocross\":" + ty + ",\"ts\":0.0" +
+            ",\"pts\":[],\"skew\":0.0" +
+            ",\"t6c_ts\":[0.41,-0.12,-2.31,1.2,-14.8,3.1]" +
+            ",\"t6r_fs\":[5.06,5.07,0.0,0.0,0.0,172.4]" +
+            ",\"t6r_ts\":[0.38,-0.02,-2.33,0.4,-1.1,2.7]" +
+            ",\"t6t_cs\":[-0.48,0.28,2.27,-3.2,14.6,1.1]" +
+            ",\"t6t_rs\":[2.21,0.47,0.29,0.0,0.0,-11.9]}";
+    }
+
+    private LimelightJsonBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        List<String> dumps = new ArrayList<>();
+        for (String arg : args) {
+            dumps.add(Files.readString(Path.of(arg)));
+        }
+        if (dumps.isEmpty()) {
+            dumps.add(kSampleDump);
+        }
+
+        ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        LimelightJsonDecoder decoder = new LimelightJsonDecoder();
+
+        // A dump the decoder rejects would time the error path
+        for (String dump : dumps) {
+            if (!decoder.decode(dump)) {
+                throw new IllegalStateException(decoder.getError());
+            }
+        }
+
+        double bindingNs = time(dumps, dump -> mapper.readValue(dump, LimelightResults.class).botpose_avgdist);
+        double streamingNs = time(dumps, dump -> {
+            decoder.decode(dump);
+            return decoder.getBotPoseAvgDistMeters();
+        });
+
+        System.out.printf("dumps:        %d%n", dumps.size());
+        System.out.printf("data binding: %.1f us/decode%n", bindingNs / 1000.0);
+        System.out.printf("streaming:    %.1f us/decode%n", streamingNs / 1000.0);
+        System.out.printf("speedup:      %.2fx%n", bindingNs / streamingNs);
+    }
+
+    @FunctionalInterface
+    private interface Decode {
+        double apply(String dump) throws IOException;
+    }
+
+    /** Mean nanoseconds per decode, cycling through the dumps */
+    private static double time(List<String> dumps, Decode decode) throws IOException {
+        double sink = 0;
+        for (int i = 0; i < kWarmupIterations; i++) {
+            sink += decode.apply(dumps.get(i % dumps.size()));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < kMeasuredIterations; i++) {
+            sink += decode.apply(dumps.get(i % dumps.size()));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // keep the results alive so the JIT cannot drop the work
+        if (sink == Double.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        return (double) elapsed / kMeasuredIterations;
+    }
+}
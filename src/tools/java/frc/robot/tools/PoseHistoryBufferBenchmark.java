@@ -0,0 +1,130 @@
+package frc.robot.tools;
+
+import java.util.Random;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import frc.robot.lib.estimation.PoseHistoryBuffer;
+
+/**
+ * Times {@link PoseHistoryBuffer} against the TreeMap backed {@link TimeInterpolatableBuffer} it
+ * replaced, on 250 Hz odometry with the two second history RobotState keeps. Insert fills an empty
+ * window, insert and evict adds to a full window so every sample pushes the oldest one out, sample
+ * interpolates at random times inside the window.
+ *
+ * <p>That the two agree is checked by PoseHistoryBufferTest.
+ *
+ * <p>Run with {@code ./gradlew poseHistoryBufferBenchmark}.
+ */
+public final class PoseHistoryBufferBenchmark {
+    private static final double kHistorySeconds = 2.0;
+    private static final double kSampleRateHz = 250;
+    private static final double kDtSeconds = 1 / kSampleRateHz;
+    private static final int kWindowSamples = (int) (kHistorySeconds * kSampleRateHz);
+
+    private static final int kWarmupRounds = 200;
+    private static final int kMeasuredRounds = 2000;
+
+    private PoseHistoryBufferBenchmark() {}
+
+    public static void main(String[] args) {
+        PoseHistoryBuffer ring = PoseHistoryBuffer.createBuffer(kHistorySeconds, kSampleRateHz);
+        TimeInterpolatableBuffer<Pose2d> treeMap = TimeInterpolatableBuffer.createBuffer(kHistorySeconds);
+        double sink = 0;
+
+        for (boolean isMeasured : new boolean[] {false, true}) {
+            int rounds = isMeasured ? kMeasuredRounds : kWarmupRounds;
+
+            long start = System.nanoTime();
+            sink += fillRing(ring, rounds);
+            double ringInsertNanos = (double) (System.nanoTime() - start) / (rounds * kWindowSamples);
+            start = System.nanoTime();
+            sink += fillTreeMap(treeMap, rounds);
+            double treeMapInsertNanos = (double) (System.nanoTime() - start) / (rounds * kWindowSamples);
+
+            // Both are full from the last fill, every further sample evicts one
+            start = System.nanoTime();
+            sink += addRing(ring, kWindowSamples, rounds * kWindowSamples);
+            double ringEvictNanos = (double) (System.nanoTime() - start) / (rounds * kWindowSamples);
+            start = System.nanoTime();
+            sink += addTreeMap(treeMap, kWindowSamples, rounds * kWindowSamples);
+            double treeMapEvictNanos = (double) (System.nanoTime() - start) / (rounds * kWindowSamples);
+
+            double latestSeconds = (rounds * kWindowSamples + kWindowSamples - 1) * kDtSeconds;
+            start = System.nanoTime();
+            sink += sampleRing(ring, latestSeconds, rounds * kWindowSamples);
+            double ringSampleNanos = (double) (System.nanoTime() - start) / (rounds * kWindowSamples);
+            start = System.nanoTime();
+            sink += sampleTreeMap(treeMap, latestSeconds, rounds * kWindowSamples);
+            double treeMapSampleNanos = (double) (System.nanoTime() - start) / (rounds * kWindowSamples);
+
+            if (isMeasured) {
+                System.out.printf("                  ring     TreeMap%n");
+                System.out.printf("insert           %6.1f ns %6.1f ns%n", ringInsertNanos, treeMapInsertNanos);
+                System.out.printf("insert and evict %6.1f ns %6.1f ns%n", ringEvictNanos, treeMapEvictNanos);
+                System.out.printf("sample           %6.1f ns %6.1f ns%n", ringSampleNanos, treeMapSampleNanos);
+            }
+        }
+
+        // keep the results alive so the JIT cannot drop the work
+        if (sink == Double.MIN_VALUE) {
+            System.out.println(sink);
+        }
+    }
+
+    private static double fillRing(PoseHistoryBuffer ring, int rounds) {
+        double sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            ring.clear();
+            sink += addRing(ring, 0, kWindowSamples);
+        }
+        return sink;
+    }
+
+    private static double fillTreeMap(TimeInterpolatableBuffer<Pose2d> treeMap, int rounds) {
+        double sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            treeMap.clear();
+            sink += addTreeMap(treeMap, 0, kWindowSamples);
+        }
+        return sink;
+    }
+
+    /** Drives a slow circle, sample i is at time i * dt */
+    private static double addRing(PoseHistoryBuffer ring, int firstSample, int samples) {
+        for (int i = firstSample; i < firstSample + samples; i++) {
+            double t = i * kDtSeconds;
+            ring.addSample(t, Math.cos(t), Math.sin(t), t);
+        }
+        return ring.size();
+    }
+
+    private static double addTreeMap(TimeInterpolatableBuffer<Pose2d> treeMap, int firstSample, int samples) {
+        for (int i = firstSample; i < firstSample + samples; i++) {
+            double t = i * kDtSeconds;
+            treeMap.addSample(t, new Pose2d(Math.cos(t), Math.sin(t), new Rotation2d(t)));
+        }
+        return firstSample + samples;
+    }
+
+    private static double sampleRing(PoseHistoryBuffer ring, double latestSeconds, int samples) {
+        Random random = new Random(0);
+        double[] out = new double[3];
+        double sink = 0;
+        for (int i = 0; i < samples; i++) {
+            ring.sample(latestSeconds - kHistorySeconds * random.nextDouble(), out);
+            sink += out[0];
+        }
+        return sink;
+    }
+
+    private static double sampleTreeMap(TimeInterpolatableBuffer<Pose2d> treeMap, double latestSeconds, int samples) {
+        Random random = new Random(0);
+        double sink = 0;
+        for (int i = 0; i < samples; i++) {
+            sink += treeMap.getSample(latestSeconds - kHistorySeconds * random.nextDouble()).get().getX();
+        }
+        return sink;
+    }
+}
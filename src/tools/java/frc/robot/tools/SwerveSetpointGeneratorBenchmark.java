@@ -0,0 +1,70 @@
+package frc.robot.tools;
+
+import java.util.Random;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.lib.auto.SwerveSetpointGenerator;
+
+/**
+ * Times {@link SwerveSetpointGenerator#generate} on random driver inputs.
+ *
+ * <p>That the setpoints stay within the steer and drive limits is checked by SwerveSetpointGeneratorTest.
+ *
+ * <p>Run with {@code ./gradlew swerveSetpointGeneratorBenchmark}.
+ */
+public final class SwerveSetpointGeneratorBenchmark {
+    private static final int kWarmupIterations = 20000;
+    private static final int kMeasuredIterations = 200000;
+    private static final double kDtSeconds = 0.02;
+
+    private static final double kMaxModuleVelocity = 4.5;
+    private static final double kMaxDriveAcceleration = 12;
+    private static final double kMaxSteerVelocityRadPerSec = 4 * 2 * Math.PI;
+
+    private SwerveSetpointGeneratorBenchmark() {}
+
+    public static void main(String[] args) {
+        SwerveSetpointGenerator generator = new SwerveSetpointGenerator(
+            kMaxModuleVelocity,
+            kMaxDriveAcceleration,
+            kMaxDriveAcceleration,
+            kMaxSteerVelocityRadPerSec,
+            new Translation2d(0.29, 0.29),
+            new Translation2d(0.29, -0.29),
+            new Translation2d(-0.29, 0.29),
+            new Translation2d(-0.29, -0.29)
+        );
+        Random random = new Random(0);
+
+        run(generator, random, kWarmupIterations);
+        long start = System.nanoTime();
+        double sink = run(generator, random, kMeasuredIterations);
+        double microsPerCall = (System.nanoTime() - start) / 1e3 / kMeasuredIterations;
+
+        System.out.printf("generate: %.3f us per call%n", microsPerCall);
+        // keep the results alive so the JIT cannot drop the work
+        if (sink == Double.MIN_VALUE) {
+            System.out.println(sink);
+        }
+    }
+
+    private static double run(SwerveSetpointGenerator generator, Random random, int iterations) {
+        double desiredVx = 0;
+        double desiredVy = 0;
+        double desiredOmega = 0;
+        double sink = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            // Hold a stick position for a while, then jump somewhere else like a driver would
+            if (i % 25 == 0) {
+                desiredVx = (random.nextDouble() * 2 - 1) * kMaxModuleVelocity;
+                desiredVy = (random.nextDouble() * 2 - 1) * kMaxModuleVelocity;
+                desiredOmega = (random.nextDouble() * 2 - 1) * 8;
+            }
+
+            generator.generate(desiredVx, desiredVy, desiredOmega, kDtSeconds);
+            sink += generator.getModuleSpeedMetersPerSec(i % 4);
+        }
+        return sink;
+    }
+}